@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.Grant;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Learns the ACL that objects under a given prefix and owner usually carry, so that the getObjectAcl
+ * round trip can be skipped once a (prefix, owner) pair has been seen with the same grant set often enough.
+ * Every {@link #VERIFY_INTERVAL}th prediction is answered with a miss, so that drift is noticed and relearned.
+ */
+public class AclCache {
+
+    public static final int MAX_ENTRIES = 10000;
+    public static final int VERIFY_INTERVAL = 100;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                release(eldest.getValue().fingerprint);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // one shared instance per distinct grant set, kept while an entry refers to it
+    private final Map<String, SharedAcl> aclsByFingerprint = new HashMap<String, SharedAcl>();
+
+    private static class Entry {
+        private String fingerprint;
+        private int confirmations;
+        private int predictions;
+    }
+
+    private static class SharedAcl {
+        private final AccessControlList acl;
+        private int references;
+
+        private SharedAcl(AccessControlList acl) {
+            this.acl = acl;
+        }
+    }
+
+    private void release(String fingerprint) {
+        final SharedAcl shared = aclsByFingerprint.get(fingerprint);
+        if (shared != null && --shared.references == 0) {
+            aclsByFingerprint.remove(fingerprint);
+        }
+    }
+
+    /**
+     * @return the number of distinct grant sets held, at most one per entry
+     */
+    synchronized int getAclCount() {
+        return aclsByFingerprint.size();
+    }
+
+    /**
+     * @return the ACL predicted for this key, or null if the caller has to fetch it
+     */
+    public synchronized AccessControlList lookup(String key, String ownerId, int threshold) {
+        final Entry entry = entries.get(cacheKey(key, ownerId));
+        if (entry == null || entry.confirmations < threshold) {
+            return null;
+        }
+        if (++entry.predictions % VERIFY_INTERVAL == 0) {
+            return null;
+        }
+        return aclsByFingerprint.get(entry.fingerprint).acl;
+    }
+
+    /**
+     * Records an ACL that was fetched for this key.
+     */
+    public synchronized void learn(String key, String ownerId, AccessControlList acl) {
+        final String fingerprint = fingerprint(acl);
+        final String cacheKey = cacheKey(key, ownerId);
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(cacheKey, entry);
+        }
+        if (fingerprint.equals(entry.fingerprint)) {
+            entry.confirmations++;
+        } else {
+            if (entry.fingerprint != null) {
+                release(entry.fingerprint);
+            }
+            SharedAcl shared = aclsByFingerprint.get(fingerprint);
+            if (shared == null) {
+                shared = new SharedAcl(acl);
+                aclsByFingerprint.put(fingerprint, shared);
+            }
+            shared.references++;
+            entry.fingerprint = fingerprint;
+            entry.confirmations = 1;
+            entry.predictions = 0;
+        }
+    }
+
+    public static String fingerprint(AccessControlList acl) {
+        return Hashing.md5().hashString(canonicalize(acl), MirrorConstants.UTF8).toString();
+    }
+
+    /**
+     * Renders the owner and grants in a stable order, so that equal grant sets compare equal
+     * regardless of the order S3 returned them in.
+     */
+    public static String canonicalize(AccessControlList acl) {
+        final List<String> grants = new ArrayList<String>();
+        for (Grant grant : acl.getGrants()) {
+            grants.add(grant.getGrantee().getTypeIdentifier() + ":" + grant.getGrantee().getIdentifier() + ":" + grant.getPermission());
+        }
+        Collections.sort(grants);
+
+        final StringBuilder canonical = new StringBuilder();
+        canonical.append("owner=").append(acl.getOwner() == null ? "" : acl.getOwner().getId());
+        for (String grant : grants) {
+            canonical.append('\n').append(grant);
+        }
+        return canonical.toString();
+    }
+
+    static String parentPrefix(String key) {
+        final int slashPos = key.lastIndexOf(MirrorConstants.SLASH);
+        return slashPos == -1 ? "" : key.substring(0, slashPos + 1);
+    }
+
+    private static String cacheKey(String key, String ownerId) {
+        return parentPrefix(key) + "\u0000" + (ownerId == null ? "" : ownerId);
+    }
+
+}
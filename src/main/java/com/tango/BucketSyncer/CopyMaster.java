@@ -17,14 +17,28 @@
 package com.tango.BucketSyncer;
 
 import com.tango.BucketSyncer.KeyJobs.KeyJob;
+import com.tango.BucketSyncer.KeyListers.ErrorJournalKeyLister;
+import com.tango.BucketSyncer.KeyListers.InventoryKeyLister;
 import com.tango.BucketSyncer.KeyListers.KeyLister;
+import com.tango.BucketSyncer.KeyListers.ModifiedSinceKeyLister;
+import com.tango.BucketSyncer.KeyListers.NotificationKeyLister;
+import com.tango.BucketSyncer.KeyListers.PlanKeyLister;
+import com.tango.BucketSyncer.KeyListers.PrefixDigestKeyLister;
+import com.tango.BucketSyncer.KeyListers.PrefixesKeyLister;
+import com.tango.BucketSyncer.KeyListers.SnapshotKeyLister;
+import com.tango.BucketSyncer.Notifications.NotificationBatch;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class CopyMaster extends KeyMaster {
@@ -35,16 +49,100 @@ public class CopyMaster extends KeyMaster {
     }
 
 
+    /**
+     * @return true if the keys listed by this master are already known to need copying
+     */
+    protected boolean isPreCompared() {
+        // anything missed or stale while seeding is copied by the reconciliation pass that ends a seed run
+        // and an applied plan was compared when it was made
+        return context.isSeeding() || context.getOptions().hasApply();
+    }
+
     protected String getPrefix(MirrorOptions options) {
         return options.getPrefix();
     }
 
+    @Override
+    protected void submitted(ObjectSummary summary) {
+        context.getStats().keysQueued.increment();
+        context.getStats().bytesQueued.add(summary.getSize());
+    }
+
+    @Override
+    protected void listed() {
+        context.getStats().setListingDone(true);
+    }
+
+    @Override
+    protected String getJournalShard() {
+        return "copy";
+    }
+
     protected String getBucket(MirrorOptions options) {
         return options.getSourceBucket();
     }
 
 
     protected KeyLister getKeyLister(MirrorOptions options) {
+        if (options.hasApply()) {
+            return new PlanKeyLister(new File(options.getApply()), MirrorMaster.getIdentity(options), SyncPlan.COPY, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final List<ErrorJournal.Entry> retries = context.getRetryEntries();
+        if (retries != null) {
+            return new ErrorJournalKeyLister(ErrorJournal.getRetries(retries, ErrorJournal.OP_COPY), getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final NotificationBatch notifications = context.getNotificationBatch();
+        if (notifications != null) {
+            return new NotificationKeyLister(notifications.getCreated(), false, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final long cutoff = context.getListingCutoff();
+        KeyLister lister;
+        if (options.hasKeySource()) {
+            lister = new InventoryKeyLister(sourceClient, options.getKeySource(), getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        } else if (cutoff > 0 && options.hasKeyTemplate()) {
+            lister = getPrunedKeyLister(options, cutoff);
+        } else {
+            lister = getSourceKeyLister(options);
+        }
+        if (lister == null) {
+            return null;
+        }
+        final ListingSnapshot snapshot = context.getListingSnapshot();
+        if (snapshot != null) {
+            lister = new SnapshotKeyLister(lister, snapshot, context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final PrefixDigests digests = context.getPrefixDigests();
+        if (digests != null) {
+            lister = new PrefixDigestKeyLister(lister, digests, context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        if (cutoff > 0 || context.getWatermark() != null) {
+            lister = new ModifiedSinceKeyLister(lister, cutoff, context.getWatermark(), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        return lister;
+    }
+
+    /**
+     * Lists only the date prefixes of the key template that can hold keys modified since the cutoff.
+     */
+    protected KeyLister getPrunedKeyLister(MirrorOptions options, long cutoff) {
+        final String prefix = getPrefix(options) == null ? "" : getPrefix(options);
+        // keys dated ahead of this clock are listed too
+        final long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(options.getWatermarkOverlap());
+        final List<String> prefixes = new ArrayList<String>();
+        for (String datePrefix : new KeyTemplate(options.getKeyTemplate()).getPrefixes(cutoff, until)) {
+            prefixes.add(prefix + datePrefix);
+        }
+        log.info("listing {} prefixes of {} since {}", new Object[]{prefixes.size(), options.getKeyTemplate(), new Date(cutoff)});
+        return new PrefixesKeyLister(options.getSrcStore(), sourceClient, getBucket(options), prefixes, getResumeMarker(), context, MirrorMaster.getMaxQueueCapacity(options));
+    }
+
+    protected KeyLister getSourceKeyLister(MirrorOptions options) {
+        final String startAfter = getResumeMarker();
+        if (startAfter != null) {
+            log.info("resuming the listing of {} after {}", getBucket(options), startAfter);
+            return KeyLister.forStore(options.getSrcStore(), sourceClient, getBucket(options), getPrefix(options),
+                    startAfter, context, MirrorMaster.getMaxQueueCapacity(options));
+        }
 
         String packageName = this.getClass().getPackage().getName();
         String name = context.getOptions().getSrcStore().toString().toUpperCase();
@@ -116,11 +214,18 @@ public class CopyMaster extends KeyMaster {
             log.error("Failed to find corresponding KeyCopyJobs constructor:", e);
         }
         try {
-            return (KeyJob) constructor.newInstance(sourceClient,
+            final KeyJob job = (KeyJob) constructor.newInstance(sourceClient,
                     destClient,
                     context,
                     summary,
                     notifyLock);
+            job.setPreCompared(isPreCompared());
+            final DestinationIndex index = context.getDestinationIndex();
+            if (index != null && !job.isPreCompared()) {
+                // tasks are created in listing order, which is the order the index is read in
+                job.setIndexEntry(index.lookup(summary.getKey()));
+            }
+            return job;
         } catch (InstantiationException e) {
             log.error("Failed to instantiate KeyCopyJobs: {}", e);
         } catch (IllegalAccessException e) {
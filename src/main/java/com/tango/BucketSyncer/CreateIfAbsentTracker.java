@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks, per parent prefix, how often keys already exist in the destination, so that copy jobs can skip the
+ * metadata lookup and write with a create-if-absent precondition where most keys turn out to be new.
+ * Prefixes that have not been seen yet are assumed to be new. Outcomes of both optimistic writes and regular
+ * metadata lookups are recorded, so a prefix switches back as soon as its hit rate changes.
+ */
+public class CreateIfAbsentTracker {
+
+    public static final int MAX_ENTRIES = 10000;
+
+    // older outcomes are halved away once a prefix has seen this many, so the rate follows recent keys
+    public static final int WINDOW = 200;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static class Entry {
+        private int outcomes;
+        private int existing;
+    }
+
+    /**
+     * @return true if the key should be written with a create-if-absent precondition instead of looked up first
+     */
+    public synchronized boolean shouldCreateIfAbsent(String key, double maxHitRate) {
+        final Entry entry = entries.get(AclCache.parentPrefix(key));
+        return entry == null || entry.existing <= maxHitRate * entry.outcomes;
+    }
+
+    /**
+     * Records whether a key was found to exist in the destination.
+     */
+    public synchronized void record(String key, boolean existed) {
+        final String prefix = AclCache.parentPrefix(key);
+        Entry entry = entries.get(prefix);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(prefix, entry);
+        }
+        entry.outcomes++;
+        if (existed) {
+            entry.existing++;
+        }
+        if (entry.outcomes >= WINDOW) {
+            entry.outcomes /= 2;
+            entry.existing /= 2;
+        }
+    }
+
+}
@@ -16,13 +16,22 @@
  */
 package com.tango.BucketSyncer;
 
+import com.tango.BucketSyncer.KeyJobs.DeleteBatcher;
 import com.tango.BucketSyncer.KeyJobs.KeyJob;
+import com.tango.BucketSyncer.KeyListers.ChangedPrefixesKeyLister;
+import com.tango.BucketSyncer.KeyListers.ErrorJournalKeyLister;
 import com.tango.BucketSyncer.KeyListers.KeyLister;
+import com.tango.BucketSyncer.KeyListers.NotificationKeyLister;
+import com.tango.BucketSyncer.KeyListers.PlanKeyLister;
+import com.tango.BucketSyncer.KeyListers.SnapshotRemovedKeyLister;
+import com.tango.BucketSyncer.Notifications.NotificationBatch;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -31,6 +40,52 @@ public class DeleteMaster extends KeyMaster {
 
     public DeleteMaster(Object sourceClient, Object destClient, MirrorContext context, BlockingQueue<Runnable> workQueue, ThreadPoolExecutor executorService) {
         super(sourceClient, destClient, context, workQueue, executorService);
+
+        final MirrorOptions options = context.getOptions();
+        if (options.hasDeleteBatching() && !options.isDryRun()) {
+            context.setDeleteBatcher(getDeleteBatcher(options));
+        }
+    }
+
+    @Override
+    protected void drain() {
+        final DeleteBatcher batcher = context.getDeleteBatcher();
+        if (batcher != null) {
+            batcher.close();
+            context.setDeleteBatcher(null);
+        }
+    }
+
+    protected DeleteBatcher getDeleteBatcher(MirrorOptions options) {
+        String packageName = this.getClass().getPackage().getName();
+        String dest = options.getDestStore().toString().toUpperCase();
+        String className = String.format("%s.%s.%s%s", packageName, MirrorConstants.KEY_JOBS, dest, MirrorConstants.DELETE_BATCHER);
+
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            log.info("No batch deletes for {}, deleting one key per request", dest);
+            return null;
+        }
+        try {
+            Constructor<?> constructor = clazz.getConstructor(Object.class, MirrorContext.class);
+            DeleteBatcher batcher = (DeleteBatcher) constructor.newInstance(destClient, context);
+            if (batcher.getBatchSize() < 2) {
+                batcher.close();
+                return null;
+            }
+            return batcher;
+        } catch (NoSuchMethodException e) {
+            log.error("Failed to find corresponding DeleteBatcher {} constructor: {}", className, e);
+        } catch (InstantiationException e) {
+            log.error("Failed to instantiate DeleteBatcher: ", e);
+        } catch (IllegalAccessException e) {
+            log.error("Failed to access DeleteBatcher: ", e);
+        } catch (InvocationTargetException e) {
+            log.error("Failed to invocate DeleteBatcher: ", e);
+        }
+        return null;
     }
 
     protected String getPrefix(MirrorOptions options) {
@@ -41,8 +96,41 @@ public class DeleteMaster extends KeyMaster {
         return options.getDestinationBucket();
     }
 
+    @Override
+    protected String getJournalShard() {
+        return "delete";
+    }
+
 
     protected KeyLister getKeyLister(MirrorOptions options) {
+        if (options.hasApply()) {
+            return new PlanKeyLister(new File(options.getApply()), MirrorMaster.getIdentity(options), SyncPlan.DELETE, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final List<ErrorJournal.Entry> retries = context.getRetryEntries();
+        if (retries != null) {
+            return new ErrorJournalKeyLister(ErrorJournal.getRetries(retries, ErrorJournal.OP_DELETE), getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final NotificationBatch notifications = context.getNotificationBatch();
+        if (notifications != null) {
+            // only keys whose latest notification removed them are candidates for deletion
+            return new NotificationKeyLister(notifications.getRemoved(), true, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final ListingSnapshot snapshot = context.getListingSnapshot();
+        if (snapshot != null && snapshot.hasPrevious()) {
+            // only keys removed from the source since the previous snapshot are candidates for deletion
+            return new SnapshotRemovedKeyLister(snapshot, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final PrefixDigests digests = context.getPrefixDigests();
+        if (digests != null) {
+            // only prefixes whose source changed can hold keys to delete
+            return new ChangedPrefixesKeyLister(options.getDestStore(), destClient, digests, getBucket(options), getPrefix(options), context, MirrorMaster.getMaxQueueCapacity(options));
+        }
+        final String startAfter = getResumeMarker();
+        if (startAfter != null) {
+            log.info("resuming the listing of {} after {}", getBucket(options), startAfter);
+            return KeyLister.forStore(options.getDestStore(), destClient, getBucket(options), getPrefix(options),
+                    startAfter, context, MirrorMaster.getMaxQueueCapacity(options));
+        }
         String packageName = this.getClass().getPackage().getName();
         String name = context.getOptions().getDestStore().toString().toUpperCase();
         String listerName = String.format("%s%s", name, MirrorConstants.KEY_LISTER);
@@ -106,11 +194,14 @@ public class DeleteMaster extends KeyMaster {
             log.error("Failed to find corresponding KeyDeleteJob {} constructor: {}", className, e);
         }
         try {
-            return (KeyJob) constructor.newInstance(sourceClient,
+            final KeyJob job = (KeyJob) constructor.newInstance(sourceClient,
                     destClient,
                     context,
                     summary,
                     notifyLock);
+            // the keys of an applied plan were found missing from the source when it was made
+            job.setPreCompared(context.getOptions().hasApply());
+            return job;
         } catch (InstantiationException e) {
             log.error("Failed to instantiate KeyDeleteJobs: ", e);
         } catch (IllegalAccessException e) {
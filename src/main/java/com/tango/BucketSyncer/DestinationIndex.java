@@ -0,0 +1,366 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.KeyListers.ReconcileKeyLister;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A local index of the source objects that are known to be mirrored in the destination, so that a later run can
+ * skip the destination lookup for keys that have not changed in the source.
+ *
+ * The index is a log-structured store. The base file holds one record per key, sorted in listing order, and is read
+ * with a single forward cursor while the source listing is walked. Updates made during a run are collected in memory
+ * and spilled to sorted run files, and are merged into a new base file when the index is closed.
+ */
+@Slf4j
+public class DestinationIndex {
+
+    public static final String BASE_FILE = "index.dat";
+    public static final String RUN_FILE_PATTERN = "run-%d.dat";
+    private static final String MAGIC = "BucketSyncerIndex1";
+
+    // number of updates kept in memory before they are spilled to a run file
+    public static final int MEMTABLE_SIZE = 100000;
+
+    static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            return ReconcileKeyLister.compareKeys(a, b);
+        }
+    };
+
+    @Getter
+    private final File dir;
+    private final String identity;
+    @Getter
+    private final int runCount;
+
+    private Cursor lookupCursor;
+    private TreeMap<String, Entry> memtable = new TreeMap<String, Entry>(KEY_ORDER);
+    private final List<File> runFiles = new ArrayList<File>();
+
+    public static class Entry {
+        @Getter
+        private final String key;
+        @Getter
+        private final long size;
+        @Getter
+        private final String etag;
+        @Getter
+        private final long lastModified;
+        // destination generation, or -1 if the destination store has none
+        @Getter
+        private final long generation;
+        private final boolean deleted;
+
+        public Entry(String key, long size, String etag, long lastModified, long generation) {
+            this(key, size, etag, lastModified, generation, false);
+        }
+
+        private Entry(String key, long size, String etag, long lastModified, long generation, boolean deleted) {
+            this.key = key;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.generation = generation;
+            this.deleted = deleted;
+        }
+
+        static Entry tombstone(String key) {
+            return new Entry(key, -1, null, -1, -1, true);
+        }
+
+        /**
+         * @return true if the source object is the one this entry recorded as mirrored
+         */
+        public boolean matches(ObjectSummary summary) {
+            return new KeyFingerprint(size, etag).equals(new KeyFingerprint(summary.getSize(), summary.getETag()));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeBoolean(deleted);
+            out.writeLong(size);
+            out.writeUTF(etag == null ? "" : etag);
+            out.writeLong(lastModified);
+            out.writeLong(generation);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            final String key;
+            try {
+                key = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            final boolean deleted = in.readBoolean();
+            final long size = in.readLong();
+            final String etag = in.readUTF();
+            return new Entry(key, size, etag.length() == 0 ? null : etag, in.readLong(), in.readLong(), deleted);
+        }
+    }
+
+    /**
+     * Reads a sorted record file front to back.
+     */
+    static class Cursor {
+        private final DataInputStream in;
+        Entry current;
+
+        Cursor(File file, boolean hasHeader) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (hasHeader) {
+                in.readUTF();
+                in.readUTF();
+                in.readInt();
+            }
+            current = Entry.read(in);
+        }
+
+        void advance() throws IOException {
+            current = Entry.read(in);
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("Error closing index file: {}", e);
+            }
+        }
+    }
+
+    /**
+     * Opens the index in the given directory. An index written for a different source and destination is ignored.
+     *
+     * @param identity describes the source and destination this index is for
+     */
+    public DestinationIndex(File dir, String identity) throws IOException {
+        this.dir = dir;
+        this.identity = identity;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create index directory: " + dir);
+        }
+
+        int runCount = 0;
+        final File base = new File(dir, BASE_FILE);
+        if (base.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(base)));
+            try {
+                final String magic = in.readUTF();
+                final String baseIdentity = in.readUTF();
+                if (MAGIC.equals(magic) && identity.equals(baseIdentity)) {
+                    runCount = in.readInt();
+                    lookupCursor = new Cursor(base, true);
+                } else {
+                    log.warn("Ignoring index in {}, it was written for {}", dir, baseIdentity);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        this.runCount = runCount;
+        // leftovers of a run that did not close its index
+        for (int i = 0; new File(dir, String.format(RUN_FILE_PATTERN, i)).exists(); i++) {
+            new File(dir, String.format(RUN_FILE_PATTERN, i)).delete();
+        }
+    }
+
+    /**
+     * Looks up a source key. Keys must be looked up in listing order, as the base file is only read forward.
+     *
+     * @return the entry recorded for the key by an earlier run, or null
+     */
+    public synchronized Entry lookup(String key) {
+        try {
+            while (lookupCursor != null && lookupCursor.current != null) {
+                final int cmp = KEY_ORDER.compare(lookupCursor.current.key, key);
+                if (cmp > 0) {
+                    return null;
+                }
+                if (cmp == 0) {
+                    return lookupCursor.current;
+                }
+                lookupCursor.advance();
+            }
+        } catch (IOException e) {
+            log.error("Error reading index, not using it for the rest of this run: {}", e);
+            lookupCursor.close();
+            lookupCursor = null;
+        }
+        return null;
+    }
+
+    /**
+     * Records that the source object described by the entry is mirrored in the destination.
+     */
+    public void put(Entry entry) {
+        update(entry);
+    }
+
+    /**
+     * Forgets a source key, e.g. because it is being removed from the destination.
+     */
+    public void remove(String key) {
+        update(Entry.tombstone(key));
+    }
+
+    private void update(Entry entry) {
+        TreeMap<String, Entry> full = null;
+        synchronized (this) {
+            memtable.put(entry.key, entry);
+            if (memtable.size() >= MEMTABLE_SIZE) {
+                full = memtable;
+                memtable = new TreeMap<String, Entry>(KEY_ORDER);
+            }
+        }
+        if (full != null) {
+            spill(full);
+        }
+    }
+
+    private void spill(TreeMap<String, Entry> entries) {
+        final File runFile;
+        synchronized (runFiles) {
+            runFile = new File(dir, String.format(RUN_FILE_PATTERN, runFiles.size()));
+            runFiles.add(runFile);
+        }
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 1 << 16));
+            try {
+                for (Entry entry : entries.values()) {
+                    entry.write(out);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            log.error("Error writing index run file {}, {} updates lost: {}", new Object[]{runFile, entries.size(), e});
+        }
+    }
+
+    /**
+     * Counts a run that made no updates in the header of the base file, without rewriting the keys.
+     */
+    private void countRun(File base) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(header);
+        out.writeUTF(MAGIC);
+        out.writeUTF(identity);
+        out.close();
+        final RandomAccessFile file = new RandomAccessFile(base, "rw");
+        try {
+            file.seek(header.size());
+            file.writeInt(runCount + 1);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Merges the updates of this run into a new base file. Later updates win over earlier ones and over the base.
+     */
+    public void close() throws IOException {
+        final File base = new File(dir, BASE_FILE);
+        synchronized (this) {
+            if (lookupCursor != null) {
+                lookupCursor.close();
+                lookupCursor = null;
+            }
+            if (memtable.isEmpty() && runFiles.isEmpty() && runCount > 0) {
+                countRun(base);
+                log.info("index in {} unchanged", dir);
+                return;
+            }
+            spill(memtable);
+            memtable = new TreeMap<String, Entry>(KEY_ORDER);
+        }
+
+        final List<Cursor> cursors = new ArrayList<Cursor>();
+        final File merged = new File(dir, BASE_FILE + ".tmp");
+        long written = 0;
+        try {
+            // oldest first, so that the last cursor holding a key has its newest entry
+            if (runCount > 0) {
+                cursors.add(new Cursor(base, true));
+            }
+            for (File runFile : runFiles) {
+                if (runFile.exists()) {
+                    cursors.add(new Cursor(runFile, false));
+                }
+            }
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), 1 << 16));
+            try {
+                out.writeUTF(MAGIC);
+                out.writeUTF(identity);
+                out.writeInt(runCount + 1);
+                while (true) {
+                    String key = null;
+                    for (Cursor cursor : cursors) {
+                        if (cursor.current != null && (key == null || KEY_ORDER.compare(cursor.current.key, key) < 0)) {
+                            key = cursor.current.key;
+                        }
+                    }
+                    if (key == null) {
+                        break;
+                    }
+                    Entry newest = null;
+                    for (Cursor cursor : cursors) {
+                        if (cursor.current != null && cursor.current.key.equals(key)) {
+                            newest = cursor.current;
+                            cursor.advance();
+                        }
+                    }
+                    if (!newest.deleted) {
+                        newest.write(out);
+                        written++;
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+
+        // replaces the base atomically where the file system allows it, so a crash leaves the old or the new index
+        if (!merged.renameTo(base)) {
+            if (base.exists() && !base.delete()) {
+                throw new IOException("Cannot replace index file: " + base);
+            }
+            if (!merged.renameTo(base)) {
+                throw new IOException("Cannot rename " + merged + " to " + base);
+            }
+        }
+        for (File runFile : runFiles) {
+            runFile.delete();
+        }
+        log.info("index in {} now holds {} keys", dir, written);
+    }
+
+}
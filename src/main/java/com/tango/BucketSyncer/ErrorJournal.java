@@ -0,0 +1,228 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An append-only journal of the keys that failed to copy or delete, one JSON object per line, with the
+ * operation, the number of attempts made and the last error. Lines are written as keys fail, so the journal
+ * holds every failure of a run, however many, and outlives a run that is killed. A later run can reprocess
+ * exactly those keys with --retry-errors, without listing the buckets.
+ */
+@Slf4j
+public class ErrorJournal {
+
+    public static final String OP_COPY = "copy";
+    public static final String OP_DELETE = "delete";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * A failed key. Copies are recorded under their source key, deletes under their destination key.
+     */
+    public static class Entry {
+        @Getter
+        private final String operation;
+        @Getter
+        private final String key;
+        // -1 if unknown, e.g. for deletes
+        @Getter
+        private final long size;
+        @Getter
+        private final String etag;
+        @Getter
+        private final long lastModified;
+        // tries made over all runs, including earlier retries
+        @Getter
+        private final int attempts;
+        @Getter
+        private final String reason;
+        @Getter
+        private final long time;
+
+        public Entry(String operation, String key, long size, String etag, long lastModified, int attempts, String reason, long time) {
+            this.operation = operation;
+            this.key = key;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.attempts = attempts;
+            this.reason = reason;
+            this.time = time;
+        }
+
+        private String toJson() throws IOException {
+            final ObjectNode node = MAPPER.createObjectNode();
+            node.put("op", operation);
+            node.put("key", key);
+            node.put("size", size);
+            if (etag != null) {
+                node.put("etag", etag);
+            }
+            node.put("lastModified", lastModified);
+            node.put("attempts", attempts);
+            if (reason != null) {
+                node.put("reason", reason);
+            }
+            node.put("time", time);
+            return MAPPER.writeValueAsString(node);
+        }
+
+        private static Entry parse(String line) throws IOException {
+            final JsonNode node = MAPPER.readTree(line);
+            if (!node.has("op") || !node.has("key")) {
+                throw new IOException("Not an error journal entry: " + line);
+            }
+            return new Entry(node.get("op").asText(),
+                    node.get("key").asText(),
+                    node.path("size").asLong(-1),
+                    node.has("etag") ? node.get("etag").asText() : null,
+                    node.path("lastModified").asLong(-1),
+                    node.path("attempts").asInt(0),
+                    node.has("reason") ? node.get("reason").asText() : null,
+                    node.path("time").asLong(0));
+        }
+    }
+
+    @Getter
+    private final File file;
+    // a journal nobody asked for is only kept for the run, for the keys that failed
+    private final boolean temporary;
+    private final Writer out;
+
+    /**
+     * Starts a new journal in the given file, replacing any journal it holds.
+     */
+    public ErrorJournal(File file) throws IOException {
+        this(file, false);
+    }
+
+    private ErrorJournal(File file, boolean temporary) throws IOException {
+        this.file = file;
+        this.temporary = temporary;
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+    }
+
+    /**
+     * Starts a journal in a temporary file, removed when the journal is closed.
+     */
+    public static ErrorJournal temporary() throws IOException {
+        final File file = File.createTempFile("BucketSyncer-errors", ".jsonl");
+        file.deleteOnExit();
+        return new ErrorJournal(file, true);
+    }
+
+    public void record(String operation, ObjectSummary summary, int attempts, String reason) {
+        final long lastModified = summary.getLastModified() == null ? -1 : summary.getLastModified().getTime();
+        record(new Entry(operation, summary.getKey(), summary.getSize(), summary.getETag(), lastModified, attempts, reason, System.currentTimeMillis()));
+    }
+
+    public void record(String operation, String key, int attempts, String reason) {
+        record(new Entry(operation, key, -1, null, -1, attempts, reason, System.currentTimeMillis()));
+    }
+
+    private synchronized void record(Entry entry) {
+        try {
+            out.write(entry.toJson());
+            out.write('\n');
+            // failures are few, each one is handed to the OS so that it survives the run being killed
+            out.flush();
+        } catch (IOException e) {
+            log.error("Cannot record failed key {} in error journal {}: {}", new Object[]{entry.getKey(), file, e});
+        }
+    }
+
+    /**
+     * @return the keys recorded so far, whatever the operation
+     */
+    public Set<String> getFailedKeys() throws IOException {
+        final Set<String> keys = new HashSet<String>();
+        synchronized (this) {
+            out.flush();
+        }
+        for (Entry entry : read(file)) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.error("Error closing error journal {}: ", file, e);
+        }
+        if (temporary && !file.delete()) {
+            log.warn("Cannot remove temporary error journal {}", file);
+        }
+    }
+
+    /**
+     * Reads a journal, skipping lines that cannot be parsed, e.g. the last line of a journal whose run was killed.
+     */
+    public static List<Entry> read(File file) throws IOException {
+        final List<Entry> entries = new ArrayList<Entry>();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                try {
+                    entries.add(Entry.parse(line));
+                } catch (IOException e) {
+                    log.warn("Skipping line {} of error journal {}: {}", new Object[]{lineNumber, file, e.getMessage()});
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return entries;
+    }
+
+    /**
+     * @return the latest entry of each key failed by the given operation, in key order
+     */
+    public static List<Entry> getRetries(Collection<Entry> entries, String operation) {
+        final Map<String, Entry> latest = new TreeMap<String, Entry>(DestinationIndex.KEY_ORDER);
+        for (Entry entry : entries) {
+            if (operation.equals(entry.getOperation())) {
+                latest.put(entry.getKey(), entry);
+            }
+        }
+        return new ArrayList<Entry>(latest.values());
+    }
+
+}
@@ -0,0 +1,313 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for key jobs, requests and listing pages, so a recording of a run shows what each
+ * thread was doing next to the JVM's own events (GC, sockets, locks). The jdk.jfr API is only reached by
+ * reflection, since it does not exist before JDK 8u262, and the event types are only defined once a recording
+ * starts. While nothing is recording, every method here returns after reading one volatile flag.
+ * <p/>
+ * Job events have a real duration. A request is emitted when it ends, with its duration in a field, as it is
+ * timed by the stats and not by the recorder. A listing page is emitted when a lister adds it to its queue; the
+ * time the page took is in the LIST request events.
+ */
+@Slf4j
+public class FlightEvents {
+
+    public static final String JOB_EVENT = "com.tango.BucketSyncer.KeyJob";
+    public static final String REQUEST_EVENT = "com.tango.BucketSyncer.Request";
+    public static final String LISTING_PAGE_EVENT = "com.tango.BucketSyncer.ListingPage";
+
+    public static final String OUTCOME_OK = "ok";
+    public static final String OUTCOME_FAILED = "failed";
+    public static final String OUTCOME_ERROR = "error";
+
+    // true while at least one flight recording is running
+    private static volatile boolean recording = false;
+    private static volatile EventTypes types;
+
+    // the key of the job running on this thread, for the requests it makes
+    private static final ThreadLocal<String> CURRENT_KEY = new ThreadLocal<String>();
+
+    static {
+        listen();
+    }
+
+    /**
+     * The event types defined with jdk.jfr.EventFactory, and the Event methods to fill and commit them.
+     */
+    private static class EventTypes {
+        private final Object job;
+        private final Object request;
+        private final Object listingPage;
+        private final Method newEvent;
+        private final Method begin;
+        private final Method end;
+        private final Method shouldCommit;
+        private final Method set;
+        private final Method commit;
+
+        private EventTypes() throws Exception {
+            job = define(JOB_EVENT, "Key Job", true,
+                    field(String.class, "key", "Key"),
+                    field(long.class, "size", "Size"),
+                    field(String.class, "store", "Destination Store"),
+                    field(String.class, "job", "Job"),
+                    field(String.class, "outcome", "Outcome"));
+            // a job makes several requests, so they are only recorded when a profile enables them
+            request = define(REQUEST_EVENT, "Request", false,
+                    field(String.class, "store", "Store"),
+                    field(String.class, "operation", "Operation"),
+                    field(String.class, "key", "Key"),
+                    field(long.class, "durationMicros", "Duration (us)"));
+            listingPage = define(LISTING_PAGE_EVENT, "Listing Page", true,
+                    field(String.class, "store", "Store"),
+                    field(String.class, "lastKey", "Last Key"),
+                    field(int.class, "keys", "Keys"));
+
+            final Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> event = Class.forName("jdk.jfr.Event");
+            newEvent = factory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            shouldCommit = event.getMethod("shouldCommit");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+        }
+
+        private static Object annotation(String type, Object value) throws Exception {
+            final Class<?> annotation = Class.forName("jdk.jfr.AnnotationElement");
+            return annotation.getConstructor(Class.class, Object.class).newInstance(Class.forName(type), value);
+        }
+
+        private static Object field(Class<?> type, String name, String label) throws Exception {
+            final Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            final List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation("jdk.jfr.Label", label));
+            return descriptor.getConstructor(Class.class, String.class, List.class).newInstance(type, name, annotations);
+        }
+
+        private static Object define(String name, String label, boolean enabled, Object... fields) throws Exception {
+            final List<Object> annotations = new ArrayList<Object>();
+            annotations.add(annotation("jdk.jfr.Name", name));
+            annotations.add(annotation("jdk.jfr.Label", label));
+            annotations.add(annotation("jdk.jfr.Category", new String[]{"BucketSyncer"}));
+            annotations.add(annotation("jdk.jfr.Enabled", enabled));
+            return Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, Arrays.asList(fields));
+        }
+
+        private Object newEvent(Object type) throws Exception {
+            return newEvent.invoke(type);
+        }
+    }
+
+    private static void listen() {
+        try {
+            final Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+            if (!(Boolean) recorder.getMethod("isAvailable").invoke(null)) {
+                return;
+            }
+            final Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener");
+            final Object proxy = Proxy.newProxyInstance(FlightEvents.class.getClassLoader(), new Class<?>[]{listener}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    final String name = method.getName();
+                    if (name.equals("recordingStateChanged") || name.equals("recorderInitialized")) {
+                        refresh();
+                    } else if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (name.equals("equals")) {
+                        return proxy == args[0];
+                    } else if (name.equals("toString")) {
+                        return FlightEvents.class.getSimpleName();
+                    }
+                    return null;
+                }
+            });
+            recorder.getMethod("addListener", listener).invoke(null, proxy);
+            // a recording started with -XX:StartFlightRecording is already running
+            if ((Boolean) recorder.getMethod("isInitialized").invoke(null)) {
+                refresh();
+            }
+        } catch (ClassNotFoundException e) {
+            // no flight recorder in this JVM
+        } catch (Exception e) {
+            log.warn("Cannot listen for flight recordings: {}", e.toString());
+        }
+    }
+
+    private static synchronized void refresh() {
+        boolean running = false;
+        try {
+            final Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+            final Object flightRecorder = recorder.getMethod("getFlightRecorder").invoke(null);
+            for (Object r : (List<?>) recorder.getMethod("getRecordings").invoke(flightRecorder)) {
+                if ("RUNNING".equals(String.valueOf(r.getClass().getMethod("getState").invoke(r)))) {
+                    running = true;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Cannot check for flight recordings: {}", e.toString());
+        }
+        recording = running;
+    }
+
+    /**
+     * The event types are defined by the first event after a recording starts rather than in the recorder
+     * listener, which runs while the recorder is locked.
+     */
+    private static EventTypes getTypes() {
+        EventTypes current = types;
+        if (current == null) {
+            synchronized (FlightEvents.class) {
+                current = types;
+                if (current == null) {
+                    try {
+                        current = new EventTypes();
+                        types = current;
+                    } catch (Exception e) {
+                        log.warn("Cannot define flight recorder events: {}", e.toString());
+                        recording = false;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private static void fail(Exception e) {
+        log.warn("Cannot record flight recorder event, not recording any more: {}", e.toString());
+        recording = false;
+    }
+
+    /**
+     * @return true if a flight recording is running, so events should be emitted
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Begins the event of a key job about to run on this thread, and makes key the key of the requests this
+     * thread makes until endJob.
+     *
+     * @return the event to pass to endJob, or null if nothing is recording
+     */
+    public static Object beginJob(String key) {
+        if (!recording) {
+            return null;
+        }
+        final EventTypes t = getTypes();
+        if (t == null) {
+            return null;
+        }
+        try {
+            final Object event = t.newEvent(t.job);
+            t.begin.invoke(event);
+            CURRENT_KEY.set(key);
+            return event;
+        } catch (Exception e) {
+            fail(e);
+            return null;
+        }
+    }
+
+    /**
+     * @param event   the event returned by beginJob, may be null
+     * @param outcome OUTCOME_OK, OUTCOME_FAILED or OUTCOME_ERROR
+     */
+    public static void endJob(Object event, String key, long size, String store, String job, String outcome) {
+        CURRENT_KEY.remove();
+        final EventTypes t = types;
+        if (event == null || t == null) {
+            return;
+        }
+        try {
+            t.end.invoke(event);
+            if ((Boolean) t.shouldCommit.invoke(event)) {
+                t.set.invoke(event, 0, key);
+                t.set.invoke(event, 1, size);
+                t.set.invoke(event, 2, store);
+                t.set.invoke(event, 3, job);
+                t.set.invoke(event, 4, outcome);
+                t.commit.invoke(event);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a request made by the job running on this thread, or by a lister or batcher if none is.
+     */
+    public static void request(String store, String op, long micros) {
+        if (!recording) {
+            return;
+        }
+        final EventTypes t = getTypes();
+        if (t == null) {
+            return;
+        }
+        try {
+            final Object event = t.newEvent(t.request);
+            if ((Boolean) t.shouldCommit.invoke(event)) {
+                t.set.invoke(event, 0, store);
+                t.set.invoke(event, 1, op);
+                t.set.invoke(event, 2, CURRENT_KEY.get());
+                t.set.invoke(event, 3, micros);
+                t.commit.invoke(event);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a page of keys a lister received.
+     */
+    public static void listingPage(String store, String lastKey, int keys) {
+        if (!recording) {
+            return;
+        }
+        final EventTypes t = getTypes();
+        if (t == null) {
+            return;
+        }
+        try {
+            final Object event = t.newEvent(t.listingPage);
+            if ((Boolean) t.shouldCommit.invoke(event)) {
+                t.set.invoke(event, 0, store);
+                t.set.invoke(event, 1, lastKey);
+                t.set.invoke(event, 2, keys);
+                t.commit.invoke(event);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+}
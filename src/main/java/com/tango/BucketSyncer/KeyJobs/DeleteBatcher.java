@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyJobs;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.tango.BucketSyncer.ErrorJournal;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects keys that delete jobs have confirmed for deletion and removes them from the destination bucket
+ * in batches. A batch is sent as soon as it is full, or once its oldest key has waited for the linger time.
+ * Stats and the error journal are updated per key when a batch completes, and the callbacks of its keys run then.
+ */
+@Slf4j
+public abstract class DeleteBatcher {
+
+    protected final MirrorContext context;
+    @Getter
+    private final int batchSize;
+    private final long lingerMillis;
+
+    /**
+     * Told whether a key was deleted, once its batch completes.
+     */
+    public interface Callback {
+        void batchCompleted(String key, boolean deleted);
+    }
+
+    private final List<String> pending;
+    // the callback of each pending key, null if nothing waits for it
+    private final List<Callback> pendingCallbacks;
+    private long oldestPending;
+
+    private static class Batch {
+        private final List<String> keys;
+        private final List<Callback> callbacks;
+
+        private Batch(List<String> keys, List<Callback> callbacks) {
+            this.keys = keys;
+            this.callbacks = callbacks;
+        }
+    }
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("delete-batcher-%d").build());
+
+    public DeleteBatcher(MirrorContext context, int maxBatchSize) {
+        this.context = context;
+        final MirrorOptions options = context.getOptions();
+        this.batchSize = Math.min(options.getDeleteBatchSize(), maxBatchSize);
+        this.lingerMillis = options.getDeleteBatchLinger();
+        this.pending = new ArrayList<String>(batchSize);
+        this.pendingCallbacks = new ArrayList<Callback>(batchSize);
+
+        final long checkMillis = Math.max(lingerMillis / 2, 10);
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushIfExpired();
+                } catch (Exception e) {
+                    log.error("Unexpected exception flushing delete batch: ", e);
+                }
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a key for deletion. If this fills the batch, the batch is sent from the calling thread.
+     */
+    public void add(String key) {
+        add(key, null);
+    }
+
+    /**
+     * Queues a key for deletion, telling the callback once its batch completes whether the key was deleted.
+     * A key whose batch was never sent, e.g. because the run was killed, never has its callback told.
+     */
+    public void add(String key, Callback callback) {
+        Batch batch = null;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                oldestPending = System.currentTimeMillis();
+            }
+            pending.add(key);
+            pendingCallbacks.add(callback);
+            if (pending.size() >= batchSize) {
+                batch = takePending();
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Stops the linger timer and sends whatever is still pending.
+     */
+    public void close() {
+        timer.shutdownNow();
+        Batch batch;
+        synchronized (pending) {
+            batch = takePending();
+        }
+        if (!batch.keys.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void flushIfExpired() {
+        Batch batch = null;
+        synchronized (pending) {
+            if (!pending.isEmpty() && System.currentTimeMillis() - oldestPending >= lingerMillis) {
+                batch = takePending();
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    private Batch takePending() {
+        final Batch batch = new Batch(new ArrayList<String>(pending), new ArrayList<Callback>(pendingCallbacks));
+        pending.clear();
+        pendingCallbacks.clear();
+        return batch;
+    }
+
+    private void send(Batch batch) {
+        Map<String, String> failures = null;
+        try {
+            failures = deleteBatch(batch.keys);
+            for (Map.Entry<String, String> failure : failures.entrySet()) {
+                recordFailure(failure.getKey(), failure.getValue());
+            }
+        } finally {
+            for (int i = 0; i < batch.keys.size(); i++) {
+                final Callback callback = batch.callbacks.get(i);
+                if (callback != null) {
+                    final String key = batch.keys.get(i);
+                    callback.batchCompleted(key, failures != null && !failures.containsKey(key));
+                }
+            }
+        }
+    }
+
+    private void recordFailure(String key, String reason) {
+        context.getStats().deleteErrors.increment();
+        context.getStats().recordError(key);
+        final ErrorJournal journal = context.getErrorJournal();
+        if (journal != null) {
+            journal.record(ErrorJournal.OP_DELETE, key, context.getOptions().getMaxRetries(), reason);
+        }
+    }
+
+    /**
+     * Deletes the given keys from the destination bucket, counting the deleted ones in the stats.
+     *
+     * @return the error of each key that could not be deleted
+     */
+    protected abstract Map<String, String> deleteBatch(List<String> keys);
+
+}
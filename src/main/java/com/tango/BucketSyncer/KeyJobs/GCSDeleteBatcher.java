@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyJobs;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.storage.Storage;
+import com.tango.BucketSyncer.MirrorConstants;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes keys from a GCS bucket with batch requests of up to --gcs-batch-size objects.delete calls.
+ */
+@Slf4j
+public class GCSDeleteBatcher extends DeleteBatcher {
+
+    private final Storage gcsClient;
+
+    public GCSDeleteBatcher(Object destClient, MirrorContext context) {
+        super(context, Math.min(context.getOptions().getGcsBatchSize(), GCSMetadataBatcher.MAX_BATCH_SIZE));
+        this.gcsClient = (Storage) destClient;
+    }
+
+    @Override
+    protected Map<String, String> deleteBatch(List<String> keys) {
+        final MirrorOptions options = context.getOptions();
+        final MirrorStats stats = context.getStats();
+        final boolean verbose = options.isVerbose();
+        final int maxRetries = options.getMaxRetries();
+
+        List<String> remaining = keys;
+        // the last error of each key still remaining
+        final Map<String, String> errors = new ConcurrentHashMap<String, String>();
+        for (int tries = 0; tries < maxRetries && !remaining.isEmpty(); tries++) {
+            if (verbose) {
+                log.info("deleting batch of {} keys (try # {})", remaining.size(), tries);
+            }
+            // keys whose delete call failed, or that were not answered because the batch request failed
+            final int attempt = tries;
+            final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+            final Set<String> answered = Collections.synchronizedSet(new HashSet<String>());
+            try {
+                final BatchRequest request = gcsClient.batch();
+                for (final String key : remaining) {
+                    gcsClient.objects().delete(options.getDestinationBucket(), key).queue(request, new JsonBatchCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void nothing, HttpHeaders responseHeaders) {
+                            answered.add(key);
+                            context.getStats().objectsDeleted.increment();
+                        }
+
+                        @Override
+                        public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                            answered.add(key);
+                            log.error("GCS error deleting {} (try # {}): {} {}", new Object[]{key, attempt, e.getCode(), e.getMessage()});
+                            failed.add(key);
+                            errors.put(key, e.getCode() + " " + e.getMessage());
+                        }
+                    });
+                }
+                stats.deleteCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    request.execute();
+                } finally {
+                    stats.recordBatchLatency(MirrorConstants.GCS, MirrorStats.OP_DELETE, start, remaining.size(), tries > 0 ? remaining.size() : 0);
+                }
+
+            } catch (Exception e) {
+                log.error("unexpected exception deleting batch of {} keys (try # {}): {}", new Object[]{remaining.size(), tries, e});
+                for (String key : remaining) {
+                    if (!answered.contains(key)) {
+                        failed.add(key);
+                        errors.put(key, e.toString());
+                    }
+                }
+            }
+            remaining = new ArrayList<String>(failed);
+            if (remaining.isEmpty()) {
+                break;
+            }
+            try {
+                Thread.sleep(options.getRetryWait(tries));
+            } catch (InterruptedException e) {
+                log.error("interrupted while waiting to retry batch delete");
+                break;
+            }
+        }
+
+        final Map<String, String> failures = new HashMap<String, String>();
+        for (String key : remaining) {
+            failures.put(key, errors.get(key));
+        }
+        return failures;
+    }
+
+}
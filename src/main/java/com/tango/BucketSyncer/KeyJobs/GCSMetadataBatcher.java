@@ -0,0 +1,216 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyJobs;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.tango.BucketSyncer.MirrorConstants;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces objects.get calls made concurrently by many jobs into GCS batch requests. Each caller blocks until
+ * the batch holding its lookup has been answered. A batch is sent by the caller that fills it, or by the linger
+ * timer once its oldest lookup has waited for --gcs-batch-linger milliseconds.
+ */
+@Slf4j
+public class GCSMetadataBatcher {
+
+    // the GCS JSON API accepts at most 100 calls per batch request
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private final Storage gcsClient;
+    private final MirrorContext context;
+    private final int batchSize;
+    private final long lingerMillis;
+
+    private final List<PendingGet> pending;
+    private long oldestPending;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gcs-metadata-batcher-%d").build());
+
+    private static class PendingGet {
+        private final String bucket;
+        private final String key;
+        private final boolean retry;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean answered = false;
+        private volatile StorageObject result;
+        private volatile IOException error;
+
+        private PendingGet(String bucket, String key, boolean retry) {
+            this.bucket = bucket;
+            this.key = key;
+            this.retry = retry;
+        }
+    }
+
+    public GCSMetadataBatcher(Storage gcsClient, MirrorContext context) {
+        this.gcsClient = gcsClient;
+        this.context = context;
+        final MirrorOptions options = context.getOptions();
+        this.batchSize = Math.min(options.getGcsBatchSize(), MAX_BATCH_SIZE);
+        this.lingerMillis = options.getGcsBatchLinger();
+        this.pending = new ArrayList<PendingGet>(batchSize);
+
+        final long checkMillis = Math.max(lingerMillis / 2, 5);
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executeIfExpired();
+                } catch (Exception e) {
+                    log.error("Unexpected exception sending GCS metadata batch: ", e);
+                }
+            }
+        }, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Looks up the metadata of an object as part of the next batch.
+     *
+     * @param retry true if an earlier lookup of the object failed
+     * @throws HttpResponseException with the status code GCS returned for this object, e.g. 404 if it does not exist
+     * @throws IOException if the batch request itself failed
+     */
+    public StorageObject get(String bucket, String key, boolean retry) throws IOException {
+        final PendingGet get = new PendingGet(bucket, key, retry);
+        List<PendingGet> batch = null;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                oldestPending = System.currentTimeMillis();
+            }
+            pending.add(get);
+            if (pending.size() >= batchSize) {
+                batch = takePending();
+            }
+        }
+        if (batch != null) {
+            execute(batch);
+        }
+
+        try {
+            get.done.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted while waiting for metadata of " + key);
+        }
+        MirrorStats.countBatchedCall();
+        if (get.error != null) {
+            throw get.error;
+        }
+        return get.result;
+    }
+
+    public void close() {
+        timer.shutdownNow();
+        List<PendingGet> batch;
+        synchronized (pending) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            execute(batch);
+        }
+    }
+
+    private void executeIfExpired() {
+        List<PendingGet> batch = null;
+        synchronized (pending) {
+            if (!pending.isEmpty() && System.currentTimeMillis() - oldestPending >= lingerMillis) {
+                batch = takePending();
+            }
+        }
+        if (batch != null) {
+            execute(batch);
+        }
+    }
+
+    private List<PendingGet> takePending() {
+        final List<PendingGet> batch = new ArrayList<PendingGet>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void execute(List<PendingGet> batch) {
+        final long start = System.nanoTime();
+        int retried = 0;
+        for (PendingGet get : batch) {
+            if (get.retry) {
+                retried++;
+            }
+        }
+        try {
+            final BatchRequest request = gcsClient.batch();
+            for (final PendingGet get : batch) {
+                gcsClient.objects().get(get.bucket, get.key).queue(request, new JsonBatchCallback<StorageObject>() {
+                    @Override
+                    public void onSuccess(StorageObject storageObject, HttpHeaders responseHeaders) {
+                        get.result = storageObject;
+                        get.answered = true;
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                        get.error = new HttpResponseException.Builder(e.getCode(), e.getMessage(), responseHeaders).build();
+                        get.answered = true;
+                    }
+                });
+            }
+            context.getStats().getCount.increment();
+            request.execute();
+
+        } catch (IOException e) {
+            log.warn("GCS metadata batch of {} lookups failed: {}", batch.size(), e);
+            for (PendingGet get : batch) {
+                if (!get.answered) {
+                    get.error = e;
+                }
+            }
+
+        } catch (RuntimeException e) {
+            log.error("Unexpected exception in GCS metadata batch of {} lookups: ", batch.size(), e);
+            for (PendingGet get : batch) {
+                if (!get.answered) {
+                    get.error = new IOException(e);
+                }
+            }
+
+        } finally {
+            context.getStats().recordBatchLatency(MirrorConstants.GCS, MirrorStats.OP_HEAD, start, batch.size(), retried);
+            for (PendingGet get : batch) {
+                get.done.countDown();
+            }
+        }
+    }
+
+}
@@ -16,14 +16,58 @@
  */
 package com.tango.BucketSyncer.KeyJobs;
 
+import com.tango.BucketSyncer.DestinationIndex;
+import com.tango.BucketSyncer.ErrorJournal;
+import com.tango.BucketSyncer.KeyTrace;
 import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
+import com.tango.BucketSyncer.ObjectSummaries.ErrorJournal_ObjectSummary;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.PrefixDigests;
+import com.tango.BucketSyncer.SyncPlan;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.TimeUnit;
 
 public abstract class KeyJob implements Runnable {
     protected final ObjectSummary summary;
     protected final Object notifyLock;
     protected final MirrorContext context;
 
+    // set when the key is already known to need copying, so the destination comparison is skipped
+    @Getter
+    @Setter
+    protected boolean preCompared = false;
+
+    // what an earlier run recorded for this key in the destination index, if anything
+    @Getter
+    @Setter
+    protected DestinationIndex.Entry indexEntry;
+
+    // the error of the last failed try, recorded in the error journal if every try fails
+    protected String lastError;
+
+    // set once every try of the job has failed
+    @Getter
+    protected boolean failed = false;
+
+    // set when the destination turns out to have the key already, so the requests of the job were not needed
+    @Getter
+    protected boolean unchanged = false;
+
+    // run once the key is finished, if the job leaves it to the delete batcher, null if nothing waits for it
+    @Setter
+    protected Runnable batchCallback;
+
+    // set when the job handed its key to the delete batcher, which runs batchCallback once the batch completes
+    @Getter
+    protected boolean batched = false;
+
+    // requests the thread running the job had made when it started
+    private long requestsAtStart;
+
 
     public KeyJob(ObjectSummary summary,
                   Object notifyLock,
@@ -33,6 +77,161 @@ public abstract class KeyJob implements Runnable {
         this.context = context;
     }
 
+    protected boolean unchangedSinceIndexed() {
+        if (indexEntry != null && indexEntry.matches(summary)) {
+            context.getStats().indexHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records in the destination index that the source object of this job is mirrored.
+     *
+     * @param generation the destination generation, or -1 if unknown
+     */
+    protected void recordMirrored(long generation) {
+        final DestinationIndex index = context.getDestinationIndex();
+        if (index != null) {
+            final long lastModified = summary.getLastModified() == null ? -1 : summary.getLastModified().getTime();
+            index.put(new DestinationIndex.Entry(summary.getKey(), summary.getSize(), summary.getETag(), lastModified, generation));
+        }
+    }
+
+    /**
+     * Records that the source object of this job is about to be copied, so it counts as unmirrored until it is.
+     */
+    protected void recordCopyStarted() {
+        if (summary.getLastModified() != null) {
+            context.getStats().recordCopyStarted(summary.getLastModified().getTime());
+        }
+    }
+
+    /**
+     * Records that the source object of this job was copied, and how long after its last modification.
+     *
+     * @param copied false if the destination turned out to have the object already
+     */
+    protected void recordCopyDone(boolean copied) {
+        if (copied) {
+            final MirrorStats.PrefixCounts counts = getPrefixCounts();
+            counts.keysCopied.incrementAndGet();
+            counts.bytesCopied.addAndGet(summary.getSize());
+            context.getStats().getLargestKeys().offer(summary.getKey(), summary.getSize());
+        }
+        if (summary.getLastModified() == null) {
+            return;
+        }
+        final long lastModified = summary.getLastModified().getTime();
+        if (!copied) {
+            context.getStats().recordCopyNotNeeded(lastModified);
+            return;
+        }
+        context.getStats().recordCopied(getPrefix(context.getOptions().getLagPrefixDepth()), lastModified);
+    }
+
+    /**
+     * @return the prefix of the key of this job, up to depth path segments under the source prefix
+     */
+    protected String getPrefix(int depth) {
+        final MirrorOptions options = context.getOptions();
+        final String prefix = PrefixDigests.getGroup(summary.getKey(), options.hasPrefix() ? options.getPrefix() : "", depth);
+        return prefix == null ? "" : prefix;
+    }
+
+    protected MirrorStats.PrefixCounts getPrefixCounts() {
+        return context.getStats().getPrefixCounts(getPrefix(context.getOptions().getReportPrefixDepth()));
+    }
+
+    /**
+     * Marks the start of the job, for recordCompared.
+     *
+     * @return the value of System.nanoTime() when the job started
+     */
+    protected long jobStarted() {
+        requestsAtStart = MirrorStats.getThreadRequests();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records that the job is done with its key, whether it was copied, skipped or failed.
+     *
+     * @param startNanos value returned by jobStarted
+     */
+    protected void recordCompared(long startNanos) {
+        final MirrorStats stats = context.getStats();
+        if (unchanged) {
+            stats.unchangedRequests.add(MirrorStats.getThreadRequests() - requestsAtStart);
+        }
+        stats.keysCompared.increment();
+        stats.bytesCompared.add(summary.getSize());
+        final MirrorStats.PrefixCounts counts = getPrefixCounts();
+        counts.keys.incrementAndGet();
+        counts.bytes.addAndGet(summary.getSize());
+        stats.getSlowestKeys().offer(summary.getKey(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    protected void forgetMirrored(String sourceKey) {
+        final DestinationIndex index = context.getDestinationIndex();
+        if (index != null) {
+            index.remove(sourceKey);
+        }
+    }
+
+    /**
+     * Hands a destination key to the delete batcher. The key is finished once its batch completes rather than when
+     * this job returns, and its source key is forgotten by the destination index only if the batch deleted it.
+     */
+    protected void deleteBatched(DeleteBatcher batcher, String key, final String sourceKey) {
+        batched = true;
+        batcher.add(key, new DeleteBatcher.Callback() {
+            @Override
+            public void batchCompleted(String key, boolean deleted) {
+                if (deleted) {
+                    forgetMirrored(sourceKey);
+                }
+                if (batchCallback != null) {
+                    batchCallback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Records in the sync plan, if one is being made, what this job would have done.
+     *
+     * @param action SyncPlan.COPY, SyncPlan.DELETE or SyncPlan.SKIP
+     */
+    protected void recordPlanned(String action) {
+        final SyncPlan plan = context.getSyncPlan();
+        if (plan != null) {
+            plan.record(action, summary);
+        }
+    }
+
+    /**
+     * Records that every try to copy or delete the key of this job failed.
+     *
+     * @param operation ErrorJournal.OP_COPY or ErrorJournal.OP_DELETE
+     */
+    protected void recordFailure(String operation) {
+        failed = true;
+        context.getStats().recordError(summary.getKey());
+        getPrefixCounts().errors.incrementAndGet();
+        final KeyTrace trace = KeyTrace.current();
+        if (trace != null) {
+            trace.failed();
+        }
+        final ErrorJournal journal = context.getErrorJournal();
+        if (journal != null) {
+            int attempts = context.getOptions().getMaxRetries();
+            if (summary instanceof ErrorJournal_ObjectSummary) {
+                attempts += ((ErrorJournal_ObjectSummary) summary).getEntry().getAttempts();
+            }
+            journal.record(operation, summary, attempts, lastError);
+        }
+    }
+
     @Override
     public String toString() {
         return summary.toString();
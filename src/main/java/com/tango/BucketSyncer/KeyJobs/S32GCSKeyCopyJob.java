@@ -21,6 +21,7 @@ import com.amazonaws.services.s3.model.*;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.media.MediaHttpUploader;
 import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.model.StorageObject;
@@ -33,6 +34,7 @@ import org.apache.http.HttpResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
 import java.util.*;
 import org.apache.http.HttpStatus;
 
@@ -42,6 +44,12 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
 
     protected String keydest;
 
+    // set when the destination lookup was skipped and the write has to carry a create-if-absent precondition
+    private boolean createIfAbsent = false;
+    // set when a create-if-absent write found an identical object already in place
+    private boolean destUnchanged = false;
+    private long destGeneration = -1;
+
     public S32GCSKeyCopyJob(Object sourceClient,
                             Object destClient,
                             MirrorContext context,
@@ -58,29 +66,52 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
     }
 
     public void run() {
+        final long start = jobStarted();
         final MirrorOptions options = context.getOptions();
         final String key = summary.getKey();
         try {
             if (!shouldTransfer()) {
+                // a key whose destination could not be checked is not unchanged, it failed
+                if (!failed) {
+                    unchanged = true;
+                    recordPlanned(SyncPlan.SKIP);
+                }
                 return;
             }
-            final ObjectMetadata sourceMetadata = getS3ObjectMetadata(options.getSourceBucket(), key, options);
 
             if (options.isDryRun()) {
                 log.info("Would have copied {} to destination: {}", key, keydest);
+                recordPlanned(SyncPlan.COPY);
             } else {
+                recordCopyStarted();
+                final ObjectMetadata sourceMetadata = getS3ObjectMetadata(options.getSourceBucket(), key, options);
                 if (keyCopied(sourceMetadata)) {
-                    context.getStats().objectsCopied.incrementAndGet();
+                    context.getStats().objectsCopied.increment();
+                    recordCopyDone(true);
+                    recordMirrored(destGeneration);
+                } else if (destUnchanged) {
+                    unchanged = true;
+                    recordCopyDone(false);
+                    recordMirrored(-1);
+                    if (options.isVerbose()) {
+                        log.info("Destination file is same as source, not copying to GCS: {}", key);
+                    }
                 } else {
-                    context.getStats().copyErrors.incrementAndGet();
-                    //add fail-copied key to errorKeyList
-                    context.getStats().errorKeyList.add(key);
+                    context.getStats().copyErrors.increment();
+                    recordFailure(ErrorJournal.OP_COPY);
                 }
             }
         } catch (Exception e) {
             log.error("error copying key: {}: {}", key, e);
+            // e.g. the source lookup failed: journal the key so that --retry-errors and the snapshot see it
+            if (!failed) {
+                lastError = e.toString();
+                context.getStats().copyErrors.increment();
+                recordFailure(ErrorJournal.OP_COPY);
+            }
 
         } finally {
+            recordCompared(start);
             synchronized (notifyLock) {
                 notifyLock.notifyAll();
             }
@@ -111,8 +142,13 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
             S3Object s3object = null;
 
             try {
-                s3object = s3Client.getObject(new GetObjectRequest(
-                        options.getSourceBucket(), key));
+                final long getStart = System.nanoTime();
+                try {
+                    s3object = s3Client.getObject(new GetObjectRequest(
+                            options.getSourceBucket(), key));
+                } finally {
+                    stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_GET, getStart, tries > 0);
+                }
             } catch (AmazonServiceException e) {
                 log.error("Failed to fetch object from S3. Object {} may have been deleted: {}", key, e);
             } catch (Exception e) {
@@ -120,57 +156,91 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
             }
 
             if (s3object != null) {
+                try {
+                    InputStream inputStream = s3object.getObjectContent();
 
-                InputStream inputStream = s3object.getObjectContent();
-
-                String type = s3object.getObjectMetadata().getContentType();
-                mediaContent = new InputStreamContent(type, inputStream);
+                    String type = s3object.getObjectMetadata().getContentType();
+                    mediaContent = new InputStreamContent(type, inputStream);
 
-                String etag = s3object.getObjectMetadata().getETag();
-                StorageObject objectMetadata = new StorageObject()
-                        .setMetadata(ImmutableMap.of("Etag", etag));
+                    String etag = s3object.getObjectMetadata().getETag();
+                    StorageObject objectMetadata = new StorageObject()
+                            .setMetadata(ImmutableMap.of("Etag", etag));
 
 
-                Storage.Objects.Insert insertObject = null;
-                try {
-                    insertObject = gcsClient.objects().insert(options.getDestinationBucket(), objectMetadata, mediaContent);
-                } catch (IOException e) {
-                    log.error("Failed to create insertObject of GCS ", e);
-                }
+                    Storage.Objects.Insert insertObject = null;
+                    try {
+                        insertObject = gcsClient.objects().insert(options.getDestinationBucket(), objectMetadata, mediaContent);
+                    } catch (IOException e) {
+                        log.error("Failed to create insertObject of GCS ", e);
+                    }
 
-                insertObject.setName(key);
+                    insertObject.setName(keydest);
+                    if (createIfAbsent) {
+                        // generation 0 only matches if there is no live object under this name
+                        insertObject.setIfGenerationMatch(BigInteger.ZERO);
+                        stats.createIfAbsentWrites.increment();
+                    }
 
 
-                insertObject.getMediaHttpUploader()
-                        .setProgressListener(new CustomUploadProgressListener()).setDisableGZipContent(true);
+                    insertObject.getMediaHttpUploader()
+                            .setProgressListener(new CustomUploadProgressListener()).setDisableGZipContent(true);
 
-                // For small files, you may wish to call setDirectUploadEnabled(true), to
-                // reduce the number of HTTP requests made to the server.
+                    // For small files, you may wish to call setDirectUploadEnabled(true), to
+                    // reduce the number of HTTP requests made to the server.
 
-                if (mediaContent.getLength() > 0 && mediaContent.getLength() <= 2 * 1000 * 1000 /* 2MB */) {
-                    insertObject.getMediaHttpUploader().setDirectUploadEnabled(true);
-                }
+                    if (mediaContent.getLength() > 0 && mediaContent.getLength() <= 2 * 1000 * 1000 /* 2MB */) {
+                        insertObject.getMediaHttpUploader().setDirectUploadEnabled(true);
+                    }
 
-                try {
-                    stats.copyCount.incrementAndGet();
-                    insertObject.execute();
-                    stats.bytesCopied.addAndGet(sourceMetadata.getContentLength());
-                    if (verbose)
-                        log.info("Successfully copied (on try # {} ): {} to: {} in GCS", new Object[]{tries, key, keydest});
-                    copied = true;
-                    break;
-                } catch (GoogleJsonResponseException e) {
-                    if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                        log.error("Failed to access GCS bucket. Check bucket name: ", e);
-                        System.exit(1);
+                    try {
+                        stats.copyCount.increment();
+                        final long start = System.nanoTime();
+                        final StorageObject inserted;
+                        try {
+                            inserted = insertObject.execute();
+                        } finally {
+                            stats.recordLatency(MirrorConstants.GCS, MirrorStats.OP_PUT, start, tries > 0);
+                        }
+                        if (inserted != null && inserted.getGeneration() != null) {
+                            destGeneration = inserted.getGeneration();
+                        }
+                        stats.bytesCopied.add(sourceMetadata.getContentLength());
+                        if (createIfAbsent) {
+                            context.getCreateIfAbsentTracker().record(keydest, false);
+                        }
+                        if (verbose)
+                            log.info("Successfully copied (on try # {} ): {} to: {} in GCS", new Object[]{tries, key, keydest});
+                        copied = true;
+                        break;
+                    } catch (GoogleJsonResponseException e) {
+                        if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                            log.error("Failed to access GCS bucket. Check bucket name: ", e);
+                            System.exit(1);
+                        }
+                        if (createIfAbsent && e.getStatusCode() == HttpStatus.SC_PRECONDITION_FAILED) {
+                            if (!existingObjectChanged()) {
+                                destUnchanged = true;
+                                return copied;
+                            }
+                            // overwrite the stale object right away, with a try that does not count as a retry
+                            createIfAbsent = false;
+                            tries--;
+                            continue;
+                        } else {
+                            log.error("GCS exception copying (try # {} ) {} to: {} : {}", new Object[]{tries, key, keydest, e});
+                            lastError = e.toString();
+                        }
+                    }catch (IOException e) {
+                        log.error("GCS exception copying (try # {} ) {} to: {} : {}", new Object[]{tries, key, keydest, e});
+                        lastError = e.toString();
                     }
-                }catch (IOException e) {
-                    log.error("GCS exception copying (try # {} ) {} to: {} : {}", new Object[]{tries, key, keydest, e});
+                } finally {
+                    closeContent(s3object, copied);
                 }
             }
 
             try {
-                Thread.sleep(10);
+                Thread.sleep(options.getRetryWait(tries));
             } catch (InterruptedException e) {
                 log.error("interrupted while waiting to retry key: {}, {}", key, e);
                 return copied;
@@ -179,6 +249,37 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
         return copied;
     }
 
+    /**
+     * Releases the connection of a GET. An object that was not uploaded is aborted rather than read to the end.
+     */
+    private void closeContent(S3Object s3object, boolean copied) {
+        final S3ObjectInputStream content = s3object.getObjectContent();
+        if (content == null) {
+            return;
+        }
+        if (!copied) {
+            content.abort();
+        }
+        try {
+            content.close();
+        } catch (IOException e) {
+            log.warn("Error closing S3 object content of {}: {}", summary.getKey(), e);
+        }
+    }
+
+    private boolean existingObjectChanged() {
+        final MirrorOptions options = context.getOptions();
+        context.getStats().createIfAbsentConflicts.increment();
+        context.getCreateIfAbsentTracker().record(keydest, true);
+        try {
+            return objectChanged(getGCSObjectMetadata(options.getDestinationBucket(), keydest, options));
+        } catch (Exception e) {
+            // deleted again in the meantime, or unreadable: copy it without the precondition
+            log.warn("Error getting metadata for existing object: {} in destination bucket: {}: {}", new Object[]{keydest, options.getDestinationBucket(), e});
+            return true;
+        }
+    }
+
     private boolean shouldTransfer() {
         final MirrorOptions options = context.getOptions();
         final String key = summary.getKey();
@@ -200,10 +301,36 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
             }
         }
 
+        if (preCompared) {
+            return true;
+        }
+        if (unchangedSinceIndexed()) {
+            if (verbose) {
+                log.info("Source is unchanged since it was last mirrored, not copying to GCS: {}", key);
+            }
+            return false;
+        }
+
+        // checked before choosing the write mode, as a create-if-absent write skips the lookup below
+        if (summary.getSize() > MirrorOptions.MAX_SINGLE_REQUEST_UPLOAD_FILE_SIZE) {
+            log.warn("File is too large to be uploaded");
+            return false;
+        }
+
+        if (options.isGcsCreateIfAbsent()
+                && context.getCreateIfAbsentTracker().shouldCreateIfAbsent(keydest, options.getGcsCreateIfAbsentMaxHits() / 100.0d)) {
+            if (verbose) {
+                log.info("Not looking up key in GCS bucket (will copy if absent): {}", keydest);
+            }
+            createIfAbsent = true;
+            return true;
+        }
+
         final StorageObject metadata;
         try {
             metadata = getGCSObjectMetadata(options.getDestinationBucket(), keydest, options);
-        } catch (GoogleJsonResponseException e) {
+        } catch (HttpResponseException e) {
+            // batched lookups report errors as plain HttpResponseExceptions
             if (e.getStatusCode() ==  HttpStatus.SC_BAD_REQUEST) {
                 log.error("Failed to talk to GCS. It may caused by invalid GCS credentials. Please provide valid credentials: ", e);
                 System.exit(1);
@@ -212,29 +339,46 @@ public class S32GCSKeyCopyJob extends S32GCSKeyJob {
                 if (verbose) {
                     log.info("Key not found in GCS bucket (will copy to GCS): {}", keydest);
                 }
+                if (options.isGcsCreateIfAbsent()) {
+                    context.getCreateIfAbsentTracker().record(keydest, false);
+                }
                 return true;
             } else {
                 log.error("Error getting metadata for destination bucket: {}, object: {} (not copying to GCS): {}", new Object[]{options.getDestinationBucket(), keydest, e});
+                recordDestinationCheckFailure(e);
                 return false;
             }
         } catch (Exception e) {
             log.error("Error getting metadata for destination bucket: {}, object: {} (not copying to GCS): {}", new Object[]{options.getDestinationBucket(), keydest, e});
+            recordDestinationCheckFailure(e);
             return false;
         }
 
-        if (summary.getSize() > MirrorOptions.MAX_SINGLE_REQUEST_UPLOAD_FILE_SIZE) {
-            log.warn("File is too large to be uploaded");
-            return false;
+        if (options.isGcsCreateIfAbsent()) {
+            context.getCreateIfAbsentTracker().record(keydest, true);
         }
+
         final boolean objectChanged = objectChanged(metadata);
-        if (verbose && !objectChanged) {
-            log.info("Destination file is same as source, not copying to GCS: {}", key);
+        if (!objectChanged) {
+            recordMirrored(metadata.getGeneration() == null ? -1 : metadata.getGeneration());
+            if (verbose) {
+                log.info("Destination file is same as source, not copying to GCS: {}", key);
+            }
         }
         return objectChanged;
 
     }
 
 
+    /**
+     * Records the key as failed when its GCS object could not be looked up, rather than as unchanged.
+     */
+    private void recordDestinationCheckFailure(Exception e) {
+        lastError = e.toString();
+        context.getStats().copyErrors.increment();
+        recordFailure(ErrorJournal.OP_COPY);
+    }
+
     boolean objectChanged(StorageObject metadata) {
         final KeyFingerprint sourceFingerprint = new KeyFingerprint(summary.getSize(), summary.getETag());
 
@@ -18,10 +18,13 @@ package com.tango.BucketSyncer.KeyJobs;
 
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.tango.BucketSyncer.ErrorJournal;
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import com.tango.BucketSyncer.MirrorOptions;
 import com.tango.BucketSyncer.MirrorStats;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.SyncPlan;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpStatus;
 
@@ -58,8 +61,14 @@ public class S32GCSKeyDeleteJob extends S32GCSKeyJob {
                 return;
             }
 
+            final DeleteBatcher batcher = context.getDeleteBatcher();
             if (options.isDryRun()) {
                 log.info("Would have deleted {} from destination because {} does not exist in source", key, keysrc);
+                recordPlanned(SyncPlan.DELETE);
+                return;
+            }
+            if (batcher != null) {
+                deleteBatched(batcher, key, keysrc);
             } else {
                 boolean deletedOK = false;
                 for (int tries = 0; tries < maxRetries; tries++) {
@@ -67,8 +76,13 @@ public class S32GCSKeyDeleteJob extends S32GCSKeyJob {
                         log.info("deleting (try # {}): {}", tries, key);
                     }
                     try {
-                        stats.deleteCount.incrementAndGet();
-                        gcsClient.objects().delete(options.getDestinationBucket(), key).execute();
+                        stats.deleteCount.increment();
+                        final long start = System.nanoTime();
+                        try {
+                            gcsClient.objects().delete(options.getDestinationBucket(), key).execute();
+                        } finally {
+                            stats.recordLatency(MirrorConstants.GCS, MirrorStats.OP_DELETE, start, tries > 0);
+                        }
                         deletedOK = true;
                         if (verbose) {
                             log.info("successfully deleted (on try # {}): {}", tries, key);
@@ -77,20 +91,21 @@ public class S32GCSKeyDeleteJob extends S32GCSKeyJob {
 
                     } catch (Exception e) {
                         log.error("unexpected exception deleting (try # {}) {}: {}", new Object[]{tries, key, e});
+                        lastError = e.toString();
                     }
                     try {
-                        Thread.sleep(10);
+                        Thread.sleep(options.getRetryWait(tries));
                     } catch (InterruptedException e) {
                         log.error("interrupted while waiting to retry key: {}, {}", key, e);
                         break;
                     }
                 }
                 if (deletedOK) {
-                    stats.objectsDeleted.incrementAndGet();
+                    forgetMirrored(keysrc);
+                    stats.objectsDeleted.increment();
                 } else {
-                    stats.deleteErrors.incrementAndGet();
-                    //add fail-deleted key to errorKeyList
-                    context.getStats().errorKeyList.add(key);
+                    stats.deleteErrors.increment();
+                    recordFailure(ErrorJournal.OP_DELETE);
                 }
             }
 
@@ -111,6 +126,9 @@ public class S32GCSKeyDeleteJob extends S32GCSKeyJob {
         boolean shouldDelete = false;
         final MirrorOptions options = context.getOptions();
         final boolean verbose = options.isVerbose();
+        if (preCompared) {
+            return true;
+        }
 
         try {
             ObjectMetadata metadata = getS3ObjectMetadata(options.getSourceBucket(), keysrc, options);
@@ -125,11 +143,23 @@ public class S32GCSKeyDeleteJob extends S32GCSKeyJob {
                 return shouldDelete;
             } else {
                 log.warn("Error getting metadata for {} {} (not deleting from GCS): {}", new Object[]{options.getSourceBucket(), keysrc, e});
+                recordSourceCheckFailure(e);
                 return shouldDelete;
             }
         } catch (Exception e) {
             log.warn("Error getting metadata for {} {} (not deleting from GCS): {}", new Object[]{options.getSourceBucket(), keysrc, e});
+            recordSourceCheckFailure(e);
             return shouldDelete;
         }
     }
+
+    /**
+     * Records the key as failed when its source could not be checked, so that a snapshot commit keeps its previous
+     * record and a later run offers it for deletion again.
+     */
+    private void recordSourceCheckFailure(Exception e) {
+        lastError = e.toString();
+        context.getStats().deleteErrors.increment();
+        recordFailure(ErrorJournal.OP_DELETE);
+    }
 }
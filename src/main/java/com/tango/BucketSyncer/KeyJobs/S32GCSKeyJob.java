@@ -20,11 +20,14 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AccessControlList;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.common.base.Throwables;
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpStatus;
@@ -55,14 +58,23 @@ public abstract class S32GCSKeyJob extends KeyJob {
         ObjectMetadata objectMetadata = null;
         for (int tries = 0; tries < options.getMaxRetries(); tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                objectMetadata = s3Client.getObjectMetadata(bucket, key);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    objectMetadata = s3Client.getObjectMetadata(bucket, key);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, start, tries > 0);
+                }
                 break;
 
             } catch (AmazonS3Exception e) {
                 if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                     Throwables.propagate(e);
                 }
+                ex = e;
+                if (options.isVerbose()) {
+                    log.warn("getObjectMetadata({}) failed (try #{}): {}", new Object[]{key, tries, e});
+                }
 
             } catch (Exception e) {
                 ex = e;
@@ -76,6 +88,14 @@ public abstract class S32GCSKeyJob extends KeyJob {
                 }
 
             }
+            if (tries + 1 < options.getMaxRetries()) {
+                try {
+                    Thread.sleep(options.getRetryWait(tries));
+                } catch (InterruptedException e) {
+                    log.error("interrupted while waiting to retry getObjectMetadata({})", key);
+                    break;
+                }
+            }
         }
 
         if (objectMetadata != null) {
@@ -92,13 +112,32 @@ public abstract class S32GCSKeyJob extends KeyJob {
         Exception ex = null;
         Storage.Objects.Get getObject = null;
         StorageObject gcsObject = null;
+        final GCSMetadataBatcher batcher = options.hasGcsBatching() ? getMetadataBatcher() : null;
         for (int tries = 0; tries < options.getMaxRetries(); tries++) {
+            if (batcher != null) {
+                try {
+                    gcsObject = batcher.get(bucket, key, tries > 0);
+                    break;
+                } catch (HttpResponseException e) {
+                    if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                        throw e;
+                    }
+                    ex = e;
+                } catch (IOException e) {
+                    ex = e;
+                }
+                if (options.isVerbose()) {
+                    log.warn("getObjectMetadata({}) failed (try #{}), retrying...", key, tries);
+                }
+                continue;
+            }
             try {
                 getObject = gcsClient.objects().get(bucket, key);
             } catch (IOException e) {
                 log.error("Failed to fetch object: from GCS: {}", key, e);
                 Throwables.propagate(e);
             }
+            final long start = System.nanoTime();
             try {
                 gcsObject = getObject.execute();
                 break;
@@ -113,6 +152,8 @@ public abstract class S32GCSKeyJob extends KeyJob {
                     log.warn("getObjectMetadata({}) failed (try #{}), retrying...", key, tries);
                 }
 
+            } finally {
+                context.getStats().recordLatency(MirrorConstants.GCS, MirrorStats.OP_HEAD, start, tries > 0);
             }
         }
         if(gcsObject != null){
@@ -122,14 +163,28 @@ public abstract class S32GCSKeyJob extends KeyJob {
         }
     }
 
+    private GCSMetadataBatcher getMetadataBatcher() {
+        synchronized (context) {
+            if (context.getGcsMetadataBatcher() == null) {
+                context.setGcsMetadataBatcher(new GCSMetadataBatcher(gcsClient, context));
+            }
+            return context.getGcsMetadataBatcher();
+        }
+    }
+
     //get ACL from S3 objects
     protected AccessControlList getAccessControlList(MirrorOptions options, String key) throws Exception {
         Exception ex = null;
         AccessControlList acl = null;
         for (int tries = 0; tries < options.getMaxRetries(); tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                acl = s3Client.getObjectAcl(options.getSourceBucket(), key);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    acl = s3Client.getObjectAcl(options.getSourceBucket(), key);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_GET_ACL, start, tries > 0);
+                }
                 break;
             } catch (Exception e) {
                 ex = e;
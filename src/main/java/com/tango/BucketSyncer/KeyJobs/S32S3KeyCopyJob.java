@@ -49,30 +49,47 @@ public class S32S3KeyCopyJob extends S32S3KeyJob {
 
     @Override
     public void run() {
+        final long start = jobStarted();
         final MirrorOptions options = context.getOptions();
         final String key = summary.getKey();
         try {
             if (!shouldTransfer()) {
+                // a key whose destination could not be checked is not unchanged, it failed
+                if (!failed) {
+                    unchanged = true;
+                    recordPlanned(SyncPlan.SKIP);
+                }
                 return;
             }
-            final ObjectMetadata sourceMetadata = getObjectMetadata(options.getSourceBucket(), key, options);
-            final AccessControlList objectAcl = getAccessControlList(options, key);
 
             if (options.isDryRun()) {
                 log.info("Would have copied {} to destination: {}", key, keydest);
+                recordPlanned(SyncPlan.COPY);
             } else {
+                recordCopyStarted();
+                final ObjectMetadata sourceMetadata = getObjectMetadata(options.getSourceBucket(), key, options);
+                // a canned ACL is applied for cross account copies, the source ACL is not needed
+                final AccessControlList objectAcl = options.isCrossAccountCopy() ? null : getAccessControlList(options, key);
                 if (keyCopied(sourceMetadata, objectAcl)) {
-                    context.getStats().objectsCopied.incrementAndGet();
+                    context.getStats().objectsCopied.increment();
+                    recordCopyDone(true);
+                    recordMirrored(-1);
                 } else {
-                    context.getStats().copyErrors.incrementAndGet();
-                    //add fail-copied key to errorKeyList
-                    context.getStats().errorKeyList.add(key);
+                    context.getStats().copyErrors.increment();
+                    recordFailure(ErrorJournal.OP_COPY);
                 }
             }
         } catch (Exception e) {
             log.error("Error copying key: {}: {}", key, e);
+            // e.g. the source lookup failed: journal the key so that --retry-errors and the snapshot see it
+            if (!failed) {
+                lastError = e.toString();
+                context.getStats().copyErrors.increment();
+                recordFailure(ErrorJournal.OP_COPY);
+            }
 
         } finally {
+            recordCompared(start);
             synchronized (notifyLock) {
                 notifyLock.notifyAll();
             }
@@ -101,9 +118,14 @@ public class S32S3KeyCopyJob extends S32S3KeyJob {
                 request.setAccessControlList(objectAcl);
             }
             try {
-                stats.copyCount.incrementAndGet();
-                client.copyObject(request);
-                stats.bytesCopied.addAndGet(sourceMetadata.getContentLength());
+                stats.copyCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    client.copyObject(request);
+                } finally {
+                    stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_COPY, start, tries > 0);
+                }
+                stats.bytesCopied.add(sourceMetadata.getContentLength());
                 if (verbose) {
                     log.info("successfully copied (on try #{}): {} to: {}", new Object[]{tries, key, keydest});
                 }
@@ -116,11 +138,13 @@ public class S32S3KeyCopyJob extends S32S3KeyJob {
                     System.exit(1);
                 }
                 log.error("s3 exception copying (try #{}) {} to: {}: {}", new Object[]{tries, key, keydest, s3e});
+                lastError = s3e.toString();
             } catch (Exception e) {
                 log.error("unexpected exception copying (try #{}) {} to: {}: {}", new Object[]{tries, key, keydest, e});
+                lastError = e.toString();
             }
             try {
-                Thread.sleep(10);
+                Thread.sleep(options.getRetryWait(tries));
             } catch (InterruptedException e) {
                 log.error("interrupted while waiting to retry key: {}: {}", key, e);
                 return copied;
@@ -150,6 +174,16 @@ public class S32S3KeyCopyJob extends S32S3KeyJob {
                 }
             }
         }
+        if (preCompared) {
+            return true;
+        }
+        if (unchangedSinceIndexed()) {
+            if (verbose) {
+                log.info("Source is unchanged since it was last mirrored, not copying: {}", key);
+            }
+            return false;
+        }
+
         final ObjectMetadata metadata;
         try {
             metadata = getObjectMetadata(options.getDestinationBucket(), keydest, options);
@@ -161,24 +195,44 @@ public class S32S3KeyCopyJob extends S32S3KeyJob {
                 return true;
             } else {
                 log.warn("Error getting metadata for {} {} (not copying): {}", new Object[]{options.getDestinationBucket(), keydest, e});
+                recordDestinationCheckFailure(e);
                 return false;
             }
         } catch (Exception e) {
             log.warn("Error getting metadata for {} {} (not copying): {}", new Object[]{options.getDestinationBucket(), keydest, e});
+            recordDestinationCheckFailure(e);
             return false;
         }
 
         if (summary.getSize() > MirrorOptions.MAX_SINGLE_REQUEST_UPLOAD_FILE_SIZE) {
-            return metadata.getContentLength() != summary.getSize();
+            // multipart copies get a different ETag, only the size can be compared
+            final boolean sizeChanged = metadata.getContentLength() != summary.getSize();
+            if (!sizeChanged) {
+                recordMirrored(-1);
+            }
+            return sizeChanged;
         }
         final boolean objectChanged = objectChanged(metadata);
-        if (verbose && !objectChanged) {
-            log.info("Destination file is same as source, not copying: {}", key);
+        if (!objectChanged) {
+            recordMirrored(-1);
+            if (verbose) {
+                log.info("Destination file is same as source, not copying: {}", key);
+            }
         }
 
         return objectChanged;
     }
 
+    /**
+     * Records the key as failed when its destination could not be looked up, so that it is not taken as mirrored
+     * and a later run copies it.
+     */
+    private void recordDestinationCheckFailure(Exception e) {
+        lastError = e.toString();
+        context.getStats().copyErrors.increment();
+        recordFailure(ErrorJournal.OP_COPY);
+    }
+
     boolean objectChanged(ObjectMetadata metadata) {
         final KeyFingerprint sourceFingerprint = new KeyFingerprint(summary.getSize(), summary.getETag());
         final KeyFingerprint destFingerprint = new KeyFingerprint(metadata.getContentLength(), metadata.getETag());
@@ -17,10 +17,13 @@
 package com.tango.BucketSyncer.KeyJobs;
 
 import com.amazonaws.services.s3.model.*;
+import com.tango.BucketSyncer.ErrorJournal;
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import com.tango.BucketSyncer.MirrorOptions;
 import com.tango.BucketSyncer.MirrorStats;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.SyncPlan;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpStatus;
 
@@ -54,8 +57,14 @@ public class S32S3KeyDeleteJob extends S32S3KeyJob {
 
             final DeleteObjectRequest request = new DeleteObjectRequest(options.getDestinationBucket(), key);
 
+            final DeleteBatcher batcher = context.getDeleteBatcher();
             if (options.isDryRun()) {
                 log.info("Would have deleted {} from destination because {} does not exist in source", key, keysrc);
+                recordPlanned(SyncPlan.DELETE);
+                return;
+            }
+            if (batcher != null) {
+                deleteBatched(batcher, key, keysrc);
             } else {
                 boolean deletedOK = false;
                 for (int tries = 0; tries < maxRetries; tries++) {
@@ -63,8 +72,13 @@ public class S32S3KeyDeleteJob extends S32S3KeyJob {
                         log.info("deleting (try #{}): {}", tries, key);
                     }
                     try {
-                        stats.deleteCount.incrementAndGet();
-                        client.deleteObject(request);
+                        stats.deleteCount.increment();
+                        final long start = System.nanoTime();
+                        try {
+                            client.deleteObject(request);
+                        } finally {
+                            stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_DELETE, start, tries > 0);
+                        }
                         deletedOK = true;
                         if (verbose) {
                             log.info("successfully deleted (on try # {}): {}", tries, key);
@@ -73,23 +87,25 @@ public class S32S3KeyDeleteJob extends S32S3KeyJob {
 
                     } catch (AmazonS3Exception s3e) {
                         log.error("s3 exception deleting (try #{}) {}: {}", new Object[]{tries, key, s3e});
+                        lastError = s3e.toString();
 
                     } catch (Exception e) {
                         log.error("unexpected exception deleting (try #{}) {}: {}", new Object[]{tries, key, e});
+                        lastError = e.toString();
                     }
                     try {
-                        Thread.sleep(10);
+                        Thread.sleep(options.getRetryWait(tries));
                     } catch (InterruptedException e) {
                         log.error("interrupted while waiting to retry key: {} ", key);
                         break;
                     }
                 }
                 if (deletedOK) {
-                    stats.objectsDeleted.incrementAndGet();
+                    forgetMirrored(keysrc);
+                    stats.objectsDeleted.increment();
                 } else {
-                    stats.deleteErrors.incrementAndGet();
-                    //add fail-deleted key to errorKeyList
-                    context.getStats().errorKeyList.add(key);
+                    stats.deleteErrors.increment();
+                    recordFailure(ErrorJournal.OP_DELETE);
                 }
             }
 
@@ -110,6 +126,9 @@ public class S32S3KeyDeleteJob extends S32S3KeyJob {
         boolean shouldDelete = false;
         final MirrorOptions options = context.getOptions();
         final boolean verbose = options.isVerbose();
+        if (preCompared) {
+            return true;
+        }
 
         try {
             ObjectMetadata metadata = getObjectMetadata(options.getSourceBucket(), keysrc, options);
@@ -124,12 +143,24 @@ public class S32S3KeyDeleteJob extends S32S3KeyJob {
                 return shouldDelete;
             } else {
                 log.warn("Error getting metadata for {} {} (not deleting): {}", new Object[]{options.getSourceBucket(), keysrc, e});
+                recordSourceCheckFailure(e);
                 return shouldDelete;
             }
         } catch (Exception e) {
             log.warn("Error getting metadata for {} {} (not deleting): {}", new Object[]{options.getSourceBucket(), keysrc, e});
+            recordSourceCheckFailure(e);
             return shouldDelete;
         }
     }
 
+    /**
+     * Records the key as failed when its source could not be checked, so that a snapshot commit keeps its previous
+     * record and a later run offers it for deletion again.
+     */
+    private void recordSourceCheckFailure(Exception e) {
+        lastError = e.toString();
+        context.getStats().deleteErrors.increment();
+        recordFailure(ErrorJournal.OP_DELETE);
+    }
+
 }
@@ -21,8 +21,10 @@ import com.amazonaws.services.s3.model.AccessControlList;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.google.common.base.Throwables;
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpStatus;
@@ -47,8 +49,13 @@ public abstract class S32S3KeyJob extends KeyJob {
         ObjectMetadata objectMetadat = null;
         for (int tries = 0; tries < options.getMaxRetries(); tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                objectMetadat = client.getObjectMetadata(bucket, key);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    objectMetadat = client.getObjectMetadata(bucket, key);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, start, tries > 0);
+                }
                 break;
 
             } catch (AmazonS3Exception e) {
@@ -56,6 +63,7 @@ public abstract class S32S3KeyJob extends KeyJob {
                     log.debug("Failed to fetch metadata of object: from S3, {}", key, e);
                     Throwables.propagate(e);
                 }
+                ex = e;
 
             } catch (Exception e) {
                 ex = e;
@@ -78,12 +86,27 @@ public abstract class S32S3KeyJob extends KeyJob {
     }
 
     protected AccessControlList getAccessControlList(MirrorOptions options, String key) throws Exception {
+        final MirrorStats stats = context.getStats();
+        if (options.isAclCache()) {
+            final AccessControlList cached = context.getAclCache().lookup(key, summary.getOwnerId(), options.getAclCacheThreshold());
+            if (cached != null) {
+                stats.aclCacheHits.increment();
+                return cached;
+            }
+            stats.aclCacheMisses.increment();
+        }
+
         Exception ex = null;
         AccessControlList acl = null;
         for (int tries = 0; tries < options.getMaxRetries(); tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                acl = client.getObjectAcl(options.getSourceBucket(), key);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    acl = client.getObjectAcl(options.getSourceBucket(), key);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_GET_ACL, start, tries > 0);
+                }
                 break;
 
             } catch (Exception e) {
@@ -99,6 +122,9 @@ public abstract class S32S3KeyJob extends KeyJob {
             }
         }
         if (acl != null) {
+            if (options.isAclCache()) {
+                context.getAclCache().learn(key, summary.getOwnerId(), acl);
+            }
             return acl;
         } else {
             throw ex;
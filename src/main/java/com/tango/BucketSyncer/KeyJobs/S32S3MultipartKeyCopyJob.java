@@ -16,9 +16,11 @@
 package com.tango.BucketSyncer.KeyJobs;
 
 import com.amazonaws.services.s3.model.*;
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import lombok.extern.slf4j.Slf4j;
 import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 
 import java.util.ArrayList;
@@ -51,7 +53,14 @@ public class S32S3MultipartKeyCopyJob extends S32S3KeyCopyJob {
             initiateRequest.withAccessControlList(objectAcl);
         }
 
-        InitiateMultipartUploadResult initResult = client.initiateMultipartUpload(initiateRequest);
+        final MirrorStats stats = context.getStats();
+        final long initiateStart = System.nanoTime();
+        InitiateMultipartUploadResult initResult;
+        try {
+            initResult = client.initiateMultipartUpload(initiateRequest);
+        } finally {
+            stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_MULTIPART, initiateStart);
+        }
 
         long partSize = options.getUploadPartSize();
         long bytePosition = 0;
@@ -77,17 +86,29 @@ public class S32S3MultipartKeyCopyJob extends S32S3KeyCopyJob {
                     if (options.isVerbose()) {
                         log.info("try : {}", tries);
                     }
-                    context.getStats().copyCount.incrementAndGet();
-                    CopyPartResult copyPartResult = client.copyPart(copyRequest);
+                    stats.copyCount.increment();
+                    final long start = System.nanoTime();
+                    CopyPartResult copyPartResult;
+                    try {
+                        copyPartResult = client.copyPart(copyRequest);
+                    } finally {
+                        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_COPY_PART, start, tries > 1);
+                    }
                     copyResponses.add(copyPartResult);
                     if (options.isVerbose()) {
                         log.info("completed {} ", infoMessage);
                     }
                     break;
                 } catch (Exception e) {
+                    lastError = e.toString();
                     if (tries == maxPartRetries) {
-                        client.abortMultipartUpload(new AbortMultipartUploadRequest(
-                                targetBucketName, keydest, initResult.getUploadId()));
+                        final long abortStart = System.nanoTime();
+                        try {
+                            client.abortMultipartUpload(new AbortMultipartUploadRequest(
+                                    targetBucketName, keydest, initResult.getUploadId()));
+                        } finally {
+                            stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_ABORT, abortStart);
+                        }
                         log.error("Exception while doing multipart copy: {}", e);
                         return false;
                     }
@@ -97,11 +118,16 @@ public class S32S3MultipartKeyCopyJob extends S32S3KeyCopyJob {
         }
         CompleteMultipartUploadRequest completeRequest = new CompleteMultipartUploadRequest(targetBucketName, keydest,
                 initResult.getUploadId(), getETags(copyResponses));
-        client.completeMultipartUpload(completeRequest);
+        final long completeStart = System.nanoTime();
+        try {
+            client.completeMultipartUpload(completeRequest);
+        } finally {
+            stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_MULTIPART, completeStart);
+        }
         if (options.isVerbose()) {
             log.info("completed multipart request for : {}", summary.getKey());
         }
-        context.getStats().bytesCopied.addAndGet(objectSize);
+        stats.bytesCopied.add(objectSize);
         return true;
     }
 
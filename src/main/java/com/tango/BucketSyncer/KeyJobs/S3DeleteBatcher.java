@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyJobs;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.tango.BucketSyncer.MirrorConstants;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.MirrorStats;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes keys from an S3 bucket with multi-object delete requests.
+ */
+@Slf4j
+public class S3DeleteBatcher extends DeleteBatcher {
+
+    // S3 accepts at most 1000 keys per DeleteObjects request
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final AmazonS3Client client;
+
+    public S3DeleteBatcher(Object destClient, MirrorContext context) {
+        super(context, MAX_BATCH_SIZE);
+        this.client = (AmazonS3Client) destClient;
+    }
+
+    @Override
+    protected Map<String, String> deleteBatch(List<String> keys) {
+        final MirrorOptions options = context.getOptions();
+        final MirrorStats stats = context.getStats();
+        final boolean verbose = options.isVerbose();
+        final int maxRetries = options.getMaxRetries();
+
+        // quiet mode: the response only lists the keys that could not be deleted
+        final DeleteObjectsRequest request = new DeleteObjectsRequest(options.getDestinationBucket())
+                .withKeys(keys.toArray(new String[keys.size()]))
+                .withQuiet(true);
+
+        String lastError = null;
+        for (int tries = 0; tries < maxRetries; tries++) {
+            if (verbose) {
+                log.info("deleting batch of {} keys (try #{})", keys.size(), tries);
+            }
+            try {
+                stats.deleteCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    client.deleteObjects(request);
+                } finally {
+                    stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_DELETE, start, tries > 0);
+                }
+                stats.objectsDeleted.add(keys.size());
+                if (verbose) {
+                    log.info("successfully deleted batch of {} keys (on try #{})", keys.size(), tries);
+                }
+                return Collections.emptyMap();
+
+            } catch (MultiObjectDeleteException e) {
+                final List<MultiObjectDeleteException.DeleteError> errors = e.getErrors();
+                final Map<String, String> failures = new HashMap<String, String>();
+                for (MultiObjectDeleteException.DeleteError error : errors) {
+                    log.error("s3 error deleting {}: {} {}", new Object[]{error.getKey(), error.getCode(), error.getMessage()});
+                    failures.put(error.getKey(), error.getCode() + " " + error.getMessage());
+                }
+                stats.objectsDeleted.add(keys.size() - errors.size());
+                return failures;
+
+            } catch (AmazonS3Exception s3e) {
+                log.error("s3 exception deleting batch of {} keys (try #{}): {}", new Object[]{keys.size(), tries, s3e});
+                lastError = s3e.toString();
+
+            } catch (Exception e) {
+                log.error("unexpected exception deleting batch of {} keys (try #{}): {}", new Object[]{keys.size(), tries, e});
+                lastError = e.toString();
+            }
+            try {
+                Thread.sleep(options.getRetryWait(tries));
+            } catch (InterruptedException e) {
+                log.error("interrupted while waiting to retry batch delete");
+                break;
+            }
+        }
+
+        final Map<String, String> failures = new HashMap<String, String>();
+        for (String key : keys) {
+            failures.put(key, lastError);
+        }
+        return failures;
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.PrefixDigests;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the destination keys under the prefixes whose source digest changed, once the source has been listed.
+ * Only those prefixes are listed, unless keys above the prefix depth changed too: then the whole destination
+ * is listed, keeping the keys above the depth and the keys of changed prefixes.
+ */
+@Slf4j
+public class ChangedPrefixesKeyLister extends WrappingKeyLister {
+
+    private final String store;
+    private final Object client;
+    private final PrefixDigests digests;
+
+    // the groups whose destination keys are kept when the whole destination is listed, null to keep every key
+    private Set<String> filter;
+
+    public ChangedPrefixesKeyLister(String store,
+                                    Object client,
+                                    PrefixDigests digests,
+                                    String bucket,
+                                    String prefix,
+                                    MirrorContext context,
+                                    Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.store = store;
+        this.client = client;
+        this.digests = digests;
+    }
+
+    @Override
+    public void run() {
+        final MirrorOptions options = context.getOptions();
+        final boolean verbose = options.isVerbose();
+        try {
+            while (!digests.isFinished()) {
+                Thread.sleep(50);
+            }
+
+            final KeyLister lister;
+            if (digests.isFailed()) {
+                // the changed prefixes are not known
+                lister = KeyLister.forStore(store, client, bucket, prefix, context, maxQueueCapacity);
+            } else {
+                final List<String> changed = new ArrayList<String>();
+                for (String group : digests.getChangedGroups()) {
+                    changed.add(ReconcileKeyLister.toDestKey(options, group));
+                }
+                if (digests.isLooseChanged()) {
+                    lister = KeyLister.forStore(store, client, bucket, prefix, context, maxQueueCapacity);
+                    filter = new HashSet<String>(changed);
+                } else if (changed.isEmpty()) {
+                    log.info("no source prefix changed, not listing {}", bucket);
+                    return;
+                } else {
+                    log.info("listing {} changed prefixes of {}", changed.size(), bucket);
+                    lister = new PrefixesKeyLister(store, client, bucket, changed, null, context, maxQueueCapacity);
+                }
+            }
+
+            if (!drain(lister, "changed-prefixes-lister")) {
+                failed.set(true);
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+            failed.set(true);
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+            failed.set(true);
+
+        } finally {
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    @Override
+    protected void accept(ObjectSummary summary) throws InterruptedException {
+        final String group = filter == null ? null : PrefixDigests.getGroup(summary.getKey(), prefix == null ? "" : prefix, digests.getDepth());
+        if (group == null || filter.contains(group)) {
+            enqueue(summary);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.ErrorJournal;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ErrorJournal_ObjectSummary;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the keys of an error journal instead of listing a bucket, so that only the keys that failed
+ * in an earlier run are processed again.
+ */
+public class ErrorJournalKeyLister extends KeyLister {
+
+    private final List<ObjectSummary> summaries;
+
+    public ErrorJournalKeyLister(List<ErrorJournal.Entry> entries,
+                                 String bucket,
+                                 String prefix,
+                                 MirrorContext context,
+                                 Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.summaries = new ArrayList<ObjectSummary>(entries.size());
+        for (ErrorJournal.Entry entry : entries) {
+            summaries.add(new ErrorJournal_ObjectSummary(entry));
+        }
+        context.getStats().objectsRead.add(summaries.size());
+    }
+
+    @Override
+    public void run() {
+        done.set(true);
+    }
+
+    @Override
+    public List<ObjectSummary> getNextBatch() {
+        List<ObjectSummary> copy;
+        synchronized (summaries) {
+            copy = new ArrayList<ObjectSummary>(summaries);
+            summaries.clear();
+        }
+        return copy;
+    }
+
+}
@@ -53,13 +53,19 @@ public class GCSKeyLister extends KeyLister {
                 ObjectSummary os = new GCS_ObjectSummary(object);
                 summaries.add(os);
             }
-            context.getStats().objectsRead.addAndGet(objects.size());
+            context.getStats().objectsRead.add(objects.size());
+            context.getStats().recordListingPage(MirrorConstants.GCS, getLastKey(objects), objects.getItems() == null ? 0 : objects.getItems().size());
             if (options.isVerbose()) {
                 log.info("added initial set of {} keys", objects.size());
             }
         }
     }
 
+    private static String getLastKey(Objects objects) {
+        final List<StorageObject> items = objects.getItems();
+        return items == null || items.isEmpty() ? null : items.get(items.size() - 1).getName();
+    }
+
     @Override
     public void run() {
         final MirrorOptions options = context.getOptions();
@@ -81,7 +87,8 @@ public class GCSKeyLister extends KeyLister {
                                 ObjectSummary os = new GCS_ObjectSummary(object);
                                 summaries.add(os);
                             }
-                            context.getStats().objectsRead.addAndGet(objects.size());
+                            context.getStats().objectsRead.add(objects.size());
+                            context.getStats().recordListingPage(MirrorConstants.GCS, getLastKey(objects), objects.getItems() == null ? 0 : objects.getItems().size());
                             if (verbose)
                                 log.info("queued next set of {} keys (total now= {})", objects.size(), getSize());
                         }
@@ -95,11 +102,13 @@ public class GCSKeyLister extends KeyLister {
                     Thread.sleep(50);
                 } catch (InterruptedException e) {
                     log.error("interrupted!");
+                    failed.set(true);
                     return;
                 }
             }
         } catch (Exception e) {
             log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+            failed.set(true);
         } finally {
             if (verbose) {
                 log.info("KEY_LISTER run loop finished");
@@ -130,8 +139,13 @@ public class GCSKeyLister extends KeyLister {
             }
 
             try {
-                context.getStats().getCount.incrementAndGet();
-                objects = listObjects.execute();
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    objects = listObjects.execute();
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.GCS, MirrorStats.OP_LIST, start, tries > 0);
+                }
                 if (verbose) {
                     log.info("successfully got first batch of objects from GCS (on try # {})", tries);
                 }
@@ -162,7 +176,7 @@ public class GCSKeyLister extends KeyLister {
         Objects next = null;
 
         for (int tries = 0; tries < maxRetries; tries++) {
-            context.getStats().getCount.incrementAndGet();
+            context.getStats().getCount.increment();
             try {
                 listObjects = gcsClient.objects().list(bucket).setMaxResults(fetchSize).setPrefix(prefix);
             } catch (IOException e) {
@@ -170,8 +184,13 @@ public class GCSKeyLister extends KeyLister {
             }
             listObjects.setPageToken(objects.getNextPageToken());
             try {
-                context.getStats().getCount.incrementAndGet();
-                next = listObjects.execute();
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    next = listObjects.execute();
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.GCS, MirrorStats.OP_LIST, start, tries > 0);
+                }
                 if (verbose) {
                     log.info("successfully got next batch of objects (on try # {} )", tries);
                 }
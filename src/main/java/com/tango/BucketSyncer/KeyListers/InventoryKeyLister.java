@@ -0,0 +1,367 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.tango.BucketSyncer.MirrorConstants;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorStats;
+import com.tango.BucketSyncer.ObjectSummaries.S3_ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lists the source keys from files instead of listing the source bucket: the CSV files of an S3 Inventory
+ * report, found through its manifest.json, or files of keys, one per line. Files are parsed in parallel and
+ * read locally, or from S3 for s3://bucket/key paths.
+ *
+ * A line of a key file is a key, optionally followed by its size, ETag and Last-Modified date (ISO 8601),
+ * separated by tabs. Keys listed without them are compared as if changed, so they are always copied.
+ * Keys are not listed in key order.
+ */
+@Slf4j
+public class InventoryKeyLister extends QueueKeyLister {
+
+    public static final String S3_PATH_PREFIX = "s3://";
+    private static final String INVENTORY_DATA_DIR = "data";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AmazonS3Client client;
+    private final String source;
+
+    /**
+     * A file to parse, with the columns of the key, size, Last-Modified date and ETag for inventory files,
+     * or null columns for key files.
+     */
+    private static class KeyFile {
+        private final String path;
+        private final int[] columns;
+
+        private KeyFile(String path, int[] columns) {
+            this.path = path;
+            this.columns = columns;
+        }
+    }
+
+    private static final String[] INVENTORY_FIELDS = {"Key", "Size", "LastModifiedDate", "ETag", "IsLatest", "IsDeleteMarker"};
+    private static final int KEY = 0;
+    private static final int SIZE = 1;
+    private static final int LAST_MODIFIED = 2;
+    private static final int ETAG = 3;
+    private static final int IS_LATEST = 4;
+    private static final int IS_DELETE_MARKER = 5;
+
+    /**
+     * @param client the S3 client that s3:// paths are read with
+     * @param source an inventory manifest.json, a key file, or a directory of key files
+     */
+    public InventoryKeyLister(Object client,
+                              String source,
+                              String bucket,
+                              String prefix,
+                              MirrorContext context,
+                              Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.client = client instanceof AmazonS3Client ? (AmazonS3Client) client : null;
+        this.source = source;
+    }
+
+    @Override
+    public void run() {
+        final boolean verbose = context.getOptions().isVerbose();
+        ExecutorService parsers = null;
+        try {
+            final List<KeyFile> files = getFiles();
+            log.info("listing keys from {} files of {}", files.size(), source);
+            final int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+            parsers = Executors.newFixedThreadPool(threads,
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("inventory-parser-%d").build());
+            final List<Future<?>> parsed = new ArrayList<Future<?>>(files.size());
+            for (final KeyFile file : files) {
+                parsed.add(parsers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            parse(file);
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Cannot read " + file.path, e);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : parsed) {
+                future.get();
+            }
+
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+            failed.set(true);
+
+        } catch (ExecutionException e) {
+            log.error("Error listing keys from {}: ", source, e.getCause());
+            failed.set(true);
+
+        } catch (Exception e) {
+            log.error("Error listing keys from {}: ", source, e);
+            failed.set(true);
+
+        } finally {
+            if (parsers != null) {
+                parsers.shutdownNow();
+            }
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    private List<KeyFile> getFiles() throws IOException {
+        if (source.endsWith(".json")) {
+            return getInventoryFiles();
+        }
+        final List<KeyFile> files = new ArrayList<KeyFile>();
+        final File local = new File(source);
+        if (!source.startsWith(S3_PATH_PREFIX) && local.isDirectory()) {
+            final File[] children = local.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isFile() && !child.getName().startsWith(".")) {
+                        files.add(new KeyFile(child.getPath(), null));
+                    }
+                }
+            }
+        } else {
+            files.add(new KeyFile(source, null));
+        }
+        return files;
+    }
+
+    private List<KeyFile> getInventoryFiles() throws IOException {
+        final JsonNode manifest;
+        final InputStream in = open(source);
+        try {
+            manifest = MAPPER.readTree(in);
+        } finally {
+            in.close();
+        }
+        final String format = manifest.path("fileFormat").asText();
+        if (!"CSV".equalsIgnoreCase(format)) {
+            throw new IOException("Only CSV inventory reports are supported, " + source + " is " + format);
+        }
+        final String sourceBucket = manifest.path("sourceBucket").asText();
+        if (!sourceBucket.equals(bucket)) {
+            throw new IOException("Inventory " + source + " is of bucket " + sourceBucket + ", not " + bucket);
+        }
+
+        final int[] columns = new int[INVENTORY_FIELDS.length];
+        Arrays.fill(columns, -1);
+        final String[] schema = manifest.path("fileSchema").asText().split(",");
+        for (int i = 0; i < schema.length; i++) {
+            for (int field = 0; field < INVENTORY_FIELDS.length; field++) {
+                if (INVENTORY_FIELDS[field].equals(schema[i].trim())) {
+                    columns[field] = i;
+                }
+            }
+        }
+        if (columns[KEY] < 0) {
+            throw new IOException("Inventory " + source + " has no Key column: " + manifest.path("fileSchema").asText());
+        }
+
+        // data files are named by their key in the inventory's bucket
+        final String destination = manifest.path("destinationBucket").asText();
+        final String inventoryBucket = destination.substring(destination.lastIndexOf(':') + 1);
+        final List<KeyFile> files = new ArrayList<KeyFile>();
+        for (JsonNode file : manifest.path("files")) {
+            files.add(new KeyFile(resolve(inventoryBucket, file.path("key").asText()), columns));
+        }
+        return files;
+    }
+
+    /**
+     * @return where the data file with the given key is: in S3 next to an S3 manifest, or else in the directory
+     * of a downloaded manifest or the data directory next to it, as laid out in the inventory's bucket
+     */
+    private String resolve(String inventoryBucket, String key) throws IOException {
+        if (source.startsWith(S3_PATH_PREFIX)) {
+            return S3_PATH_PREFIX + inventoryBucket + "/" + key;
+        }
+        final String name = key.substring(key.lastIndexOf('/') + 1);
+        final File manifestDir = new File(source).getAbsoluteFile().getParentFile();
+        final File[] candidates = {
+                new File(manifestDir, name),
+                new File(new File(manifestDir.getParentFile(), INVENTORY_DATA_DIR), name)};
+        for (File candidate : candidates) {
+            if (candidate.isFile()) {
+                return candidate.getPath();
+            }
+        }
+        throw new IOException("Cannot find inventory file " + key + " of " + source);
+    }
+
+    private InputStream open(String path) throws IOException {
+        InputStream in;
+        if (path.startsWith(S3_PATH_PREFIX)) {
+            if (client == null) {
+                throw new IOException("Cannot read " + path + " without an S3 client");
+            }
+            final String bucketAndKey = path.substring(S3_PATH_PREFIX.length());
+            final int slash = bucketAndKey.indexOf('/');
+            if (slash <= 0) {
+                throw new IOException("Not an S3 object: " + path);
+            }
+            context.getStats().getCount.increment();
+            final long start = System.nanoTime();
+            try {
+                in = client.getObject(bucketAndKey.substring(0, slash), bucketAndKey.substring(slash + 1)).getObjectContent();
+            } finally {
+                context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_GET, start);
+            }
+        } else {
+            in = new FileInputStream(path);
+        }
+        in = new BufferedInputStream(in);
+        if (path.endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    private void parse(KeyFile file) throws IOException, InterruptedException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(open(file.path), Charsets.UTF_8));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                if (line.length() == 0) {
+                    continue;
+                }
+                final S3ObjectSummary summary;
+                try {
+                    summary = file.columns == null ? parseKeyLine(line) : parseInventoryLine(line, file.columns);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping invalid line of {}: {}: {}", new Object[]{file.path, line, e.getMessage()});
+                    continue;
+                }
+                if (summary == null || (prefix != null && !summary.getKey().startsWith(prefix))) {
+                    continue;
+                }
+                enqueue(new S3_ObjectSummary(summary));
+                context.getStats().objectsRead.increment();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    static S3ObjectSummary parseKeyLine(String line) {
+        final String[] fields = line.split("\t", -1);
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(fields[0]);
+        summary.setSize(fields.length > 1 && fields[1].length() > 0 ? Long.parseLong(fields[1]) : -1);
+        if (fields.length > 2 && fields[2].length() > 0) {
+            summary.setETag(fields[2]);
+        }
+        if (fields.length > 3 && fields[3].length() > 0) {
+            summary.setLastModified(parseDate(fields[3]));
+        }
+        return summary;
+    }
+
+    /**
+     * @return the object of an inventory line, or null for noncurrent versions and delete markers
+     */
+    static S3ObjectSummary parseInventoryLine(String line, int[] columns) throws UnsupportedEncodingException {
+        final List<String> fields = splitCsv(line);
+        if ("false".equals(getField(fields, columns[IS_LATEST])) || "true".equals(getField(fields, columns[IS_DELETE_MARKER]))) {
+            return null;
+        }
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        // inventory keys are URL encoded
+        summary.setKey(URLDecoder.decode(getField(fields, columns[KEY]), "UTF-8"));
+        final String size = getField(fields, columns[SIZE]);
+        summary.setSize(size == null || size.length() == 0 ? -1 : Long.parseLong(size));
+        final String etag = getField(fields, columns[ETAG]);
+        if (etag != null && etag.length() > 0) {
+            summary.setETag(etag);
+        }
+        final String lastModified = getField(fields, columns[LAST_MODIFIED]);
+        if (lastModified != null && lastModified.length() > 0) {
+            summary.setLastModified(parseDate(lastModified));
+        }
+        return summary;
+    }
+
+    private static String getField(List<String> fields, int column) {
+        return column < 0 || column >= fields.size() ? null : fields.get(column);
+    }
+
+    private static Date parseDate(String date) {
+        return ISODateTimeFormat.dateTimeParser().parseDateTime(date).toDate();
+    }
+
+    private static List<String> splitCsv(String line) {
+        final List<String> fields = new ArrayList<String>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+}
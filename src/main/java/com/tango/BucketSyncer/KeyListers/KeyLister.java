@@ -16,10 +16,13 @@
  */
 package com.tango.BucketSyncer.KeyListers;
 
+import com.tango.BucketSyncer.MirrorConstants;
 import com.tango.BucketSyncer.MirrorContext;
 import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -36,6 +39,13 @@ public abstract class KeyLister implements Runnable {
         return done.get();
     }
 
+    // set when the lister stops before it has listed every key
+    protected final AtomicBoolean failed = new AtomicBoolean(false);
+
+    public boolean isFailed() {
+        return failed.get();
+    }
+
     public KeyLister(String bucket,
                      String prefix,
                      MirrorContext context,
@@ -48,4 +58,69 @@ public abstract class KeyLister implements Runnable {
 
     public abstract List<ObjectSummary> getNextBatch();
 
+    /**
+     * Creates the KeyLister for a storage type, e.g. S3KeyLister for "S3".
+     */
+    public static KeyLister forStore(String store,
+                                     Object client,
+                                     String bucket,
+                                     String prefix,
+                                     MirrorContext context,
+                                     Integer maxQueueCapacity) {
+        return forStore(store, client, bucket, prefix, null, context, maxQueueCapacity);
+    }
+
+    /**
+     * Creates the KeyLister for a storage type, listing the keys after startAfter if the lister supports that.
+     * Other listers list from the start of the prefix.
+     */
+    public static KeyLister forStore(String store,
+                                     Object client,
+                                     String bucket,
+                                     String prefix,
+                                     String startAfter,
+                                     MirrorContext context,
+                                     Integer maxQueueCapacity) {
+        String packageName = KeyLister.class.getPackage().getName();
+        String className = String.format("%s.%s%s", packageName, store.toUpperCase(), MirrorConstants.KEY_LISTER);
+
+        Class<?> clazz = null;
+        try {
+            clazz = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            log.error("Classname for KEY_LISTER {} is not found: {}", className, e);
+            return null;
+        }
+        try {
+            if (startAfter != null) {
+                try {
+                    Constructor<?> constructor = clazz.getConstructor(Object.class,
+                            String.class,
+                            String.class,
+                            String.class,
+                            MirrorContext.class,
+                            Integer.class);
+                    return (KeyLister) constructor.newInstance(client, bucket, prefix, startAfter, context, maxQueueCapacity);
+                } catch (NoSuchMethodException e) {
+                    log.info("{} cannot start listing after a key, listing {} from the start", className, prefix);
+                }
+            }
+            Constructor<?> constructor = clazz.getConstructor(Object.class,
+                    String.class,
+                    String.class,
+                    MirrorContext.class,
+                    Integer.class);
+            return (KeyLister) constructor.newInstance(client, bucket, prefix, context, maxQueueCapacity);
+        } catch (NoSuchMethodException e) {
+            log.error("Failed to find corresponding KEY_LISTER constructor: ", e);
+        } catch (InstantiationException e) {
+            log.error("Failed to instantiate KEY_LISTER: ", e);
+        } catch (IllegalAccessException e) {
+            log.error("Failed to access KEY_LISTER: ", e);
+        } catch (InvocationTargetException e) {
+            log.error("Failed to invocate KEY_LISTER: ", e);
+        }
+        return null;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.Watermark;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drops listed keys last modified before a cutoff, so that no job is queued for them,
+ * and records the newest last-modified time listed in the watermark, if there is one.
+ * The watermark is only finished once the source has been listed in full.
+ */
+@Slf4j
+public class ModifiedSinceKeyLister extends WrappingKeyLister {
+
+    private final KeyLister sourceLister;
+    private final long cutoff;
+    private final Watermark watermark;
+
+    public ModifiedSinceKeyLister(KeyLister sourceLister,
+                                  long cutoff,
+                                  Watermark watermark,
+                                  MirrorContext context,
+                                  Integer maxQueueCapacity) {
+        super(sourceLister.bucket, sourceLister.prefix, context, maxQueueCapacity);
+        this.sourceLister = sourceLister;
+        this.cutoff = cutoff;
+        this.watermark = watermark;
+    }
+
+    @Override
+    public void run() {
+        final boolean verbose = context.getOptions().isVerbose();
+        try {
+            if (!drain(sourceLister, "modified-since-source-lister")) {
+                failed.set(true);
+            } else if (watermark != null) {
+                watermark.finish();
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+            failed.set(true);
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+            failed.set(true);
+
+        } finally {
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    @Override
+    protected void accept(ObjectSummary summary) throws InterruptedException {
+        if (summary.getLastModified() == null) {
+            enqueue(summary);
+            return;
+        }
+        final long lastModified = summary.getLastModified().getTime();
+        if (watermark != null) {
+            watermark.observe(lastModified);
+        }
+        if (lastModified >= cutoff) {
+            enqueue(summary);
+        }
+    }
+
+}
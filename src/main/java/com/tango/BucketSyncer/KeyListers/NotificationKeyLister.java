@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.Notifications.NotificationEvent;
+import com.tango.BucketSyncer.ObjectSummaries.Notification_ObjectSummary;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the keys of a notification batch instead of listing a bucket: the created keys for copying,
+ * or the destination keys of the removed keys for deleting.
+ */
+public class NotificationKeyLister extends KeyLister {
+
+    private final List<ObjectSummary> summaries;
+
+    public NotificationKeyLister(List<NotificationEvent> events,
+                                 boolean destination,
+                                 String bucket,
+                                 String prefix,
+                                 MirrorContext context,
+                                 Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        final MirrorOptions options = context.getOptions();
+        this.summaries = new ArrayList<ObjectSummary>(events.size());
+        for (NotificationEvent event : events) {
+            final String key = destination ? ReconcileKeyLister.toDestKey(options, event.getKey()) : event.getKey();
+            summaries.add(new Notification_ObjectSummary(key, event));
+        }
+        context.getStats().objectsRead.add(summaries.size());
+    }
+
+    @Override
+    public void run() {
+        done.set(true);
+    }
+
+    @Override
+    public List<ObjectSummary> getNextBatch() {
+        List<ObjectSummary> copy;
+        synchronized (summaries) {
+            copy = new ArrayList<ObjectSummary>(summaries);
+            summaries.clear();
+        }
+        return copy;
+    }
+
+}
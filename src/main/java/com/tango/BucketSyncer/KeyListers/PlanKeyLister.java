@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.ObjectSummaries.Plan_ObjectSummary;
+import com.tango.BucketSyncer.SyncPlan;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Lists the keys of one action of a sync plan instead of listing a bucket, skipping the keys of other
+ * shards when the plan is applied by several processes.
+ */
+@Slf4j
+public class PlanKeyLister extends QueueKeyLister {
+
+    private final File file;
+    private final String identity;
+    private final String action;
+
+    public PlanKeyLister(File file,
+                         String identity,
+                         String action,
+                         String bucket,
+                         String prefix,
+                         MirrorContext context,
+                         Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.file = file;
+        this.identity = identity;
+        this.action = action;
+    }
+
+    @Override
+    public void run() {
+        final MirrorOptions options = context.getOptions();
+        final int shard = options.getApplyShardIndex();
+        final int shards = options.getApplyShardCount();
+        SyncPlan.Reader reader = null;
+        try {
+            reader = new SyncPlan.Reader(file, identity);
+            SyncPlan.Entry entry;
+            while ((entry = reader.next()) != null) {
+                if (!action.equals(entry.getAction()) || !SyncPlan.isInShard(entry.getKey(), shard, shards)) {
+                    continue;
+                }
+                enqueue(new Plan_ObjectSummary(entry));
+                context.getStats().objectsRead.increment();
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+            failed.set(true);
+
+        } catch (IOException e) {
+            log.error("Cannot read plan {}: ", file, e);
+            failed.set(true);
+
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.warn("Error closing plan {}: {}", file, e);
+                }
+            }
+            if (options.isVerbose()) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.PrefixDigests;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the source keys of the prefixes whose digest changed since the last run that mirrored them.
+ * The keys of a prefix are held back until the listing leaves it, and dropped if its digest is unchanged.
+ * Keys above the prefix depth are listed as they come.
+ */
+@Slf4j
+public class PrefixDigestKeyLister extends WrappingKeyLister {
+
+    private final KeyLister sourceLister;
+    private final PrefixDigests digests;
+
+    // the group being listed, with its keys held back unless it grew too large for that
+    private String group;
+    private PrefixDigests.Digest digest;
+    private final List<ObjectSummary> groupKeys = new ArrayList<ObjectSummary>();
+    private boolean descending;
+
+    public PrefixDigestKeyLister(KeyLister sourceLister,
+                                 PrefixDigests digests,
+                                 MirrorContext context,
+                                 Integer maxQueueCapacity) {
+        super(sourceLister.bucket, sourceLister.prefix, context, maxQueueCapacity);
+        this.sourceLister = sourceLister;
+        this.digests = digests;
+    }
+
+    @Override
+    public void run() {
+        final boolean verbose = context.getOptions().isVerbose();
+        try {
+            final boolean listed = drain(sourceLister, "digest-source-lister");
+            endGroup();
+            // a partial listing would make the prefixes not listed look removed
+            if (listed) {
+                digests.finish();
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+
+        } finally {
+            if (!digests.isFinished()) {
+                digests.markFailed();
+            }
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    @Override
+    protected void accept(ObjectSummary summary) throws InterruptedException {
+        final String keyGroup = digests.getGroup(summary.getKey());
+        if (keyGroup == null) {
+            digests.addLoose(summary);
+            enqueue(summary);
+            return;
+        }
+        if (!keyGroup.equals(group)) {
+            endGroup();
+            group = keyGroup;
+            digest = new PrefixDigests.Digest();
+            descending = false;
+        }
+        digest.add(summary);
+        if (descending) {
+            enqueue(summary);
+            return;
+        }
+        groupKeys.add(summary);
+        if (groupKeys.size() > PrefixDigests.MAX_BUFFERED_KEYS) {
+            descending = true;
+            flushGroup();
+        }
+    }
+
+    private void endGroup() throws InterruptedException {
+        if (group == null) {
+            return;
+        }
+        if (digests.put(group, digest) && !descending) {
+            context.getStats().prefixesSkipped.increment();
+            context.getStats().prefixKeysSkipped.add(groupKeys.size());
+            groupKeys.clear();
+        } else {
+            flushGroup();
+        }
+        group = null;
+    }
+
+    private void flushGroup() throws InterruptedException {
+        for (ObjectSummary summary : groupKeys) {
+            enqueue(summary);
+        }
+        groupKeys.clear();
+    }
+
+}
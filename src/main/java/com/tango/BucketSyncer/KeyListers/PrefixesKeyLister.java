@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lists several prefixes of a bucket one after the other. Prefixes must be in listing order,
+ * and none may be a prefix of another, for keys to be listed in order. Listing can start after a key,
+ * skipping the prefixes before it.
+ */
+@Slf4j
+public class PrefixesKeyLister extends WrappingKeyLister {
+
+    private final String store;
+    private final Object client;
+    private final List<String> prefixes;
+    private final String startAfter;
+
+    /**
+     * @param startAfter only keys after this one are listed, null to list every key
+     */
+    public PrefixesKeyLister(String store,
+                             Object client,
+                             String bucket,
+                             List<String> prefixes,
+                             String startAfter,
+                             MirrorContext context,
+                             Integer maxQueueCapacity) {
+        super(bucket, prefixes.isEmpty() ? null : prefixes.get(0), context, maxQueueCapacity);
+        this.store = store;
+        this.client = client;
+        this.prefixes = prefixes;
+        this.startAfter = startAfter;
+    }
+
+    @Override
+    public void run() {
+        final boolean verbose = context.getOptions().isVerbose();
+        try {
+            for (String prefix : prefixes) {
+                String after = null;
+                if (startAfter != null) {
+                    if (startAfter.startsWith(prefix)) {
+                        after = startAfter;
+                    } else if (ReconcileKeyLister.compareKeys(prefix, startAfter) < 0) {
+                        continue;
+                    }
+                }
+                if (verbose) {
+                    log.info("listing prefix {}", prefix);
+                }
+                if (!list(prefix, after)) {
+                    failed.set(true);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+            failed.set(true);
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+            failed.set(true);
+
+        } finally {
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    /**
+     * @return false if the prefix could not be listed in full
+     */
+    private boolean list(String prefix, String after) throws IOException, InterruptedException {
+        final KeyLister lister = KeyLister.forStore(store, client, bucket, prefix, after, context, maxQueueCapacity);
+        if (lister == null) {
+            return false;
+        }
+        return drain(lister, "prefix-lister");
+    }
+
+}
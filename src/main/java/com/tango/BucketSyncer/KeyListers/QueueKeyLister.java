@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2013 Jonathan Cobb
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lister that queues the keys it lists until they are taken with getNextBatch,
+ * holding at most maxQueueCapacity of them.
+ */
+public abstract class QueueKeyLister extends KeyLister {
+
+    private final List<ObjectSummary> summaries;
+
+    public QueueKeyLister(String bucket,
+                          String prefix,
+                          MirrorContext context,
+                          Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.summaries = new ArrayList<ObjectSummary>(maxQueueCapacity);
+    }
+
+    /**
+     * Queues a key, waiting while the queue is full.
+     */
+    protected void enqueue(ObjectSummary summary) throws InterruptedException {
+        while (isFull()) {
+            Thread.sleep(50);
+        }
+        synchronized (summaries) {
+            summaries.add(summary);
+        }
+    }
+
+    protected boolean isFull() {
+        synchronized (summaries) {
+            return summaries.size() >= maxQueueCapacity;
+        }
+    }
+
+    @Override
+    public List<ObjectSummary> getNextBatch() {
+        List<ObjectSummary> copy;
+        synchronized (summaries) {
+            copy = new ArrayList<ObjectSummary>(summaries);
+            summaries.clear();
+        }
+        return copy;
+    }
+
+}
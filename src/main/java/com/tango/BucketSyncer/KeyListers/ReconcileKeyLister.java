@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.KeyFingerprint;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Lists source keys that are missing from the destination, or whose size or ETag differ there, by walking the
+ * source and destination listings side by side. Both stores list keys in UTF-8 byte order, so a single pass over
+ * each listing is enough and no per-key metadata lookups are needed.
+ */
+@Slf4j
+public class ReconcileKeyLister extends QueueKeyLister {
+
+    private final KeyLister sourceLister;
+    private final KeyLister destLister;
+
+    private final LinkedList<ObjectSummary> sourceBuffer = new LinkedList<ObjectSummary>();
+    private final LinkedList<ObjectSummary> destBuffer = new LinkedList<ObjectSummary>();
+    private boolean sourceExhausted = false;
+    private boolean destExhausted = false;
+
+    public ReconcileKeyLister(KeyLister sourceLister,
+                              KeyLister destLister,
+                              MirrorContext context,
+                              Integer maxQueueCapacity) {
+        super(sourceLister.bucket, sourceLister.prefix, context, maxQueueCapacity);
+        this.sourceLister = sourceLister;
+        this.destLister = destLister;
+    }
+
+    @Override
+    public void run() {
+        final MirrorOptions options = context.getOptions();
+        final boolean verbose = options.isVerbose();
+        final Thread sourceThread = new Thread(sourceLister, "reconcile-source-lister");
+        final Thread destThread = new Thread(destLister, "reconcile-dest-lister");
+        long compared = 0;
+        long mismatched = 0;
+        log.info("reconciliation listing starting...");
+        try {
+            sourceThread.start();
+            destThread.start();
+            while (true) {
+                if (!fill(sourceBuffer, sourceLister, true) || !fill(destBuffer, destLister, false)) {
+                    return;
+                }
+                if (sourceBuffer.isEmpty()) {
+                    if (sourceExhausted) {
+                        log.info("reconciliation listing done: {} keys compared, {} missing or changed in destination", compared, mismatched);
+                        return;
+                    }
+                    continue;
+                }
+                if (destBuffer.isEmpty() && !destExhausted) {
+                    continue;
+                }
+
+                final ObjectSummary source = sourceBuffer.getFirst();
+                final String destKey = toDestKey(options, source.getKey());
+                final int cmp = destBuffer.isEmpty() ? -1 : compareKeys(destKey, destBuffer.getFirst().getKey());
+                if (cmp > 0) {
+                    // only in destination, left to --delete-removed
+                    destBuffer.removeFirst();
+                    continue;
+                }
+                sourceBuffer.removeFirst();
+                compared++;
+                final boolean missing = cmp < 0;
+                final ObjectSummary dest = missing ? null : destBuffer.removeFirst();
+                if (missing || changed(source, dest)) {
+                    mismatched++;
+                    if (verbose) {
+                        log.info("reconciliation: {} is missing or changed in destination", destKey);
+                    }
+                    enqueue(source);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+
+        } finally {
+            sourceThread.interrupt();
+            destThread.interrupt();
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    /**
+     * Refills an empty buffer from its lister, waiting if the lister has nothing queued yet.
+     *
+     * @return false if interrupted
+     */
+    private boolean fill(LinkedList<ObjectSummary> buffer, KeyLister lister, boolean source) {
+        if (!buffer.isEmpty() || (source ? sourceExhausted : destExhausted)) {
+            return true;
+        }
+        // read done before draining, so that keys queued just before the lister finished are not lost
+        final boolean listerDone = lister.isDone();
+        final List<ObjectSummary> batch = lister.getNextBatch();
+        buffer.addAll(batch);
+        if (batch.isEmpty()) {
+            if (listerDone) {
+                if (source) {
+                    sourceExhausted = true;
+                } else {
+                    destExhausted = true;
+                }
+            } else {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    log.error("interrupted!");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean changed(ObjectSummary source, ObjectSummary dest) {
+        return !new KeyFingerprint(source.getSize(), source.getETag())
+                .equals(new KeyFingerprint(dest.getSize(), dest.getMirroredETag()));
+    }
+
+    static String toDestKey(MirrorOptions options, String key) {
+        if (options.hasDestPrefix()) {
+            return options.getDestPrefix() + key.substring(options.getPrefixLength());
+        }
+        return key;
+    }
+
+    /**
+     * Compares keys by code point, which matches the UTF-8 byte order the stores list keys in.
+     * String.compareTo compares UTF-16 chars and orders surrogate pairs differently.
+     */
+    public static int compareKeys(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            final int ca = a.codePointAt(i);
+            final int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return ca < cb ? -1 : 1;
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
+
+}
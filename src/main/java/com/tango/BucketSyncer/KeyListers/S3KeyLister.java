@@ -41,6 +41,18 @@ public class S3KeyLister extends KeyLister {
                        String prefix,
                        MirrorContext context,
                        Integer maxQueueCapacity) {
+        this(client, bucket, prefix, null, context, maxQueueCapacity);
+    }
+
+    /**
+     * @param startAfter only keys after this one are listed, null to list every key
+     */
+    public S3KeyLister(Object client,
+                       String bucket,
+                       String prefix,
+                       String startAfter,
+                       MirrorContext context,
+                       Integer maxQueueCapacity) {
         super(bucket, prefix, context, maxQueueCapacity);
         this.s3Client = (AmazonS3Client) client;
 
@@ -48,12 +60,13 @@ public class S3KeyLister extends KeyLister {
         int fetchSize = options.getMaxThreads();
         this.summaries = new ArrayList<S3ObjectSummary>(10 * fetchSize);
 
-        final ListObjectsRequest request = new ListObjectsRequest(bucket, prefix, null, null, fetchSize);
+        final ListObjectsRequest request = new ListObjectsRequest(bucket, prefix, startAfter, null, fetchSize);
         listing = s3getFirstBatch(s3Client, request);
         synchronized (summaries) {
             final List<S3ObjectSummary> objectSummaries = listing.getObjectSummaries();
             summaries.addAll(objectSummaries);
-            context.getStats().objectsRead.addAndGet(objectSummaries.size());
+            context.getStats().objectsRead.add(objectSummaries.size());
+            context.getStats().recordListingPage(MirrorConstants.S3, objectSummaries.isEmpty() ? null : objectSummaries.get(objectSummaries.size() - 1).getKey(), objectSummaries.size());
             if (options.isVerbose()) {
                 log.info("added initial set of {} keys", objectSummaries.size());
             }
@@ -77,7 +90,8 @@ public class S3KeyLister extends KeyLister {
                         synchronized (summaries) {
                             final List<S3ObjectSummary> objectSummaries = listing.getObjectSummaries();
                             summaries.addAll(objectSummaries);
-                            context.getStats().objectsRead.addAndGet(objectSummaries.size());
+                            context.getStats().objectsRead.add(objectSummaries.size());
+                            context.getStats().recordListingPage(MirrorConstants.S3, objectSummaries.isEmpty() ? null : objectSummaries.get(objectSummaries.size() - 1).getKey(), objectSummaries.size());
                             if (verbose) {
                                 log.info("queued next set of {} keys (total now= {})", objectSummaries.size(), getSize());
                             }
@@ -92,11 +106,13 @@ public class S3KeyLister extends KeyLister {
                     Thread.sleep(50);
                 } catch (InterruptedException e) {
                     log.error("interrupted!");
+                    failed.set(true);
                     return;
                 }
             }
         } catch (Exception e) {
             log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+            failed.set(true);
 
         } finally {
             if (verbose) {
@@ -116,8 +132,13 @@ public class S3KeyLister extends KeyLister {
         Exception lastException = null;
         for (int tries = 0; tries < maxRetries; tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                listing = client.listObjects(request);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    listing = client.listObjects(request);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_LIST, start, tries > 0);
+                }
                 if (verbose) {
                     log.info("successfully got first batch of objects (on try # {})", tries);
                 }
@@ -154,8 +175,13 @@ public class S3KeyLister extends KeyLister {
         ObjectListing next = null;
         for (int tries = 0; tries < maxRetries; tries++) {
             try {
-                context.getStats().getCount.incrementAndGet();
-                next = s3Client.listNextBatchOfObjects(listing);
+                context.getStats().getCount.increment();
+                final long start = System.nanoTime();
+                try {
+                    next = s3Client.listNextBatchOfObjects(listing);
+                } finally {
+                    context.getStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_LIST, start, tries > 0);
+                }
                 if (verbose) {
                     log.info("successfully got next batch of objects (on try # {})", tries);
                 }
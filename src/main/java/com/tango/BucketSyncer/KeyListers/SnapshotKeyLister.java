@@ -0,0 +1,76 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.ListingSnapshot;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * Lists the source keys that were added or changed since the previous listing snapshot,
+ * writing the next snapshot as the source is listed.
+ */
+@Slf4j
+public class SnapshotKeyLister extends WrappingKeyLister {
+
+    private final KeyLister sourceLister;
+    private final ListingSnapshot snapshot;
+
+    public SnapshotKeyLister(KeyLister sourceLister,
+                             ListingSnapshot snapshot,
+                             MirrorContext context,
+                             Integer maxQueueCapacity) {
+        super(sourceLister.bucket, sourceLister.prefix, context, maxQueueCapacity);
+        this.sourceLister = sourceLister;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run() {
+        final boolean verbose = context.getOptions().isVerbose();
+        try {
+            // a partial listing would make the keys not listed look removed
+            if (drain(sourceLister, "snapshot-source-lister")) {
+                snapshot.finish();
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+
+        } catch (Exception e) {
+            log.error("Error in run loop, KEY_LISTER thread now exiting: {}", e);
+
+        } finally {
+            if (!snapshot.isFinished()) {
+                snapshot.markFailed();
+            }
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+    @Override
+    protected void accept(ObjectSummary summary) throws IOException, InterruptedException {
+        if (snapshot.diff(summary)) {
+            enqueue(summary);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.DestinationIndex;
+import com.tango.BucketSyncer.ListingSnapshot;
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.MirrorOptions;
+import com.tango.BucketSyncer.ObjectSummaries.Snapshot_ObjectSummary;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lists the destination keys of source keys that were removed since the previous listing snapshot,
+ * as found by the {@link SnapshotKeyLister} walking the source.
+ */
+@Slf4j
+public class SnapshotRemovedKeyLister extends QueueKeyLister {
+
+    private final ListingSnapshot snapshot;
+
+    public SnapshotRemovedKeyLister(ListingSnapshot snapshot,
+                                    String bucket,
+                                    String prefix,
+                                    MirrorContext context,
+                                    Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run() {
+        final MirrorOptions options = context.getOptions();
+        final boolean verbose = options.isVerbose();
+        try {
+            while (!snapshot.isDrained()) {
+                if (isFull()) {
+                    Thread.sleep(50);
+                    continue;
+                }
+                final DestinationIndex.Entry entry = snapshot.pollRemoved(50);
+                if (entry != null) {
+                    enqueue(new Snapshot_ObjectSummary(ReconcileKeyLister.toDestKey(options, entry.getKey()), entry));
+                }
+            }
+        } catch (InterruptedException e) {
+            log.error("interrupted!");
+
+        } finally {
+            if (verbose) {
+                log.info("KEY_LISTER run loop finished");
+            }
+            done.set(true);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2013 Jonathan Cobb
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.KeyListers;
+
+import com.tango.BucketSyncer.MirrorContext;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A lister that lists the keys of other listers, running each in its own thread and passing the keys
+ * it lists to accept, which queues them unless overridden.
+ */
+public abstract class WrappingKeyLister extends QueueKeyLister {
+
+    public WrappingKeyLister(String bucket,
+                             String prefix,
+                             MirrorContext context,
+                             Integer maxQueueCapacity) {
+        super(bucket, prefix, context, maxQueueCapacity);
+    }
+
+    /**
+     * Runs a lister until it is done, passing every key it lists to accept.
+     *
+     * @return false if the lister stopped before it listed every key
+     */
+    protected boolean drain(KeyLister lister, String threadName) throws IOException, InterruptedException {
+        final Thread thread = new Thread(lister, threadName);
+        try {
+            thread.start();
+            while (true) {
+                // read done before draining, so that keys queued just before the lister finished are not lost
+                final boolean listerDone = lister.isDone();
+                final List<ObjectSummary> batch = lister.getNextBatch();
+                for (ObjectSummary summary : batch) {
+                    accept(summary);
+                }
+                if (batch.isEmpty()) {
+                    if (listerDone) {
+                        return !lister.isFailed();
+                    }
+                    Thread.sleep(50);
+                }
+            }
+        } finally {
+            thread.interrupt();
+        }
+    }
+
+    protected void accept(ObjectSummary summary) throws IOException, InterruptedException {
+        enqueue(summary);
+    }
+
+}
@@ -24,6 +24,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -68,6 +69,39 @@ public abstract class KeyMaster implements Runnable {
 
     protected abstract KeyJob getTask(ObjectSummary summary);
 
+    /**
+     * @return the shard the progress of this master is journaled under, or null to not journal it
+     */
+    protected String getJournalShard() {
+        return null;
+    }
+
+    /**
+     * @return the key the listing of a resumed run starts after, or null to list from the start
+     */
+    protected String getResumeMarker() {
+        final RunJournal journal = context.getRunJournal();
+        return journal == null || getJournalShard() == null ? null : journal.getResumeMarker(getJournalShard());
+    }
+
+    /**
+     * Called after a job for the key is submitted.
+     */
+    protected void submitted(ObjectSummary summary) {
+    }
+
+    /**
+     * Called once the lister has listed every key, while jobs may still be running.
+     */
+    protected void listed() {
+    }
+
+    /**
+     * Called once all jobs submitted by this master have finished, before it is marked as done.
+     */
+    protected void drain() {
+    }
+
     public void start() {
         this.thread = new Thread(this);
         this.thread.start();
@@ -102,6 +136,77 @@ public abstract class KeyMaster implements Runnable {
         }
     }
 
+    private static Runnable traced(final KeyJob task, final KeyTrace trace, final TraceLog traceLog) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                trace.dequeued();
+                KeyTrace.setCurrent(trace);
+                try {
+                    task.run();
+                } finally {
+                    KeyTrace.setCurrent(null);
+                    trace.done();
+                    traceLog.write(trace);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return task.toString();
+            }
+        };
+    }
+
+    private static Runnable recorded(final Runnable job, final KeyJob task, final ObjectSummary summary, final String store) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                final Object event = FlightEvents.beginJob(summary.getKey());
+                String outcome = FlightEvents.OUTCOME_ERROR;
+                try {
+                    job.run();
+                    outcome = task.isFailed() ? FlightEvents.OUTCOME_FAILED : FlightEvents.OUTCOME_OK;
+                } finally {
+                    FlightEvents.endJob(event, summary.getKey(), summary.getSize(), store, task.getClass().getSimpleName(), outcome);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return task.toString();
+            }
+        };
+    }
+
+    private static Runnable journaled(final Runnable job, final KeyJob task, final RunJournal journal, final String shard, final String key) {
+        final Runnable finished = new Runnable() {
+            @Override
+            public void run() {
+                journal.finished(shard, key);
+            }
+        };
+        // a batched delete is only journaled once its batch completes, so a killed run deletes it again on --resume
+        task.setBatchCallback(finished);
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    job.run();
+                } finally {
+                    if (!task.isBatched()) {
+                        finished.run();
+                    }
+                }
+            }
+
+            @Override
+            public String toString() {
+                return job.toString();
+            }
+        };
+    }
+
     public void run() {
 
         final MirrorOptions options = context.getOptions();
@@ -109,19 +214,40 @@ public abstract class KeyMaster implements Runnable {
 
         final int maxQueueCapacity = MirrorMaster.getMaxQueueCapacity(options);
 
+        final String shard = getJournalShard();
+        final RunJournal journal = shard == null ? null : context.getRunJournal();
+
         int counter = 0;
         try {
             final KeyLister lister = getKeyLister(options);
-            executorService.submit(lister);
+            final Future<?> listing = executorService.submit(lister);
 
             List<ObjectSummary> summaries = lister.getNextBatch();
+            long listedNanos = System.nanoTime();
             if (verbose) {
                 log.info("{} keys found in first batch from source bucket -- processing...", summaries.size());
             }
 
             while (true) {
                 for (ObjectSummary summary : summaries) {
+                    if (journal != null && journal.skip(shard, summary.getKey())) {
+                        continue;
+                    }
+                    while (context.isPaused() && !context.isDraining()) {
+                        if (Sleep.sleep(100)) {
+                            return;
+                        }
+                    }
+                    if (context.isDraining()) {
+                        log.info("{} draining, not submitting any more keys", getClass().getSimpleName());
+                        listing.cancel(true);
+                        return;
+                    }
+                    long waitStart = 0;
                     while (workQueue.size() >= maxQueueCapacity) {
+                        if (waitStart == 0) {
+                            waitStart = System.currentTimeMillis();
+                        }
                         try {
                             synchronized (notifyLock) {
                                 notifyLock.wait(50);
@@ -133,11 +259,34 @@ public abstract class KeyMaster implements Runnable {
                             return;
                         }
                     }
-                    executorService.submit(getTask(summary));
+                    if (waitStart != 0) {
+                        context.getStats().queueFullWaits.increment();
+                        context.getStats().queueFullWaitMillis.add(System.currentTimeMillis() - waitStart);
+                    }
+                    final KeyJob task = getTask(summary);
+                    Runnable job = task;
+                    final TraceLog traceLog = context.getTraceLog();
+                    final KeyTrace trace = traceLog == null ? null : traceLog.start(summary.getKey(), listedNanos);
+                    if (trace != null) {
+                        job = traced(task, trace, traceLog);
+                    }
+                    if (FlightEvents.isRecording()) {
+                        job = recorded(job, task, summary, options.getDestStore());
+                    }
+                    if (journal != null) {
+                        journal.started(shard, summary.getKey());
+                        job = journaled(job, task, journal, shard, summary.getKey());
+                    }
+                    if (trace != null) {
+                        trace.enqueued();
+                    }
+                    executorService.submit(job);
+                    submitted(summary);
                     counter++;
                 }
 
                 summaries = lister.getNextBatch();
+                listedNanos = System.nanoTime();
                 if (summaries.size() > 0) {
                     if (verbose) {
                         log.info("{} more keys found in source bucket -- continuing (queue size = {}, total processed = {})...", new Object[]{summaries.size(), workQueue.size(), counter});
@@ -147,6 +296,7 @@ public abstract class KeyMaster implements Runnable {
                     if (verbose) {
                         log.info("No more keys found in source bucket -- ALL DONE");
                     }
+                    listed();
                     return;
 
                 } else {
@@ -165,6 +315,11 @@ public abstract class KeyMaster implements Runnable {
                 // wait for the queue to be empty
                 if (Sleep.sleep(100)) break;
             }
+            try {
+                drain();
+            } catch (Exception e) {
+                log.error("Unexpected exception draining {}: ", getClass().getSimpleName(), e);
+            }
             // this will wait for currently executing tasks to finish
             executorService.shutdown();
             done.set(true);
@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.KeyListers.ReconcileKeyLister;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Describes how keys are laid out by date, e.g. "logs/{yyyy}/{MM}/{dd}/", so that only the prefixes of the
+ * dates that can hold recent keys need to be listed. Dates are in UTC. The finest field in the template,
+ * {yyyy}, {MM}, {dd} or {HH}, sets how many prefixes there are.
+ */
+public class KeyTemplate {
+
+    private static final Pattern FIELD = Pattern.compile("\\{([^}]*)\\}");
+
+    // from coarsest to finest
+    private static final List<String> FIELDS = Arrays.asList("yyyy", "MM", "dd", "HH");
+
+    private final String template;
+    // index of the finest field in FIELDS
+    private final int finest;
+
+    public KeyTemplate(String template) {
+        this.template = template;
+        int finest = -1;
+        final Matcher matcher = FIELD.matcher(template);
+        while (matcher.find()) {
+            final int field = FIELDS.indexOf(matcher.group(1));
+            if (field < 0) {
+                throw new IllegalArgumentException("Unknown key template field {" + matcher.group(1) + "}, use {yyyy}, {MM}, {dd} or {HH}");
+            }
+            finest = Math.max(finest, field);
+        }
+        if (finest < 0) {
+            throw new IllegalArgumentException("Key template has no date field: " + template);
+        }
+        this.finest = finest;
+    }
+
+    /**
+     * @return the prefixes of the dates from one time to another, in listing order
+     */
+    public List<String> getPrefixes(long from, long to) {
+        final TreeSet<String> prefixes = new TreeSet<String>(new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return ReconcileKeyLister.compareKeys(a, b);
+            }
+        });
+        final DateTime end = new DateTime(to, DateTimeZone.UTC);
+        for (DateTime date = floor(new DateTime(from, DateTimeZone.UTC)); !date.isAfter(end); date = next(date)) {
+            prefixes.add(format(date));
+        }
+        return Collections.unmodifiableList(new ArrayList<String>(prefixes));
+    }
+
+    private DateTime floor(DateTime date) {
+        switch (finest) {
+            case 0: return date.year().roundFloorCopy();
+            case 1: return date.monthOfYear().roundFloorCopy();
+            case 2: return date.dayOfMonth().roundFloorCopy();
+            default: return date.hourOfDay().roundFloorCopy();
+        }
+    }
+
+    private DateTime next(DateTime date) {
+        switch (finest) {
+            case 0: return date.plusYears(1);
+            case 1: return date.plusMonths(1);
+            case 2: return date.plusDays(1);
+            default: return date.plusHours(1);
+        }
+    }
+
+    private String format(DateTime date) {
+        final StringBuffer prefix = new StringBuffer();
+        final Matcher matcher = FIELD.matcher(template);
+        while (matcher.find()) {
+            matcher.appendReplacement(prefix, Matcher.quoteReplacement(DateTimeFormat.forPattern(matcher.group(1)).print(date)));
+        }
+        matcher.appendTail(prefix);
+        return prefix.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeline of one sampled key: when the master took it from the lister, submitted it to the job pool, when
+ * a thread started its job, every request the job made, and when the job finished. Times are in microseconds
+ * since the master took the key, and -1 for stages the key did not reach.
+ */
+public class KeyTrace {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // the trace of the job running on this thread, if it is sampled
+    private static final ThreadLocal<KeyTrace> CURRENT = new ThreadLocal<KeyTrace>();
+
+    /**
+     * A request made by the job, e.g. an S3 HEAD. Each try is a request of its own.
+     */
+    public static class Span {
+        @Getter
+        private final String store;
+        @Getter
+        private final String op;
+        @Getter
+        private final long start;
+        @Getter
+        private final long end;
+
+        public Span(String store, String op, long start, long end) {
+            this.store = store;
+            this.op = op;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    @Getter
+    private final String key;
+    // wall clock time the master took the key, for finding traces of a given run
+    @Getter
+    private final long time;
+    private final long startNanos;
+
+    @Getter
+    private long enqueued = -1;
+    @Getter
+    private long dequeued = -1;
+    @Getter
+    private long done = -1;
+    @Getter
+    private boolean failed = false;
+    @Getter
+    private final List<Span> spans;
+
+    /**
+     * @param startNanos value of System.nanoTime() when the master took the key from the lister
+     */
+    public KeyTrace(String key, long startNanos) {
+        this(key, System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), startNanos);
+    }
+
+    private KeyTrace(String key, long time, long startNanos) {
+        this.key = key;
+        this.time = time;
+        this.startNanos = startNanos;
+        this.spans = new ArrayList<Span>(4);
+    }
+
+    public static KeyTrace current() {
+        return CURRENT.get();
+    }
+
+    public static void setCurrent(KeyTrace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+    }
+
+    private long since(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos - startNanos);
+    }
+
+    public void enqueued() {
+        enqueued = since(System.nanoTime());
+    }
+
+    public void dequeued() {
+        dequeued = since(System.nanoTime());
+    }
+
+    public void done() {
+        done = since(System.nanoTime());
+    }
+
+    public void failed() {
+        failed = true;
+    }
+
+    /**
+     * Records a request of the job, from startNanos to endNanos, values of System.nanoTime().
+     */
+    public void span(String store, String op, long startNanos, long endNanos) {
+        spans.add(new Span(store, op, since(startNanos), since(endNanos)));
+    }
+
+    public String toJson() throws IOException {
+        final ObjectNode node = MAPPER.createObjectNode();
+        node.put("key", key);
+        node.put("time", time);
+        node.put("enqueued", enqueued);
+        node.put("dequeued", dequeued);
+        node.put("done", done);
+        if (failed) {
+            node.put("failed", true);
+        }
+        final ArrayNode requests = node.putArray("spans");
+        for (Span span : spans) {
+            final ArrayNode request = requests.addArray();
+            request.add(span.store);
+            request.add(span.op);
+            request.add(span.start);
+            request.add(span.end);
+        }
+        return MAPPER.writeValueAsString(node);
+    }
+
+    public static KeyTrace parse(String line) throws IOException {
+        final JsonNode node = MAPPER.readTree(line);
+        if (!node.has("key") || !node.has("spans")) {
+            throw new IOException("Not a key trace: " + line);
+        }
+        final KeyTrace trace = new KeyTrace(node.get("key").asText(), node.path("time").asLong(0), 0);
+        trace.enqueued = node.path("enqueued").asLong(-1);
+        trace.dequeued = node.path("dequeued").asLong(-1);
+        trace.done = node.path("done").asLong(-1);
+        trace.failed = node.path("failed").asBoolean(false);
+        for (JsonNode request : node.get("spans")) {
+            trace.spans.add(new Span(request.get(0).asText(), request.get(1).asText(), request.get(2).asLong(), request.get(3).asLong()));
+        }
+        return trace;
+    }
+
+}
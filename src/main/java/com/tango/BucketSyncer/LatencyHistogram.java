@@ -0,0 +1,167 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of request latencies in microseconds. Values are bucketed by power of two, and each power of
+ * two is split into SUB_BUCKETS linear buckets, so a quantile is reported within 1/SUB_BUCKETS (about 3%) of the
+ * recorded value. Recording is one increment of a bucket shared by few threads, so it is cheap enough to wrap every
+ * request. Histograms are merged by adding bucket counts, e.g. to combine the histograms of several stores.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 2^40 microseconds is about 12 days, anything slower is counted in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter sum = new StripedCounter();
+    private final AtomicLong max = new AtomicLong(0);
+
+    static int getBucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the highest value counted in a bucket
+     */
+    static long getBucketMax(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    public void record(long micros) {
+        counts.incrementAndGet(getBucket(micros));
+        count.increment();
+        sum.add(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Records the time since startNanos, a value of System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Adds the values recorded in another histogram to this one.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            final long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+                this.count.add(count);
+            }
+        }
+        sum.add(other.sum.get());
+        long current = max.get();
+        final long otherMax = other.max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the recorded values in microseconds
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the number of recorded values above the given value. Values in the bucket of the given value are not
+     * counted, so this is within one bucket of the exact count
+     */
+    public long getCountAbove(long value) {
+        long above = 0;
+        for (int i = getBucket(value) + 1; i < BUCKETS; i++) {
+            above += counts.get(i);
+        }
+        return above;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the latency in microseconds that the given fraction of the requests did not exceed, or 0 if none
+     * were recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getBucketMax(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static String formatMillis(long micros) {
+        return String.format("%.1fms", micros / 1000.0d);
+    }
+
+    public String toString() {
+        return "count=" + getCount()
+                + " p50=" + formatMillis(getValueAtQuantile(0.5))
+                + " p90=" + formatMillis(getValueAtQuantile(0.9))
+                + " p99=" + formatMillis(getValueAtQuantile(0.99))
+                + " p999=" + formatMillis(getValueAtQuantile(0.999))
+                + " max=" + formatMillis(getMax());
+    }
+
+}
@@ -0,0 +1,260 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sorted snapshot of the source listing (key, size, ETag, last-modified) kept on local disk between runs.
+ * While the source is listed, each key is diffed against the previous snapshot and written to the next one.
+ * Added or changed keys are handed to the copy master, removed keys to the delete master.
+ *
+ * The next snapshot only replaces the previous one when the run has completed. Keys that failed to copy or delete
+ * keep their previous record, so that the next run finds them changed or removed again.
+ */
+@Slf4j
+public class ListingSnapshot {
+
+    public static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String MAGIC = "BucketSyncerSnapshot1";
+
+    // removed keys waiting for the delete master
+    public static final int REMOVED_QUEUE_SIZE = 10000;
+
+    @Getter
+    private final File dir;
+    private final String identity;
+    private final File file;
+    private final File nextFile;
+    @Getter
+    private final int runCount;
+
+    private DestinationIndex.Cursor previous;
+    private DataOutputStream next;
+
+    private final BlockingQueue<DestinationIndex.Entry> removed;
+    @Getter
+    private volatile boolean finished = false;
+    @Getter
+    private volatile boolean failed = false;
+
+    private long listed = 0;
+    private long changed = 0;
+    private long removedCount = 0;
+
+    /**
+     * @param trackRemoved whether removed keys are queued for {@link #pollRemoved}
+     */
+    public ListingSnapshot(File dir, String identity, boolean trackRemoved) throws IOException {
+        this.dir = dir;
+        this.identity = identity;
+        this.file = new File(dir, SNAPSHOT_FILE);
+        this.nextFile = new File(dir, SNAPSHOT_FILE + ".next");
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create snapshot directory: " + dir);
+        }
+
+        int runCount = 0;
+        if (file.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                final String magic = in.readUTF();
+                final String snapshotIdentity = in.readUTF();
+                if (MAGIC.equals(magic) && identity.equals(snapshotIdentity)) {
+                    runCount = in.readInt();
+                    previous = new DestinationIndex.Cursor(file, true);
+                } else {
+                    log.warn("Ignoring snapshot in {}, it was written for {}", dir, snapshotIdentity);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        this.runCount = runCount;
+        this.removed = trackRemoved && hasPrevious() ? new ArrayBlockingQueue<DestinationIndex.Entry>(REMOVED_QUEUE_SIZE) : null;
+
+        next = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nextFile), 1 << 16));
+        writeHeader(next);
+    }
+
+    public boolean hasPrevious() {
+        return previous != null;
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeUTF(MAGIC);
+        out.writeUTF(identity);
+        out.writeInt(runCount + 1);
+    }
+
+    /**
+     * Records a listed source key in the next snapshot. Keys must be passed in listing order.
+     *
+     * @return true if the key was added or changed since the previous snapshot
+     */
+    public boolean diff(ObjectSummary summary) throws IOException, InterruptedException {
+        final long lastModified = summary.getLastModified() == null ? -1 : summary.getLastModified().getTime();
+        final DestinationIndex.Entry entry = new DestinationIndex.Entry(summary.getKey(), summary.getSize(), summary.getETag(), lastModified, -1);
+        entry.write(next);
+        listed++;
+
+        while (previous != null && previous.current != null) {
+            final int cmp = DestinationIndex.KEY_ORDER.compare(previous.current.getKey(), entry.getKey());
+            if (cmp > 0) {
+                break;
+            }
+            final DestinationIndex.Entry old = previous.current;
+            previous.advance();
+            if (cmp == 0) {
+                if (old.matches(summary)) {
+                    return false;
+                }
+                break;
+            }
+            remove(old);
+        }
+        changed++;
+        return true;
+    }
+
+    /**
+     * Called once the source listing is complete: every key left in the previous snapshot has been removed.
+     */
+    public void finish() throws IOException, InterruptedException {
+        try {
+            while (previous != null && previous.current != null) {
+                remove(previous.current);
+                previous.advance();
+            }
+            next.close();
+        } finally {
+            finished = true;
+        }
+        log.info("listing snapshot: {} keys listed, {} added or changed, {} removed", new Object[]{listed, changed, removedCount});
+    }
+
+    /**
+     * Called if the source listing did not complete. The next snapshot must not be committed.
+     */
+    public void markFailed() {
+        failed = true;
+        finished = true;
+    }
+
+    private void remove(DestinationIndex.Entry old) throws InterruptedException {
+        removedCount++;
+        if (removed != null) {
+            removed.put(old);
+        }
+    }
+
+    /**
+     * @return the next removed key, or null if none arrived within the timeout
+     */
+    public DestinationIndex.Entry pollRemoved(long timeoutMillis) throws InterruptedException {
+        return removed == null ? null : removed.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true once the listing is complete and every removed key has been handed out
+     */
+    public boolean isDrained() {
+        return finished && (removed == null || removed.isEmpty());
+    }
+
+    /**
+     * Replaces the previous snapshot with the next one. Keys that failed keep their previous record,
+     * or are left out if they had none.
+     */
+    public void commit(Set<String> failedKeys) throws IOException {
+        if (failed) {
+            throw new IllegalStateException("source listing did not complete, not committing snapshot");
+        }
+        close();
+        final File merged = new File(dir, SNAPSHOT_FILE + ".tmp");
+        final DestinationIndex.Cursor nextCursor = new DestinationIndex.Cursor(nextFile, true);
+        final DestinationIndex.Cursor previousCursor = hasPrevious() ? new DestinationIndex.Cursor(file, true) : null;
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), 1 << 16));
+            try {
+                writeHeader(out);
+                while (nextCursor.current != null || (previousCursor != null && previousCursor.current != null)) {
+                    final DestinationIndex.Entry fresh = nextCursor.current;
+                    final DestinationIndex.Entry old = previousCursor == null ? null : previousCursor.current;
+                    final int cmp = fresh == null ? 1 : old == null ? -1 : DestinationIndex.KEY_ORDER.compare(fresh.getKey(), old.getKey());
+                    final String key = cmp <= 0 ? fresh.getKey() : old.getKey();
+                    if (!failedKeys.contains(key)) {
+                        if (cmp <= 0) {
+                            fresh.write(out);
+                        }
+                    } else if (cmp >= 0) {
+                        old.write(out);
+                    }
+                    if (cmp <= 0) {
+                        nextCursor.advance();
+                    }
+                    if (cmp >= 0) {
+                        previousCursor.advance();
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            nextCursor.close();
+            if (previousCursor != null) {
+                previousCursor.close();
+            }
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace snapshot file: " + file);
+        }
+        if (!merged.renameTo(file)) {
+            throw new IOException("Cannot rename " + merged + " to " + file);
+        }
+        nextFile.delete();
+        log.info("listing snapshot in {} updated ({} failed keys kept for the next run)", dir, failedKeys.size());
+    }
+
+    /**
+     * Drops the next snapshot, leaving the previous one in place.
+     */
+    public void abandon() {
+        close();
+        nextFile.delete();
+    }
+
+    private void close() {
+        if (previous != null) {
+            previous.close();
+        }
+        try {
+            next.close();
+        } catch (IOException e) {
+            log.warn("Error closing snapshot file: {}", e);
+        }
+    }
+
+}
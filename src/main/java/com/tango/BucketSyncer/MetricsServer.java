@@ -0,0 +1,220 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Serves the stats of the current run in the Prometheus text format on /metrics. Every scrape formats the
+ * counters, histograms and rates as they are at that moment, so the jobs pay nothing for the endpoint.
+ */
+@Slf4j
+public class MetricsServer {
+
+    public static final String PATH = "/metrics";
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "bucketsyncer_";
+
+    private final MirrorContext context;
+    private final HttpServer server;
+
+    public MetricsServer(MirrorContext context, int port) throws IOException {
+        this.context = context;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metrics-server-%d").build()));
+        server.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    final byte[] body = format(MetricsServer.this.context).getBytes(MirrorConstants.UTF8);
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, body.length);
+                    final OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (RuntimeException e) {
+                    log.error("Unexpected exception formatting metrics: ", e);
+                    exchange.sendResponseHeaders(500, -1);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        log.info("serving metrics on port {} at {}", server.getAddress().getPort(), PATH);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private static void header(StringBuilder b, String name, String type, String help) {
+        b.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        b.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder b, String name, String labels, double value) {
+        b.append(PREFIX).append(name);
+        if (labels != null) {
+            b.append('{').append(labels).append('}');
+        }
+        b.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            b.append((long) value);
+        } else {
+            b.append(value);
+        }
+        b.append('\n');
+    }
+
+    private static void counter(StringBuilder b, String name, String help, double value) {
+        header(b, name, "counter", help);
+        sample(b, name, null, value);
+    }
+
+    private static void gauge(StringBuilder b, String name, String help, double value) {
+        header(b, name, "gauge", help);
+        sample(b, name, null, value);
+    }
+
+    static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    /**
+     * @return the metrics of the current run in the Prometheus text format
+     */
+    public static String format(MirrorContext context) {
+        final MirrorStats stats = context.getStats();
+        final StringBuilder b = new StringBuilder(8192);
+
+        counter(b, "objects_read_total", "Keys listed from the source.", stats.objectsRead.get());
+        counter(b, "objects_copied_total", "Keys copied to the destination.", stats.objectsCopied.get());
+        counter(b, "copy_errors_total", "Keys that failed to copy.", stats.copyErrors.get());
+        counter(b, "objects_deleted_total", "Keys deleted from the destination.", stats.objectsDeleted.get());
+        counter(b, "delete_errors_total", "Keys that failed to delete.", stats.deleteErrors.get());
+        counter(b, "bytes_copied_total", "Bytes copied to the destination.", stats.bytesCopied.get());
+        counter(b, "get_operations_total", "GET, HEAD and LIST requests.", stats.getCount.get());
+        counter(b, "copy_operations_total", "COPY, COPY_PART and PUT requests.", stats.copyCount.get());
+        counter(b, "delete_operations_total", "DELETE requests, single or batched.", stats.deleteCount.get());
+        counter(b, "acl_cache_hits_total", "ACL lookups answered by the ACL cache.", stats.aclCacheHits.get());
+        counter(b, "acl_cache_misses_total", "ACL lookups sent to the source.", stats.aclCacheMisses.get());
+        counter(b, "create_if_absent_writes_total", "Conditional writes of keys not yet in the destination.", stats.createIfAbsentWrites.get());
+        counter(b, "create_if_absent_conflicts_total", "Conditional writes of keys that already existed.", stats.createIfAbsentConflicts.get());
+        counter(b, "index_hits_total", "Unchanged keys found in the destination index.", stats.indexHits.get());
+        counter(b, "notification_messages_total", "Notification messages received.", stats.notificationMessages.get());
+        counter(b, "notification_events_total", "Events in the notification messages received.", stats.notificationEvents.get());
+        counter(b, "prefixes_skipped_total", "Unchanged prefixes skipped by their digest.", stats.prefixesSkipped.get());
+        counter(b, "prefix_keys_skipped_total", "Keys of the unchanged prefixes skipped.", stats.prefixKeysSkipped.get());
+        counter(b, "error_keys_total", "Keys that failed to copy or delete.", stats.errorKeys.get());
+        counter(b, "queue_full_waits_total", "Times a key waited for room in the work queue.", stats.queueFullWaits.get());
+        counter(b, "queue_full_wait_seconds_total", "Time keys waited for room in the work queue.", stats.queueFullWaitMillis.get() / 1000.0d);
+
+        header(b, "throttled_requests_total", "counter", "Requests throttled by each store, including those retried by the clients.");
+        for (String store : new String[]{MirrorConstants.S3, MirrorConstants.GCS}) {
+            sample(b, "throttled_requests_total", label("store", store), stats.getThrottled(store));
+        }
+
+        final Map<String, Long> retries = stats.getRetries();
+        header(b, "requests_total", "counter", "Requests sent to each store, by operation and billing class. A batch counts every call in it.");
+        for (Map.Entry<String, Long> entry : stats.getRequests().entrySet()) {
+            final String[] storeAndOp = entry.getKey().split(" ", 2);
+            sample(b, "requests_total", label("store", storeAndOp[0]) + "," + label("op", storeAndOp[1]) + ","
+                    + label("class", MirrorStats.getRequestClass(storeAndOp[1])), entry.getValue());
+        }
+        header(b, "retried_requests_total", "counter", "Requests sent again because an earlier try failed, by store and operation.");
+        for (Map.Entry<String, Long> entry : retries.entrySet()) {
+            final String[] storeAndOp = entry.getKey().split(" ", 2);
+            sample(b, "retried_requests_total", label("store", storeAndOp[0]) + "," + label("op", storeAndOp[1]), entry.getValue());
+        }
+        counter(b, "unchanged_key_requests_total", "Requests made for keys that turned out to be unchanged at the destination.", stats.unchangedRequests.get());
+        gauge(b, "requests_per_object_copied", "Requests sent to every store per key copied.", stats.getRequestsPerObjectCopied());
+
+        final ThreadPoolExecutor executor = context.getExecutor();
+        gauge(b, "work_queue_depth", "Jobs waiting for a thread.", executor == null ? 0 : executor.getQueue().size());
+        gauge(b, "active_threads", "Threads running a job.", executor == null ? 0 : executor.getActiveCount());
+        gauge(b, "pool_threads", "Threads in the job pool.", executor == null ? 0 : executor.getPoolSize());
+
+        final Map<String, LatencyHistogram> latencies = stats.getLatencies();
+        header(b, "request_latency_seconds", "summary", "Latency of the requests to each store, by operation.");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            final String[] storeAndOp = entry.getKey().split(" ", 2);
+            final String labels = label("store", storeAndOp[0]) + "," + label("op", storeAndOp[1]);
+            final LatencyHistogram histogram = entry.getValue();
+            for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                sample(b, "request_latency_seconds", labels + "," + label("quantile", String.valueOf(quantile)),
+                        histogram.getValueAtQuantile(quantile) / 1000000.0d);
+            }
+            sample(b, "request_latency_seconds_sum", labels, histogram.getSum() / 1000000.0d);
+            sample(b, "request_latency_seconds_count", labels, histogram.getCount());
+        }
+        header(b, "request_latency_max_seconds", "gauge", "Slowest request to each store, by operation.");
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            final String[] storeAndOp = entry.getKey().split(" ", 2);
+            sample(b, "request_latency_max_seconds", label("store", storeAndOp[0]) + "," + label("op", storeAndOp[1]),
+                    entry.getValue().getMax() / 1000000.0d);
+        }
+
+        final MirrorOptions options = context.getOptions();
+        header(b, "replication_lag_seconds", "summary", "Time from the last modification of a source object to the end of its copy, by key prefix.");
+        for (Map.Entry<String, LatencyHistogram> entry : stats.getLagByPrefix().entrySet()) {
+            final String labels = label("prefix", entry.getKey());
+            final LatencyHistogram histogram = entry.getValue();
+            for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+                sample(b, "replication_lag_seconds", labels + "," + label("quantile", String.valueOf(quantile)),
+                        histogram.getValueAtQuantile(quantile) / 1000.0d);
+            }
+            sample(b, "replication_lag_seconds_sum", labels, histogram.getSum() / 1000.0d);
+            sample(b, "replication_lag_seconds_count", labels, histogram.getCount());
+        }
+        gauge(b, "oldest_unmirrored_age_seconds", "Age of the oldest source object found to need a copy that is not copied yet.",
+                stats.getOldestUnmirroredAge() / 1000.0d);
+        if (options.hasLagSlo()) {
+            gauge(b, "replication_lag_slo_seconds", "Target replication lag.", options.getLagSlo());
+            counter(b, "replication_lag_slo_misses_total", "Copies that took longer than the target replication lag.",
+                    stats.getLag().getCountAbove(options.getLagSloMillis()));
+        }
+
+        header(b, "rate_per_second", "gauge", "Average rate over the last window, e.g. of bytes copied or S3 HEAD requests.");
+        for (Map.Entry<String, RateWindow> entry : stats.getRates().entrySet()) {
+            for (int i = 0; i < MirrorStats.RATE_WINDOWS.length; i++) {
+                sample(b, "rate_per_second", label("counter", entry.getKey()) + "," + label("window", MirrorStats.RATE_WINDOW_NAMES[i]),
+                        entry.getValue().getRate(MirrorStats.RATE_WINDOWS[i]));
+            }
+        }
+        return b.toString();
+    }
+
+}
@@ -36,9 +36,14 @@ public class MirrorConstants {
     public static final String MULTIPART_KEY_COPY_JOB = "MultipartKeyCopyJob";
     public static final String KEY_JOBS = "KeyJobs";
     public static final String KEY_DELETE_JOB = "KeyDeleteJob";
+    public static final String DELETE_BATCHER = "DeleteBatcher";
 
     public static final String GCS_CREDENTIAL_STORAGE_FILE = ".store/BucketSyncer";
 
+    // store names, as given to --src-store and --dest-store
+    public static final String S3 = "S3";
+    public static final String GCS = "GCS";
+
     public static final String S3_PROTOCOL_PREFIX = "s3://";
     public static final String SLASH = "/";
 
@@ -15,17 +15,99 @@
  */
 package com.tango.BucketSyncer;
 
-import lombok.AllArgsConstructor;
+import com.tango.BucketSyncer.KeyJobs.DeleteBatcher;
+import com.tango.BucketSyncer.KeyJobs.GCSMetadataBatcher;
+import com.tango.BucketSyncer.Notifications.NotificationBatch;
 import lombok.Getter;
 import lombok.Setter;
 
-@AllArgsConstructor
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
 public class MirrorContext {
 
     @Getter
     @Setter
     private MirrorOptions options;
     @Getter
-    private final MirrorStats stats = new MirrorStats();
+    private volatile MirrorStats stats = new MirrorStats();
+    @Getter
+    private final AclCache aclCache = new AclCache();
+    @Getter
+    private final CreateIfAbsentTracker createIfAbsentTracker = new CreateIfAbsentTracker();
+    // the pool running the jobs of the current run, null in between runs
+    @Getter
+    @Setter
+    private volatile ThreadPoolExecutor executor;
+    @Getter
+    @Setter
+    private volatile DeleteBatcher deleteBatcher;
+    @Getter
+    @Setter
+    private volatile GCSMetadataBatcher gcsMetadataBatcher;
+    @Getter
+    @Setter
+    private volatile DestinationIndex destinationIndex;
+    @Getter
+    @Setter
+    private volatile ListingSnapshot listingSnapshot;
+    // set for cycles that mirror the keys of received notifications instead of listing the buckets
+    @Getter
+    @Setter
+    private volatile NotificationBatch notificationBatch;
+    @Getter
+    @Setter
+    private volatile PrefixDigests prefixDigests;
+    @Getter
+    @Setter
+    private volatile RunJournal runJournal;
+    @Getter
+    @Setter
+    private volatile ErrorJournal errorJournal;
+    // set for runs that retry the keys of an error journal instead of listing the buckets
+    @Getter
+    @Setter
+    private volatile List<ErrorJournal.Entry> retryEntries;
+    // set while making a sync plan, which the jobs record what they would have done in
+    @Getter
+    @Setter
+    private volatile SyncPlan syncPlan;
+    // set while tracing a sample of the keys
+    @Getter
+    @Setter
+    private volatile TraceLog traceLog;
+    @Getter
+    @Setter
+    private volatile Watermark watermark;
+    // keys last modified before this are not listed, 0 if there is no cutoff
+    @Getter
+    @Setter
+    private volatile long listingCutoff;
+    // set while no more keys are to be submitted, until resumed
+    @Getter
+    @Setter
+    private volatile boolean paused;
+    // set once no more keys are to be submitted at all: the queued jobs finish and the run ends as incomplete
+    @Getter
+    @Setter
+    private volatile boolean draining;
+    // set while seeding a sparse destination: copy jobs skip the per-key comparison
+    @Getter
+    @Setter
+    private volatile boolean seeding;
+
+    public MirrorContext(MirrorOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Starts a new set of stats, e.g. for the next daemon cycle. Caches are kept.
+     */
+    public void resetStats() {
+        final MirrorStats next = new MirrorStats();
+        next.setSource(stats.getSource());
+        next.setDestination(stats.getDestination());
+        stats = next;
+    }
 
 }
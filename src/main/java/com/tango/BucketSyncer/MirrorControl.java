@@ -0,0 +1,227 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.args4j.Option;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Slf4j
+public class MirrorControl implements MirrorControlMBean {
+
+    public static final String OBJECT_NAME = "com.tango.BucketSyncer:type=MirrorControl";
+    private static final String MASKED = "********";
+
+    private final MirrorContext context;
+
+    public MirrorControl(MirrorContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Registers this MBean, replacing one registered by an earlier mirror in this JVM.
+     */
+    public void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            log.error("Cannot register {}: ", OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public long getObjectsRead() {
+        return context.getStats().objectsRead.get();
+    }
+
+    @Override
+    public long getObjectsCopied() {
+        return context.getStats().objectsCopied.get();
+    }
+
+    @Override
+    public long getCopyErrors() {
+        return context.getStats().copyErrors.get();
+    }
+
+    @Override
+    public long getObjectsDeleted() {
+        return context.getStats().objectsDeleted.get();
+    }
+
+    @Override
+    public long getDeleteErrors() {
+        return context.getStats().deleteErrors.get();
+    }
+
+    @Override
+    public long getBytesCopied() {
+        return context.getStats().bytesCopied.get();
+    }
+
+    @Override
+    public String getStats() {
+        return context.getStats().toString();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        final ThreadPoolExecutor executor = context.getExecutor();
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    @Override
+    public int getPoolThreads() {
+        final ThreadPoolExecutor executor = context.getExecutor();
+        return executor == null ? 0 : executor.getPoolSize();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        final ThreadPoolExecutor executor = context.getExecutor();
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedJobs() {
+        final ThreadPoolExecutor executor = context.getExecutor();
+        return executor == null ? 0 : executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getListingPages() {
+        return context.getStats().listingPages.get();
+    }
+
+    @Override
+    public String getListingMarker() {
+        return context.getStats().getListingMarker();
+    }
+
+    @Override
+    public double getReplicationLagP99Seconds() {
+        return context.getStats().getLag().getValueAtQuantile(0.99) / 1000.0d;
+    }
+
+    @Override
+    public double getOldestUnmirroredAgeSeconds() {
+        return context.getStats().getOldestUnmirroredAge() / 1000.0d;
+    }
+
+    /**
+     * @return the value of every option as "--name=value", credentials masked
+     */
+    @Override
+    public String[] getOptionValues() {
+        final MirrorOptions options = context.getOptions();
+        final List<String> values = new ArrayList<String>();
+        for (Field field : MirrorOptions.class.getDeclaredFields()) {
+            final Option option = field.getAnnotation(Option.class);
+            if (option == null) {
+                continue;
+            }
+            final String name = option.aliases().length > 0 ? option.aliases()[0] : option.name();
+            field.setAccessible(true);
+            Object value;
+            try {
+                value = field.get(options);
+            } catch (IllegalAccessException e) {
+                value = "?";
+            }
+            if (value != null && (field.getName().contains("Secret") || field.getName().contains("AccessKey"))) {
+                value = MASKED;
+            }
+            values.add(name + "=" + value);
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    @Override
+    public int getMaxThreads() {
+        return context.getOptions().getMaxThreads();
+    }
+
+    @Override
+    public void setMaxThreads(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Invalid max threads: " + maxThreads);
+        }
+        final ThreadPoolExecutor executor = context.getExecutor();
+        if (executor != null) {
+            // the core size may not exceed the maximum size at any point
+            if (maxThreads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(maxThreads);
+                executor.setCorePoolSize(maxThreads);
+            } else {
+                executor.setCorePoolSize(maxThreads);
+                executor.setMaximumPoolSize(maxThreads);
+            }
+        }
+        log.info("max threads changed from {} to {}", context.getOptions().getMaxThreads(), maxThreads);
+        context.getOptions().setMaxThreads(maxThreads);
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return context.getOptions().isVerbose();
+    }
+
+    @Override
+    public void setVerbose(boolean verbose) {
+        context.getOptions().setVerbose(verbose);
+    }
+
+    @Override
+    public boolean isPaused() {
+        return context.isPaused();
+    }
+
+    @Override
+    public void pause() {
+        log.info("pausing: no more keys are submitted until resumed");
+        context.setPaused(true);
+    }
+
+    @Override
+    public void resume() {
+        log.info("resuming");
+        context.setPaused(false);
+    }
+
+    @Override
+    public boolean isDraining() {
+        return context.isDraining();
+    }
+
+    @Override
+    public void drain() {
+        log.info("draining: no more keys are submitted, the run ends once the queued jobs are done");
+        context.setDraining(true);
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+/**
+ * Live state and runtime controls of a mirror, registered with the platform MBean server as
+ * com.tango.BucketSyncer:type=MirrorControl.
+ */
+public interface MirrorControlMBean {
+
+    long getObjectsRead();
+
+    long getObjectsCopied();
+
+    long getCopyErrors();
+
+    long getObjectsDeleted();
+
+    long getDeleteErrors();
+
+    long getBytesCopied();
+
+    String getStats();
+
+    int getActiveThreads();
+
+    int getPoolThreads();
+
+    int getQueueDepth();
+
+    long getCompletedJobs();
+
+    long getListingPages();
+
+    String getListingMarker();
+
+    double getReplicationLagP99Seconds();
+
+    double getOldestUnmirroredAgeSeconds();
+
+    String[] getOptionValues();
+
+    int getMaxThreads();
+
+    /**
+     * Resizes the job pool of the current run, and of the runs after it.
+     */
+    void setMaxThreads(int maxThreads);
+
+    boolean isVerbose();
+
+    void setVerbose(boolean verbose);
+
+    boolean isPaused();
+
+    /**
+     * Stops submitting keys to the job pool. Jobs already queued keep running.
+     */
+    void pause();
+
+    void resume();
+
+    boolean isDraining();
+
+    /**
+     * Stops listing and submitting keys, lets the queued jobs finish and ends the run as incomplete, so that
+     * nothing is committed that assumes every key was mirrored. A daemon stops after the run.
+     */
+    void drain();
+
+}
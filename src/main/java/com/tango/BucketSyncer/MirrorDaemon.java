@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs mirror cycles until stopped, keeping the clients, caches and JVM of the first cycle warm.
+ * Cycles never overlap. The wait between cycles doubles while cycles find nothing to do,
+ * and drops back to --interval as soon as one does.
+ */
+@Slf4j
+public class MirrorDaemon {
+
+    // shortest wait after an idle cycle when running continuously
+    public static final long MIN_IDLE_WAIT = TimeUnit.SECONDS.toMillis(1);
+
+    private final MirrorMaster master;
+    private final MirrorContext context;
+
+    private volatile boolean stopping = false;
+    private volatile Thread thread;
+
+    public MirrorDaemon(MirrorMaster master, MirrorContext context) {
+        this.master = master;
+        this.context = context;
+    }
+
+    public void run() {
+        final MirrorOptions options = context.getOptions();
+        final long interval = TimeUnit.SECONDS.toMillis(options.getInterval());
+        final long maxInterval = Math.max(interval, TimeUnit.SECONDS.toMillis(options.getMaxInterval()));
+        thread = Thread.currentThread();
+
+        long wait = interval;
+        int cycle = 0;
+        while (!stopping) {
+            final long start = System.currentTimeMillis();
+            cycle++;
+            log.info("daemon: starting cycle {}", cycle);
+            context.resetStats();
+            options.refreshMaxAge();
+
+            master.mirror();
+
+            final MirrorStats stats = context.getStats();
+            stats.logStats();
+            stats.generateReport();
+            if (stopping) {
+                break;
+            }
+            if (context.isDraining()) {
+                log.info("daemon: drained, stopping");
+                break;
+            }
+
+            final long changes = stats.objectsCopied.get() + stats.objectsDeleted.get() + stats.copyErrors.get() + stats.deleteErrors.get();
+            // notifications are cheap to poll for, and the point of them is to mirror changes quickly
+            wait = options.hasNotifications() ? interval : nextWait(wait, changes > 0, interval, maxInterval);
+            final long sleep = wait - (System.currentTimeMillis() - start);
+            log.info("daemon: cycle {} done with {} changes, next cycle in {} seconds", new Object[]{cycle, changes, Math.max(sleep, 0) / 1000});
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        log.info("daemon: stopped after {} cycles", cycle);
+    }
+
+    /**
+     * Stops after the current cycle, interrupting it, and waits for that.
+     */
+    public void stop(long timeoutMillis) {
+        stopping = true;
+        final Thread thread = this.thread;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                log.warn("interrupted while waiting for daemon to stop");
+            }
+        }
+    }
+
+    static long nextWait(long wait, boolean changed, long interval, long maxInterval) {
+        if (changed) {
+            return interval;
+        }
+        return Math.min(Math.max(wait * 2, MIN_IDLE_WAIT), maxInterval);
+    }
+
+}
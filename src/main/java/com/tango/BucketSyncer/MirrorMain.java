@@ -26,6 +26,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.kohsuke.args4j.CmdLineParser;
 
 import java.io.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides the "main" method. Responsible for parsing options and setting up the MirrorMaster to manage the copy.
@@ -70,6 +71,25 @@ public class MirrorMain {
 
     private static final String TITLE_BANNER = "   ***************   ";
 
+    private MirrorDaemon daemon;
+
+    private MetricsServer metricsServer;
+
+    // time a daemon gets to stop its masters and save its state on shutdown
+    private static final long DAEMON_STOP_TIMEOUT = 3 * TimeUnit.SECONDS.toMillis(KeyMaster.STOP_TIMEOUT_SECONDS);
+
+    private final Thread shutdownHook = new Thread() {
+        @Override
+        public void run() {
+            if (daemon != null) {
+                // the daemon reports the stats of every cycle itself, including the interrupted one
+                daemon.stop(DAEMON_STOP_TIMEOUT);
+            } else {
+                context.getStats().getShutdownHook().run();
+            }
+        }
+    };
+
 
     public MirrorMain(String[] args) {
         this.args = args;
@@ -82,7 +102,31 @@ public class MirrorMain {
 
     public void run() {
         init();
-        master.mirror();
+        if (options.hasMetricsPort()) {
+            startMetricsServer();
+        }
+        try {
+            if (options.isDaemon()) {
+                daemon = new MirrorDaemon(master, context);
+                daemon.run();
+            } else {
+                master.mirror();
+            }
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+    }
+
+    private void startMetricsServer() {
+        try {
+            metricsServer = new MetricsServer(context, options.getMetricsPort());
+            metricsServer.start();
+        } catch (IOException e) {
+            // the mirror matters more than its metrics
+            log.error("Cannot serve metrics on port {}: ", options.getMetricsPort(), e);
+        }
     }
 
     public void init() {
@@ -104,8 +148,9 @@ public class MirrorMain {
 
             destClient = getDestClient(options);
             master = new MirrorMaster(sourceClient, destClient, context);
+            master.registerMBean();
 
-            Runtime.getRuntime().addShutdownHook(context.getStats().getShutdownHook());
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
             Thread.setDefaultUncaughtExceptionHandler(uncaughtExceptionHandler);
         }
 
@@ -16,7 +16,22 @@
  */
 package com.tango.BucketSyncer;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.tango.BucketSyncer.KeyJobs.GCSMetadataBatcher;
+import com.tango.BucketSyncer.KeyListers.KeyLister;
+import com.tango.BucketSyncer.Notifications.NotificationBatch;
+import com.tango.BucketSyncer.Notifications.NotificationMessage;
+import com.tango.BucketSyncer.Notifications.NotificationSource;
+import com.tango.BucketSyncer.Notifications.SpoolNotificationSource;
+import com.tango.BucketSyncer.Notifications.SqsNotificationSource;
 import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 
 /**
@@ -31,6 +46,12 @@ public class MirrorMaster {
     private final Object sourceClient;
     private final Object destClient;
 
+    // kept across daemon cycles
+    private NotificationSource notificationSource;
+    private int notificationRuns = 0;
+    // only the first run resumes the journal
+    private boolean journalOpened = false;
+
     public MirrorMaster(Object sourceClient, Object destClient, MirrorContext context) {
         this.sourceClient = sourceClient;
         this.destClient = destClient;
@@ -38,6 +59,31 @@ public class MirrorMaster {
     }
 
     public void mirror() {
+        final MirrorOptions options = context.getOptions();
+        if (!options.hasLockFile()) {
+            runMirror();
+            return;
+        }
+
+        final RunLock lock;
+        try {
+            lock = RunLock.tryAcquire(new File(options.getLockFile()));
+        } catch (IOException e) {
+            log.error("Cannot lock {}, not mirroring: ", options.getLockFile(), e);
+            return;
+        }
+        if (lock == null) {
+            log.warn("{} is locked by another mirror, skipping this run", options.getLockFile());
+            return;
+        }
+        try {
+            runMirror();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void runMirror() {
 
         log.info("version " + VERSION + " starting");
 
@@ -47,32 +93,97 @@ public class MirrorMaster {
             log.info("will not copy anything older than {} (cutoff = {})", options.getCtime(), options.getMaxAgeDate());
         }
 
-        final int maxQueueCapacity = getMaxQueueCapacity(options);
-        final BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(maxQueueCapacity);
-        final RejectedExecutionHandler rejectedExecutionHandler = new RejectedExecutionHandler() {
-            @Override
-            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                log.error("Error submitting job: {}, possible queue overflow", r);
+        NotificationBatch notifications = null;
+        if (options.hasNotifications()) {
+            notifications = receiveNotifications(options);
+            if (notifications == null) {
+                return;
             }
-        };
+            notificationRuns++;
+            final int every = options.getNotificationReconcileEvery();
+            if (every > 0 && notificationRuns % every == 0) {
+                // the notifications received so far are covered by this listing
+                log.info("listing the buckets to reconcile notifications (run #{})", notificationRuns);
+            } else if (notifications.getKeyCount() == 0) {
+                acknowledgeNotifications(notifications, true);
+                return;
+            } else {
+                context.setNotificationBatch(notifications);
+            }
+        }
+        final boolean notified = context.getNotificationBatch() != null;
 
-        final ThreadPoolExecutor executorService = new ThreadPoolExecutor(options.getMaxThreads(),
-                options.getMaxThreads(),
-                1,
-                TimeUnit.MINUTES,
-                workQueue,
-                rejectedExecutionHandler);
+        if (options.hasRetryErrors()) {
+            final List<ErrorJournal.Entry> retries = readRetries(options);
+            if (retries == null) {
+                return;
+            }
+            context.setRetryEntries(retries);
+        }
+        final boolean retrying = context.getRetryEntries() != null;
+        // whether the keys come from listing the buckets
+        final boolean listing = !notified && !retrying && !options.hasApply();
+
+        if (!options.isDryRun()) {
+            context.setErrorJournal(openErrorJournal(options));
+        }
+        if (options.hasPlan()) {
+            context.setSyncPlan(openPlan(options));
+            if (context.getSyncPlan() == null) {
+                return;
+            }
+        }
+
+        // decided again for every run, a seeding listing run must not leave later daemon runs seeding
+        context.setSeeding(false);
+        if (options.isSeed() && listing) {
+            context.setSeeding(isSparseDestination(options));
+            if (context.isSeeding()) {
+                log.info("destination is sparse, seeding without per-key comparison");
+            } else {
+                log.info("destination holds {} or more keys, not seeding", options.getSeedSampleSize());
+            }
+        }
+
+        if (options.hasIndex()) {
+            context.setDestinationIndex(openIndex(options));
+        }
+        if (options.hasSnapshot() && listing) {
+            context.setListingSnapshot(openSnapshot(options));
+        }
+        if (options.hasPrefixDigests() && listing) {
+            context.setPrefixDigests(openPrefixDigests(options));
+        }
+        if (listing) {
+            context.setListingCutoff(getListingCutoff(options));
+            if (options.hasJournal() && !options.isDryRun()) {
+                context.setRunJournal(openJournal(options));
+            }
+        }
+
+        if (options.hasTrace()) {
+            context.setTraceLog(openTraceLog(options));
+        }
+
+        final BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(getMaxQueueCapacity(options));
+        final ThreadPoolExecutor executorService = newExecutorService(options, workQueue);
+        context.setExecutor(executorService);
 
 
         final KeyMaster copyMaster = new CopyMaster(sourceClient, destClient, workQueue, executorService, context);
 
 
         KeyMaster deleteMaster = null;
+        boolean completed = false;
+        final long listingStart = System.currentTimeMillis();
+        final ScheduledExecutorService rateSampler = startRateSampler();
+        final ProgressReporter progress = startProgressReporter(options, rateSampler);
 
         try {
             copyMaster.start();
 
-            if (context.getOptions().isDeleteRemoved()) {
+            if (context.getOptions().isDeleteRemoved() || options.hasApply()
+                    || (retrying && !ErrorJournal.getRetries(context.getRetryEntries(), ErrorJournal.OP_DELETE).isEmpty())) {
                 deleteMaster = new DeleteMaster(sourceClient, destClient, context, workQueue, executorService);
                 deleteMaster.start();
             }
@@ -83,14 +194,29 @@ public class MirrorMaster {
                     break;
                 }
 
-                // sleep 10 seconds before re-checking the status
-                if (Sleep.sleep(10000))
+                // sleep 10 seconds before re-checking the status, or much less for the few keys of a notification or retry run
+                if (Sleep.sleep(listing ? 10000 : 100))
                     return;
             }
 
+            if (context.isDraining()) {
+                log.info("mirror: drained before every key was processed, the run is incomplete");
+                return;
+            }
+            if ((context.isSeeding() || (isIndexReconcileRun(options) && listing)) && !reconcile()) {
+                log.info("mirror: reconciliation pass did not finish, the run is incomplete");
+                return;
+            }
+            completed = true;
+
         } catch (Exception e) {
             log.error("Unexpected exception in mirror: ", e);
         } finally {
+            rateSampler.shutdownNow();
+            if (progress != null) {
+                progress.report();
+            }
+            context.setExecutor(null);
             try {
                 copyMaster.stop();
             } catch (Exception e) {
@@ -104,7 +230,536 @@ public class MirrorMaster {
                     log.error("Error stopping deleteMaster: ", e);
                 }
             }
+
+            final GCSMetadataBatcher metadataBatcher = context.getGcsMetadataBatcher();
+            if (metadataBatcher != null) {
+                metadataBatcher.close();
+                context.setGcsMetadataBatcher(null);
+            }
+
+            closeSnapshot(completed);
+            closePrefixDigests(completed);
+            closeWatermark(completed, listingStart);
+            closePlan(completed);
+
+            final RunJournal journal = context.getRunJournal();
+            if (journal != null) {
+                context.setRunJournal(null);
+                journal.close(completed);
+            }
+
+            if (notifications != null) {
+                context.setNotificationBatch(null);
+                acknowledgeNotifications(notifications, completed);
+            }
+
+            final DestinationIndex index = context.getDestinationIndex();
+            if (index != null) {
+                context.setDestinationIndex(null);
+                try {
+                    index.close();
+                } catch (Exception e) {
+                    log.error("Error updating index in {}: ", index.getDir(), e);
+                }
+            }
+
+            context.setRetryEntries(null);
+            closeErrorJournal();
+            closeTraceLog();
+            reportLag();
+            writeRunReport(completed);
+        }
+    }
+
+    private void writeRunReport(boolean completed) {
+        final MirrorOptions options = context.getOptions();
+        if (!options.hasRunReport()) {
+            return;
+        }
+        try {
+            RunReport.write(context, completed, new File(options.getRunReport()));
+        } catch (Exception e) {
+            log.error("Cannot write run report {}: ", options.getRunReport(), e);
+        }
+    }
+
+    private void reportLag() {
+        final MirrorOptions options = context.getOptions();
+        final MirrorStats stats = context.getStats();
+        if (!options.hasLagSlo()) {
+            return;
+        }
+        final long slo = options.getLagSloMillis();
+        final long misses = stats.getLag().getCountAbove(slo);
+        final long oldest = stats.getOldestUnmirroredAge();
+        if (misses > 0 || oldest > slo) {
+            log.warn("replication lag missed the {}s target: {} of {} copies took longer, oldest unmirrored object is {}s old",
+                    new Object[]{options.getLagSlo(), misses, stats.getLag().getCount(), oldest / MirrorStats.SECOND});
+        } else {
+            log.info("replication lag met the {}s target: {}", options.getLagSlo(), MirrorStats.formatLag(stats.getLag()));
+        }
+    }
+
+    private SyncPlan openPlan(MirrorOptions options) {
+        try {
+            return new SyncPlan(new File(options.getPlan()), getIdentity(options));
+        } catch (IOException e) {
+            log.error("Cannot write plan {}, not planning: ", options.getPlan(), e);
+            return null;
+        }
+    }
+
+    private void closePlan(boolean completed) {
+        final SyncPlan plan = context.getSyncPlan();
+        if (plan == null) {
+            return;
+        }
+        context.setSyncPlan(null);
+        if (!completed) {
+            log.info("mirror did not complete, keeping previous plan in {}", plan.getFile());
+            plan.abandon();
+            return;
+        }
+        try {
+            plan.commit();
+            log.info("planned {} copies ({} bytes) and {} deletes in {}, {} keys are in sync",
+                    new Object[]{plan.getCopies(), plan.getCopyBytes(), plan.getDeletes(), plan.getFile(), plan.getSkips()});
+        } catch (Exception e) {
+            log.error("Error writing plan {}: ", plan.getFile(), e);
+        }
+    }
+
+    private List<ErrorJournal.Entry> readRetries(MirrorOptions options) {
+        try {
+            final List<ErrorJournal.Entry> retries = ErrorJournal.read(new File(options.getRetryErrors()));
+            log.info("retrying {} failed keys recorded in {}", retries.size(), options.getRetryErrors());
+            return retries;
+        } catch (IOException e) {
+            log.error("Cannot read error journal {}, not retrying: ", options.getRetryErrors(), e);
+            return null;
+        }
+    }
+
+    private ErrorJournal openErrorJournal(MirrorOptions options) {
+        try {
+            if (!options.hasErrorJournal()) {
+                return ErrorJournal.temporary();
+            }
+            final ErrorJournal journal = new ErrorJournal(new File(options.getErrorJournal()));
+            context.getStats().setErrorKeyFile(journal.getFile().getPath());
+            return journal;
+        } catch (IOException e) {
+            log.error("Cannot open error journal, only the first {} failed keys are known: ", MirrorStats.ERROR_KEY_SAMPLE, e);
+            return null;
+        }
+    }
+
+    private void closeErrorJournal() {
+        final ErrorJournal journal = context.getErrorJournal();
+        if (journal == null) {
+            return;
+        }
+        context.setErrorJournal(null);
+        journal.close();
+        final long errorKeys = context.getStats().errorKeys.get();
+        if (errorKeys > 0 && context.getOptions().hasErrorJournal()) {
+            log.info("{} keys failed, they are recorded in {} for {}", new Object[]{errorKeys, journal.getFile(), MirrorOptions.LONGOPT_RETRY_ERRORS});
+        }
+    }
+
+    private TraceLog openTraceLog(MirrorOptions options) {
+        try {
+            log.info("tracing one key in {} to {}", options.getTraceSample(), options.getTrace());
+            return new TraceLog(new File(options.getTrace()), options.getTraceSample());
+        } catch (IOException e) {
+            log.error("Cannot open trace log {}, not tracing: ", options.getTrace(), e);
+            return null;
+        }
+    }
+
+    private void closeTraceLog() {
+        final TraceLog traceLog = context.getTraceLog();
+        if (traceLog != null) {
+            context.setTraceLog(null);
+            traceLog.close();
+        }
+    }
+
+    private DestinationIndex openIndex(MirrorOptions options) {
+        try {
+            final DestinationIndex index = new DestinationIndex(new File(options.getIndex()), getIdentity(options));
+            log.info("using index in {} (run #{})", options.getIndex(), index.getRunCount() + 1);
+            return index;
+        } catch (IOException e) {
+            log.error("Cannot open index in {}, comparing every key: ", options.getIndex(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the watermark, if any, and works out the oldest last-modified time worth listing.
+     *
+     * @return the cutoff, or 0 to list every key
+     */
+    private long getListingCutoff(MirrorOptions options) {
+        long cutoff = options.hasCtime() ? options.getMaxAge() : 0;
+        if (options.hasWatermark()) {
+            try {
+                final Watermark watermark = new Watermark(new File(options.getWatermark()), getIdentity(options));
+                context.setWatermark(watermark);
+                if (watermark.hasPrevious()) {
+                    final long overlap = TimeUnit.SECONDS.toMillis(options.getWatermarkOverlap());
+                    cutoff = Math.max(cutoff, watermark.getPrevious() - overlap);
+                    log.info("listing keys modified since {} (watermark in {} is {})", new Object[]{new Date(cutoff), options.getWatermark(), new Date(watermark.getPrevious())});
+                } else {
+                    log.info("no previous watermark in {}, listing every key", options.getWatermark());
+                }
+            } catch (IOException e) {
+                log.error("Cannot read watermark in {}, listing every key: ", options.getWatermark(), e);
+            }
+        }
+        return cutoff;
+    }
+
+    private void closeWatermark(boolean completed, long listingStart) {
+        context.setListingCutoff(0);
+        final Watermark watermark = context.getWatermark();
+        if (watermark == null) {
+            return;
+        }
+        context.setWatermark(null);
+        if (!completed || context.getOptions().isDryRun() || !watermark.isFinished()) {
+            log.info("mirror did not complete, keeping previous watermark in {}", watermark.getFile());
+            return;
+        }
+        final RunJournal journal = context.getRunJournal();
+        if (journal != null && journal.isResumed()) {
+            // keys finished before the run was resumed were not listed, nor changes made to them since
+            log.info("resumed run, keeping previous watermark in {}", watermark.getFile());
+            return;
+        }
+        if (context.getStats().copyErrors.get() > 0) {
+            // the keys that failed are listed again next run
+            log.info("{} keys failed to copy, keeping previous watermark in {}", context.getStats().copyErrors.get(), watermark.getFile());
+            return;
+        }
+        try {
+            watermark.commit(listingStart);
+        } catch (Exception e) {
+            log.error("Error updating watermark in {}: ", watermark.getFile(), e);
+        }
+    }
+
+    private RunJournal openJournal(MirrorOptions options) {
+        final boolean resume = options.isResume() && !journalOpened;
+        journalOpened = true;
+        try {
+            final RunJournal journal = new RunJournal(new File(options.getJournal()), getIdentity(options), resume);
+            if (journal.isResumed()) {
+                log.info("resuming the run journaled in {}", journal.getFile());
+            } else if (resume) {
+                log.info("no run to resume in {}, starting a new one", options.getJournal());
+            }
+            return journal;
+        } catch (IOException e) {
+            log.error("Cannot open run journal in {}, not journaling: ", options.getJournal(), e);
+            return null;
+        }
+    }
+
+    private ListingSnapshot openSnapshot(MirrorOptions options) {
+        try {
+            final ListingSnapshot snapshot = new ListingSnapshot(new File(options.getSnapshot()), getIdentity(options), options.isDeleteRemoved());
+            if (snapshot.hasPrevious()) {
+                log.info("diffing source listing against snapshot in {} (run #{})", options.getSnapshot(), snapshot.getRunCount() + 1);
+            } else {
+                log.info("no previous snapshot in {}, comparing every key", options.getSnapshot());
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.error("Cannot open snapshot in {}, comparing every key: ", options.getSnapshot(), e);
+            return null;
+        }
+    }
+
+    private void closeSnapshot(boolean completed) {
+        final ListingSnapshot snapshot = context.getListingSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+        context.setListingSnapshot(null);
+        final MirrorOptions options = context.getOptions();
+        if (!completed || options.isDryRun() || snapshot.isFailed()) {
+            log.info("mirror did not complete, keeping previous snapshot in {}", snapshot.getDir());
+            snapshot.abandon();
+            return;
+        }
+
+        final Set<String> failedKeys;
+        try {
+            failedKeys = getFailedSourceKeys();
+        } catch (IOException e) {
+            log.error("Cannot read the keys that failed, keeping previous snapshot in {}: ", snapshot.getDir(), e);
+            snapshot.abandon();
+            return;
+        }
+        try {
+            snapshot.commit(failedKeys);
+        } catch (Exception e) {
+            log.error("Error updating snapshot in {}: ", snapshot.getDir(), e);
+        }
+    }
+
+    private PrefixDigests openPrefixDigests(MirrorOptions options) {
+        try {
+            final PrefixDigests digests = new PrefixDigests(new File(options.getPrefixDigests()), getIdentity(options),
+                    options.getPrefix(), options.getPrefixDigestDepth());
+            if (!digests.hasPrevious()) {
+                log.info("no previous prefix digests in {}, comparing every key", options.getPrefixDigests());
+            }
+            return digests;
+        } catch (IOException e) {
+            log.error("Cannot open prefix digests in {}, comparing every key: ", options.getPrefixDigests(), e);
+            return null;
+        }
+    }
+
+    private void closePrefixDigests(boolean completed) {
+        final PrefixDigests digests = context.getPrefixDigests();
+        if (digests == null) {
+            return;
+        }
+        context.setPrefixDigests(null);
+        if (!completed || context.getOptions().isDryRun() || !digests.isFinished() || digests.isFailed()) {
+            log.info("mirror did not complete, keeping previous prefix digests in {}", digests.getDir());
+            return;
+        }
+        try {
+            digests.commit(getFailedSourceKeys());
+        } catch (Exception e) {
+            log.error("Error updating prefix digests in {}: ", digests.getDir(), e);
+        }
+    }
+
+    /**
+     * @return the source keys of the keys that failed to copy or delete
+     */
+    private Set<String> getFailedSourceKeys() throws IOException {
+        final MirrorOptions options = context.getOptions();
+        final ErrorJournal journal = context.getErrorJournal();
+        final Set<String> errorKeys;
+        if (journal != null) {
+            errorKeys = journal.getFailedKeys();
+        } else {
+            final MirrorStats stats = context.getStats();
+            if (stats.errorKeys.get() > stats.errorKeyList.size()) {
+                throw new IOException("no error journal, " + stats.errorKeys + " failed keys are not known");
+            }
+            synchronized (stats.errorKeyList) {
+                errorKeys = new HashSet<String>(stats.errorKeyList);
+            }
+        }
+        // failed keys are recorded under their source key by copies, and their destination key by deletes
+        final Set<String> failedKeys = new HashSet<String>();
+        for (String key : errorKeys) {
+            failedKeys.add(key);
+            if (options.hasDestPrefix() && key.startsWith(options.getDestPrefix())) {
+                failedKeys.add((options.hasPrefix() ? options.getPrefix() : "") + key.substring(options.getDestPrefixLength()));
+            }
+        }
+        return failedKeys;
+    }
+
+    private NotificationBatch receiveNotifications(MirrorOptions options) {
+        if (notificationSource == null) {
+            notificationSource = options.hasNotificationQueue()
+                    ? new SqsNotificationSource(options)
+                    : new SpoolNotificationSource(new File(options.getNotificationSpool()));
+        }
+        final NotificationBatch batch = new NotificationBatch(options.getSourceBucket(), options.getPrefix());
+        try {
+            for (NotificationMessage message : notificationSource.receive(NotificationBatch.MAX_MESSAGES)) {
+                batch.add(message);
+            }
+        } catch (IOException e) {
+            log.error("Cannot receive notifications, not mirroring: ", e);
+            return null;
+        }
+        context.getStats().notificationMessages.add(batch.getMessageCount());
+        context.getStats().notificationEvents.add(batch.getEventCount());
+        log.info("received {} notifications for {} keys", batch.getMessageCount(), batch.getKeyCount());
+        return batch;
+    }
+
+    /**
+     * Acknowledges the notifications whose keys were all mirrored. The others are received again in a later run.
+     */
+    private void acknowledgeNotifications(NotificationBatch notifications, boolean completed) {
+        final MirrorOptions options = context.getOptions();
+        if (!completed || options.isDryRun()) {
+            log.info("mirror did not complete, keeping {} notifications", notifications.getMessageCount());
+            return;
+        }
+        try {
+            final List<NotificationMessage> mirrored = notifications.getMirrored(getFailedSourceKeys());
+            if (mirrored.size() < notifications.getMessageCount()) {
+                log.info("keeping {} notifications of keys that failed to mirror", notifications.getMessageCount() - mirrored.size());
+            }
+            notificationSource.acknowledge(mirrored);
+        } catch (Exception e) {
+            log.error("Error acknowledging notifications, they will be mirrored again: ", e);
+        }
+    }
+
+    static String getIdentity(MirrorOptions options) {
+        return String.format("%s:%s/%s -> %s:%s/%s",
+                options.getSrcStore(), options.getSourceBucket(), options.hasPrefix() ? options.getPrefix() : "",
+                options.getDestStore(), options.getDestinationBucket(), options.hasDestPrefix() ? options.getDestPrefix() : "");
+    }
+
+    private boolean isIndexReconcileRun(MirrorOptions options) {
+        final DestinationIndex index = context.getDestinationIndex();
+        final int every = options.getIndexReconcileEvery();
+        return index != null && every > 0 && (index.getRunCount() + 1) % every == 0;
+    }
+
+    /**
+     * Copies whatever the run missed or skipped because the destination changed, found by comparing
+     * the source and destination listings.
+     *
+     * @return false if the pass was interrupted or drained before it finished
+     */
+    private boolean reconcile() {
+        log.info("mirror: starting reconciliation pass");
+        final MirrorOptions options = context.getOptions();
+        final BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(getMaxQueueCapacity(options));
+        final ThreadPoolExecutor executorService = newExecutorService(options, workQueue);
+        final KeyMaster reconcileMaster = new ReconcileMaster(sourceClient, destClient, workQueue, executorService, context);
+        // so the thread metrics and --max-threads changes cover the reconciliation jobs
+        final ThreadPoolExecutor copyExecutor = context.getExecutor();
+        context.setExecutor(executorService);
+        try {
+            reconcileMaster.start();
+            while (!reconcileMaster.isDone()) {
+                if (Sleep.sleep(10000))
+                    return false;
+            }
+            if (context.isDraining()) {
+                return false;
+            }
+            log.info("mirror: reconciliation pass completed");
+            return true;
+        } finally {
+            context.setExecutor(copyExecutor);
+            try {
+                reconcileMaster.stop();
+            } catch (Exception e) {
+                log.error("Error stopping reconcileMaster: ", e);
+            }
+        }
+    }
+
+    /**
+     * Lists a sample of the destination. It is sparse if the listing ends before the sample is full.
+     */
+    private boolean isSparseDestination(MirrorOptions options) {
+        final int sampleSize = options.getSeedSampleSize();
+        final long objectsRead = context.getStats().objectsRead.get();
+        final KeyLister lister = KeyLister.forStore(options.getDestStore(),
+                destClient,
+                options.getDestinationBucket(),
+                options.hasDestPrefix() ? options.getDestPrefix() : options.getPrefix(),
+                context,
+                sampleSize);
+        final Thread thread = new Thread(lister, "seed-sample-lister");
+        int sampled = 0;
+        try {
+            thread.start();
+            while (sampled < sampleSize) {
+                final boolean listerDone = lister.isDone();
+                sampled += lister.getNextBatch().size();
+                if (listerDone || Sleep.sleep(50)) {
+                    break;
+                }
+            }
+        } finally {
+            thread.interrupt();
+            // the sample is not part of the mirror
+            context.getStats().objectsRead.add(objectsRead - context.getStats().objectsRead.get());
+        }
+        return sampled < sampleSize;
+    }
+
+    private ScheduledExecutorService startRateSampler() {
+        final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("rate-sampler-%d").build());
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    context.getStats().sampleRates();
+                    final ThreadPoolExecutor executor = context.getExecutor();
+                    if (executor != null) {
+                        context.getStats().sampleConcurrency(executor.getActiveCount(), executor.getPoolSize(), executor.getQueue().size());
+                    }
+                } catch (Exception e) {
+                    log.error("Unexpected exception sampling rates: ", e);
+                }
+            }
+        }, 0, 1, TimeUnit.SECONDS);
+        return sampler;
+    }
+
+    /**
+     * Schedules progress reports on the rate sampler, which keeps the rates they read up to date.
+     *
+     * @return the reporter, or null if progress is not reported
+     */
+    private ProgressReporter startProgressReporter(MirrorOptions options, ScheduledExecutorService sampler) {
+        if (options.getProgressInterval() == 0) {
+            return null;
         }
+        final ProgressReporter progress = new ProgressReporter(context, options.hasProgressFile() ? new File(options.getProgressFile()) : null,
+                options.getExpectedObjects(), options.getExpectedBytes());
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    progress.report();
+                } catch (Exception e) {
+                    log.error("Unexpected exception reporting progress: ", e);
+                }
+            }
+        }, options.getProgressInterval(), options.getProgressInterval(), TimeUnit.SECONDS);
+        return progress;
+    }
+
+    private ThreadPoolExecutor newExecutorService(MirrorOptions options, BlockingQueue<Runnable> workQueue) {
+        final RejectedExecutionHandler rejectedExecutionHandler = new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                log.error("Error submitting job: {}, possible queue overflow", r);
+            }
+        };
+
+        // while seeding every job is a transfer, so threads are only limited by the connection pool
+        int threads = context.isSeeding() ? Math.max(options.getMaxThreads(), options.getMaxConnections()) : options.getMaxThreads();
+        if (context.getRetryEntries() != null && options.getRetryThreads() > 0) {
+            threads = options.getRetryThreads();
+        }
+        return new ThreadPoolExecutor(threads,
+                threads,
+                1,
+                TimeUnit.MINUTES,
+                workQueue,
+                rejectedExecutionHandler);
+    }
+
+    /**
+     * Registers the MirrorControl MBean of this mirror, for inspecting and tuning it over JMX.
+     */
+    public void registerMBean() {
+        new MirrorControl(context).register();
     }
 
     public static int getMaxQueueCapacity(MirrorOptions options) {
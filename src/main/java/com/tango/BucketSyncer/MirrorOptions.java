@@ -24,6 +24,7 @@ import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 public class MirrorOptions implements AWSCredentials {
 
@@ -54,7 +55,7 @@ public class MirrorOptions implements AWSCredentials {
     @Option(name = OPT_VERBOSE, aliases = LONGOPT_VERBOSE, usage = USAGE_VERBOSE)
     @Getter
     @Setter
-    private boolean verbose = false;
+    private volatile boolean verbose = false;
 
     public static final String USAGE_PREFIX = "Only copy objects whose keys start with this prefix";
     public static final String OPT_PREFIX = "-p";
@@ -117,7 +118,7 @@ public class MirrorOptions implements AWSCredentials {
     @Option(name = OPT_MAX_THREADS, aliases = LONGOPT_MAX_THREADS, usage = USAGE_MAX_THREADS)
     @Getter
     @Setter
-    private int maxThreads = 100;
+    private volatile int maxThreads = 100;
 
     public static final String USAGE_MAX_RETRIES = "Maximum number of retries for S3 requests (default 5)";
     public static final String OPT_MAX_RETRIES = "-r";
@@ -216,6 +217,475 @@ public class MirrorOptions implements AWSCredentials {
     @Setter
     private boolean deleteRemoved = false;
 
+    public static final String USAGE_ACL_CACHE = "Reuse the ACL learned for objects with the same owner under the same prefix instead of fetching it for every object. " +
+            "Every " + AclCache.VERIFY_INTERVAL + "th prediction is re-checked against S3";
+    public static final String LONGOPT_ACL_CACHE = "--acl-cache";
+    @Option(name = LONGOPT_ACL_CACHE, usage = USAGE_ACL_CACHE)
+    @Getter
+    @Setter
+    private boolean aclCache = false;
+
+    public static final String USAGE_ACL_CACHE_THRESHOLD = "Number of identical ACLs that must be seen for a prefix and owner before --acl-cache predicts it (default 10)";
+    public static final String LONGOPT_ACL_CACHE_THRESHOLD = "--acl-cache-threshold";
+    @Option(name = LONGOPT_ACL_CACHE_THRESHOLD, usage = USAGE_ACL_CACHE_THRESHOLD)
+    @Getter
+    @Setter
+    private int aclCacheThreshold = 10;
+
+    public static final String USAGE_DELETE_BATCH_SIZE = "Number of keys removed per batch delete request when using " + LONGOPT_DELETE_REMOVED +
+            " (default 1000, the S3 maximum; GCS batches are capped at 100). Use 1 to delete keys one request at a time";
+    public static final String LONGOPT_DELETE_BATCH_SIZE = "--delete-batch-size";
+    @Option(name = LONGOPT_DELETE_BATCH_SIZE, usage = USAGE_DELETE_BATCH_SIZE)
+    @Getter
+    @Setter
+    private int deleteBatchSize = 1000;
+
+    public static final String USAGE_DELETE_BATCH_LINGER = "Maximum time (in milliseconds) a key confirmed for deletion waits for its batch to fill up (default 1000)";
+    public static final String LONGOPT_DELETE_BATCH_LINGER = "--delete-batch-linger";
+    @Option(name = LONGOPT_DELETE_BATCH_LINGER, usage = USAGE_DELETE_BATCH_LINGER)
+    @Getter
+    @Setter
+    private long deleteBatchLinger = 1000;
+
+    public boolean hasDeleteBatching() {
+        return deleteBatchSize > 1;
+    }
+
+    public static final String USAGE_GCS_BATCH_SIZE = "Coalesce GCS metadata lookups and deletes made by concurrent jobs into batch requests " +
+            "of up to this many calls (at most 100). Default is 1, sending one request per call";
+    public static final String LONGOPT_GCS_BATCH_SIZE = "--gcs-batch-size";
+    @Option(name = LONGOPT_GCS_BATCH_SIZE, usage = USAGE_GCS_BATCH_SIZE)
+    @Getter
+    @Setter
+    private int gcsBatchSize = 1;
+
+    public static final String USAGE_GCS_BATCH_LINGER = "Maximum time (in milliseconds) a GCS metadata lookup waits for its batch to fill up (default 20)";
+    public static final String LONGOPT_GCS_BATCH_LINGER = "--gcs-batch-linger";
+    @Option(name = LONGOPT_GCS_BATCH_LINGER, usage = USAGE_GCS_BATCH_LINGER)
+    @Getter
+    @Setter
+    private long gcsBatchLinger = 20;
+
+    public boolean hasGcsBatching() {
+        return gcsBatchSize > 1;
+    }
+
+    public static final String USAGE_GCS_CREATE_IF_ABSENT = "When copying to GCS, skip the destination metadata lookup for prefixes where most keys are new, " +
+            "and write with a create-if-absent precondition instead. Keys that turn out to exist are compared and rewritten only if they changed";
+    public static final String LONGOPT_GCS_CREATE_IF_ABSENT = "--gcs-create-if-absent";
+    @Option(name = LONGOPT_GCS_CREATE_IF_ABSENT, usage = USAGE_GCS_CREATE_IF_ABSENT)
+    @Getter
+    @Setter
+    private boolean gcsCreateIfAbsent = false;
+
+    public static final String USAGE_GCS_CREATE_IF_ABSENT_MAX_HITS = "Percentage of keys under a prefix that may already exist in GCS before --gcs-create-if-absent " +
+            "goes back to looking them up first (default 20)";
+    public static final String LONGOPT_GCS_CREATE_IF_ABSENT_MAX_HITS = "--gcs-create-if-absent-max-hits";
+    @Option(name = LONGOPT_GCS_CREATE_IF_ABSENT_MAX_HITS, usage = USAGE_GCS_CREATE_IF_ABSENT_MAX_HITS)
+    @Getter
+    @Setter
+    private int gcsCreateIfAbsentMaxHits = 20;
+
+    public static final String USAGE_SEED = "Seed an empty or nearly empty destination: if a listing sample finds it sparse, copy every key " +
+            "without comparing it to the destination, using up to --max-connections threads, then run one listing-based " +
+            "reconciliation pass to copy anything missed";
+    public static final String LONGOPT_SEED = "--seed";
+    @Option(name = LONGOPT_SEED, usage = USAGE_SEED)
+    @Getter
+    @Setter
+    private boolean seed = false;
+
+    public static final String USAGE_SEED_SAMPLE_SIZE = "Number of destination keys sampled by --seed. The destination is treated as sparse " +
+            "if it holds fewer keys than this (default 1000)";
+    public static final String LONGOPT_SEED_SAMPLE_SIZE = "--seed-sample-size";
+    @Option(name = LONGOPT_SEED_SAMPLE_SIZE, usage = USAGE_SEED_SAMPLE_SIZE)
+    @Getter
+    @Setter
+    private int seedSampleSize = 1000;
+
+    public static final String USAGE_INDEX = "Directory of a local index of the keys known to be mirrored. Keys whose size and ETag " +
+            "match the index are not compared against the destination. The index is updated at the end of each run";
+    public static final String LONGOPT_INDEX = "--index";
+    @Option(name = LONGOPT_INDEX, usage = USAGE_INDEX)
+    @Getter
+    @Setter
+    private String index = null;
+
+    public boolean hasIndex() {
+        return index != null && index.length() > 0;
+    }
+
+    public static final String USAGE_INDEX_RECONCILE_EVERY = "With --index, finish every Nth run with a listing-based reconciliation " +
+            "pass that catches changes made to the destination outside of this tool (default 0, never)";
+    public static final String LONGOPT_INDEX_RECONCILE_EVERY = "--index-reconcile-every";
+    @Option(name = LONGOPT_INDEX_RECONCILE_EVERY, usage = USAGE_INDEX_RECONCILE_EVERY)
+    @Getter
+    @Setter
+    private int indexReconcileEvery = 0;
+
+    public static final String USAGE_SNAPSHOT = "Directory of a snapshot of the source listing. Each run diffs the source listing against " +
+            "the previous snapshot, and only copies added or changed keys and deletes removed keys";
+    public static final String LONGOPT_SNAPSHOT = "--snapshot";
+    @Option(name = LONGOPT_SNAPSHOT, usage = USAGE_SNAPSHOT)
+    @Getter
+    @Setter
+    private String snapshot = null;
+
+    public boolean hasSnapshot() {
+        return snapshot != null && snapshot.length() > 0;
+    }
+
+    public static final String USAGE_DAEMON = "Keep running and mirror again every --interval seconds, reusing clients, caches and threads";
+    public static final String LONGOPT_DAEMON = "--daemon";
+    @Option(name = LONGOPT_DAEMON, usage = USAGE_DAEMON)
+    @Getter
+    @Setter
+    private boolean daemon = false;
+
+    public static final String USAGE_INTERVAL = "With --daemon, seconds between the start of one mirror cycle and the next (default 300). " +
+            "Use 0 to start the next cycle as soon as one finishes";
+    public static final String LONGOPT_INTERVAL = "--interval";
+    @Option(name = LONGOPT_INTERVAL, usage = USAGE_INTERVAL)
+    @Getter
+    @Setter
+    private int interval = 300;
+
+    public static final String USAGE_MAX_INTERVAL = "With --daemon, the interval doubles after every cycle that found nothing to copy or delete, " +
+            "up to this many seconds (default 3600)";
+    public static final String LONGOPT_MAX_INTERVAL = "--max-interval";
+    @Option(name = LONGOPT_MAX_INTERVAL, usage = USAGE_MAX_INTERVAL)
+    @Getter
+    @Setter
+    private int maxInterval = 3600;
+
+    public static final String USAGE_LOCK_FILE = "Lock this file while mirroring, and skip the run if another process holds the lock";
+    public static final String LONGOPT_LOCK_FILE = "--lock-file";
+    @Option(name = LONGOPT_LOCK_FILE, usage = USAGE_LOCK_FILE)
+    @Getter
+    @Setter
+    private String lockFile = null;
+
+    public boolean hasLockFile() {
+        return lockFile != null && lockFile.length() > 0;
+    }
+
+    public static final String USAGE_NOTIFICATION_QUEUE = "URL of an SQS queue receiving event notifications of the source bucket. " +
+            "Each run mirrors only the keys of the notifications received, instead of listing the buckets";
+    public static final String LONGOPT_NOTIFICATION_QUEUE = "--notification-queue";
+    @Option(name = LONGOPT_NOTIFICATION_QUEUE, usage = USAGE_NOTIFICATION_QUEUE)
+    @Getter
+    @Setter
+    private String notificationQueue = null;
+
+    public boolean hasNotificationQueue() {
+        return notificationQueue != null && notificationQueue.length() > 0;
+    }
+
+    public static final String USAGE_NOTIFICATION_SPOOL = "Like --notification-queue, but reads notifications from a local directory " +
+            "holding one per file, or a file holding one per line";
+    public static final String LONGOPT_NOTIFICATION_SPOOL = "--notification-spool";
+    @Option(name = LONGOPT_NOTIFICATION_SPOOL, usage = USAGE_NOTIFICATION_SPOOL)
+    @Getter
+    @Setter
+    private String notificationSpool = null;
+
+    public boolean hasNotificationSpool() {
+        return notificationSpool != null && notificationSpool.length() > 0;
+    }
+
+    public boolean hasNotifications() {
+        return hasNotificationQueue() || hasNotificationSpool();
+    }
+
+    public static final String USAGE_NOTIFICATION_RECONCILE_EVERY = "With notifications, list the buckets every Nth run to catch " +
+            "changes whose notifications were lost (default 0, never)";
+    public static final String LONGOPT_NOTIFICATION_RECONCILE_EVERY = "--notification-reconcile-every";
+    @Option(name = LONGOPT_NOTIFICATION_RECONCILE_EVERY, usage = USAGE_NOTIFICATION_RECONCILE_EVERY)
+    @Getter
+    @Setter
+    private int notificationReconcileEvery = 0;
+
+    public static final String USAGE_WATERMARK = "File holding the newest Last-Modified date mirrored by the previous run. " +
+            "Each run only copies objects modified since then, less --watermark-overlap, without queueing the others";
+    public static final String LONGOPT_WATERMARK = "--watermark";
+    @Option(name = LONGOPT_WATERMARK, usage = USAGE_WATERMARK)
+    @Getter
+    @Setter
+    private String watermark = null;
+
+    public boolean hasWatermark() {
+        return watermark != null && watermark.length() > 0;
+    }
+
+    public static final String USAGE_WATERMARK_OVERLAP = "Seconds before the --watermark that objects are still copied from, " +
+            "for clock skew and uploads that finish after they are dated (default 3600)";
+    public static final String LONGOPT_WATERMARK_OVERLAP = "--watermark-overlap";
+    @Option(name = LONGOPT_WATERMARK_OVERLAP, usage = USAGE_WATERMARK_OVERLAP)
+    @Getter
+    @Setter
+    private int watermarkOverlap = 3600;
+
+    public static final String USAGE_KEY_TEMPLATE = "Layout of keys by date under the source prefix, e.g. logs/{yyyy}/{MM}/{dd}/ (UTC). " +
+            "With --watermark or --ctime, only the prefixes of dates since the cutoff are listed";
+    public static final String LONGOPT_KEY_TEMPLATE = "--key-template";
+    @Option(name = LONGOPT_KEY_TEMPLATE, usage = USAGE_KEY_TEMPLATE)
+    @Getter
+    @Setter
+    private String keyTemplate = null;
+
+    public boolean hasKeyTemplate() {
+        return keyTemplate != null && keyTemplate.length() > 0;
+    }
+
+    public static final String USAGE_JOURNAL = "Directory of a journal of the progress of the run, synced to disk every second, " +
+            "so that a run that is killed can be continued with --resume";
+    public static final String LONGOPT_JOURNAL = "--journal";
+    @Option(name = LONGOPT_JOURNAL, usage = USAGE_JOURNAL)
+    @Getter
+    @Setter
+    private String journal = null;
+
+    public boolean hasJournal() {
+        return journal != null && journal.length() > 0;
+    }
+
+    public static final String USAGE_RESUME = "Continue the run recorded in the --journal, skipping the keys it finished. " +
+            "Keys that failed are not retried";
+    public static final String LONGOPT_RESUME = "--resume";
+    @Option(name = LONGOPT_RESUME, usage = USAGE_RESUME)
+    @Getter
+    @Setter
+    private boolean resume = false;
+
+    public static final String USAGE_ERROR_JOURNAL = "File to record the keys that fail to copy or delete in, one JSON line per key " +
+            "with the operation, the attempts made and the last error. Replaced by each run";
+    public static final String LONGOPT_ERROR_JOURNAL = "--error-journal";
+    @Option(name = LONGOPT_ERROR_JOURNAL, usage = USAGE_ERROR_JOURNAL)
+    @Getter
+    @Setter
+    private String errorJournal = null;
+
+    public boolean hasErrorJournal() {
+        return errorJournal != null && errorJournal.length() > 0;
+    }
+
+    public static final String USAGE_RETRY_ERRORS = "Copy or delete again only the keys recorded in this --error-journal file, " +
+            "without listing the buckets";
+    public static final String LONGOPT_RETRY_ERRORS = "--retry-errors";
+    @Option(name = LONGOPT_RETRY_ERRORS, usage = USAGE_RETRY_ERRORS)
+    @Getter
+    @Setter
+    private String retryErrors = null;
+
+    public boolean hasRetryErrors() {
+        return retryErrors != null && retryErrors.length() > 0;
+    }
+
+    public static final String USAGE_RETRY_THREADS = "With --retry-errors, number of threads to use instead of --max-threads (default 0, the same)";
+    public static final String LONGOPT_RETRY_THREADS = "--retry-threads";
+    @Option(name = LONGOPT_RETRY_THREADS, usage = USAGE_RETRY_THREADS)
+    @Getter
+    @Setter
+    private int retryThreads = 0;
+
+    public static final String USAGE_RETRY_BACKOFF = "With --retry-errors, milliseconds to wait before the second try of a key, " +
+            "doubling for each try after it (default 1000)";
+    public static final String LONGOPT_RETRY_BACKOFF = "--retry-backoff";
+    @Option(name = LONGOPT_RETRY_BACKOFF, usage = USAGE_RETRY_BACKOFF)
+    @Getter
+    @Setter
+    private long retryBackoff = 1000;
+
+    public static final long MAX_RETRY_WAIT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * @return the milliseconds to wait after the given try (counted from 0) of a key failed
+     */
+    public long getRetryWait(int tries) {
+        if (!hasRetryErrors()) {
+            return 10;
+        }
+        return Math.min(retryBackoff << Math.min(tries, 20), MAX_RETRY_WAIT);
+    }
+
+    public static final String USAGE_PLAN = "Compare the buckets without changing anything (implies -n) and write what " +
+            "would be copied or deleted to this CSV file, for --apply";
+    public static final String LONGOPT_PLAN = "--plan";
+    @Option(name = LONGOPT_PLAN, usage = USAGE_PLAN)
+    @Getter
+    @Setter
+    private String plan = null;
+
+    public boolean hasPlan() {
+        return plan != null && plan.length() > 0;
+    }
+
+    public static final String USAGE_APPLY = "Copy and delete the keys of this --plan file, without listing or comparing the buckets";
+    public static final String LONGOPT_APPLY = "--apply";
+    @Option(name = LONGOPT_APPLY, usage = USAGE_APPLY)
+    @Getter
+    @Setter
+    private String apply = null;
+
+    public boolean hasApply() {
+        return apply != null && apply.length() > 0;
+    }
+
+    public static final String USAGE_APPLY_SHARD = "With --apply, only apply shard I of N of the plan, e.g. 0/4, " +
+            "so that N processes can apply it together (default 0/1, all of it)";
+    public static final String LONGOPT_APPLY_SHARD = "--apply-shard";
+    @Option(name = LONGOPT_APPLY_SHARD, usage = USAGE_APPLY_SHARD)
+    @Getter
+    @Setter
+    private String applyShard = null;
+
+    @Getter
+    private int applyShardIndex = 0;
+    @Getter
+    private int applyShardCount = 1;
+
+    public static final String USAGE_KEY_SOURCE = "List the source keys from files instead of the source bucket: an S3 Inventory " +
+            "manifest.json (CSV format), a file of keys, one per line, or a directory of such files. Paths can be local or s3://bucket/key";
+    public static final String LONGOPT_KEY_SOURCE = "--key-source";
+    @Option(name = LONGOPT_KEY_SOURCE, usage = USAGE_KEY_SOURCE)
+    @Getter
+    @Setter
+    private String keySource = null;
+
+    public boolean hasKeySource() {
+        return keySource != null && keySource.length() > 0;
+    }
+
+    public static final String USAGE_PREFIX_DIGESTS = "Directory to keep a digest of the source listing per prefix in between runs. " +
+            "Prefixes whose digest did not change since they were last mirrored are neither compared nor listed in the destination";
+    public static final String LONGOPT_PREFIX_DIGESTS = "--prefix-digests";
+    @Option(name = LONGOPT_PREFIX_DIGESTS, usage = USAGE_PREFIX_DIGESTS)
+    @Getter
+    @Setter
+    private String prefixDigests = null;
+
+    public boolean hasPrefixDigests() {
+        return prefixDigests != null && prefixDigests.length() > 0;
+    }
+
+    public static final String USAGE_PREFIX_DIGEST_DEPTH = "Number of path segments under the source prefix that --prefix-digests " +
+            "are kept for, e.g. 2 for logs/{yyyy}/{MM}/ (default 1)";
+    public static final String LONGOPT_PREFIX_DIGEST_DEPTH = "--prefix-digest-depth";
+    @Option(name = LONGOPT_PREFIX_DIGEST_DEPTH, usage = USAGE_PREFIX_DIGEST_DEPTH)
+    @Getter
+    @Setter
+    private int prefixDigestDepth = 1;
+
+    public static final String USAGE_METRICS_PORT = "Serve the stats of the current run in the Prometheus text format " +
+            "on http://host:PORT/metrics (default 0, no metrics endpoint)";
+    public static final String LONGOPT_METRICS_PORT = "--metrics-port";
+    @Option(name = LONGOPT_METRICS_PORT, usage = USAGE_METRICS_PORT)
+    @Getter
+    @Setter
+    private int metricsPort = 0;
+
+    public boolean hasMetricsPort() {
+        return metricsPort > 0;
+    }
+
+    public static final String USAGE_TRACE = "Append the timeline of a sample of the keys to this file, one JSON object per line: " +
+            "queue waits and every request of their jobs. Summarize it with com.tango.BucketSyncer.TraceAnalyzer";
+    public static final String LONGOPT_TRACE = "--trace";
+    @Option(name = LONGOPT_TRACE, usage = USAGE_TRACE)
+    @Getter
+    @Setter
+    private String trace = null;
+
+    public boolean hasTrace() {
+        return trace != null && trace.length() > 0;
+    }
+
+    public static final String USAGE_TRACE_SAMPLE = "With --trace, trace one key in this many (default 100)";
+    public static final String LONGOPT_TRACE_SAMPLE = "--trace-sample";
+    @Option(name = LONGOPT_TRACE_SAMPLE, usage = USAGE_TRACE_SAMPLE)
+    @Getter
+    @Setter
+    private int traceSample = 100;
+
+    public static final String USAGE_LAG_SLO = "Target replication lag in seconds, from the last modification of a source object " +
+            "to the end of its copy. Copies over it are counted, and a run that misses it logs a warning (default 0, no target)";
+    public static final String LONGOPT_LAG_SLO = "--lag-slo";
+    @Option(name = LONGOPT_LAG_SLO, usage = USAGE_LAG_SLO)
+    @Getter
+    @Setter
+    private long lagSlo = 0;
+
+    public boolean hasLagSlo() {
+        return lagSlo > 0;
+    }
+
+    public long getLagSloMillis() {
+        return TimeUnit.SECONDS.toMillis(lagSlo);
+    }
+
+    public static final String USAGE_LAG_PREFIX_DEPTH = "Number of path segments under the source prefix that the replication lag " +
+            "is broken down by, e.g. 2 for logs/{yyyy}/{MM}/ (default 1, 0 for the overall lag only)";
+    public static final String LONGOPT_LAG_PREFIX_DEPTH = "--lag-prefix-depth";
+    @Option(name = LONGOPT_LAG_PREFIX_DEPTH, usage = USAGE_LAG_PREFIX_DEPTH)
+    @Getter
+    @Setter
+    private int lagPrefixDepth = 1;
+
+    public static final String USAGE_PROGRESS_INTERVAL = "Log the progress of the run, what remains and an ETA every this many seconds " +
+            "(default 60, 0 to not report progress)";
+    public static final String LONGOPT_PROGRESS_INTERVAL = "--progress-interval";
+    @Option(name = LONGOPT_PROGRESS_INTERVAL, usage = USAGE_PROGRESS_INTERVAL)
+    @Getter
+    @Setter
+    private int progressInterval = 60;
+
+    public static final String USAGE_PROGRESS_FILE = "Also write each progress report to this file as a JSON object, replacing the previous one";
+    public static final String LONGOPT_PROGRESS_FILE = "--progress-file";
+    @Option(name = LONGOPT_PROGRESS_FILE, usage = USAGE_PROGRESS_FILE)
+    @Getter
+    @Setter
+    private String progressFile = null;
+
+    public boolean hasProgressFile() {
+        return progressFile != null && progressFile.length() > 0;
+    }
+
+    public static final String USAGE_EXPECTED_OBJECTS = "Number of source objects the run is expected to compare, e.g. from an S3 Inventory " +
+            "report or the bucket metrics, for the ETA while the source is still being listed";
+    public static final String LONGOPT_EXPECTED_OBJECTS = "--expected-objects";
+    @Option(name = LONGOPT_EXPECTED_OBJECTS, usage = USAGE_EXPECTED_OBJECTS)
+    @Getter
+    @Setter
+    private long expectedObjects = 0;
+
+    public static final String USAGE_EXPECTED_BYTES = "Number of bytes in the source objects the run is expected to compare, " +
+            "for the ETA while the source is still being listed";
+    public static final String LONGOPT_EXPECTED_BYTES = "--expected-bytes";
+    @Option(name = LONGOPT_EXPECTED_BYTES, usage = USAGE_EXPECTED_BYTES)
+    @Getter
+    @Setter
+    private long expectedBytes = 0;
+
+    public static final String USAGE_RUN_REPORT = "At the end of each run, write a JSON report of it to this file: totals, requests " +
+            "and their latencies, counts by prefix, the slowest and largest keys, throttled requests and the busy threads over time";
+    public static final String LONGOPT_RUN_REPORT = "--run-report";
+    @Option(name = LONGOPT_RUN_REPORT, usage = USAGE_RUN_REPORT)
+    @Getter
+    @Setter
+    private String runReport = null;
+
+    public boolean hasRunReport() {
+        return runReport != null && runReport.length() > 0;
+    }
+
+    public static final String USAGE_REPORT_PREFIX_DEPTH = "Number of path segments under the source prefix that the counts of the run " +
+            "report are broken down by (default 1, 0 for no breakdown)";
+    public static final String LONGOPT_REPORT_PREFIX_DEPTH = "--report-prefix-depth";
+    @Option(name = LONGOPT_REPORT_PREFIX_DEPTH, usage = USAGE_REPORT_PREFIX_DEPTH)
+    @Getter
+    @Setter
+    private int reportPrefixDepth = 1;
+
     public static final String USAGE_SOURCE_BUCKET = "source bucket[/source/prefix]";
     public static final String OPT_SOURCE_BUCKET = "-F";
     public static final String LONGOPT_SOURCE_BUCKET = "--source_bucket";
@@ -292,12 +762,19 @@ public class MirrorOptions implements AWSCredentials {
     private String GCS_APPLICATION_NAME;
 
 
-    public void initDerivedFields() {
-
+    /**
+     * Recomputes the --ctime cutoff relative to now.
+     */
+    public void refreshMaxAge() {
         if (hasCtime()) {
             this.maxAge = initMaxAge();
             this.maxAgeDate = new Date(maxAge).toString();
         }
+    }
+
+    public void initDerivedFields() {
+
+        refreshMaxAge();
 
         String scrubbed;
         int slashPos;
@@ -325,6 +802,115 @@ public class MirrorOptions implements AWSCredentials {
             }
             destPrefix = scrubbed.substring(slashPos + 1);
         }
+
+        if (resume) {
+            if (!hasJournal()) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_RESUME + " without " + LONGOPT_JOURNAL);
+            }
+            if (hasSnapshot()) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_RESUME + " and " + LONGOPT_SNAPSHOT + " at the same time, a snapshot needs the full listing");
+            }
+        }
+
+        if (hasRetryErrors()) {
+            if (hasNotifications() || hasSnapshot() || resume || daemon) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_RETRY_ERRORS + " with notifications, " + LONGOPT_SNAPSHOT
+                        + ", " + LONGOPT_RESUME + " or " + LONGOPT_DAEMON + ", it only processes the keys of the error journal");
+            }
+            if (retryBackoff < 0) {
+                throw new IllegalArgumentException("Invalid " + LONGOPT_RETRY_BACKOFF + ": " + retryBackoff);
+            }
+        }
+
+        if (hasPlan()) {
+            if (hasApply() || hasRetryErrors() || hasNotifications() || daemon) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_PLAN + " with " + LONGOPT_APPLY + ", " + LONGOPT_RETRY_ERRORS
+                        + ", notifications or " + LONGOPT_DAEMON + ", a plan is made by comparing the listings");
+            }
+            // a plan is made by a dry run
+            dryRun = true;
+        }
+
+        if (hasApply()) {
+            if (hasRetryErrors() || hasNotifications() || hasSnapshot() || resume || daemon) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_APPLY + " with " + LONGOPT_RETRY_ERRORS + ", notifications, "
+                        + LONGOPT_SNAPSHOT + ", " + LONGOPT_RESUME + " or " + LONGOPT_DAEMON + ", it only processes the keys of the plan");
+            }
+        }
+
+        if (applyShard != null) {
+            if (!hasApply()) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_APPLY_SHARD + " without " + LONGOPT_APPLY);
+            }
+            final int slash = applyShard.indexOf('/');
+            try {
+                applyShardIndex = Integer.parseInt(applyShard.substring(0, Math.max(slash, 0)));
+                applyShardCount = Integer.parseInt(applyShard.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + LONGOPT_APPLY_SHARD + " (" + applyShard + "), please use shard/shards, e.g. 0/4");
+            }
+            if (applyShardCount < 1 || applyShardIndex < 0 || applyShardIndex >= applyShardCount) {
+                throw new IllegalArgumentException("Invalid " + LONGOPT_APPLY_SHARD + " (" + applyShard + "), shards are numbered from 0 to N-1");
+            }
+        }
+
+        if (hasKeySource()) {
+            // these need the keys in listing order
+            if (hasSnapshot() || hasKeyTemplate() || hasJournal() || hasIndex()) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_KEY_SOURCE + " with " + LONGOPT_SNAPSHOT + ", " + LONGOPT_KEY_TEMPLATE
+                        + ", " + LONGOPT_JOURNAL + " or " + LONGOPT_INDEX + ", its keys are not listed in key order");
+            }
+        }
+
+        if (hasPrefixDigests()) {
+            if (prefixDigestDepth < 1) {
+                throw new IllegalArgumentException("Invalid " + LONGOPT_PREFIX_DIGEST_DEPTH + ": " + prefixDigestDepth);
+            }
+            // prefixes are digested from a full listing in key order
+            if (hasSnapshot() || hasKeySource() || hasKeyTemplate() || resume) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_PREFIX_DIGESTS + " with " + LONGOPT_SNAPSHOT + ", " + LONGOPT_KEY_SOURCE
+                        + ", " + LONGOPT_KEY_TEMPLATE + " or " + LONGOPT_RESUME + ", prefix digests need the full listing");
+            }
+        }
+
+        if (traceSample < 1) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_TRACE_SAMPLE + ": " + traceSample);
+        }
+
+        if (metricsPort < 0 || metricsPort > 65535) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_METRICS_PORT + ": " + metricsPort);
+        }
+
+        if (lagSlo < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_LAG_SLO + ": " + lagSlo);
+        }
+        if (lagPrefixDepth < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_LAG_PREFIX_DEPTH + ": " + lagPrefixDepth);
+        }
+
+        if (reportPrefixDepth < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_REPORT_PREFIX_DEPTH + ": " + reportPrefixDepth);
+        }
+
+        if (progressInterval < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_PROGRESS_INTERVAL + ": " + progressInterval);
+        }
+        if (hasProgressFile() && progressInterval == 0) {
+            throw new IllegalArgumentException("Cannot use " + LONGOPT_PROGRESS_FILE + " with a " + LONGOPT_PROGRESS_INTERVAL + " of 0");
+        }
+        if (expectedObjects < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_EXPECTED_OBJECTS + ": " + expectedObjects);
+        }
+        if (expectedBytes < 0) {
+            throw new IllegalArgumentException("Invalid " + LONGOPT_EXPECTED_BYTES + ": " + expectedBytes);
+        }
+
+        if (hasKeyTemplate()) {
+            new KeyTemplate(keyTemplate);
+            if (hasSnapshot()) {
+                throw new IllegalArgumentException("Cannot use " + LONGOPT_KEY_TEMPLATE + " and " + LONGOPT_SNAPSHOT + " at the same time, a snapshot needs the full listing");
+            }
+        }
     }
 
     protected String scrubS3ProtocolPrefix(String bucket) {
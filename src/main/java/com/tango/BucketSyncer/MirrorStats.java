@@ -16,6 +16,7 @@
  */
 package com.tango.BucketSyncer;
 
+import com.tango.BucketSyncer.StorageClients.Throttling;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +26,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -42,9 +47,11 @@ public class MirrorStats {
         }
     };
 
+    @Getter
     @Setter
     private String source;
 
+    @Getter
     @Setter
     private String destination;
 
@@ -81,23 +88,520 @@ public class MirrorStats {
     private long start = System.currentTimeMillis();
     private Date startTime = new Date();
 
-    public final AtomicLong objectsRead = new AtomicLong(0);
-    public final AtomicLong objectsCopied = new AtomicLong(0);
-    public final AtomicLong copyErrors = new AtomicLong(0);
-    public final AtomicLong objectsDeleted = new AtomicLong(0);
-    public final AtomicLong deleteErrors = new AtomicLong(0);
+    public long getStartMillis() {
+        return start;
+    }
+
+    // updated by every job, so striped to keep the threads from contending for them
+    public final StripedCounter objectsRead = new StripedCounter();
+    public final StripedCounter objectsCopied = new StripedCounter();
+    public final StripedCounter copyErrors = new StripedCounter();
+    public final StripedCounter objectsDeleted = new StripedCounter();
+    public final StripedCounter deleteErrors = new StripedCounter();
+
+    public final StripedCounter copyCount = new StripedCounter();
+    public final StripedCounter deleteCount = new StripedCounter();
+    public final StripedCounter getCount = new StripedCounter();
+    public final StripedCounter bytesCopied = new StripedCounter();
+    public final StripedCounter aclCacheHits = new StripedCounter();
+    public final StripedCounter aclCacheMisses = new StripedCounter();
+    public final StripedCounter createIfAbsentWrites = new StripedCounter();
+    public final StripedCounter createIfAbsentConflicts = new StripedCounter();
+    public final StripedCounter indexHits = new StripedCounter();
+    public final StripedCounter notificationMessages = new StripedCounter();
+    public final StripedCounter notificationEvents = new StripedCounter();
+    public final StripedCounter prefixesSkipped = new StripedCounter();
+    public final StripedCounter prefixKeysSkipped = new StripedCounter();
+    // keys and bytes the copy master submitted to jobs, and those whose job finished, copied or not
+    public final StripedCounter keysQueued = new StripedCounter();
+    public final StripedCounter bytesQueued = new StripedCounter();
+    public final StripedCounter keysCompared = new StripedCounter();
+    public final StripedCounter bytesCompared = new StripedCounter();
+    // set once the copy master has listed every key, so the keys queued are all the keys of the run
+    @Getter
+    @Setter
+    private volatile boolean listingDone = false;
+    // pages listed from the source, and the last key listed
+    public final StripedCounter listingPages = new StripedCounter();
+    @Getter
+    private volatile String listingMarker;
+
+    public void recordListingPage(String store, String lastKey, int keys) {
+        listingPages.increment();
+        FlightEvents.listingPage(store, lastKey, keys);
+        if (lastKey != null) {
+            listingMarker = lastKey;
+        }
+    }
+
+    // times a master waited for room in the work queue before submitting a job, and for how long
+    public final StripedCounter queueFullWaits = new StripedCounter();
+    public final StripedCounter queueFullWaitMillis = new StripedCounter();
+
+    // operations whose latency is recorded per store
+    public static final String OP_LIST = "LIST";
+    public static final String OP_HEAD = "HEAD";
+    public static final String OP_GET = "GET";
+    public static final String OP_PUT = "PUT";
+    public static final String OP_COPY = "COPY";
+    public static final String OP_COPY_PART = "COPY_PART";
+    public static final String OP_DELETE = "DELETE";
+    public static final String OP_GET_ACL = "GET_ACL";
+    // starting and completing a multipart upload, and aborting one
+    public static final String OP_MULTIPART = "MULTIPART";
+    public static final String OP_ABORT = "ABORT";
+
+    // the billing classes of requests. Both stores bill writes and listings as class A and reads as class B,
+    // deletes are free
+    public static final String CLASS_A = "class A";
+    public static final String CLASS_B = "class B";
+    public static final String CLASS_FREE = "free";
+
+    /**
+     * @return the billing class of requests of the given operation
+     */
+    public static String getRequestClass(String op) {
+        if (OP_GET.equals(op) || OP_HEAD.equals(op) || OP_GET_ACL.equals(op)) {
+            return CLASS_B;
+        }
+        if (OP_DELETE.equals(op) || OP_ABORT.equals(op)) {
+            return CLASS_FREE;
+        }
+        return CLASS_A;
+    }
+
+    // keyed by "store operation", e.g. "S3 HEAD"
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    public LatencyHistogram getLatency(String store, String op) {
+        final String name = store + " " + op;
+        LatencyHistogram histogram = latencies.get(name);
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = latencies.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // requests sent and requests that were retries of a failed one, by "store operation". A batch request
+    // counts every call in it
+    private final ConcurrentMap<String, StripedCounter> requests = new ConcurrentHashMap<String, StripedCounter>();
+    private final ConcurrentMap<String, StripedCounter> retries = new ConcurrentHashMap<String, StripedCounter>();
+    // requests made by jobs whose key turned out to be unchanged at the destination
+    public final StripedCounter unchangedRequests = new StripedCounter();
+
+    // requests made by each thread, so a job can tell how many requests it made
+    private static final ThreadLocal<long[]> THREAD_REQUESTS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private static StripedCounter getCounter(ConcurrentMap<String, StripedCounter> counters, String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter == null) {
+            final StripedCounter created = new StripedCounter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @return the number of requests the current thread has made
+     */
+    public static long getThreadRequests() {
+        return THREAD_REQUESTS.get()[0];
+    }
+
+    /**
+     * Counts a call the current thread had sent as part of a batch request, see recordBatchLatency.
+     */
+    public static void countBatchedCall() {
+        THREAD_REQUESTS.get()[0]++;
+    }
+
+    /**
+     * Records the latency of a request to a store that was started at startNanos, a value of System.nanoTime().
+     */
+    public void recordLatency(String store, String op, long startNanos) {
+        recordLatency(store, op, startNanos, false);
+    }
+
+    /**
+     * Records the latency of a request to a store that was started at startNanos, a value of System.nanoTime().
+     *
+     * @param retry true if the request was sent again because an earlier try failed
+     */
+    public void recordLatency(String store, String op, long startNanos, boolean retry) {
+        THREAD_REQUESTS.get()[0]++;
+        recordBatchLatency(store, op, startNanos, 1, retry ? 1 : 0);
+    }
+
+    /**
+     * Records the latency of a batch request holding the given number of calls. The calls are counted as requests,
+     * but not as requests of the current thread, callers waiting for their call count it with countBatchedCall.
+     *
+     * @param retried how many of the calls were sent again because an earlier try failed
+     */
+    public void recordBatchLatency(String store, String op, long startNanos, int calls, int retried) {
+        final long endNanos = System.nanoTime();
+        final long micros = TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos);
+        final String name = store + " " + op;
+        getCounter(requests, name).add(calls);
+        if (retried > 0) {
+            getCounter(retries, name).add(retried);
+        }
+        getLatency(store, op).record(micros);
+        FlightEvents.request(store, op, micros);
+        final KeyTrace trace = KeyTrace.current();
+        if (trace != null) {
+            trace.span(store, op, startNanos, endNanos);
+        }
+    }
+
+    /**
+     * @return the latency histograms by "store operation", in name order
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return new TreeMap<String, LatencyHistogram>(latencies);
+    }
+
+    private static Map<String, Long> getCounts(ConcurrentMap<String, StripedCounter> counters) {
+        final Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> entry : counters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of requests by "store operation", in name order
+     */
+    public Map<String, Long> getRequests() {
+        return getCounts(requests);
+    }
+
+    /**
+     * @return the number of retried requests by "store operation", in name order
+     */
+    public Map<String, Long> getRetries() {
+        return getCounts(retries);
+    }
+
+    /**
+     * @return the number of requests to the store in the billing class, or to every store if store is null
+     */
+    public long getRequestCount(String store, String requestClass) {
+        long count = 0;
+        for (Map.Entry<String, StripedCounter> entry : requests.entrySet()) {
+            final String name = entry.getKey();
+            final int space = name.indexOf(' ');
+            if ((store == null || name.substring(0, space).equals(store))
+                    && getRequestClass(name.substring(space + 1)).equals(requestClass)) {
+                count += entry.getValue().get();
+            }
+        }
+        return count;
+    }
+
+    private static long sum(ConcurrentMap<String, StripedCounter> counters) {
+        long sum = 0;
+        for (StripedCounter counter : counters.values()) {
+            sum += counter.get();
+        }
+        return sum;
+    }
+
+    public long getTotalRequests() {
+        return sum(requests);
+    }
+
+    public long getTotalRetries() {
+        return sum(retries);
+    }
+
+    /**
+     * @return the requests that did not help mirror anything: retries, and the requests of jobs whose key turned
+     * out to be unchanged
+     */
+    public long getWastedRequests() {
+        return getTotalRetries() + unchangedRequests.get();
+    }
+
+    /**
+     * @return the requests sent to every store per object copied, or 0 if nothing was copied
+     */
+    public double getRequestsPerObjectCopied() {
+        final long copied = objectsCopied.get();
+        return copied == 0 ? 0 : (double) getTotalRequests() / copied;
+    }
+
+    // how long after its last modification each copied object reached the destination, in milliseconds, overall
+    // and by the prefix of its key. Prefixes past the first MAX_PREFIXES are counted under OTHER_PREFIX
+    public static final int MAX_PREFIXES = 1000;
+    public static final String OTHER_PREFIX = "(other)";
+    @Getter
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> lagByPrefix = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    // last modified times of the objects found to need a copy that are not copied yet, with how many have each
+    private final TreeMap<Long, Integer> unmirrored = new TreeMap<Long, Integer>();
+
+    /**
+     * Records that an object last modified at the given time was found to need a copy.
+     */
+    public void recordCopyStarted(long lastModified) {
+        synchronized (unmirrored) {
+            final Integer count = unmirrored.get(lastModified);
+            unmirrored.put(lastModified, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Records that an object last modified at the given time was copied, and its replication lag. An object whose
+     * copy fails stays unmirrored until the end of the run.
+     */
+    public void recordCopied(String prefix, long lastModified) {
+        forgetUnmirrored(lastModified);
+        final long millis = Math.max(System.currentTimeMillis() - lastModified, 0);
+        lag.record(millis);
+        getLagHistogram(prefix).record(millis);
+    }
+
+    /**
+     * Records that an object found to need a copy turned out to be mirrored already, so it has no lag.
+     */
+    public void recordCopyNotNeeded(long lastModified) {
+        forgetUnmirrored(lastModified);
+    }
+
+    private void forgetUnmirrored(long lastModified) {
+        synchronized (unmirrored) {
+            final Integer count = unmirrored.get(lastModified);
+            if (count != null) {
+                if (count == 1) {
+                    unmirrored.remove(lastModified);
+                } else {
+                    unmirrored.put(lastModified, count - 1);
+                }
+            }
+        }
+    }
+
+    private LatencyHistogram getLagHistogram(String prefix) {
+        LatencyHistogram histogram = lagByPrefix.get(prefix);
+        if (histogram == null) {
+            if (lagByPrefix.size() >= MAX_PREFIXES) {
+                prefix = OTHER_PREFIX;
+            }
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = lagByPrefix.putIfAbsent(prefix, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the lag histograms in milliseconds by key prefix, in prefix order
+     */
+    public Map<String, LatencyHistogram> getLagByPrefix() {
+        return new TreeMap<String, LatencyHistogram>(lagByPrefix);
+    }
+
+    /**
+     * @return the time in milliseconds since the oldest object that was found to need a copy and is not copied yet
+     * was last modified, or 0 if every such object is copied
+     */
+    public long getOldestUnmirroredAge() {
+        synchronized (unmirrored) {
+            return unmirrored.isEmpty() ? 0 : Math.max(System.currentTimeMillis() - unmirrored.firstKey(), 0);
+        }
+    }
+
+    /**
+     * Counts of the keys under one prefix, for the run report.
+     */
+    public static class PrefixCounts {
+        public final AtomicLong keys = new AtomicLong(0);
+        public final AtomicLong bytes = new AtomicLong(0);
+        public final AtomicLong keysCopied = new AtomicLong(0);
+        public final AtomicLong bytesCopied = new AtomicLong(0);
+        public final AtomicLong errors = new AtomicLong(0);
+    }
+
+    // keyed by the prefix of the keys, at --report-prefix-depth
+    private final ConcurrentMap<String, PrefixCounts> prefixCounts = new ConcurrentHashMap<String, PrefixCounts>();
+
+    public PrefixCounts getPrefixCounts(String prefix) {
+        PrefixCounts counts = prefixCounts.get(prefix);
+        if (counts == null) {
+            if (prefixCounts.size() >= MAX_PREFIXES) {
+                prefix = OTHER_PREFIX;
+            }
+            final PrefixCounts created = new PrefixCounts();
+            counts = prefixCounts.putIfAbsent(prefix, created);
+            if (counts == null) {
+                counts = created;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the counts by prefix, in prefix order
+     */
+    public Map<String, PrefixCounts> getPrefixCounts() {
+        return new TreeMap<String, PrefixCounts>(prefixCounts);
+    }
+
+    // the keys whose copy job took longest, in microseconds, and the largest keys copied, in bytes
+    public static final int TOP_KEYS = 10;
+    @Getter
+    private final TopKeys slowestKeys = new TopKeys(TOP_KEYS);
+    @Getter
+    private final TopKeys largestKeys = new TopKeys(TOP_KEYS);
+
+    /**
+     * The threads busy with jobs during one minute of the run, sampled about once a second.
+     */
+    public static class ConcurrencySample {
+        @Getter
+        private final long minute;
+        private long samples = 0;
+        private long activeSum = 0;
+        @Getter
+        private int maxActive = 0;
+        @Getter
+        private int maxPoolSize = 0;
+        @Getter
+        private int maxQueueDepth = 0;
+
+        public ConcurrencySample(long minute) {
+            this.minute = minute;
+        }
+
+        /**
+         * @return the average number of threads running a job during the minute
+         */
+        public double getAverageActive() {
+            return samples == 0 ? 0 : (double) activeSum / samples;
+        }
+    }
+
+    // one sample per minute, for up to a week of the run
+    public static final int MAX_CONCURRENCY_SAMPLES = 7 * 24 * 60;
+    private final List<ConcurrencySample> concurrency = new ArrayList<ConcurrencySample>();
+
+    /**
+     * Samples the job pool. Called about once a second while mirroring.
+     */
+    public void sampleConcurrency(int active, int poolSize, int queueDepth) {
+        final long minute = System.currentTimeMillis() / MINUTE * MINUTE;
+        synchronized (concurrency) {
+            ConcurrencySample sample = concurrency.isEmpty() ? null : concurrency.get(concurrency.size() - 1);
+            if (sample == null || sample.minute != minute) {
+                sample = new ConcurrencySample(minute);
+                concurrency.add(sample);
+                if (concurrency.size() > MAX_CONCURRENCY_SAMPLES) {
+                    concurrency.remove(0);
+                }
+            }
+            sample.samples++;
+            sample.activeSum += active;
+            sample.maxActive = Math.max(sample.maxActive, active);
+            sample.maxPoolSize = Math.max(sample.maxPoolSize, poolSize);
+            sample.maxQueueDepth = Math.max(sample.maxQueueDepth, queueDepth);
+        }
+    }
+
+    public List<ConcurrencySample> getConcurrency() {
+        synchronized (concurrency) {
+            return new ArrayList<ConcurrencySample>(concurrency);
+        }
+    }
+
+    // requests throttled by each store when these stats were started, the counts in the clients are for the process
+    private final long s3ThrottledAtStart = Throttling.getThrottled(MirrorConstants.S3);
+    private final long gcsThrottledAtStart = Throttling.getThrottled(MirrorConstants.GCS);
 
-    public final AtomicLong copyCount = new AtomicLong(0);
-    public final AtomicLong deleteCount = new AtomicLong(0);
-    public final AtomicLong getCount = new AtomicLong(0);
-    public final AtomicLong bytesCopied = new AtomicLong(0);
+    /**
+     * @return the number of requests to the store that were throttled since these stats were started
+     */
+    public long getThrottled(String store) {
+        final long atStart = MirrorConstants.S3.equals(store) ? s3ThrottledAtStart : MirrorConstants.GCS.equals(store) ? gcsThrottledAtStart : 0;
+        return Throttling.getThrottled(store) - atStart;
+    }
+
+    // windows of the rates in the stats, and the samples of each rate kept to cover the longest one
+    public static final long[] RATE_WINDOWS = {TimeUnit.SECONDS.toMillis(10), TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(5)};
+    public static final String[] RATE_WINDOW_NAMES = {"10s", "1m", "5m"};
+    private static final int RATE_SAMPLES = 5 * 60 + 1;
+
+    // keyed by what is counted, e.g. "bytes copied" or "S3 HEAD requests"
+    private final ConcurrentMap<String, RateWindow> rates = new ConcurrentHashMap<String, RateWindow>();
+
+    private void sampleRate(String name, long now, long value) {
+        RateWindow rate = rates.get(name);
+        if (rate == null) {
+            final RateWindow created = new RateWindow(RATE_SAMPLES);
+            rate = rates.putIfAbsent(name, created);
+            if (rate == null) {
+                rate = created;
+            }
+        }
+        rate.sample(now, value);
+    }
+
+    /**
+     * Samples the counts that rates are kept for. Called about once a second while mirroring.
+     */
+    public void sampleRates() {
+        final long now = System.currentTimeMillis();
+        sampleRate("objects read", now, objectsRead.get());
+        sampleRate("objects compared", now, keysCompared.get());
+        sampleRate("bytes compared", now, bytesCompared.get());
+        sampleRate("objects copied", now, objectsCopied.get());
+        sampleRate("bytes copied", now, bytesCopied.get());
+        sampleRate("objects deleted", now, objectsDeleted.get());
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            sampleRate(entry.getKey() + " requests", now, entry.getValue().getCount());
+        }
+    }
+
+    /**
+     * @return the rates by what is counted, in name order
+     */
+    public Map<String, RateWindow> getRates() {
+        return new TreeMap<String, RateWindow>(rates);
+    }
 
     public static final long HOUR = TimeUnit.HOURS.toMillis(1);
     public static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
     public static final long SECOND = TimeUnit.SECONDS.toMillis(1);
 
-    //add errorKeyList
-    public static final List errorKeyList = Collections.synchronizedList(new ArrayList());
+    // the first keys that failed, for the report. Every failed key is recorded in the error journal
+    public static final int ERROR_KEY_SAMPLE = 100;
+    public final List<String> errorKeyList = Collections.synchronizedList(new ArrayList<String>());
+    public final AtomicLong errorKeys = new AtomicLong(0);
+    // the error journal every failed key is recorded in, if it is kept after the run
+    @Getter
+    @Setter
+    private volatile String errorKeyFile;
+
+    public void recordError(String key) {
+        if (errorKeys.incrementAndGet() <= ERROR_KEY_SAMPLE) {
+            errorKeyList.add(key);
+        }
+    }
 
     public String toString() {
         final long durationMillis = System.currentTimeMillis() - start;
@@ -106,6 +610,8 @@ public class MirrorStats {
         final double readRate = objectsRead.get() / durationMinutes;
         final double copyRate = objectsCopied.get() / durationMinutes;
         final double deleteRate = objectsDeleted.get() / durationMinutes;
+        final long aclLookups = aclCacheHits.get() + aclCacheMisses.get();
+        final double aclHitRate = aclLookups == 0 ? 0 : 100.0d * aclCacheHits.get() / aclLookups;
         return "Started at: " + startTime.toString() + "\n"
                 + "read: " + objectsRead + "\n"
                 + "copied: " + objectsCopied + "\n"
@@ -120,10 +626,101 @@ public class MirrorStats {
                 + "GET operations: " + getCount + "\n"
                 + "COPY operations: " + copyCount + "\n"
                 + "DELETE operations: " + deleteCount + "\n"
-                + "Error Key List: " + errorKeyList.toString() + "\n"
+                + formatLatencies()
+                + formatRequests()
+                + "replication lag: " + formatLag(lag) + "\n"
+                + formatLagByPrefix()
+                + "oldest unmirrored object age: " + formatSeconds(getOldestUnmirroredAge()) + "\n"
+                + formatRates()
+                + "ACL cache hit rate: " + String.format("%.2f", aclHitRate) + "% (" + aclCacheHits + " of " + aclLookups + ")\n"
+                + "create-if-absent writes: " + createIfAbsentWrites + " (" + createIfAbsentConflicts + " already existed)\n"
+                + "unchanged keys found in index: " + indexHits + "\n"
+                + "notifications received: " + notificationMessages + " (" + notificationEvents + " events)\n"
+                + "listing: " + listingPages + " pages, last key: " + listingMarker + "\n"
+                + "work queue full: " + queueFullWaits + " waits, " + queueFullWaitMillis + " ms\n"
+                + "unchanged prefixes skipped: " + prefixesSkipped + " (" + prefixKeysSkipped + " keys)\n"
+                + "throttled requests: " + MirrorConstants.S3 + " " + getThrottled(MirrorConstants.S3) + ", " + MirrorConstants.GCS + " " + getThrottled(MirrorConstants.GCS) + "\n"
+                + formatErrorKeys() + "\n"
                 + "Ended at: " + (new Date()).toString() + "\n";
     }
 
+    private String formatLatencies() {
+        final StringBuilder b = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : getLatencies().entrySet()) {
+            b.append(entry.getKey()).append(" latency: ").append(entry.getValue()).append("\n");
+        }
+        return b.toString();
+    }
+
+    private String formatRequests() {
+        final StringBuilder b = new StringBuilder();
+        for (String store : new String[]{MirrorConstants.S3, MirrorConstants.GCS}) {
+            final long classA = getRequestCount(store, CLASS_A);
+            final long classB = getRequestCount(store, CLASS_B);
+            final long free = getRequestCount(store, CLASS_FREE);
+            if (classA + classB + free > 0) {
+                b.append(store).append(" requests: ").append(classA).append(' ').append(CLASS_A).append(", ")
+                        .append(classB).append(' ').append(CLASS_B).append(", ").append(free).append(' ').append(CLASS_FREE).append("\n");
+            }
+        }
+        final Map<String, Long> requestCounts = getRequests();
+        final Map<String, Long> retryCounts = getRetries();
+        for (Map.Entry<String, Long> entry : requestCounts.entrySet()) {
+            final Long retried = retryCounts.get(entry.getKey());
+            b.append(entry.getKey()).append(" requests: ").append(entry.getValue())
+                    .append(" (").append(retried == null ? 0 : retried).append(" retries)\n");
+        }
+        b.append("requests per object copied: ").append(String.format("%.2f", getRequestsPerObjectCopied())).append("\n");
+        b.append("wasted requests: ").append(getWastedRequests()).append(" (").append(getTotalRetries()).append(" retries, ")
+                .append(unchangedRequests).append(" comparing unchanged keys)\n");
+        return b.toString();
+    }
+
+    private String formatErrorKeys() {
+        if (errorKeyFile != null) {
+            return "Error Keys: " + errorKeys + ", recorded in " + errorKeyFile;
+        }
+        return "Error Key List: " + errorKeyList.toString()
+                + (errorKeys.get() > ERROR_KEY_SAMPLE ? " (first " + ERROR_KEY_SAMPLE + " of " + errorKeys + ")" : "");
+    }
+
+    private static String formatSeconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0d);
+    }
+
+    public static String formatLag(LatencyHistogram histogram) {
+        return "count=" + histogram.getCount()
+                + " p50=" + formatSeconds(histogram.getValueAtQuantile(0.5))
+                + " p99=" + formatSeconds(histogram.getValueAtQuantile(0.99))
+                + " max=" + formatSeconds(histogram.getMax());
+    }
+
+    private String formatLagByPrefix() {
+        final Map<String, LatencyHistogram> byPrefix = getLagByPrefix();
+        // a single prefix is the overall lag
+        if (byPrefix.size() < 2) {
+            return "";
+        }
+        final StringBuilder b = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : byPrefix.entrySet()) {
+            b.append("replication lag of ").append(entry.getKey().length() == 0 ? "/" : entry.getKey()).append(": ")
+                    .append(formatLag(entry.getValue())).append("\n");
+        }
+        return b.toString();
+    }
+
+    private String formatRates() {
+        final StringBuilder b = new StringBuilder();
+        for (Map.Entry<String, RateWindow> entry : getRates().entrySet()) {
+            b.append(entry.getKey()).append(" per second:");
+            for (int i = 0; i < RATE_WINDOWS.length; i++) {
+                b.append(String.format(" %.1f (%s)", entry.getValue().getRate(RATE_WINDOWS[i]), RATE_WINDOW_NAMES[i]));
+            }
+            b.append("\n");
+        }
+        return b.toString();
+    }
+
     private String formatBytes(long bytesCopied) {
         if (bytesCopied > MirrorConstants.EB)
             return ((double) bytesCopied) / ((double) MirrorConstants.EB) + " EB (" + bytesCopied + " bytes)";
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import com.tango.BucketSyncer.KeyListers.ReconcileKeyLister;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The notifications received for one mirror cycle, coalesced to the latest event of each key
+ * in the source bucket and prefix.
+ */
+@Slf4j
+public class NotificationBatch {
+
+    // most messages received per cycle; the rest wait for the next cycle
+    public static final int MAX_MESSAGES = 10000;
+
+    private static final Comparator<NotificationEvent> KEY_ORDER = new Comparator<NotificationEvent>() {
+        @Override
+        public int compare(NotificationEvent a, NotificationEvent b) {
+            return ReconcileKeyLister.compareKeys(a.getKey(), b.getKey());
+        }
+    };
+
+    private final String bucket;
+    private final String prefix;
+
+    private final Map<String, NotificationEvent> latest = new HashMap<String, NotificationEvent>();
+    // the source keys each message refers to
+    private final Map<NotificationMessage, List<String>> messages = new LinkedHashMap<NotificationMessage, List<String>>();
+    @Getter
+    private int eventCount = 0;
+
+    public NotificationBatch(String bucket, String prefix) {
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    public void add(NotificationMessage message) {
+        final List<String> keys = new ArrayList<String>();
+        messages.put(message, keys);
+        final List<NotificationEvent> events;
+        try {
+            events = NotificationEvent.parse(message.getBody());
+        } catch (IOException e) {
+            // acknowledged with the rest, it would never parse
+            log.error("Ignoring notification {} that is not an event: {}", message.getHandle(), e);
+            return;
+        }
+        for (NotificationEvent event : events) {
+            if ((event.getBucket().length() > 0 && !event.getBucket().equals(bucket)) || !event.getKey().startsWith(prefix)) {
+                continue;
+            }
+            eventCount++;
+            keys.add(event.getKey());
+            final NotificationEvent previous = latest.get(event.getKey());
+            if (previous == null || event.isNewerThan(previous)) {
+                latest.put(event.getKey(), event);
+            }
+        }
+    }
+
+    public int getMessageCount() {
+        return messages.size();
+    }
+
+    public int getKeyCount() {
+        return latest.size();
+    }
+
+    /**
+     * @return the keys whose latest event created them, in listing order
+     */
+    public List<NotificationEvent> getCreated() {
+        return getLatest(false);
+    }
+
+    /**
+     * @return the keys whose latest event removed them, in listing order
+     */
+    public List<NotificationEvent> getRemoved() {
+        return getLatest(true);
+    }
+
+    private List<NotificationEvent> getLatest(boolean removed) {
+        final List<NotificationEvent> events = new ArrayList<NotificationEvent>();
+        for (NotificationEvent event : latest.values()) {
+            if (event.isRemoved() == removed) {
+                events.add(event);
+            }
+        }
+        Collections.sort(events, KEY_ORDER);
+        return events;
+    }
+
+    /**
+     * @return the messages that do not refer to any of the failed source keys, so they can be acknowledged.
+     * The others are received again, and retried, in a later cycle.
+     */
+    public List<NotificationMessage> getMirrored(Set<String> failedKeys) {
+        final List<NotificationMessage> mirrored = new ArrayList<NotificationMessage>();
+        for (Map.Entry<NotificationMessage, List<String>> message : messages.entrySet()) {
+            if (Collections.disjoint(message.getValue(), failedKeys)) {
+                mirrored.add(message.getKey());
+            }
+        }
+        return mirrored;
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+import lombok.Getter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change to one object, parsed from an S3 event notification or a GCS Pub/Sub notification.
+ */
+public class NotificationEvent {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Getter
+    private final String bucket;
+    @Getter
+    private final String key;
+    @Getter
+    private final boolean removed;
+    // -1 if unknown, e.g. for removals
+    @Getter
+    private final long size;
+    @Getter
+    private final String etag;
+    @Getter
+    private final long eventTime;
+    // orders the events of one key, "" if the notification has none
+    @Getter
+    private final String sequencer;
+
+    public NotificationEvent(String bucket, String key, boolean removed, long size, String etag, long eventTime, String sequencer) {
+        this.bucket = bucket;
+        this.key = key;
+        this.removed = removed;
+        this.size = size;
+        this.etag = etag;
+        this.eventTime = eventTime;
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * @return true if this event happened after the other event for the same key. Sequencers are compared
+     * as numbers; events without one are ordered by event time, and otherwise the later arrival wins.
+     */
+    public boolean isNewerThan(NotificationEvent other) {
+        if (sequencer.length() > 0 && other.sequencer.length() > 0) {
+            return compareSequencers(sequencer, other.sequencer) >= 0;
+        }
+        return eventTime >= other.eventTime;
+    }
+
+    static int compareSequencers(String a, String b) {
+        final String x = stripLeadingZeros(a);
+        final String y = stripLeadingZeros(b);
+        if (x.length() != y.length()) {
+            return x.length() < y.length() ? -1 : 1;
+        }
+        return x.compareToIgnoreCase(y);
+    }
+
+    private static String stripLeadingZeros(String s) {
+        int i = 0;
+        while (i < s.length() - 1 && s.charAt(i) == '0') {
+            i++;
+        }
+        return s.substring(i);
+    }
+
+    /**
+     * Parses a notification message. S3 event notifications may arrive as sent by S3 or wrapped in an SNS
+     * envelope; GCS notifications are Pub/Sub messages as pushed or pulled. Test events and event types
+     * other than object creation and removal yield no events.
+     *
+     * @throws IOException if the message is not JSON
+     */
+    public static List<NotificationEvent> parse(String body) throws IOException {
+        JsonNode root = MAPPER.readTree(body);
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        if (root.has("Type") && root.has("Message")) {
+            // S3 -> SNS -> SQS
+            root = MAPPER.readTree(root.get("Message").asText());
+        }
+        if (root.has("Records")) {
+            return parseS3(root.get("Records"));
+        }
+        if (root.has("message")) {
+            // Pub/Sub push request
+            root = root.get("message");
+        }
+        if (root.has("attributes")) {
+            final NotificationEvent event = parseGCS(root);
+            if (event != null) {
+                return Collections.singletonList(event);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<NotificationEvent> parseS3(JsonNode records) throws IOException {
+        final List<NotificationEvent> events = new ArrayList<NotificationEvent>();
+        for (JsonNode record : records) {
+            final String eventName = record.path("eventName").asText();
+            final boolean removed;
+            if (eventName.startsWith("ObjectCreated:")) {
+                removed = false;
+            } else if (eventName.startsWith("ObjectRemoved:")) {
+                removed = true;
+            } else {
+                continue;
+            }
+            final JsonNode object = record.path("s3").path("object");
+            // keys are URL-encoded, with spaces as '+'
+            final String key = URLDecoder.decode(object.path("key").asText(), "UTF-8");
+            events.add(new NotificationEvent(record.path("s3").path("bucket").path("name").asText(),
+                    key,
+                    removed,
+                    object.path("size").asLong(-1),
+                    object.has("eTag") ? object.get("eTag").asText() : null,
+                    parseTime(record.path("eventTime").asText()),
+                    object.path("sequencer").asText()));
+        }
+        return events;
+    }
+
+    private static NotificationEvent parseGCS(JsonNode message) throws IOException {
+        final JsonNode attributes = message.get("attributes");
+        final String eventType = attributes.path("eventType").asText();
+        final boolean removed;
+        if (eventType.equals("OBJECT_FINALIZE")) {
+            removed = false;
+        } else if (eventType.equals("OBJECT_DELETE") || eventType.equals("OBJECT_ARCHIVE")) {
+            if (attributes.has("overwrittenByGeneration")) {
+                // replaced by a new generation, which has its own OBJECT_FINALIZE
+                return null;
+            }
+            removed = true;
+        } else {
+            return null;
+        }
+
+        JsonNode object = null;
+        if (message.has("data") && message.get("data").asText().length() > 0) {
+            object = MAPPER.readTree(BaseEncoding.base64().decode(message.get("data").asText()));
+        }
+        final String generation = attributes.path("objectGeneration").asText();
+        return new NotificationEvent(attributes.path("bucketId").asText(),
+                attributes.path("objectId").asText(),
+                removed,
+                object == null || removed ? -1 : object.path("size").asLong(-1),
+                object == null || !object.has("etag") ? null : object.get("etag").asText(),
+                parseTime(attributes.path("eventTime").asText()),
+                generation);
+    }
+
+    private static long parseTime(String time) {
+        if (time.length() == 0) {
+            return -1;
+        }
+        try {
+            return ISODateTimeFormat.dateTimeParser().parseMillis(time);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (removed ? "removed " : "created ") + bucket + "/" + key;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import lombok.Getter;
+
+/**
+ * A message received from a {@link NotificationSource}. It stays with the source until acknowledged.
+ */
+public class NotificationMessage {
+
+    // identifies the message to its source when acknowledging it
+    @Getter
+    private final String handle;
+    @Getter
+    private final String body;
+
+    public NotificationMessage(String handle, String body) {
+        this.handle = handle;
+        this.body = body;
+    }
+
+    @Override
+    public String toString() {
+        return handle;
+    }
+}
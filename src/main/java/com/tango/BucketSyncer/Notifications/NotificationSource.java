@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A queue of bucket notifications. Messages are delivered at least once: a message that is received but
+ * not acknowledged is received again later.
+ */
+public interface NotificationSource {
+
+    /**
+     * Receives the messages that are waiting, up to maxMessages. Returns an empty list if there are none.
+     */
+    List<NotificationMessage> receive(int maxMessages) throws IOException;
+
+    /**
+     * Removes messages whose changes have been mirrored.
+     */
+    void acknowledge(List<NotificationMessage> messages) throws IOException;
+
+}
@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import lombok.Cleanup;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Receives notifications from the local file system, e.g. to test or replay them, or when another process
+ * pulls them from a queue BucketSyncer cannot read directly. In a directory every file is one message, and
+ * acknowledged files are deleted; files whose name starts with '.' are still being written. A file holds one
+ * message per line and is read from where the last acknowledged line ended, remembered until the JVM exits.
+ */
+@Slf4j
+public class SpoolNotificationSource implements NotificationSource {
+
+    private final File spool;
+
+    // for a file: where the first line that is not acknowledged starts, where the lines received since
+    // start, and where they end
+    private long acknowledgedOffset = 0;
+    private final List<Long> receivedLineStarts = new ArrayList<Long>();
+    private long receivedEnd = 0;
+
+    public SpoolNotificationSource(File spool) {
+        this.spool = spool;
+    }
+
+    @Override
+    public List<NotificationMessage> receive(int maxMessages) throws IOException {
+        if (spool.isDirectory()) {
+            return receiveFiles(maxMessages);
+        }
+        if (!spool.exists()) {
+            return new ArrayList<NotificationMessage>();
+        }
+        return receiveLines(maxMessages);
+    }
+
+    private List<NotificationMessage> receiveFiles(int maxMessages) throws IOException {
+        final List<NotificationMessage> messages = new ArrayList<NotificationMessage>();
+        final File[] files = spool.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + spool);
+        }
+        // oldest names first, for spools that name files by time
+        Arrays.sort(files);
+        for (File file : files) {
+            if (messages.size() >= maxMessages) {
+                break;
+            }
+            if (file.isFile() && !file.getName().startsWith(".")) {
+                messages.add(new NotificationMessage(file.getPath(), Files.toString(file, Charsets.UTF_8)));
+            }
+        }
+        return messages;
+    }
+
+    private List<NotificationMessage> receiveLines(int maxMessages) throws IOException {
+        final List<NotificationMessage> messages = new ArrayList<NotificationMessage>();
+        receivedLineStarts.clear();
+        @Cleanup RandomAccessFile file = new RandomAccessFile(spool, "r");
+        if (file.length() < acknowledgedOffset) {
+            log.info("{} was truncated, reading it from the start", spool);
+            acknowledgedOffset = 0;
+        }
+        file.seek(acknowledgedOffset);
+        while (messages.size() < maxMessages) {
+            final long start = file.getFilePointer();
+            final String line = readLine(file);
+            if (line == null) {
+                break;
+            }
+            if (line.trim().length() > 0) {
+                receivedLineStarts.add(start);
+                messages.add(new NotificationMessage(String.valueOf(start), line));
+            }
+        }
+        receivedEnd = file.getFilePointer();
+        return messages;
+    }
+
+    /**
+     * @return the next line ending in a newline, or null if there is none yet
+     */
+    private static String readLine(RandomAccessFile file) throws IOException {
+        final long start = file.getFilePointer();
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = file.read()) != -1) {
+            if (b == '\n') {
+                return new String(line.toByteArray(), Charsets.UTF_8);
+            }
+            line.write(b);
+        }
+        // a line that is still being written
+        file.seek(start);
+        return null;
+    }
+
+    @Override
+    public void acknowledge(List<NotificationMessage> messages) throws IOException {
+        if (spool.isDirectory()) {
+            for (NotificationMessage message : messages) {
+                final File file = new File(message.getHandle());
+                if (!file.delete() && file.exists()) {
+                    log.warn("Cannot delete notification {}, it will be received again", file);
+                }
+            }
+            return;
+        }
+
+        // move past the received lines, or up to the first one that was not acknowledged
+        final Set<Long> acknowledged = new HashSet<Long>();
+        for (NotificationMessage message : messages) {
+            acknowledged.add(Long.valueOf(message.getHandle()));
+        }
+        acknowledgedOffset = receivedEnd;
+        for (Long start : receivedLineStarts) {
+            if (!acknowledged.contains(start)) {
+                acknowledgedOffset = start;
+                break;
+            }
+        }
+        receivedLineStarts.clear();
+    }
+
+}
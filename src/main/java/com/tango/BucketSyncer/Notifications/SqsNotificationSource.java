@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.Notifications;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.tango.BucketSyncer.MirrorOptions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives notifications from an SQS queue, or any queue with the SQS API. Acknowledged messages are
+ * deleted; the others become visible again once their visibility timeout expires.
+ */
+@Slf4j
+public class SqsNotificationSource implements NotificationSource {
+
+    // SQS receives and deletes at most 10 messages per request
+    private static final int MAX_REQUEST_MESSAGES = 10;
+    // seconds a receive waits for messages when the queue is empty
+    private static final int WAIT_TIME_SECONDS = 1;
+
+    private final AmazonSQSClient client;
+    private final String queueUrl;
+
+    public SqsNotificationSource(MirrorOptions options) {
+        ClientConfiguration clientConfiguration = new ClientConfiguration();
+        if (options.getHasProxy()) {
+            clientConfiguration = clientConfiguration
+                    .withProxyHost(options.getProxyHost())
+                    .withProxyPort(options.getProxyPort());
+        }
+        this.queueUrl = options.getNotificationQueue();
+        this.client = new AmazonSQSClient(options, clientConfiguration);
+        final URI uri = URI.create(queueUrl);
+        client.setEndpoint(uri.getScheme() + "://" + uri.getAuthority());
+    }
+
+    @Override
+    public List<NotificationMessage> receive(int maxMessages) throws IOException {
+        final List<NotificationMessage> messages = new ArrayList<NotificationMessage>();
+        try {
+            while (messages.size() < maxMessages) {
+                final ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+                        .withMaxNumberOfMessages(Math.min(MAX_REQUEST_MESSAGES, maxMessages - messages.size()))
+                        .withWaitTimeSeconds(messages.isEmpty() ? WAIT_TIME_SECONDS : 0);
+                final List<Message> received = client.receiveMessage(request).getMessages();
+                if (received.isEmpty()) {
+                    break;
+                }
+                for (Message message : received) {
+                    messages.add(new NotificationMessage(message.getReceiptHandle(), message.getBody()));
+                }
+            }
+        } catch (AmazonClientException e) {
+            if (messages.isEmpty()) {
+                throw new IOException("Error receiving from " + queueUrl, e);
+            }
+            // handle what was received, the rest waits for the next cycle
+            log.warn("Error receiving from {} after {} messages: {}", new Object[]{queueUrl, messages.size(), e});
+        }
+        return messages;
+    }
+
+    @Override
+    public void acknowledge(List<NotificationMessage> messages) throws IOException {
+        int failed = 0;
+        for (int i = 0; i < messages.size(); i += MAX_REQUEST_MESSAGES) {
+            final List<DeleteMessageBatchRequestEntry> entries = new ArrayList<DeleteMessageBatchRequestEntry>();
+            for (int j = i; j < Math.min(i + MAX_REQUEST_MESSAGES, messages.size()); j++) {
+                entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(j), messages.get(j).getHandle()));
+            }
+            try {
+                final DeleteMessageBatchResult result = client.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries));
+                for (BatchResultErrorEntry error : result.getFailed()) {
+                    log.warn("Error deleting message from {}: {} {}", new Object[]{queueUrl, error.getCode(), error.getMessage()});
+                    failed++;
+                }
+            } catch (AmazonClientException e) {
+                throw new IOException("Error deleting messages from " + queueUrl, e);
+            }
+        }
+        if (failed > 0) {
+            // received and mirrored again once visible
+            log.warn("{} of {} messages were not deleted from {}", new Object[]{failed, messages.size(), queueUrl});
+        }
+    }
+
+}
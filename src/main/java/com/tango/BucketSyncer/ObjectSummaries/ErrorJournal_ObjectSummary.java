@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.ObjectSummaries;
+
+import com.tango.BucketSyncer.ErrorJournal;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * An object that failed in an earlier run, as recorded in the error journal when it failed.
+ */
+public class ErrorJournal_ObjectSummary implements ObjectSummary {
+    @Getter
+    private final ErrorJournal.Entry entry;
+
+    public ErrorJournal_ObjectSummary(ErrorJournal.Entry entry) {
+        this.entry = entry;
+    }
+
+    @Override
+    public String getKey() {
+        return entry.getKey();
+    }
+
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
+    @Override
+    public Date getLastModified() {
+        return entry.getLastModified() < 0 ? null : new Date(entry.getLastModified());
+    }
+
+    @Override
+    public String getETag() {
+        return entry.getEtag();
+    }
+
+    @Override
+    public String getOwnerId() {
+        return null;
+    }
+
+    @Override
+    public String getMirroredETag() {
+        return entry.getEtag();
+    }
+
+    @Override
+    public String toString() {
+        return entry.getKey();
+    }
+}
@@ -45,4 +45,15 @@ public class GCS_ObjectSummary implements ObjectSummary {
     public String getETag() {
         return storageObject.getEtag();
     }
+
+    @Override
+    public String getOwnerId() {
+        return storageObject.getOwner() == null ? null : storageObject.getOwner().getEntityId();
+    }
+
+    @Override
+    public String getMirroredETag() {
+        // copies to GCS record the source ETag in the object metadata
+        return storageObject.getMetadata() == null ? null : storageObject.getMetadata().get("Etag");
+    }
 }
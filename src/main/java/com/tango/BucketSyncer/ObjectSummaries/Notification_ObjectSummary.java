@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.ObjectSummaries;
+
+import com.tango.BucketSyncer.Notifications.NotificationEvent;
+
+import java.util.Date;
+
+/**
+ * An object as described by its latest notification, under the key it has in the bucket being worked on.
+ */
+public class Notification_ObjectSummary implements ObjectSummary {
+    private final String key;
+    private final NotificationEvent event;
+
+    public Notification_ObjectSummary(String key, NotificationEvent event) {
+        this.key = key;
+        this.event = event;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public long getSize() {
+        return event.getSize();
+    }
+
+    @Override
+    public Date getLastModified() {
+        return event.getEventTime() < 0 ? null : new Date(event.getEventTime());
+    }
+
+    @Override
+    public String getETag() {
+        return event.getEtag();
+    }
+
+    @Override
+    public String getOwnerId() {
+        return null;
+    }
+
+    @Override
+    public String getMirroredETag() {
+        return event.getEtag();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
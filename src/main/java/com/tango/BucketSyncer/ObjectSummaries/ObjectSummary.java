@@ -26,4 +26,9 @@ public interface ObjectSummary {
     public Date getLastModified();
 
     public String getETag();
+
+    public String getOwnerId();
+
+    // ETag of the source object this object was mirrored from, or null if it was not written by a mirror
+    public String getMirroredETag();
 }
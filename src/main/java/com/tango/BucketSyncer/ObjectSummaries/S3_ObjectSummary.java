@@ -45,4 +45,15 @@ public class S3_ObjectSummary implements ObjectSummary {
     public String getETag() {
         return s3ObjectSummary.getETag();
     }
+
+    @Override
+    public String getOwnerId() {
+        return s3ObjectSummary.getOwner() == null ? null : s3ObjectSummary.getOwner().getId();
+    }
+
+    @Override
+    public String getMirroredETag() {
+        // S3 to S3 copies keep the source ETag
+        return s3ObjectSummary.getETag();
+    }
 }
@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.ObjectSummaries;
+
+import com.tango.BucketSyncer.DestinationIndex;
+
+import java.util.Date;
+
+/**
+ * An object recorded in a listing snapshot, under the key it has in the destination.
+ */
+public class Snapshot_ObjectSummary implements ObjectSummary {
+    private final String key;
+    private final DestinationIndex.Entry entry;
+
+    public Snapshot_ObjectSummary(String key, DestinationIndex.Entry entry) {
+        this.key = key;
+        this.entry = entry;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
+    @Override
+    public Date getLastModified() {
+        return entry.getLastModified() < 0 ? null : new Date(entry.getLastModified());
+    }
+
+    @Override
+    public String getETag() {
+        return entry.getEtag();
+    }
+
+    @Override
+    public String getOwnerId() {
+        return null;
+    }
+
+    @Override
+    public String getMirroredETag() {
+        return entry.getEtag();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Digests of the source listing per prefix, kept on local disk between runs. Keys are grouped by their first
+ * --prefix-digest-depth path segments under the source prefix. A group's digest is the sum of a hash of
+ * (key, size, ETag) over its keys, so it changes when any key is added, changed or removed.
+ *
+ * While the source is listed, a group whose digest matches the one of the last run that mirrored it is skipped:
+ * its keys are neither compared nor copied, and the destination is only listed under groups that changed.
+ * Keys above the group depth are not grouped. They are always compared, and have a digest of their own.
+ *
+ * The digests only replace the previous ones when the run has completed. Groups holding keys that failed are
+ * left out, so that the next run descends them again.
+ */
+@Slf4j
+public class PrefixDigests {
+
+    public static final String DIGESTS_FILE = "digests.dat";
+    private static final String MAGIC = "BucketSyncerPrefixDigests1";
+
+    // a group holding more keys than this is compared key by key as it is listed, rather than buffered until its end
+    public static final int MAX_BUFFERED_KEYS = 100000;
+
+    public static class Digest {
+        private long sum = 0;
+        @Getter
+        private long count = 0;
+
+        public Digest() {
+        }
+
+        private Digest(long sum, long count) {
+            this.sum = sum;
+            this.count = count;
+        }
+
+        public void add(ObjectSummary summary) {
+            final Hasher hasher = Hashing.murmur3_128().newHasher()
+                    .putString(summary.getKey(), Charsets.UTF_8)
+                    .putByte((byte) 0)
+                    .putLong(summary.getSize())
+                    .putByte((byte) 0);
+            if (summary.getETag() != null) {
+                hasher.putString(summary.getETag(), Charsets.UTF_8);
+            }
+            sum += hasher.hash().asLong();
+            count++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Digest)) {
+                return false;
+            }
+            final Digest other = (Digest) o;
+            return sum == other.sum && count == other.count;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (sum ^ (sum >>> 32) ^ count);
+        }
+    }
+
+    @Getter
+    private final File dir;
+    private final File file;
+    private final String identity;
+    private final String base;
+    @Getter
+    private final int depth;
+
+    private final Map<String, Digest> previous = new TreeMap<String, Digest>(DestinationIndex.KEY_ORDER);
+    private Digest previousLoose;
+    private final Map<String, Digest> current = new TreeMap<String, Digest>(DestinationIndex.KEY_ORDER);
+    private final Digest currentLoose = new Digest();
+
+    @Getter
+    private volatile boolean finished = false;
+    @Getter
+    private volatile boolean failed = false;
+
+    /**
+     * @param base the source prefix keys are grouped under
+     */
+    public PrefixDigests(File dir, String identity, String base, int depth) throws IOException {
+        this.dir = dir;
+        this.file = new File(dir, DIGESTS_FILE);
+        this.identity = identity;
+        this.base = base == null ? "" : base;
+        this.depth = depth;
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create prefix digests directory: " + dir);
+        }
+        if (file.exists()) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            final String magic = in.readUTF();
+            final String digestsIdentity = in.readUTF();
+            final int digestsDepth = in.readInt();
+            if (!MAGIC.equals(magic) || !identity.equals(digestsIdentity) || digestsDepth != depth) {
+                log.warn("Ignoring prefix digests in {}, they were written for {} at depth {}", new Object[]{dir, digestsIdentity, digestsDepth});
+                return;
+            }
+            if (in.readBoolean()) {
+                previousLoose = new Digest(in.readLong(), in.readLong());
+            }
+            final int groups = in.readInt();
+            for (int i = 0; i < groups; i++) {
+                previous.put(in.readUTF(), new Digest(in.readLong(), in.readLong()));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    public boolean hasPrevious() {
+        return previousLoose != null || !previous.isEmpty();
+    }
+
+    /**
+     * @return the group of a key: its prefix up to the depth, or null if the key is above the depth
+     */
+    public String getGroup(String key) {
+        return getGroup(key, base, depth);
+    }
+
+    public static String getGroup(String key, String base, int depth) {
+        if (!key.startsWith(base)) {
+            return null;
+        }
+        int end = base.length();
+        for (int i = 0; i < depth; i++) {
+            final int slash = key.indexOf('/', end);
+            if (slash < 0) {
+                return null;
+            }
+            end = slash + 1;
+        }
+        return key.substring(0, end);
+    }
+
+    /**
+     * Records the digest of a group, listed in full.
+     *
+     * @return true if the group is unchanged since the last run that mirrored it
+     */
+    public synchronized boolean put(String group, Digest digest) {
+        current.put(group, digest);
+        return digest.equals(previous.get(group));
+    }
+
+    public synchronized void addLoose(ObjectSummary summary) {
+        currentLoose.add(summary);
+    }
+
+    /**
+     * Called once the source listing is complete.
+     */
+    public void finish() {
+        finished = true;
+        log.info("prefix digests: {} of {} prefixes changed", getChangedGroups().size(), current.size());
+    }
+
+    /**
+     * Called if the source listing did not complete. The digests must not be committed.
+     */
+    public void markFailed() {
+        failed = true;
+        finished = true;
+    }
+
+    /**
+     * @return true if keys above the group depth were added, changed or removed
+     */
+    public synchronized boolean isLooseChanged() {
+        return !currentLoose.equals(previousLoose == null ? new Digest() : previousLoose);
+    }
+
+    /**
+     * @return the groups added, changed or removed since the last run, in listing order
+     */
+    public synchronized List<String> getChangedGroups() {
+        final TreeSet<String> changed = new TreeSet<String>(DestinationIndex.KEY_ORDER);
+        for (Map.Entry<String, Digest> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String group : previous.keySet()) {
+            if (!current.containsKey(group)) {
+                changed.add(group);
+            }
+        }
+        return new ArrayList<String>(changed);
+    }
+
+    /**
+     * Replaces the previous digests with the ones of this run, leaving out the groups of keys that failed.
+     */
+    public synchronized void commit(Set<String> failedKeys) throws IOException {
+        if (failed || !finished) {
+            throw new IllegalStateException("source listing did not complete, not committing prefix digests");
+        }
+        final Set<String> failedGroups = new TreeSet<String>(DestinationIndex.KEY_ORDER);
+        boolean looseFailed = false;
+        for (String key : failedKeys) {
+            final String group = getGroup(key);
+            if (group != null) {
+                failedGroups.add(group);
+            } else if (key.startsWith(base)) {
+                looseFailed = true;
+            }
+        }
+
+        final File nextFile = new File(dir, DIGESTS_FILE + ".next");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nextFile)));
+        try {
+            out.writeUTF(MAGIC);
+            out.writeUTF(identity);
+            out.writeInt(depth);
+            out.writeBoolean(!looseFailed);
+            if (!looseFailed) {
+                out.writeLong(currentLoose.sum);
+                out.writeLong(currentLoose.count);
+            }
+            int groups = 0;
+            for (String group : current.keySet()) {
+                if (!failedGroups.contains(group)) {
+                    groups++;
+                }
+            }
+            out.writeInt(groups);
+            for (Map.Entry<String, Digest> entry : current.entrySet()) {
+                if (!failedGroups.contains(entry.getKey())) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().sum);
+                    out.writeLong(entry.getValue().count);
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace prefix digests file: " + file);
+        }
+        if (!nextFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + nextFile + " to " + file);
+        }
+        log.info("prefix digests in {} updated ({} prefixes with failed keys left out)", dir, failedGroups.size());
+    }
+
+}
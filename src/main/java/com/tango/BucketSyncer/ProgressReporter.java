@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reports how far a run has got and when it should end: the keys and bytes listed, compared and copied, what
+ * remains, the current rates and an ETA. Every report is one log line and, if a progress file is given, a JSON
+ * object that replaces the file, so a monitor always reads a complete report.
+ * <p/>
+ * What remains is known exactly once the listing is done. Until then it is taken from the expected number of
+ * keys and bytes if they were given, e.g. from an S3 Inventory report or the bucket size metrics, or else from
+ * the keys listed so far, which makes the ETA a lower bound. A report only reads counters and rate windows,
+ * so it costs the same on a run of a hundred keys or a hundred million.
+ */
+@Slf4j
+public class ProgressReporter {
+
+    // how the remaining work was estimated
+    public static final String BASIS_LISTED = "listed";
+    public static final String BASIS_EXPECTED = "expected";
+    public static final String BASIS_LISTED_SO_FAR = "listed so far";
+
+    // the rate window the ETA is computed over
+    private static final long ETA_WINDOW = MirrorStats.RATE_WINDOWS[MirrorStats.RATE_WINDOWS.length - 1];
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MirrorContext context;
+    @Getter
+    private final File file;
+    private final long expectedKeys;
+    private final long expectedBytes;
+
+    /**
+     * @param file          file to write each report to, or null to only log it
+     * @param expectedKeys  number of keys the run is expected to compare, or 0 if unknown
+     * @param expectedBytes number of bytes the run is expected to compare, or 0 if unknown
+     */
+    public ProgressReporter(MirrorContext context, File file, long expectedKeys, long expectedBytes) {
+        this.context = context;
+        this.file = file;
+        this.expectedKeys = expectedKeys;
+        this.expectedBytes = expectedBytes;
+    }
+
+    /**
+     * Estimates the seconds left to work through the remaining amount at the given rate per second.
+     *
+     * @return the seconds left, 0 if nothing remains, or -1 if nothing was done recently to estimate from
+     */
+    static long getEta(long remaining, double rate) {
+        if (remaining <= 0) {
+            return 0;
+        }
+        if (rate <= 0) {
+            return -1;
+        }
+        return (long) Math.ceil(remaining / rate);
+    }
+
+    private static double getRate(Map<String, RateWindow> rates, String name, long windowMillis) {
+        final RateWindow rate = rates.get(name);
+        return rate == null ? 0 : rate.getRate(windowMillis);
+    }
+
+    /**
+     * @return the current progress of the run as a JSON object
+     */
+    public ObjectNode getProgress() {
+        final MirrorStats stats = context.getStats();
+        final boolean listingDone = stats.isListingDone();
+        final long keysQueued = stats.keysQueued.get();
+        final long bytesQueued = stats.bytesQueued.get();
+        final long keysCompared = stats.keysCompared.get();
+        final long bytesCompared = stats.bytesCompared.get();
+
+        final String basis;
+        final long totalKeys;
+        final long totalBytes;
+        if (listingDone) {
+            basis = BASIS_LISTED;
+            totalKeys = keysQueued;
+            totalBytes = bytesQueued;
+        } else if (expectedKeys > 0 || expectedBytes > 0) {
+            basis = BASIS_EXPECTED;
+            totalKeys = Math.max(expectedKeys, keysQueued);
+            totalBytes = Math.max(expectedBytes, bytesQueued);
+        } else {
+            basis = BASIS_LISTED_SO_FAR;
+            totalKeys = keysQueued;
+            totalBytes = bytesQueued;
+        }
+        final long remainingKeys = Math.max(totalKeys - keysCompared, 0);
+        final long remainingBytes = Math.max(totalBytes - bytesCompared, 0);
+
+        final Map<String, RateWindow> rates = stats.getRates();
+        // with only one of the expected counts, the other is not known for the keys not listed yet
+        final boolean expected = basis.equals(BASIS_EXPECTED);
+        final long keysEta = expected && expectedKeys <= 0 ? 0 : getEta(remainingKeys, getRate(rates, "objects compared", ETA_WINDOW));
+        final long bytesEta = expected && expectedBytes <= 0 ? 0 : getEta(remainingBytes, getRate(rates, "bytes compared", ETA_WINDOW));
+        final long eta = keysEta < 0 || bytesEta < 0 ? -1 : Math.max(keysEta, bytesEta);
+
+        final ObjectNode node = MAPPER.createObjectNode();
+        node.put("time", System.currentTimeMillis());
+        node.put("source", stats.getSource());
+        node.put("destination", stats.getDestination());
+        node.put("listingDone", listingDone);
+        node.put("keysRead", stats.objectsRead.get());
+        node.put("keysListed", keysQueued);
+        node.put("bytesListed", bytesQueued);
+        node.put("keysCompared", keysCompared);
+        node.put("bytesCompared", bytesCompared);
+        node.put("keysCopied", stats.objectsCopied.get());
+        node.put("bytesCopied", stats.bytesCopied.get());
+        node.put("copyErrors", stats.copyErrors.get());
+        node.put("keysRemaining", remainingKeys);
+        node.put("bytesRemaining", remainingBytes);
+        node.put("remainingBasis", basis);
+        node.put("etaSeconds", eta);
+        if (eta >= 0) {
+            node.put("eta", System.currentTimeMillis() + eta * MirrorStats.SECOND);
+        }
+        final ObjectNode rateNode = node.putObject("rates");
+        for (Map.Entry<String, RateWindow> entry : rates.entrySet()) {
+            final ObjectNode windows = rateNode.putObject(entry.getKey());
+            for (int i = 0; i < MirrorStats.RATE_WINDOWS.length; i++) {
+                windows.put(MirrorStats.RATE_WINDOW_NAMES[i], entry.getValue().getRate(MirrorStats.RATE_WINDOWS[i]));
+            }
+        }
+        return node;
+    }
+
+    static String formatEta(long seconds) {
+        if (seconds < 0) {
+            return "unknown";
+        }
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+
+    /**
+     * @return the progress as one line for the log
+     */
+    static String format(ObjectNode progress) {
+        final String basis = progress.get("remainingBasis").asText();
+        return String.format("progress: %d of %s keys compared (%d copied, %d errors), %d MB of %s MB, %.1f keys/s, ETA %s%s",
+                progress.get("keysCompared").asLong(),
+                (basis.equals(BASIS_LISTED) ? "" : "~") + (progress.get("keysCompared").asLong() + progress.get("keysRemaining").asLong()),
+                progress.get("keysCopied").asLong(),
+                progress.get("copyErrors").asLong(),
+                progress.get("bytesCompared").asLong() / MirrorConstants.MB,
+                (basis.equals(BASIS_LISTED) ? "" : "~") + (progress.get("bytesCompared").asLong() + progress.get("bytesRemaining").asLong()) / MirrorConstants.MB,
+                progress.path("rates").path("objects compared").path(MirrorStats.RATE_WINDOW_NAMES[1]).asDouble(),
+                formatEta(progress.get("etaSeconds").asLong()),
+                basis.equals(BASIS_LISTED_SO_FAR) ? " (at least, listing not done)" : "");
+    }
+
+    /**
+     * Logs the current progress and writes it to the progress file, if any.
+     */
+    public void report() {
+        final ObjectNode progress = getProgress();
+        log.info(format(progress));
+        if (file == null) {
+            return;
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        try {
+            MAPPER.writeValue(tmp, progress);
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            log.error("Cannot write progress to {}: {}", file, e.toString());
+        }
+    }
+
+}
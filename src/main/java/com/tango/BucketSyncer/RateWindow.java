@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+/**
+ * Rate of change of a cumulative count over the last few seconds or minutes. The count is sampled about once a
+ * second, and the rate over a window is the difference between the latest sample and the oldest one within the
+ * window, so reading a rate costs nothing on the threads that update the count.
+ */
+public class RateWindow {
+
+    private final long[] times;
+    private final long[] values;
+    // index of the next sample to write, and the number of samples held
+    private int next = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity the number of samples to keep, e.g. 301 for five minutes of samples taken every second
+     */
+    public RateWindow(int capacity) {
+        this.times = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    public synchronized void sample(long timeMillis, long value) {
+        times[next] = timeMillis;
+        values[next] = value;
+        next = (next + 1) % times.length;
+        size = Math.min(size + 1, times.length);
+    }
+
+    /**
+     * @return the average change per second over the last windowMillis, or over all samples held if they cover
+     * less than that. 0 until there are two samples.
+     */
+    public synchronized double getRate(long windowMillis) {
+        if (size < 2) {
+            return 0;
+        }
+        final int latest = (next - 1 + times.length) % times.length;
+        int oldest = latest;
+        for (int i = 1; i < size; i++) {
+            final int index = (latest - i + times.length) % times.length;
+            if (times[latest] - times[index] > windowMillis) {
+                break;
+            }
+            oldest = index;
+        }
+        final long elapsed = times[latest] - times[oldest];
+        return elapsed <= 0 ? 0 : (values[latest] - values[oldest]) * 1000.0d / elapsed;
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.KeyListers.KeyLister;
+import com.tango.BucketSyncer.KeyListers.ReconcileKeyLister;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Copies the source keys that a listing-based comparison finds missing or changed in the destination.
+ * Used to finish a seed run, whose copy jobs skip the per-key comparison.
+ */
+@Slf4j
+public class ReconcileMaster extends CopyMaster {
+
+    public ReconcileMaster(Object sourceClient, Object destClient, BlockingQueue<Runnable> workQueue, ThreadPoolExecutor executorService, MirrorContext context) {
+        super(sourceClient, destClient, workQueue, executorService, context);
+    }
+
+    @Override
+    protected String getJournalShard() {
+        // the pass compares both listings in full, there is nothing to resume
+        return null;
+    }
+
+    @Override
+    protected boolean isPreCompared() {
+        return true;
+    }
+
+    @Override
+    protected KeyLister getKeyLister(MirrorOptions options) {
+        final int maxQueueCapacity = MirrorMaster.getMaxQueueCapacity(options);
+        final KeyLister sourceLister = getSourceKeyLister(options);
+        final KeyLister destLister = KeyLister.forStore(options.getDestStore(),
+                destClient,
+                options.getDestinationBucket(),
+                options.hasDestPrefix() ? options.getDestPrefix() : options.getPrefix(),
+                context,
+                maxQueueCapacity);
+        return new ReconcileKeyLister(sourceLister, destLister, context, maxQueueCapacity);
+    }
+
+}
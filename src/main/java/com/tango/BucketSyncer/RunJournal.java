@@ -0,0 +1,313 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only journal of the progress of a run, so that a run that was killed can be resumed.
+ * Progress is journaled per shard, one per listing (e.g. the copy and the delete listing), as the key up to
+ * which every listed key has finished plus the keys finished beyond it. Keys finish out of listing order,
+ * as jobs run concurrently. Records are synced to disk in batches, so a crash loses at most the last
+ * {@link #FLUSH_MILLIS} of progress, and those keys are processed again.
+ *
+ * A resumed run starts each listing after the key its shard had reached, and skips the keys finished beyond it.
+ * The journal is removed once a run completes.
+ */
+@Slf4j
+public class RunJournal {
+
+    public static final String JOURNAL_FILE = "journal.dat";
+    private static final String MAGIC = "BucketSyncerJournal1";
+
+    public static final long FLUSH_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    // records appended before the journal is rewritten with just the current progress
+    public static final int COMPACT_RECORDS = 1000000;
+
+    private static final byte DONE_THROUGH = 'M';
+    private static final byte FINISHED = 'K';
+
+    private static class Shard {
+        // every listed key up to this one has finished, null before the first
+        private String doneThrough;
+        private boolean doneThroughChanged = false;
+        // the marker the listing of a resumed run starts after
+        private String resumeMarker;
+        private String lastListed;
+        private final TreeSet<String> inFlight = new TreeSet<String>(DestinationIndex.KEY_ORDER);
+        // finished keys after doneThrough
+        private final TreeSet<String> finishedAhead = new TreeSet<String>(DestinationIndex.KEY_ORDER);
+    }
+
+    @Getter
+    private final File file;
+    private final String identity;
+    private final Map<String, Shard> shards = new HashMap<String, Shard>();
+    @Getter
+    private final boolean resumed;
+
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private int records = 0;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("run-journal-%d").build());
+
+    /**
+     * Opens the journal in the given directory.
+     *
+     * @param resume whether to resume the run recorded in it, rather than start a new one
+     */
+    public RunJournal(File dir, String identity, boolean resume) throws IOException {
+        this.identity = identity;
+        this.file = new File(dir, JOURNAL_FILE);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory: " + dir);
+        }
+        this.resumed = resume && file.exists() && load();
+        for (Shard shard : shards.values()) {
+            shard.resumeMarker = shard.doneThrough;
+        }
+        // starts a compacted journal holding what was loaded
+        compact();
+
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    log.error("Error writing run journal {}: ", file, e);
+                }
+            }
+        }, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if the journal was written for this source and destination
+     */
+    private boolean load() throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            final String magic = in.readUTF();
+            final String journalIdentity = in.readUTF();
+            if (!MAGIC.equals(magic) || !identity.equals(journalIdentity)) {
+                log.warn("Ignoring run journal {}, it was written for {}", file, journalIdentity);
+                return false;
+            }
+            while (true) {
+                final int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                final String shardName = in.readUTF();
+                final String key = in.readUTF();
+                final Shard shard = getShard(shardName);
+                if (type == DONE_THROUGH) {
+                    shard.doneThrough = key;
+                    shard.finishedAhead.headSet(key, true).clear();
+                } else if (shard.doneThrough == null || DestinationIndex.KEY_ORDER.compare(key, shard.doneThrough) > 0) {
+                    shard.finishedAhead.add(key);
+                }
+            }
+        } catch (EOFException e) {
+            // the last record was cut short by the crash
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    private Shard getShard(String name) {
+        Shard shard = shards.get(name);
+        if (shard == null) {
+            shard = new Shard();
+            shards.put(name, shard);
+        }
+        return shard;
+    }
+
+    /**
+     * @return the key a resumed listing of the shard starts after, or null to list from the start
+     */
+    public synchronized String getResumeMarker(String shardName) {
+        return getShard(shardName).resumeMarker;
+    }
+
+    /**
+     * Checks a listed key against the progress of the resumed run. Keys must be passed in listing order.
+     *
+     * @return true if the key finished before the run was resumed, and needs no job
+     */
+    public synchronized boolean skip(String shardName, String key) {
+        final Shard shard = getShard(shardName);
+        if (shard.doneThrough != null && DestinationIndex.KEY_ORDER.compare(key, shard.doneThrough) <= 0) {
+            return true;
+        }
+        if (!shard.finishedAhead.contains(key)) {
+            return false;
+        }
+        shard.lastListed = key;
+        advance(shard);
+        return true;
+    }
+
+    /**
+     * Records that a job was queued for a listed key. Keys must be passed in listing order.
+     */
+    public synchronized void started(String shardName, String key) {
+        final Shard shard = getShard(shardName);
+        shard.lastListed = key;
+        shard.inFlight.add(key);
+    }
+
+    /**
+     * Records that the job of a key has finished, whether it succeeded or not.
+     */
+    public synchronized void finished(String shardName, String key) {
+        final Shard shard = getShard(shardName);
+        shard.inFlight.remove(key);
+        shard.finishedAhead.add(key);
+        advance(shard);
+        if (shard.finishedAhead.contains(key)) {
+            append(FINISHED, shardName, key);
+        }
+    }
+
+    private void advance(Shard shard) {
+        final String doneThrough = shard.inFlight.isEmpty() ? shard.lastListed : shard.finishedAhead.lower(shard.inFlight.first());
+        if (doneThrough == null || (shard.doneThrough != null && DestinationIndex.KEY_ORDER.compare(doneThrough, shard.doneThrough) <= 0)) {
+            return;
+        }
+        shard.doneThrough = doneThrough;
+        shard.doneThroughChanged = true;
+        shard.finishedAhead.headSet(doneThrough, true).clear();
+    }
+
+    private void append(byte type, String shardName, String key) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(type);
+            out.writeUTF(shardName);
+            out.writeUTF(key);
+            records++;
+        } catch (IOException e) {
+            log.error("Error writing run journal {}, not journaling the rest of this run: ", file, e);
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Writes the progress made since the last flush and syncs it to disk.
+     */
+    public synchronized void flush() throws IOException {
+        if (out == null) {
+            return;
+        }
+        for (Map.Entry<String, Shard> entry : shards.entrySet()) {
+            final Shard shard = entry.getValue();
+            if (shard.doneThroughChanged) {
+                append(DONE_THROUGH, entry.getKey(), shard.doneThrough);
+                shard.doneThroughChanged = false;
+            }
+        }
+        if (records >= COMPACT_RECORDS) {
+            compact();
+            return;
+        }
+        if (out != null) {
+            out.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding only the current progress.
+     */
+    private void compact() throws IOException {
+        closeQuietly();
+        final File tmp = new File(file.getPath() + ".tmp");
+        fileOut = new FileOutputStream(tmp);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        out.writeUTF(MAGIC);
+        out.writeUTF(identity);
+        records = 0;
+        for (Map.Entry<String, Shard> entry : shards.entrySet()) {
+            final Shard shard = entry.getValue();
+            if (shard.doneThrough != null) {
+                append(DONE_THROUGH, entry.getKey(), shard.doneThrough);
+            }
+            shard.doneThroughChanged = false;
+            for (String key : shard.finishedAhead) {
+                append(FINISHED, entry.getKey(), key);
+            }
+        }
+        out.flush();
+        fileOut.getFD().sync();
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace run journal: " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        // the stream still writes to the renamed file
+    }
+
+    /**
+     * Stops journaling. The journal is removed if the run completed, and kept for --resume otherwise.
+     */
+    public synchronized void close(boolean completed) {
+        timer.shutdownNow();
+        if (completed) {
+            closeQuietly();
+            file.delete();
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            log.error("Error writing run journal {}: ", file, e);
+        }
+        closeQuietly();
+        log.info("run journal kept in {}, use --resume to continue this run", file);
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Error closing run journal {}: {}", file, e);
+            }
+            out = null;
+            fileOut = null;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * An exclusive lock on a local file, so that two mirrors of the same buckets never run at the same time,
+ * whether they are started by a scheduler or run as daemons.
+ */
+@Slf4j
+public class RunLock {
+
+    private final RandomAccessFile file;
+    private final FileLock lock;
+
+    private RunLock(RandomAccessFile file, FileLock lock) {
+        this.file = file;
+        this.lock = lock;
+    }
+
+    /**
+     * @return the lock, or null if another process (or another run in this one) holds it
+     */
+    public static RunLock tryAcquire(File lockFile) throws IOException {
+        if (lockFile.getParentFile() != null) {
+            lockFile.getParentFile().mkdirs();
+        }
+        final RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+        FileLock lock = null;
+        try {
+            lock = file.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by this JVM
+        } finally {
+            if (lock == null) {
+                file.close();
+            }
+        }
+        return lock == null ? null : new RunLock(file, lock);
+    }
+
+    public void release() {
+        try {
+            lock.release();
+            file.close();
+        } catch (IOException e) {
+            log.warn("Error releasing lock: {}", e);
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The report of a run as one JSON object, for capacity planning and monitoring: totals, request counts and
+ * latencies by store and operation, requests by billing class and the requests wasted, counts by key prefix, the slowest and largest keys, throttled requests, the
+ * busy threads minute by minute and the replication lag. Failed keys are referenced by the error journal they
+ * are recorded in rather than listed. The report replaces the file through a temporary file, so a reader never
+ * sees half a report.
+ */
+@Slf4j
+public class RunReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static double seconds(long micros) {
+        return micros / 1000000.0d;
+    }
+
+    private static ObjectNode histogram(ObjectNode node, LatencyHistogram histogram, double unitsPerSecond) {
+        node.put("count", histogram.getCount());
+        node.put("p50", histogram.getValueAtQuantile(0.5) / unitsPerSecond);
+        node.put("p90", histogram.getValueAtQuantile(0.9) / unitsPerSecond);
+        node.put("p99", histogram.getValueAtQuantile(0.99) / unitsPerSecond);
+        node.put("p999", histogram.getValueAtQuantile(0.999) / unitsPerSecond);
+        node.put("max", histogram.getMax() / unitsPerSecond);
+        node.put("sum", histogram.getSum() / unitsPerSecond);
+        return node;
+    }
+
+    /**
+     * @param completed true if the run got through every key
+     * @return the report of the run the stats of the context are for
+     */
+    public static ObjectNode build(MirrorContext context, boolean completed) {
+        final MirrorStats stats = context.getStats();
+        final long now = System.currentTimeMillis();
+
+        final ObjectNode report = MAPPER.createObjectNode();
+        report.put("source", stats.getSource());
+        report.put("destination", stats.getDestination());
+        report.put("start", stats.getStartMillis());
+        report.put("end", now);
+        report.put("durationSeconds", (now - stats.getStartMillis()) / 1000.0d);
+        report.put("completed", completed);
+
+        final ObjectNode totals = report.putObject("totals");
+        totals.put("keysRead", stats.objectsRead.get());
+        totals.put("keysCompared", stats.keysCompared.get());
+        totals.put("bytesCompared", stats.bytesCompared.get());
+        totals.put("keysCopied", stats.objectsCopied.get());
+        totals.put("bytesCopied", stats.bytesCopied.get());
+        totals.put("copyErrors", stats.copyErrors.get());
+        totals.put("keysDeleted", stats.objectsDeleted.get());
+        totals.put("deleteErrors", stats.deleteErrors.get());
+        totals.put("indexHits", stats.indexHits.get());
+        totals.put("prefixesSkipped", stats.prefixesSkipped.get());
+        totals.put("prefixKeysSkipped", stats.prefixKeysSkipped.get());
+        totals.put("queueFullWaits", stats.queueFullWaits.get());
+        totals.put("queueFullWaitSeconds", stats.queueFullWaitMillis.get() / 1000.0d);
+
+        // latencies in seconds, keyed by "store operation"
+        final ObjectNode operations = report.putObject("operations");
+        for (Map.Entry<String, LatencyHistogram> entry : stats.getLatencies().entrySet()) {
+            histogram(operations.putObject(entry.getKey()), entry.getValue(), 1000000.0d);
+        }
+
+        // requests by billing class and by "store operation", and the requests that did not help mirror anything
+        final ObjectNode requests = report.putObject("requests");
+        requests.put("total", stats.getTotalRequests());
+        requests.put("perKeyCopied", stats.getRequestsPerObjectCopied());
+        requests.put("retries", stats.getTotalRetries());
+        requests.put("unchangedKeys", stats.unchangedRequests.get());
+        requests.put("wasted", stats.getWastedRequests());
+        for (String store : new String[]{MirrorConstants.S3, MirrorConstants.GCS}) {
+            final ObjectNode classes = requests.putObject(store);
+            for (String requestClass : new String[]{MirrorStats.CLASS_A, MirrorStats.CLASS_B, MirrorStats.CLASS_FREE}) {
+                classes.put(requestClass, stats.getRequestCount(store, requestClass));
+            }
+        }
+        final Map<String, Long> retries = stats.getRetries();
+        final ObjectNode requestOperations = requests.putObject("operations");
+        for (Map.Entry<String, Long> entry : stats.getRequests().entrySet()) {
+            final ObjectNode operation = requestOperations.putObject(entry.getKey());
+            final Long retried = retries.get(entry.getKey());
+            operation.put("class", MirrorStats.getRequestClass(entry.getKey().split(" ", 2)[1]));
+            operation.put("count", entry.getValue());
+            operation.put("retries", retried == null ? 0 : retried);
+        }
+
+        final ObjectNode throttled = report.putObject("throttled");
+        throttled.put(MirrorConstants.S3, stats.getThrottled(MirrorConstants.S3));
+        throttled.put(MirrorConstants.GCS, stats.getThrottled(MirrorConstants.GCS));
+
+        final ObjectNode prefixes = report.putObject("prefixes");
+        for (Map.Entry<String, MirrorStats.PrefixCounts> entry : stats.getPrefixCounts().entrySet()) {
+            final MirrorStats.PrefixCounts counts = entry.getValue();
+            final ObjectNode prefix = prefixes.putObject(entry.getKey());
+            prefix.put("keys", counts.keys.get());
+            prefix.put("bytes", counts.bytes.get());
+            prefix.put("keysCopied", counts.keysCopied.get());
+            prefix.put("bytesCopied", counts.bytesCopied.get());
+            prefix.put("errors", counts.errors.get());
+        }
+
+        final ArrayNode slowest = report.putArray("slowestKeys");
+        for (TopKeys.Entry entry : stats.getSlowestKeys().getTop()) {
+            slowest.addObject().put("key", entry.getKey()).put("seconds", seconds(entry.getValue()));
+        }
+        final ArrayNode largest = report.putArray("largestKeys");
+        for (TopKeys.Entry entry : stats.getLargestKeys().getTop()) {
+            largest.addObject().put("key", entry.getKey()).put("bytes", entry.getValue());
+        }
+
+        final ArrayNode concurrency = report.putArray("concurrency");
+        for (MirrorStats.ConcurrencySample sample : stats.getConcurrency()) {
+            concurrency.addObject()
+                    .put("minute", sample.getMinute())
+                    .put("averageActive", sample.getAverageActive())
+                    .put("maxActive", sample.getMaxActive())
+                    .put("maxPoolSize", sample.getMaxPoolSize())
+                    .put("maxQueueDepth", sample.getMaxQueueDepth());
+        }
+
+        // lag in seconds, recorded in milliseconds
+        final ObjectNode lag = report.putObject("replicationLag");
+        histogram(lag, stats.getLag(), 1000.0d);
+        lag.put("oldestUnmirroredAgeSeconds", stats.getOldestUnmirroredAge() / 1000.0d);
+        final MirrorOptions options = context.getOptions();
+        if (options.hasLagSlo()) {
+            lag.put("sloSeconds", options.getLagSlo());
+            lag.put("sloMisses", stats.getLag().getCountAbove(options.getLagSloMillis()));
+        }
+
+        final ObjectNode errors = report.putObject("errors");
+        errors.put("count", stats.errorKeys.get());
+        if (stats.getErrorKeyFile() != null) {
+            errors.put("file", stats.getErrorKeyFile());
+        } else {
+            // without a journal kept after the run, the first failed keys are all there is
+            final ArrayNode keys = errors.putArray("firstKeys");
+            synchronized (stats.errorKeyList) {
+                for (String key : new ArrayList<String>(stats.errorKeyList)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Writes the report of the run to the file, replacing the report of an earlier run.
+     */
+    public static void write(MirrorContext context, boolean completed, File file) throws IOException {
+        final ObjectNode report = build(context, completed);
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        MAPPER.writeValue(tmp, report);
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        log.info("run report written to {}", file);
+    }
+
+}
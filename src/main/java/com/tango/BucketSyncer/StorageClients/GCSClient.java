@@ -73,7 +73,7 @@ public class GCSClient implements StorageClient {
             // set up global Storage instance
             gcsClient = new Storage.Builder(gcsHttpTransport,
                     GCS_JSON_FACTORY,
-                    gcsCredential)
+                    Throttling.getGcsRequestInitializer(gcsCredential))
                     .setApplicationName(options.getGCS_APPLICATION_NAME())
                     .build();
         } catch (GeneralSecurityException e) {
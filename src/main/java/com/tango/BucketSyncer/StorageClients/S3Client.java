@@ -25,13 +25,15 @@ public class S3Client implements StorageClient {
 
     public void createClient(MirrorOptions options) {
         ClientConfiguration clientConfiguration = new ClientConfiguration().withProtocol(Protocol.HTTP)
-                .withMaxConnections(options.getMaxConnections());
+                .withMaxConnections(options.getMaxConnections())
+                .withRetryPolicy(Throttling.getS3RetryPolicy(ClientConfiguration.DEFAULT_RETRY_POLICY.getMaxErrorRetry()));
         if (options.getHasProxy()) {
             clientConfiguration = clientConfiguration
                     .withProxyHost(options.getProxyHost())
                     .withProxyPort(options.getProxyPort());
         }
         this.s3Client = new AmazonS3Client(options, clientConfiguration);
+        s3Client.addRequestHandler(Throttling.getS3RequestHandler());
         if (options.hasEndpoint()) {
             s3Client.setEndpoint(options.getEndpoint());
         }
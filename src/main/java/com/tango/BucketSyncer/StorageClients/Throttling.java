@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer.StorageClients;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.tango.BucketSyncer.MirrorConstants;
+import com.tango.BucketSyncer.StripedCounter;
+
+import java.io.IOException;
+
+/**
+ * Counts the requests each store throttled (S3 SlowDown, GCS 429 and 503). The counts are taken in the clients,
+ * so the retries the clients make on their own are counted too. Clients live for the whole process while stats
+ * are started over for each daemon cycle, so the counts are for the process and the stats keep the counts they
+ * started from.
+ */
+public class Throttling {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final StripedCounter S3_THROTTLED = new StripedCounter();
+    private static final StripedCounter GCS_THROTTLED = new StripedCounter();
+
+    /**
+     * @param store MirrorConstants.S3 or MirrorConstants.GCS
+     * @return the number of requests to the store throttled since the process started
+     */
+    public static long getThrottled(String store) {
+        if (MirrorConstants.S3.equals(store)) {
+            return S3_THROTTLED.get();
+        }
+        if (MirrorConstants.GCS.equals(store)) {
+            return GCS_THROTTLED.get();
+        }
+        return 0;
+    }
+
+    public static boolean isThrottled(AmazonClientException e) {
+        if (!(e instanceof AmazonServiceException)) {
+            return false;
+        }
+        final AmazonServiceException ase = (AmazonServiceException) e;
+        return RetryUtils.isThrottlingException(ase) || ase.getStatusCode() == HttpStatusCodes.STATUS_CODE_SERVICE_UNAVAILABLE;
+    }
+
+    public static boolean isThrottled(int statusCode) {
+        return statusCode == TOO_MANY_REQUESTS || statusCode == HttpStatusCodes.STATUS_CODE_SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * @return the default S3 retry policy, counting every throttled try it retries
+     */
+    public static RetryPolicy getS3RetryPolicy(int maxErrorRetry) {
+        final RetryPolicy.RetryCondition condition = PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION;
+        return new RetryPolicy(new RetryPolicy.RetryCondition() {
+            @Override
+            public boolean shouldRetry(AmazonWebServiceRequest request, AmazonClientException e, int retriesAttempted) {
+                if (isThrottled(e)) {
+                    S3_THROTTLED.increment();
+                }
+                return condition.shouldRetry(request, e, retriesAttempted);
+            }
+        }, PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY, maxErrorRetry, true);
+    }
+
+    /**
+     * @return a handler that counts the throttled tries the S3 client gave up on, which the retry policy does not see
+     */
+    public static RequestHandler2 getS3RequestHandler() {
+        return new RequestHandler2() {
+            @Override
+            public void beforeRequest(Request<?> request) {
+            }
+
+            @Override
+            public void afterResponse(Request<?> request, Response<?> response) {
+            }
+
+            @Override
+            public void afterError(Request<?> request, Response<?> response, Exception e) {
+                if (e instanceof AmazonClientException && isThrottled((AmazonClientException) e)) {
+                    S3_THROTTLED.increment();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an initializer that sets up GCS requests with the given one, and counts their throttled responses
+     */
+    public static HttpRequestInitializer getGcsRequestInitializer(final HttpRequestInitializer initializer) {
+        return new HttpRequestInitializer() {
+            @Override
+            public void initialize(HttpRequest request) throws IOException {
+                initializer.initialize(request);
+                final HttpUnsuccessfulResponseHandler handler = request.getUnsuccessfulResponseHandler();
+                request.setUnsuccessfulResponseHandler(new HttpUnsuccessfulResponseHandler() {
+                    @Override
+                    public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) throws IOException {
+                        if (isThrottled(response.getStatusCode())) {
+                            GCS_THROTTLED.increment();
+                        }
+                        return handler != null && handler.handleResponse(request, response, supportsRetry);
+                    }
+                });
+            }
+        };
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can add to without contending for one cache line. Each thread adds to one of
+ * several stripes, picked by its thread id, and reads sum the stripes. Reads are not atomic with respect to
+ * concurrent adds, which is fine for stats.
+ */
+public class StripedCounter {
+
+    private static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+    // longs per stripe, so that stripes are at least one 64 byte cache line apart
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    // a power of two of at least twice the number of processors, at most 64
+    static int stripes(int processors) {
+        int stripes = 1;
+        while (stripes < processors * 2 && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private static int getCell() {
+        final long id = Thread.currentThread().getId();
+        return ((int) (id ^ (id >>> 32)) & (STRIPES - 1)) * PADDING;
+    }
+
+    public void increment() {
+        cells.incrementAndGet(getCell());
+    }
+
+    public void add(long delta) {
+        cells.addAndGet(getCell(), delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public String toString() {
+        return Long.toString(get());
+    }
+
+}
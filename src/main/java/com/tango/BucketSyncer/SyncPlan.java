@@ -0,0 +1,256 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.base.Charsets;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A plan of what a mirror would do, written by a --plan run: one CSV row per key to copy or delete, with the
+ * size, ETag and Last-Modified date of the object it was planned for. Keys that were found to be in sync are
+ * only counted. A --apply run executes the rows without comparing the buckets again.
+ *
+ * The file starts with a comment naming the source and destination it was planned for, and ends with a comment
+ * holding the totals. It is written next to its final name and only takes it once the planning run completes.
+ */
+@Slf4j
+public class SyncPlan {
+
+    public static final String COPY = "COPY";
+    public static final String DELETE = "DELETE";
+    public static final String SKIP = "SKIP";
+
+    private static final String IDENTITY_COMMENT = "# BucketSyncer plan: ";
+    private static final String HEADER = "action,key,size,etag,last_modified";
+
+    public static class Entry {
+        @Getter
+        private final String action;
+        // source key for copies, destination key for deletes
+        @Getter
+        private final String key;
+        @Getter
+        private final long size;
+        @Getter
+        private final String etag;
+        @Getter
+        private final long lastModified;
+
+        public Entry(String action, String key, long size, String etag, long lastModified) {
+            this.action = action;
+            this.key = key;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    @Getter
+    private final File file;
+    private final File nextFile;
+    private final Writer out;
+
+    @Getter
+    private final AtomicLong copies = new AtomicLong(0);
+    @Getter
+    private final AtomicLong copyBytes = new AtomicLong(0);
+    @Getter
+    private final AtomicLong deletes = new AtomicLong(0);
+    @Getter
+    private final AtomicLong skips = new AtomicLong(0);
+
+    /**
+     * Starts a plan that replaces the given file once it is committed.
+     */
+    public SyncPlan(File file, String identity) throws IOException {
+        this.file = file;
+        this.nextFile = new File(file.getPath() + ".next");
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(nextFile), Charsets.UTF_8));
+        out.write(toCsv(IDENTITY_COMMENT + identity) + "\n");
+        out.write(HEADER + "\n");
+    }
+
+    public void record(String action, ObjectSummary summary) {
+        if (SKIP.equals(action)) {
+            skips.incrementAndGet();
+            return;
+        }
+        final long lastModified = summary.getLastModified() == null ? -1 : summary.getLastModified().getTime();
+        final String row = toCsv(action) + "," + toCsv(summary.getKey()) + "," + summary.getSize() + ","
+                + (summary.getETag() == null ? "" : toCsv(summary.getETag())) + "," + lastModified + "\n";
+        synchronized (this) {
+            try {
+                out.write(row);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot write plan " + nextFile, e);
+            }
+        }
+        if (COPY.equals(action)) {
+            copies.incrementAndGet();
+            copyBytes.addAndGet(Math.max(summary.getSize(), 0));
+        } else {
+            deletes.incrementAndGet();
+        }
+    }
+
+    public synchronized void commit() throws IOException {
+        out.write("# totals: " + copies + " copies (" + copyBytes + " bytes), " + deletes + " deletes, " + skips + " in sync\n");
+        out.close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace plan file: " + file);
+        }
+        if (!nextFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + nextFile + " to " + file);
+        }
+    }
+
+    /**
+     * Discards the plan, keeping whatever plan the file held before.
+     */
+    public synchronized void abandon() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Error closing plan {}: {}", nextFile, e);
+        }
+        nextFile.delete();
+    }
+
+    /**
+     * @return true if the key belongs to the given shard of a plan applied by several processes
+     */
+    public static boolean isInShard(String key, int shard, int shards) {
+        return shards <= 1 || (key.hashCode() & Integer.MAX_VALUE) % shards == shard;
+    }
+
+    private static String toCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Reads the rows of a plan in the order they were written.
+     */
+    public static class Reader implements Closeable {
+        private final File file;
+        private final BufferedReader in;
+        private long row = 0;
+
+        /**
+         * @throws IOException if the plan cannot be read, or was made for another source or destination
+         */
+        public Reader(File file, String identity) throws IOException {
+            this.file = file;
+            this.in = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+            final List<String> first = readRow();
+            final String comment = first == null || first.isEmpty() ? "" : first.get(0);
+            if (!comment.startsWith(IDENTITY_COMMENT)) {
+                close();
+                throw new IOException("Not a plan: " + file);
+            }
+            final String planIdentity = comment.substring(IDENTITY_COMMENT.length());
+            if (!planIdentity.equals(identity)) {
+                close();
+                throw new IOException("Plan " + file + " was made for " + planIdentity);
+            }
+        }
+
+        /**
+         * @return the next row, or null at the end of the plan
+         */
+        public Entry next() throws IOException {
+            List<String> fields;
+            while ((fields = readRow()) != null) {
+                if (fields.isEmpty() || fields.get(0).startsWith("#") || "action".equals(fields.get(0))) {
+                    continue;
+                }
+                if (fields.size() != 5) {
+                    throw new IOException("Invalid row " + row + " of plan " + file + ": " + fields);
+                }
+                try {
+                    return new Entry(fields.get(0),
+                            fields.get(1),
+                            Long.parseLong(fields.get(2)),
+                            fields.get(3).length() == 0 ? null : fields.get(3),
+                            Long.parseLong(fields.get(4)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid row " + row + " of plan " + file + ": " + fields);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the fields of the next row, in which quoted fields may hold line breaks, or null at the end
+         */
+        private List<String> readRow() throws IOException {
+            final List<String> fields = new ArrayList<String>();
+            final StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = in.read()) >= 0) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            row++;
+            if (fields.isEmpty() && field.length() == 0) {
+                return fields;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The keys with the highest values seen, e.g. the largest objects copied. Once full, a value at or below the
+ * lowest one kept is rejected with a single volatile read, so offering every key of a run costs next to nothing.
+ */
+public class TopKeys {
+
+    public static class Entry {
+        @Getter
+        private final String key;
+        @Getter
+        private final long value;
+
+        public Entry(String key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final Comparator<Entry> BY_VALUE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.value < b.value ? -1 : (a.value == b.value ? 0 : 1);
+        }
+    };
+
+    private final int size;
+    // the lowest value kept
+    private final PriorityQueue<Entry> top;
+    private volatile long threshold = Long.MIN_VALUE;
+
+    public TopKeys(int size) {
+        this.size = size;
+        this.top = new PriorityQueue<Entry>(size + 1, BY_VALUE);
+    }
+
+    public void offer(String key, long value) {
+        if (value <= threshold) {
+            return;
+        }
+        synchronized (top) {
+            top.add(new Entry(key, value));
+            if (top.size() > size) {
+                top.poll();
+            }
+            if (top.size() == size) {
+                threshold = top.peek().value;
+            }
+        }
+    }
+
+    /**
+     * @return the keys kept, highest value first
+     */
+    public List<Entry> getTop() {
+        final List<Entry> entries;
+        synchronized (top) {
+            entries = new ArrayList<Entry>(top);
+        }
+        Collections.sort(entries, Collections.reverseOrder(BY_VALUE));
+        return entries;
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reports where the time of the traced keys went: waiting for room in the work queue, waiting in the queue for a
+ * thread, each kind of request, retries, and the rest of the job. Run with the trace log written by --trace:
+ * <pre>
+ *     java -cp BucketSyncer.jar com.tango.BucketSyncer.TraceAnalyzer trace.jsonl
+ * </pre>
+ */
+public class TraceAnalyzer {
+
+    public static final String SUBMIT_WAIT = "waiting for queue room";
+    public static final String QUEUE_WAIT = "waiting for a thread";
+    public static final String OTHER = "rest of the job";
+
+    private static class Stage {
+        private final LatencyHistogram perKey = new LatencyHistogram();
+        private long total = 0;
+        private long retries = 0;
+
+        private void add(long micros) {
+            perKey.record(micros);
+            total += micros;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TraceAnalyzer TRACE_FILE");
+            System.exit(1);
+        }
+        System.out.print(analyze(TraceLog.read(new File(args[0]))));
+    }
+
+    /**
+     * @return the report of the given traces, one line per stage, with the time per key and the share of the
+     * time of all traced keys
+     */
+    public static String analyze(List<KeyTrace> traces) {
+        final Map<String, Stage> stages = new TreeMap<String, Stage>();
+        final Stage total = new Stage();
+        int completed = 0;
+        int failed = 0;
+        for (KeyTrace trace : traces) {
+            if (trace.getDone() < 0 || trace.getEnqueued() < 0 || trace.getDequeued() < 0) {
+                // the run ended before the job did
+                continue;
+            }
+            completed++;
+            if (trace.isFailed()) {
+                failed++;
+            }
+            total.add(trace.getDone());
+            stage(stages, SUBMIT_WAIT).add(trace.getEnqueued());
+            stage(stages, QUEUE_WAIT).add(trace.getDequeued() - trace.getEnqueued());
+
+            long requests = 0;
+            final Map<String, Long> perOp = new TreeMap<String, Long>();
+            final Set<String> seen = new HashSet<String>();
+            for (KeyTrace.Span span : trace.getSpans()) {
+                final String name = span.getStore() + " " + span.getOp();
+                final long micros = span.getEnd() - span.getStart();
+                requests += micros;
+                final Long sum = perOp.get(name);
+                perOp.put(name, sum == null ? micros : sum + micros);
+                // the parts of a multipart copy are not retries of each other
+                if (!seen.add(name) && !MirrorStats.OP_COPY_PART.equals(span.getOp())) {
+                    stage(stages, name).retries++;
+                }
+            }
+            for (Map.Entry<String, Long> entry : perOp.entrySet()) {
+                stage(stages, entry.getKey()).add(entry.getValue());
+            }
+            stage(stages, OTHER).add(Math.max(0, trace.getDone() - trace.getDequeued() - requests));
+        }
+
+        final StringBuilder b = new StringBuilder();
+        b.append(String.format("%d traced keys completed (%d failed), %d did not complete%n", completed, failed, traces.size() - completed));
+        if (completed == 0) {
+            return b.toString();
+        }
+        b.append(String.format("%-24s %8s %10s %10s %10s %8s%n", "stage", "share", "keys", "p50 ms", "p99 ms", "retries"));
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            final Stage stage = entry.getValue();
+            b.append(String.format("%-24s %7.1f%% %10d %10.1f %10.1f %8d%n", entry.getKey(),
+                    total.total == 0 ? 0 : 100.0d * stage.total / total.total, stage.perKey.getCount(),
+                    stage.perKey.getValueAtQuantile(0.5) / 1000.0d, stage.perKey.getValueAtQuantile(0.99) / 1000.0d, stage.retries));
+        }
+        b.append(String.format("%-24s %7.1f%% %10d %10.1f %10.1f%n", "total", 100.0d, total.perKey.getCount(),
+                total.perKey.getValueAtQuantile(0.5) / 1000.0d, total.perKey.getValueAtQuantile(0.99) / 1000.0d));
+        return b.toString();
+    }
+
+    private static Stage stage(Map<String, Stage> stages, String name) {
+        Stage stage = stages.get(name);
+        if (stage == null) {
+            stage = new Stage();
+            stages.put(name, stage);
+        }
+        return stage;
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the traces of a sample of the keys, one JSON object per line, for TraceAnalyzer. A key is sampled by
+ * the hash of its name, so the same keys are traced in every run and by every master.
+ */
+@Slf4j
+public class TraceLog {
+
+    @Getter
+    private final File file;
+    private final int sampleEvery;
+    private final Writer out;
+
+    /**
+     * Appends to the given file, so that the cycles of a daemon add to one trace.
+     *
+     * @param sampleEvery trace one key in this many
+     */
+    public TraceLog(File file, int sampleEvery) throws IOException {
+        this.file = file;
+        this.sampleEvery = sampleEvery;
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charsets.UTF_8));
+    }
+
+    public boolean isSampled(String key) {
+        return sampleEvery <= 1
+                || (Hashing.murmur3_32().newHasher().putString(key, Charsets.UTF_8).hash().asInt() & Integer.MAX_VALUE) % sampleEvery == 0;
+    }
+
+    /**
+     * @param listedNanos value of System.nanoTime() when the master took the key from the lister
+     * @return a trace for the key, or null if it is not sampled
+     */
+    public KeyTrace start(String key, long listedNanos) {
+        return isSampled(key) ? new KeyTrace(key, listedNanos) : null;
+    }
+
+    public synchronized void write(KeyTrace trace) {
+        try {
+            out.write(trace.toJson());
+            out.write('\n');
+        } catch (IOException e) {
+            log.error("Cannot write trace of {} to {}: {}", new Object[]{trace.getKey(), file, e});
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.error("Error closing trace log {}: ", file, e);
+        }
+    }
+
+    /**
+     * Reads a trace log, skipping lines that cannot be parsed, e.g. the last line of a run that was killed.
+     */
+    public static List<KeyTrace> read(File file) throws IOException {
+        final List<KeyTrace> traces = new ArrayList<KeyTrace>();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                try {
+                    traces.add(KeyTrace.parse(line));
+                } catch (IOException e) {
+                    log.warn("Skipping invalid trace in {}: {}", file, line);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return traces;
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last-modified time up to which the source has been mirrored, kept in a local file between runs.
+ * Each run lists only keys modified after the previous watermark (less an overlap), and a run that
+ * completes without copy errors moves the watermark to the newest last-modified time it listed.
+ */
+@Slf4j
+public class Watermark {
+
+    private static final String MAGIC = "BucketSyncerWatermark1";
+
+    @Getter
+    private final File file;
+    private final String identity;
+    // -1 if there is none
+    @Getter
+    private final long previous;
+
+    private final AtomicLong newest = new AtomicLong(-1);
+    // set once the source has been listed in full
+    @Getter
+    private volatile boolean finished = false;
+
+    public Watermark(File file, String identity) throws IOException {
+        this.file = file;
+        this.identity = identity;
+
+        long previous = -1;
+        if (file.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                final String magic = in.readUTF();
+                final String watermarkIdentity = in.readUTF();
+                if (MAGIC.equals(magic) && identity.equals(watermarkIdentity)) {
+                    previous = in.readLong();
+                } else {
+                    log.warn("Ignoring watermark in {}, it was written for {}", file, watermarkIdentity);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        this.previous = previous;
+    }
+
+    public boolean hasPrevious() {
+        return previous >= 0;
+    }
+
+    /**
+     * Records the last-modified time of a listed key.
+     */
+    public void observe(long lastModified) {
+        long current = newest.get();
+        while (lastModified > current && !newest.compareAndSet(current, lastModified)) {
+            current = newest.get();
+        }
+    }
+
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Moves the watermark to the newest last-modified time listed, but not past the start of the run:
+     * keys listed later may have been written, with an earlier time, behind the lister.
+     *
+     * @param runStart when the listing started
+     */
+    public void commit(long runStart) throws IOException {
+        final long next = Math.min(newest.get(), runStart);
+        if (next <= previous) {
+            return;
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeUTF(MAGIC);
+            out.writeUTF(identity);
+            out.writeLong(next);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace watermark file: " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        log.info("watermark in {} moved to {}", file, new Date(next));
+    }
+
+}
@@ -24,15 +24,23 @@ VERSION=${FULLVERSION%"-SNAPSHOT"}
 JARFILE=target/BucketSyncer-$FULLVERSION.jar
 VERSION_ARG="-DBucketSyncer.version=$VERSION"
 
+JFR=$1
+if [ "${JFR}" = "--jfr" ] ; then
+  # Record a flight recording of the run to the given file, with the BucketSyncer events
+  JFR_FILE=$2
+  shift 2   # remove --jfr FILE from options
+  JAVA_OPTS="${JAVA_OPTS} -XX:StartFlightRecording=settings=default,settings=$(dirname $0)/BucketSyncer.jfc,filename=${JFR_FILE},dumponexit=true"
+fi
+
 DEBUG=$1
 if [ "${DEBUG}" = "--debug" ] ; then
   # Run in debug mode
   shift   # remove --debug from options
-  java -Xdebug -Xrunjdwp:transport=dt_socket,server=y,suspend=y,address=5005 ${VERSION_ARG} -jar ${JARFILE} "$@"
+  java -Xdebug -Xrunjdwp:transport=dt_socket,server=y,suspend=y,address=5005 ${JAVA_OPTS} ${VERSION_ARG} -jar ${JARFILE} "$@"
 
 else
   # Run in regular mode
-  java ${VERSION_ARG} -jar ${JARFILE} "$@"
+  java ${JAVA_OPTS} ${VERSION_ARG} -jar ${JARFILE} "$@"
 fi
 
 exit $?
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.CanonicalGrantee;
+import com.amazonaws.services.s3.model.GroupGrantee;
+import com.amazonaws.services.s3.model.Owner;
+import com.amazonaws.services.s3.model.Permission;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AclCacheTest {
+
+    private static final String OWNER = "owner-id";
+
+    private AccessControlList acl(boolean publicRead, boolean reversed) {
+        AccessControlList acl = new AccessControlList();
+        acl.setOwner(new Owner(OWNER, "owner"));
+        if (reversed && publicRead) {
+            acl.grantPermission(GroupGrantee.AllUsers, Permission.Read);
+        }
+        acl.grantPermission(new CanonicalGrantee(OWNER), Permission.FullControl);
+        if (!reversed && publicRead) {
+            acl.grantPermission(GroupGrantee.AllUsers, Permission.Read);
+        }
+        return acl;
+    }
+
+    @Test
+    public void testFingerprintIgnoresGrantOrder() {
+        assertEquals(AclCache.fingerprint(acl(true, false)), AclCache.fingerprint(acl(true, true)));
+        assertFalse(AclCache.fingerprint(acl(true, false)).equals(AclCache.fingerprint(acl(false, false))));
+    }
+
+    @Test
+    public void testPredictsAfterThreshold() {
+        AclCache cache = new AclCache();
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.lookup("logs/" + i, OWNER, 3));
+            cache.learn("logs/" + i, OWNER, acl(false, false));
+        }
+        assertNotNull(cache.lookup("logs/next", OWNER, 3));
+        // other prefixes and owners are learned separately
+        assertNull(cache.lookup("images/next", OWNER, 3));
+        assertNull(cache.lookup("logs/next", "someone-else", 3));
+    }
+
+    @Test
+    public void testRelearnsOnChange() {
+        AclCache cache = new AclCache();
+        for (int i = 0; i < 3; i++) {
+            cache.learn("logs/" + i, OWNER, acl(false, false));
+        }
+        cache.learn("logs/public", OWNER, acl(true, false));
+        assertNull(cache.lookup("logs/next", OWNER, 3));
+    }
+
+    @Test
+    public void testForgetsUnreferencedAcls() {
+        AclCache cache = new AclCache();
+        cache.learn("logs/a", OWNER, acl(false, false));
+        cache.learn("logs/b", OWNER, acl(true, false));
+        assertEquals(1, cache.getAclCount());
+
+        // per-prefix grants, more prefixes than the cache holds entries
+        for (int i = 0; i < AclCache.MAX_ENTRIES * 2; i++) {
+            final AccessControlList acl = acl(false, false);
+            acl.grantPermission(new CanonicalGrantee("grantee-" + i), Permission.Read);
+            cache.learn("prefix" + i + "/key", OWNER, acl);
+        }
+        assertEquals(AclCache.MAX_ENTRIES, cache.getAclCount());
+    }
+}
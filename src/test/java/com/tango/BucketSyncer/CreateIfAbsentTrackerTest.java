@@ -0,0 +1,42 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CreateIfAbsentTrackerTest {
+
+    @Test
+    public void testAdaptsToHitRatePerPrefix() {
+        CreateIfAbsentTracker tracker = new CreateIfAbsentTracker();
+        assertTrue(tracker.shouldCreateIfAbsent("logs/0", 0.2d));
+
+        for (int i = 0; i < 10; i++) {
+            tracker.record("logs/" + i, i % 2 == 0);
+            tracker.record("images/" + i, false);
+        }
+        assertFalse(tracker.shouldCreateIfAbsent("logs/next", 0.2d));
+        assertTrue(tracker.shouldCreateIfAbsent("images/next", 0.2d));
+
+        // recent outcomes win once the window has rolled over
+        for (int i = 0; i < CreateIfAbsentTracker.WINDOW; i++) {
+            tracker.record("logs/new-" + i, false);
+        }
+        assertTrue(tracker.shouldCreateIfAbsent("logs/next", 0.2d));
+    }
+}
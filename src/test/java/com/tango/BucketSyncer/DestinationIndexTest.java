@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.tango.BucketSyncer.ObjectSummaries.S3_ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class DestinationIndexTest {
+
+    private static final String IDENTITY = "S3:source/ -> S3:dest/";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "index-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static S3_ObjectSummary summary(String key, String etag) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setETag(etag);
+        summary.setSize(10);
+        return new S3_ObjectSummary(summary);
+    }
+
+    @Test
+    public void testMergesUpdatesAcrossRuns() throws Exception {
+        DestinationIndex index = new DestinationIndex(dir, IDENTITY);
+        index.put(new DestinationIndex.Entry("c", 10, "3", 0, -1));
+        index.put(new DestinationIndex.Entry("a", 10, "1", 0, -1));
+        index.put(new DestinationIndex.Entry("b", 10, "2", 0, -1));
+        index.close();
+
+        index = new DestinationIndex(dir, IDENTITY);
+        assertEquals(1, index.getRunCount());
+        index.put(new DestinationIndex.Entry("b", 10, "changed", 0, 7));
+        index.remove("c");
+        index.close();
+
+        index = new DestinationIndex(dir, IDENTITY);
+        assertEquals(2, index.getRunCount());
+        assertTrue(index.lookup("a").matches(summary("a", "1")));
+        assertFalse(index.lookup("b").matches(summary("b", "2")));
+        assertEquals(7, index.lookup("b").getGeneration());
+        assertNull(index.lookup("c"));
+        index.close();
+    }
+
+    @Test
+    public void testRunWithoutUpdatesKeepsBase() throws Exception {
+        DestinationIndex index = new DestinationIndex(dir, IDENTITY);
+        index.put(new DestinationIndex.Entry("a", 10, "1", 0, -1));
+        index.close();
+        final File base = new File(dir, DestinationIndex.BASE_FILE);
+        final long length = base.length();
+
+        index = new DestinationIndex(dir, IDENTITY);
+        assertTrue(index.lookup("a").matches(summary("a", "1")));
+        index.close();
+
+        // only the run count in the header changed
+        assertEquals(length, base.length());
+        assertEquals(1, dir.listFiles().length);
+        index = new DestinationIndex(dir, IDENTITY);
+        assertEquals(2, index.getRunCount());
+        assertTrue(index.lookup("a").matches(summary("a", "1")));
+        index.close();
+    }
+
+    @Test
+    public void testIgnoresIndexOfOtherBuckets() throws Exception {
+        DestinationIndex index = new DestinationIndex(dir, IDENTITY);
+        index.put(new DestinationIndex.Entry("a", 10, "1", 0, -1));
+        index.close();
+
+        index = new DestinationIndex(dir, "S3:source/ -> S3:other/");
+        assertEquals(0, index.getRunCount());
+        assertNull(index.lookup("a"));
+        index.close();
+    }
+}
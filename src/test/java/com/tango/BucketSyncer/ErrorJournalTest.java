@@ -0,0 +1,136 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.ObjectSummaries.ErrorJournal_ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ErrorJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(System.getProperty("java.io.tmpdir"), "error-journal-test-" + System.nanoTime() + ".jsonl");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRecordAndRead() throws Exception {
+        ErrorJournal journal = new ErrorJournal(file);
+        ErrorJournal.Entry copied = new ErrorJournal.Entry(ErrorJournal.OP_COPY, "logs/a b.gz", 42, "etag-1", 1000L, 0, null, 0);
+        journal.record(ErrorJournal.OP_COPY, new ErrorJournal_ObjectSummary(copied), 5, "AmazonS3Exception: Slow Down");
+        journal.record(ErrorJournal.OP_DELETE, "dest/logs/old.gz", 5, null);
+
+        // recorded lines can be read while the run goes on
+        Set<String> failed = journal.getFailedKeys();
+        assertEquals(2, failed.size());
+        assertTrue(failed.contains("logs/a b.gz"));
+        assertTrue(failed.contains("dest/logs/old.gz"));
+        journal.close();
+        assertTrue(file.exists());
+
+        List<ErrorJournal.Entry> entries = ErrorJournal.read(file);
+        assertEquals(2, entries.size());
+        ErrorJournal.Entry entry = entries.get(0);
+        assertEquals(ErrorJournal.OP_COPY, entry.getOperation());
+        assertEquals("logs/a b.gz", entry.getKey());
+        assertEquals(42, entry.getSize());
+        assertEquals("etag-1", entry.getEtag());
+        assertEquals(1000L, entry.getLastModified());
+        assertEquals(5, entry.getAttempts());
+        assertEquals("AmazonS3Exception: Slow Down", entry.getReason());
+
+        entry = entries.get(1);
+        assertEquals(ErrorJournal.OP_DELETE, entry.getOperation());
+        assertEquals(-1, entry.getSize());
+        assertNull(entry.getEtag());
+        assertNull(entry.getReason());
+    }
+
+    @Test
+    public void testRetriesAreLatestPerKeyInKeyOrder() throws Exception {
+        ErrorJournal journal = new ErrorJournal(file);
+        journal.record(ErrorJournal.OP_COPY, "b", 5, "first");
+        journal.record(ErrorJournal.OP_COPY, "a", 5, "first");
+        journal.record(ErrorJournal.OP_DELETE, "c", 5, "first");
+        journal.record(ErrorJournal.OP_COPY, "b", 10, "second");
+        journal.close();
+
+        List<ErrorJournal.Entry> entries = ErrorJournal.read(file);
+        List<ErrorJournal.Entry> copies = ErrorJournal.getRetries(entries, ErrorJournal.OP_COPY);
+        assertEquals(2, copies.size());
+        assertEquals("a", copies.get(0).getKey());
+        assertEquals("b", copies.get(1).getKey());
+        assertEquals(10, copies.get(1).getAttempts());
+        assertEquals("second", copies.get(1).getReason());
+
+        List<ErrorJournal.Entry> deletes = ErrorJournal.getRetries(entries, ErrorJournal.OP_DELETE);
+        assertEquals(1, deletes.size());
+        assertEquals("c", deletes.get(0).getKey());
+    }
+
+    @Test
+    public void testTornLineIsSkipped() throws Exception {
+        ErrorJournal journal = new ErrorJournal(file);
+        journal.record(ErrorJournal.OP_COPY, "a", 5, "failed");
+        journal.close();
+
+        // the run was killed while writing the next line
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("{\"op\":\"copy\",\"key\":\"b".getBytes("UTF-8"));
+        out.close();
+
+        List<ErrorJournal.Entry> entries = ErrorJournal.read(file);
+        assertEquals(1, entries.size());
+        assertEquals("a", entries.get(0).getKey());
+    }
+
+    @Test
+    public void testTemporaryJournalIsRemoved() throws Exception {
+        ErrorJournal journal = ErrorJournal.temporary();
+        journal.record(ErrorJournal.OP_COPY, "a", 5, "failed");
+        assertTrue(journal.getFailedKeys().contains("a"));
+        journal.close();
+        assertFalse(journal.getFile().exists());
+    }
+
+    @Test
+    public void testReportKeepsSampleOfErrorKeys() {
+        MirrorStats stats = new MirrorStats();
+        for (int i = 0; i < MirrorStats.ERROR_KEY_SAMPLE + 10; i++) {
+            stats.recordError("key-" + i);
+        }
+        assertEquals(MirrorStats.ERROR_KEY_SAMPLE, stats.errorKeyList.size());
+        assertEquals(MirrorStats.ERROR_KEY_SAMPLE + 10, stats.errorKeys.get());
+        assertTrue(stats.errorKeyList.contains("key-0"));
+        assertFalse(stats.errorKeyList.contains("key-" + MirrorStats.ERROR_KEY_SAMPLE));
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FlightEventsTest {
+
+    @Test
+    public void testNotRecording() {
+        // nothing is recording in the test JVM, so these do nothing
+        assertFalse(FlightEvents.isRecording());
+        final Object event = FlightEvents.beginJob("a/b");
+        assertNull(event);
+        FlightEvents.request(MirrorConstants.S3, MirrorStats.OP_HEAD, 100);
+        FlightEvents.listingPage(MirrorConstants.S3, "a/b", 1);
+        FlightEvents.endJob(event, "a/b", 10, MirrorConstants.GCS, "KeyJob", FlightEvents.OUTCOME_OK);
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        // the flight recorder API is only in JDK 8u262 and later, so it is reached by reflection like in FlightEvents
+        Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            recordingClass = null;
+        }
+        Assume.assumeNotNull(recordingClass);
+
+        final Object recording = recordingClass.newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, FlightEvents.JOB_EVENT);
+        recordingClass.getMethod("enable", String.class).invoke(recording, FlightEvents.REQUEST_EVENT);
+        recordingClass.getMethod("enable", String.class).invoke(recording, FlightEvents.LISTING_PAGE_EVENT);
+        recordingClass.getMethod("start").invoke(recording);
+        final File file = File.createTempFile("flight-events-test", ".jfr");
+        try {
+            assertTrue(FlightEvents.isRecording());
+            final Object event = FlightEvents.beginJob("a/b");
+            assertNotNull(event);
+            FlightEvents.request(MirrorConstants.S3, MirrorStats.OP_HEAD, 100);
+            FlightEvents.endJob(event, "a/b", 10, MirrorConstants.GCS, "KeyJob", FlightEvents.OUTCOME_OK);
+            FlightEvents.listingPage(MirrorConstants.S3, "a/b", 1);
+
+            recordingClass.getMethod("stop").invoke(recording);
+            assertFalse(FlightEvents.isRecording());
+            recordingClass.getMethod("dump", Class.forName("java.nio.file.Path")).invoke(recording, file.toPath());
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        final Class<?> recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile");
+        final List<?> events = (List<?>) recordingFile.getMethod("readAllEvents", Class.forName("java.nio.file.Path")).invoke(null, file.toPath());
+        final Set<String> names = new HashSet<String>();
+        for (Object e : events) {
+            final Object type = e.getClass().getMethod("getEventType").invoke(e);
+            final String name = (String) type.getClass().getMethod("getName").invoke(type);
+            names.add(name);
+            if (name.equals(FlightEvents.JOB_EVENT)) {
+                assertEquals("a/b", e.getClass().getMethod("getString", String.class).invoke(e, "key"));
+                assertEquals(FlightEvents.OUTCOME_OK, e.getClass().getMethod("getString", String.class).invoke(e, "outcome"));
+            } else if (name.equals(FlightEvents.REQUEST_EVENT)) {
+                // the request was made inside the job, so it carries the key of the job
+                assertEquals("a/b", e.getClass().getMethod("getString", String.class).invoke(e, "key"));
+            }
+        }
+        assertTrue(names.contains(FlightEvents.JOB_EVENT));
+        assertTrue(names.contains(FlightEvents.REQUEST_EVENT));
+        assertTrue(names.contains(FlightEvents.LISTING_PAGE_EVENT));
+        file.delete();
+    }
+
+}
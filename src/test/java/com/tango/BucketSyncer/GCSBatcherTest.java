@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+import com.tango.BucketSyncer.KeyJobs.GCSDeleteBatcher;
+import com.tango.BucketSyncer.KeyJobs.GCSMetadataBatcher;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class GCSBatcherTest {
+
+    private static final String BUCKET = "bucket";
+    private static final String BOUNDARY = "batch_boundary";
+    private static final Pattern CALL = Pattern.compile("^(GET|DELETE) (\\S+)\\r?$", Pattern.MULTILINE);
+
+    /**
+     * Answers GCS batch requests, each call with the status given for its key or 200.
+     */
+    private static class BatchTransport extends MockHttpTransport {
+        private final Map<String, Integer> statuses = new ConcurrentHashMap<String, Integer>();
+        // the keys of each batch request received
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+        @Override
+        public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    final List<String> keys = new ArrayList<String>();
+                    final List<String> methods = new ArrayList<String>();
+                    final Matcher call = CALL.matcher(getContentAsString());
+                    while (call.find()) {
+                        final String callUrl = call.group(2);
+                        keys.add(URLDecoder.decode(callUrl.substring(callUrl.indexOf("/o/") + 3), "UTF-8"));
+                        methods.add(call.group(1));
+                    }
+                    final StringBuilder body = new StringBuilder("--" + BOUNDARY + "\n");
+                    for (int i = 0; i < keys.size(); i++) {
+                        final String key = keys.get(i);
+                        final Integer status = statuses.get(key);
+                        body.append("Content-Type: application/http\n\n");
+                        if (status == null && methods.get(i).equals("DELETE")) {
+                            body.append("HTTP/1.1 204 No Content\n\n\n");
+                        } else if (status == null) {
+                            body.append("HTTP/1.1 200 OK\nContent-Type: application/json; charset=UTF-8\n\n")
+                                    .append("{\"bucket\": \"" + BUCKET + "\", \"name\": \"" + key + "\"}\n");
+                        } else {
+                            body.append("HTTP/1.1 " + status + " Error\nContent-Type: application/json; charset=UTF-8\n\n")
+                                    .append("{\"error\": {\"code\": " + status + ", \"message\": \"error " + status + "\"}}\n");
+                        }
+                        body.append("--" + BOUNDARY);
+                        body.append(i == keys.size() - 1 ? "--\n" : "\n");
+                    }
+                    batches.add(keys);
+                    return new MockLowLevelHttpResponse()
+                            .setContentType("multipart/mixed; boundary=" + BOUNDARY)
+                            .setContent(body.toString());
+                }
+            };
+        }
+    }
+
+    private static Storage storage(BatchTransport transport) {
+        return new Storage.Builder(transport, JacksonFactory.getDefaultInstance(), null)
+                .setApplicationName("GCSBatcherTest").build();
+    }
+
+    private static MirrorContext context(int batchSize, long lingerMillis) {
+        final MirrorOptions options = new MirrorOptions();
+        options.setSource("source");
+        options.setDestination(BUCKET);
+        options.setGcsBatchSize(batchSize);
+        options.setGcsBatchLinger(lingerMillis);
+        options.setDeleteBatchSize(batchSize);
+        options.setDeleteBatchLinger(lingerMillis);
+        options.setMaxRetries(2);
+        options.initDerivedFields();
+        return new MirrorContext(options);
+    }
+
+    private static List<Future<StorageObject>> lookUp(ExecutorService executor, final GCSMetadataBatcher batcher, String... keys) {
+        final List<Future<StorageObject>> results = new ArrayList<Future<StorageObject>>();
+        for (final String key : keys) {
+            results.add(executor.submit(new Callable<StorageObject>() {
+                @Override
+                public StorageObject call() throws Exception {
+                    return batcher.get(BUCKET, key, false);
+                }
+            }));
+        }
+        return results;
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneBatch() throws Exception {
+        final BatchTransport transport = new BatchTransport();
+        final MirrorContext context = context(4, 60000);
+        final GCSMetadataBatcher batcher = new GCSMetadataBatcher(storage(transport), context);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<StorageObject>> results = lookUp(executor, batcher, "a", "b", "c", "d");
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("abcd".substring(i, i + 1), results.get(i).get().getName());
+            }
+            assertEquals(1, transport.batches.size());
+            assertEquals(4, transport.batches.get(0).size());
+            assertEquals(4, context.getStats().getRequests().get("GCS HEAD").longValue());
+        } finally {
+            executor.shutdownNow();
+            batcher.close();
+        }
+    }
+
+    @Test
+    public void testNotFoundReachesOnlyItsWaiter() throws Exception {
+        final BatchTransport transport = new BatchTransport();
+        transport.statuses.put("missing", 404);
+        final GCSMetadataBatcher batcher = new GCSMetadataBatcher(storage(transport), context(3, 60000));
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Future<StorageObject>> results = lookUp(executor, batcher, "a", "missing", "b");
+            assertEquals("a", results.get(0).get().getName());
+            assertEquals("b", results.get(2).get().getName());
+            try {
+                results.get(1).get();
+                fail("expected a 404");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof HttpResponseException);
+                assertEquals(404, ((HttpResponseException) e.getCause()).getStatusCode());
+            }
+            assertEquals(1, transport.batches.size());
+        } finally {
+            executor.shutdownNow();
+            batcher.close();
+        }
+    }
+
+    @Test
+    public void testPartialBatchSentAfterLinger() throws Exception {
+        final BatchTransport transport = new BatchTransport();
+        final GCSMetadataBatcher batcher = new GCSMetadataBatcher(storage(transport), context(100, 50));
+        try {
+            final long start = System.currentTimeMillis();
+            assertEquals("a", batcher.get(BUCKET, "a", false).getName());
+            assertTrue(System.currentTimeMillis() - start >= 50);
+            assertEquals(Collections.singletonList("a"), transport.batches.get(0));
+        } finally {
+            batcher.close();
+        }
+    }
+
+    @Test
+    public void testDeleteBatchRecordsPerKeyFailures() throws Exception {
+        final BatchTransport transport = new BatchTransport();
+        transport.statuses.put("locked", 403);
+        final MirrorContext context = context(3, 60000);
+        final GCSDeleteBatcher batcher = new GCSDeleteBatcher(storage(transport), context);
+        batcher.add("a");
+        batcher.add("locked");
+        batcher.add("b");
+        batcher.close();
+
+        // the failed key alone is retried, then recorded as an error
+        assertEquals(2, transport.batches.size());
+        assertEquals(Collections.singletonList("locked"), transport.batches.get(1));
+        assertEquals(2, context.getStats().objectsDeleted.get());
+        assertEquals(1, context.getStats().deleteErrors.get());
+        assertEquals(Collections.singletonList("locked"), context.getStats().errorKeyList);
+    }
+
+}
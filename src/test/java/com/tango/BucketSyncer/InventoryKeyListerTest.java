@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.KeyListers.InventoryKeyLister;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class InventoryKeyListerTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "inventory-test-" + System.nanoTime());
+        assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(File file, String content, boolean gzip) throws Exception {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out);
+        }
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static Map<String, ObjectSummary> list(String source, String prefix) {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final InventoryKeyLister lister = new InventoryKeyLister(null, source, "source", prefix, context, 1000);
+        lister.run();
+        assertTrue(lister.isDone());
+        assertFalse(lister.isFailed());
+        final Map<String, ObjectSummary> summaries = new HashMap<String, ObjectSummary>();
+        for (ObjectSummary summary : lister.getNextBatch()) {
+            summaries.put(summary.getKey(), summary);
+        }
+        assertEquals(summaries.size(), context.getStats().objectsRead.get());
+        return summaries;
+    }
+
+    @Test
+    public void testInventoryManifest() throws Exception {
+        // laid out as in the inventory bucket: <config>/<date>/manifest.json and <config>/data/<file>.csv.gz
+        final File manifest = new File(dir, "source/config/2026-10-18T00-00Z/manifest.json");
+        write(manifest, "{\"sourceBucket\":\"source\",\"destinationBucket\":\"arn:aws:s3:::inventory\","
+                + "\"fileFormat\":\"CSV\",\"fileSchema\":\"Bucket, Key, VersionId, IsLatest, IsDeleteMarker, Size, LastModifiedDate, ETag\","
+                + "\"files\":[{\"key\":\"source/config/data/one.csv.gz\"},{\"key\":\"source/config/data/two.csv.gz\"}]}", false);
+        write(new File(dir, "source/config/data/one.csv.gz"),
+                "\"source\",\"logs/a%20b.gz\",\"v2\",\"true\",\"false\",\"42\",\"2026-10-17T12:00:00.000Z\",\"etag-a\"\n"
+                        + "\"source\",\"logs/a%20b.gz\",\"v1\",\"false\",\"false\",\"40\",\"2026-10-16T12:00:00.000Z\",\"etag-old\"\n", true);
+        write(new File(dir, "source/config/data/two.csv.gz"),
+                "\"source\",\"logs/deleted\",\"v3\",\"true\",\"true\",\"\",\"2026-10-17T12:00:00.000Z\",\"\"\n"
+                        + "\"source\",\"other/c\",\"v4\",\"true\",\"false\",\"7\",\"2026-10-17T12:00:00.000Z\",\"etag-c\"\n", true);
+
+        Map<String, ObjectSummary> summaries = list(manifest.getPath(), null);
+        assertEquals(2, summaries.size());
+        final ObjectSummary summary = summaries.get("logs/a b.gz");
+        assertEquals(42, summary.getSize());
+        assertEquals("etag-a", summary.getETag());
+        assertEquals(1792238400000L, summary.getLastModified().getTime());
+        assertTrue(summaries.containsKey("other/c"));
+
+        summaries = list(manifest.getPath(), "logs/");
+        assertEquals(1, summaries.size());
+        assertTrue(summaries.containsKey("logs/a b.gz"));
+    }
+
+    @Test
+    public void testOrcInventoryIsRejected() throws Exception {
+        final File manifest = new File(dir, "manifest.json");
+        write(manifest, "{\"sourceBucket\":\"source\",\"fileFormat\":\"ORC\",\"fileSchema\":\"struct<bucket:string,key:string>\",\"files\":[]}", false);
+        final InventoryKeyLister lister = new InventoryKeyLister(null, manifest.getPath(), "source", null, new MirrorContext(new MirrorOptions()), 1000);
+        lister.run();
+        assertTrue(lister.isDone());
+        assertTrue(lister.isFailed());
+    }
+
+    @Test
+    public void testKeyFiles() throws Exception {
+        write(new File(dir, "keys-1.txt"), "plain/key\nwith/metadata\t12\tetag-m\t2026-10-17T12:00:00Z\n\n", false);
+        write(new File(dir, "keys-2.txt.gz"), "zipped/key\n", true);
+        write(new File(dir, ".hidden"), "not/listed\n", false);
+
+        final Map<String, ObjectSummary> summaries = list(dir.getPath(), null);
+        assertEquals(3, summaries.size());
+        assertEquals(-1, summaries.get("plain/key").getSize());
+        assertNull(summaries.get("plain/key").getETag());
+        assertEquals(12, summaries.get("with/metadata").getSize());
+        assertEquals("etag-m", summaries.get("with/metadata").getETag());
+        assertNotNull(summaries.get("with/metadata").getLastModified());
+        assertTrue(summaries.containsKey("zipped/key"));
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class KeyTemplateTest {
+
+    private static long utc(int year, int month, int day, int hour) {
+        return new DateTime(year, month, day, hour, 30, DateTimeZone.UTC).getMillis();
+    }
+
+    @Test
+    public void testDailyPrefixes() {
+        KeyTemplate template = new KeyTemplate("logs/{yyyy}/{MM}/{dd}/");
+        assertEquals(Arrays.asList("logs/2014/02/27/", "logs/2014/02/28/", "logs/2014/03/01/"),
+                template.getPrefixes(utc(2014, 2, 27, 23), utc(2014, 3, 1, 0)));
+    }
+
+    @Test
+    public void testPrefixesInListingOrder() {
+        // the finest field sets the step, whatever its position
+        KeyTemplate template = new KeyTemplate("{HH}/{yyyy}-{MM}-{dd}");
+        assertEquals(Arrays.asList("00/2014-06-02", "22/2014-06-01", "23/2014-06-01"),
+                template.getPrefixes(utc(2014, 6, 1, 22), utc(2014, 6, 2, 0)));
+
+        assertEquals(Arrays.asList("dt=2013/", "dt=2014/"),
+                new KeyTemplate("dt={yyyy}/").getPrefixes(utc(2013, 12, 31, 0), utc(2014, 1, 1, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        new KeyTemplate("logs/{yyyy}/{ww}/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoField() {
+        new KeyTemplate("logs/");
+    }
+
+}
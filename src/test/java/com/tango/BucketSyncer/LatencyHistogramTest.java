@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 30 + 1);
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 1000000; v += 7) {
+            final int bucket = LatencyHistogram.getBucket(v);
+            assertTrue(v <= LatencyHistogram.getBucketMax(bucket));
+            assertTrue(bucket == 0 || v > LatencyHistogram.getBucketMax(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        for (long v = 1; v <= 10000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertWithin(5000, histogram.getValueAtQuantile(0.5));
+        assertWithin(9900, histogram.getValueAtQuantile(0.99));
+        assertWithin(9990, histogram.getValueAtQuantile(0.999));
+        assertEquals(10000, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testMerge() {
+        final LatencyHistogram fast = new LatencyHistogram();
+        final LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(1000);
+        }
+        slow.record(5000000);
+        fast.merge(slow);
+        assertEquals(100, fast.getCount());
+        assertEquals(5000000, fast.getMax());
+        assertWithin(1000, fast.getValueAtQuantile(0.99));
+        assertEquals(5000000, fast.getValueAtQuantile(0.999));
+    }
+
+    @Test
+    public void testStatsByStoreAndOperation() {
+        final MirrorStats stats = new MirrorStats();
+        stats.getLatency(MirrorConstants.S3, MirrorStats.OP_HEAD).record(2000);
+        stats.getLatency(MirrorConstants.GCS, MirrorStats.OP_PUT).record(3000);
+        stats.getLatency(MirrorConstants.S3, MirrorStats.OP_HEAD).record(4000);
+        assertEquals(2, stats.getLatency(MirrorConstants.S3, MirrorStats.OP_HEAD).getCount());
+        assertEquals(2, stats.getLatencies().size());
+        assertTrue(stats.toString().contains("S3 HEAD latency: count=2 "));
+    }
+
+}
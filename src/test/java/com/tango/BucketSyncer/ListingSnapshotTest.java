@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.tango.BucketSyncer.ObjectSummaries.S3_ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ListingSnapshotTest {
+
+    private static final String IDENTITY = "S3:source/ -> S3:dest/";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "snapshot-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static S3_ObjectSummary summary(String key, String etag) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setETag(etag);
+        summary.setSize(10);
+        return new S3_ObjectSummary(summary);
+    }
+
+    @Test
+    public void testDiffsAgainstPreviousRun() throws Exception {
+        ListingSnapshot snapshot = new ListingSnapshot(dir, IDENTITY, true);
+        assertFalse(snapshot.hasPrevious());
+        assertTrue(snapshot.diff(summary("a", "1")));
+        assertTrue(snapshot.diff(summary("b", "2")));
+        assertTrue(snapshot.diff(summary("c", "3")));
+        snapshot.finish();
+        snapshot.commit(Collections.<String>emptySet());
+
+        snapshot = new ListingSnapshot(dir, IDENTITY, true);
+        assertTrue(snapshot.hasPrevious());
+        assertFalse(snapshot.diff(summary("a", "1")));
+        assertTrue(snapshot.diff(summary("b", "changed")));
+        assertTrue(snapshot.diff(summary("d", "4")));
+        snapshot.finish();
+        assertEquals("c", snapshot.pollRemoved(0).getKey());
+        assertNull(snapshot.pollRemoved(0));
+        assertTrue(snapshot.isDrained());
+        // the copy of b and the delete of c failed
+        snapshot.commit(new HashSet<String>(Arrays.asList("b", "c")));
+
+        snapshot = new ListingSnapshot(dir, IDENTITY, true);
+        assertFalse(snapshot.diff(summary("a", "1")));
+        assertTrue(snapshot.diff(summary("b", "changed")));
+        assertFalse(snapshot.diff(summary("d", "4")));
+        snapshot.finish();
+        assertEquals("c", snapshot.pollRemoved(0).getKey());
+        snapshot.abandon();
+    }
+}
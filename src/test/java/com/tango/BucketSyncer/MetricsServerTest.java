@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+public class MetricsServerTest {
+
+    @Test
+    public void testFormat() {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final MirrorStats stats = context.getStats();
+        stats.objectsCopied.add(3);
+        stats.bytesCopied.add(2048);
+        stats.getLatency(MirrorConstants.S3, MirrorStats.OP_HEAD).record(1500);
+        stats.sampleRates();
+
+        final String metrics = MetricsServer.format(context);
+        assertTrue(metrics.contains("# TYPE bucketsyncer_objects_copied_total counter\nbucketsyncer_objects_copied_total 3\n"));
+        assertTrue(metrics.contains("bucketsyncer_bytes_copied_total 2048\n"));
+        assertTrue(metrics.contains("bucketsyncer_work_queue_depth 0\n"));
+        assertTrue(metrics.contains("bucketsyncer_request_latency_seconds_count{store=\"S3\",op=\"HEAD\"} 1\n"));
+        assertTrue(metrics.contains("bucketsyncer_request_latency_max_seconds{store=\"S3\",op=\"HEAD\"} 0.0015\n"));
+        assertTrue(metrics.contains("bucketsyncer_rate_per_second{counter=\"bytes copied\",window=\"1m\"} 0\n"));
+    }
+
+    @Test
+    public void testLabelEscaping() {
+        assertEquals("key=\"a\\\"b\\\\c\\nd\"", MetricsServer.label("key", "a\"b\\c\nd"));
+    }
+
+    @Test
+    public void testServe() throws Exception {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        context.getStats().objectsRead.add(42);
+        final MetricsServer server = new MetricsServer(context, 0);
+        server.start();
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + MetricsServer.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(MetricsServer.CONTENT_TYPE, connection.getContentType());
+            final InputStream in = connection.getInputStream();
+            final String body = new String(ByteStreams.toByteArray(in), MirrorConstants.UTF8);
+            in.close();
+            assertTrue(body.contains("bucketsyncer_objects_read_total 42\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MirrorControlTest {
+
+    @Test
+    public void testOptionValues() {
+        final MirrorOptions options = new MirrorOptions();
+        options.setAWSSecretKey("secret");
+        options.setMaxThreads(7);
+        final List<String> values = Arrays.asList(new MirrorControl(new MirrorContext(options)).getOptionValues());
+        assertTrue(values.contains("--max-threads=7"));
+        assertFalse(values.toString().contains("secret"));
+    }
+
+    @Test
+    public void testSetMaxThreads() {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>());
+        context.setExecutor(executor);
+        final MirrorControl control = new MirrorControl(context);
+        try {
+            control.setMaxThreads(10);
+            assertEquals(10, executor.getCorePoolSize());
+            assertEquals(10, executor.getMaximumPoolSize());
+            control.setMaxThreads(2);
+            assertEquals(2, executor.getCorePoolSize());
+            assertEquals(2, executor.getMaximumPoolSize());
+            assertEquals(2, context.getOptions().getMaxThreads());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPauseAndDrain() {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final MirrorControl control = new MirrorControl(context);
+        control.pause();
+        assertTrue(context.isPaused());
+        control.resume();
+        assertFalse(context.isPaused());
+        control.drain();
+        assertTrue(context.isDraining());
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        context.getStats().recordListingPage(MirrorConstants.S3, "a/b", 1);
+        new MirrorControl(context).register();
+        // a second mirror replaces the first
+        new MirrorControl(context).register();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(MirrorControl.OBJECT_NAME);
+        assertEquals("a/b", server.getAttribute(name, "ListingMarker"));
+        assertEquals(1L, server.getAttribute(name, "ListingPages"));
+        server.unregisterMBean(name);
+    }
+
+}
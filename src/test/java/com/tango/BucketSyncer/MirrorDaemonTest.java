@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MirrorDaemonTest {
+
+    @Test
+    public void testBacksOffWhileIdle() {
+        final long interval = 60000;
+        final long maxInterval = 200000;
+        long wait = interval;
+        wait = MirrorDaemon.nextWait(wait, false, interval, maxInterval);
+        assertEquals(120000, wait);
+        wait = MirrorDaemon.nextWait(wait, false, interval, maxInterval);
+        assertEquals(maxInterval, wait);
+        wait = MirrorDaemon.nextWait(wait, true, interval, maxInterval);
+        assertEquals(interval, wait);
+
+        // continuous mode still pauses between idle cycles
+        assertEquals(MirrorDaemon.MIN_IDLE_WAIT, MirrorDaemon.nextWait(0, false, 0, maxInterval));
+        assertEquals(0, MirrorDaemon.nextWait(MirrorDaemon.MIN_IDLE_WAIT, true, 0, maxInterval));
+    }
+}
@@ -171,6 +171,28 @@ public class MirrorMainTest {
         assertEquals(gcsApplication, options.getGCS_APPLICATION_NAME());
     }
 
+    @Test
+    public void testPlanAndApplyOptions() throws Exception {
+        MirrorMain main = new MirrorMain(new String[]{MirrorOptions.LONGOPT_PLAN, "plan.csv", MirrorOptions.OPT_SOURCE_BUCKET, SOURCE, MirrorOptions.OPT_DESTINATION_BUCKET, DESTINATION});
+        main.parseArguments();
+        assertTrue(main.getOptions().isDryRun());
+
+        main = new MirrorMain(new String[]{MirrorOptions.LONGOPT_APPLY, "plan.csv", MirrorOptions.LONGOPT_APPLY_SHARD, "2/4", MirrorOptions.OPT_SOURCE_BUCKET, SOURCE, MirrorOptions.OPT_DESTINATION_BUCKET, DESTINATION});
+        main.parseArguments();
+        assertFalse(main.getOptions().isDryRun());
+        assertEquals(2, main.getOptions().getApplyShardIndex());
+        assertEquals(4, main.getOptions().getApplyShardCount());
+
+        for (String shard : new String[]{"4/4", "1", "-1/2", "a/b", "0/0"}) {
+            main = new MirrorMain(new String[]{MirrorOptions.LONGOPT_APPLY, "plan.csv", MirrorOptions.LONGOPT_APPLY_SHARD, shard, MirrorOptions.OPT_SOURCE_BUCKET, SOURCE, MirrorOptions.OPT_DESTINATION_BUCKET, DESTINATION});
+            try {
+                main.parseArguments();
+                fail("Invalid apply shard (" + shard + ") should have thrown exception");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
 
     private void testInvalidProxySetting(String proxy) throws Exception {
         final MirrorMain main = new MirrorMain(new String[]{MirrorOptions.OPT_PROXY, proxy, MirrorOptions.OPT_SOURCE_BUCKET, SOURCE, MirrorOptions.OPT_DESTINATION_BUCKET, DESTINATION});
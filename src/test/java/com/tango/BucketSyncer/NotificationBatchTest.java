@@ -0,0 +1,191 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import com.tango.BucketSyncer.Notifications.NotificationBatch;
+import com.tango.BucketSyncer.Notifications.NotificationEvent;
+import com.tango.BucketSyncer.Notifications.NotificationMessage;
+import com.tango.BucketSyncer.Notifications.SpoolNotificationSource;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotificationBatchTest {
+
+    private static String s3Event(String eventName, String bucket, String key, String sequencer) {
+        return "{\"eventName\":\"" + eventName + "\",\"eventTime\":\"2014-06-01T12:00:00.000Z\","
+                + "\"s3\":{\"bucket\":{\"name\":\"" + bucket + "\"},"
+                + "\"object\":{\"key\":\"" + key + "\",\"size\":42,\"eTag\":\"abc\",\"sequencer\":\"" + sequencer + "\"}}}";
+    }
+
+    private static NotificationMessage message(String handle, String... records) {
+        StringBuilder body = new StringBuilder("{\"Records\":[");
+        for (int i = 0; i < records.length; i++) {
+            body.append(i == 0 ? "" : ",").append(records[i]);
+        }
+        return new NotificationMessage(handle, body.append("]}").toString());
+    }
+
+    private static List<String> keys(List<NotificationEvent> events) {
+        String[] keys = new String[events.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = events.get(i).getKey();
+        }
+        return Arrays.asList(keys);
+    }
+
+    @Test
+    public void testParseS3Event() throws Exception {
+        List<NotificationEvent> events = NotificationEvent.parse(message("1",
+                s3Event("ObjectCreated:Put", "source", "a+b%2Fc.txt", "0055AED6DCD90281E5")).getBody());
+        assertEquals(1, events.size());
+        NotificationEvent event = events.get(0);
+        assertEquals("source", event.getBucket());
+        assertEquals("a b/c.txt", event.getKey());
+        assertFalse(event.isRemoved());
+        assertEquals(42, event.getSize());
+        assertEquals("abc", event.getEtag());
+        assertTrue(event.getEventTime() > 0);
+    }
+
+    @Test
+    public void testParseWrappedAndTestEvents() throws Exception {
+        String s3 = message("1", s3Event("ObjectRemoved:Delete", "source", "k", "01")).getBody();
+        String sns = "{\"Type\":\"Notification\",\"Message\":\"" + s3.replace("\"", "\\\"") + "\"}";
+        List<NotificationEvent> events = NotificationEvent.parse(sns);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).isRemoved());
+
+        assertTrue(NotificationEvent.parse("{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\"}").isEmpty());
+        assertTrue(NotificationEvent.parse(message("1", s3Event("s3:ReducedRedundancyLostObject", "source", "k", "01")).getBody()).isEmpty());
+    }
+
+    @Test
+    public void testParseGCSNotification() throws Exception {
+        String data = BaseEncoding.base64().encode("{\"size\":\"7\",\"etag\":\"CLD\"}".getBytes(Charsets.UTF_8));
+        String finalize = "{\"message\":{\"attributes\":{\"eventType\":\"OBJECT_FINALIZE\",\"bucketId\":\"source\","
+                + "\"objectId\":\"dir/k\",\"objectGeneration\":\"1401624000000000\"},\"data\":\"" + data + "\"}}";
+        List<NotificationEvent> events = NotificationEvent.parse(finalize);
+        assertEquals(1, events.size());
+        assertEquals("dir/k", events.get(0).getKey());
+        assertEquals(7, events.get(0).getSize());
+        assertEquals("CLD", events.get(0).getEtag());
+
+        // the delete of an overwritten generation is followed by the finalize of the new one
+        String overwritten = "{\"attributes\":{\"eventType\":\"OBJECT_DELETE\",\"bucketId\":\"source\",\"objectId\":\"dir/k\","
+                + "\"objectGeneration\":\"1\",\"overwrittenByGeneration\":\"2\"}}";
+        assertTrue(NotificationEvent.parse(overwritten).isEmpty());
+    }
+
+    @Test
+    public void testCoalescesToLatestEvent() throws Exception {
+        NotificationBatch batch = new NotificationBatch("source", "foo/");
+        // delivered out of order: the removal happened after the creation
+        batch.add(message("1", s3Event("ObjectRemoved:Delete", "source", "foo/a", "0055AED6DCD90281E6")));
+        batch.add(message("2", s3Event("ObjectCreated:Put", "source", "foo/a", "0055AED6DCD90281E5"),
+                s3Event("ObjectCreated:Put", "source", "foo/c", "01")));
+        // shorter sequencers are smaller
+        batch.add(message("3", s3Event("ObjectCreated:Put", "source", "foo/b", "FF"),
+                s3Event("ObjectRemoved:Delete", "source", "foo/b", "0100")));
+        // redelivered
+        batch.add(message("4", s3Event("ObjectCreated:Put", "source", "foo/c", "01")));
+        // outside the mirrored bucket and prefix
+        batch.add(message("5", s3Event("ObjectCreated:Put", "other", "foo/d", "01"),
+                s3Event("ObjectCreated:Put", "source", "bar/e", "01")));
+
+        assertEquals(5, batch.getMessageCount());
+        assertEquals(6, batch.getEventCount());
+        assertEquals(3, batch.getKeyCount());
+        assertEquals(Arrays.asList("foo/c"), keys(batch.getCreated()));
+        assertEquals(Arrays.asList("foo/a", "foo/b"), keys(batch.getRemoved()));
+    }
+
+    @Test
+    public void testKeepsMessagesOfFailedKeys() throws Exception {
+        NotificationBatch batch = new NotificationBatch("source", null);
+        NotificationMessage a = message("1", s3Event("ObjectCreated:Put", "source", "a", "01"));
+        NotificationMessage ab = message("2", s3Event("ObjectCreated:Put", "source", "a", "02"),
+                s3Event("ObjectCreated:Put", "source", "b", "01"));
+        NotificationMessage garbage = new NotificationMessage("3", "not json");
+        batch.add(a);
+        batch.add(ab);
+        batch.add(garbage);
+
+        assertEquals(Arrays.asList(a, ab, garbage), batch.getMirrored(Collections.<String>emptySet()));
+        assertEquals(Arrays.asList(a, garbage), batch.getMirrored(new HashSet<String>(Arrays.asList("b"))));
+    }
+
+    @Test
+    public void testSpoolFile() throws Exception {
+        File file = File.createTempFile("notifications", ".json");
+        try {
+            Files.write("one\n\ntwo\nthree\npartial", file, Charsets.UTF_8);
+            SpoolNotificationSource source = new SpoolNotificationSource(file);
+
+            List<NotificationMessage> received = source.receive(10);
+            assertEquals(3, received.size());
+            assertEquals("two", received.get(1).getBody());
+            // "two" failed, so it and everything after it is received again
+            source.acknowledge(Arrays.asList(received.get(0), received.get(2)));
+
+            Files.append("\nfour\n", file, Charsets.UTF_8);
+            received = source.receive(10);
+            assertEquals(4, received.size());
+            assertEquals("two", received.get(0).getBody());
+            assertEquals("partial", received.get(2).getBody());
+            source.acknowledge(received);
+
+            assertTrue(source.receive(10).isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSpoolDirectory() throws Exception {
+        File dir = Files.createTempDir();
+        try {
+            Files.write("b", new File(dir, "2"), Charsets.UTF_8);
+            Files.write("a", new File(dir, "1"), Charsets.UTF_8);
+            Files.write("c", new File(dir, ".3"), Charsets.UTF_8);
+            SpoolNotificationSource source = new SpoolNotificationSource(dir);
+
+            List<NotificationMessage> received = source.receive(10);
+            assertEquals(2, received.size());
+            assertEquals("a", received.get(0).getBody());
+            source.acknowledge(received.subList(0, 1));
+
+            received = source.receive(10);
+            assertEquals(1, received.size());
+            assertEquals("b", received.get(0).getBody());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.ObjectSummaries.ErrorJournal_ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class PrefixDigestsTest {
+
+    private static final String IDENTITY = "S3:source/logs/ -> S3:dest/logs/";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "digests-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        new File(dir, PrefixDigests.DIGESTS_FILE).delete();
+        new File(dir, PrefixDigests.DIGESTS_FILE + ".next").delete();
+        dir.delete();
+    }
+
+    private static PrefixDigests.Digest digest(String... keys) {
+        final PrefixDigests.Digest digest = new PrefixDigests.Digest();
+        for (String key : keys) {
+            digest.add(new ErrorJournal_ObjectSummary(new ErrorJournal.Entry(ErrorJournal.OP_COPY, key, 10, "etag-" + key, 1000L, 0, null, 0)));
+        }
+        return digest;
+    }
+
+    private PrefixDigests run(PrefixDigests.Digest a, PrefixDigests.Digest b) throws Exception {
+        final PrefixDigests digests = new PrefixDigests(dir, IDENTITY, "logs/", 1);
+        if (a != null) {
+            digests.put("logs/a/", a);
+        }
+        if (b != null) {
+            digests.put("logs/b/", b);
+        }
+        digests.finish();
+        return digests;
+    }
+
+    @Test
+    public void testGroup() {
+        assertEquals("logs/2026/", PrefixDigests.getGroup("logs/2026/10/19/x", "logs/", 1));
+        assertEquals("logs/2026/10/", PrefixDigests.getGroup("logs/2026/10/19/x", "logs/", 2));
+        assertNull(PrefixDigests.getGroup("logs/top-level", "logs/", 1));
+        assertNull(PrefixDigests.getGroup("logs/2026/x", "logs/", 2));
+        assertNull(PrefixDigests.getGroup("other/2026/x", "logs/", 1));
+    }
+
+    @Test
+    public void testDigestIgnoresOrder() {
+        assertEquals(digest("a", "b"), digest("b", "a"));
+        assertFalse(digest("a", "b").equals(digest("a")));
+        assertFalse(digest("a").equals(digest("c")));
+    }
+
+    @Test
+    public void testUnchangedGroups() throws Exception {
+        PrefixDigests digests = run(digest("logs/a/1"), digest("logs/b/1"));
+        assertFalse(digests.hasPrevious());
+        assertEquals(Arrays.asList("logs/a/", "logs/b/"), digests.getChangedGroups());
+        digests.commit(Collections.<String>emptySet());
+
+        digests = new PrefixDigests(dir, IDENTITY, "logs/", 1);
+        assertTrue(digests.hasPrevious());
+        assertTrue(digests.put("logs/a/", digest("logs/a/1")));
+        assertFalse(digests.put("logs/b/", digest("logs/b/1", "logs/b/2")));
+        digests.finish();
+        assertEquals(Arrays.asList("logs/b/"), digests.getChangedGroups());
+        assertFalse(digests.isLooseChanged());
+    }
+
+    @Test
+    public void testRemovedGroupIsChanged() throws Exception {
+        run(digest("logs/a/1"), digest("logs/b/1")).commit(Collections.<String>emptySet());
+        assertEquals(Arrays.asList("logs/b/"), run(digest("logs/a/1"), null).getChangedGroups());
+    }
+
+    @Test
+    public void testFailedGroupsAreLeftOut() throws Exception {
+        run(digest("logs/a/1"), digest("logs/b/1")).commit(new HashSet<String>(Arrays.asList("logs/b/1")));
+        assertEquals(Arrays.asList("logs/b/"), run(digest("logs/a/1"), digest("logs/b/1")).getChangedGroups());
+    }
+
+    @Test
+    public void testOtherIdentityIgnored() throws Exception {
+        run(digest("logs/a/1"), null).commit(Collections.<String>emptySet());
+        assertFalse(new PrefixDigests(dir, "S3:source/logs/ -> S3:other/", "logs/", 1).hasPrevious());
+        assertFalse(new PrefixDigests(dir, IDENTITY, "logs/", 2).hasPrevious());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailedListingNotCommitted() throws Exception {
+        final PrefixDigests digests = new PrefixDigests(dir, IDENTITY, "logs/", 1);
+        digests.markFailed();
+        digests.commit(Collections.<String>emptySet());
+    }
+
+}
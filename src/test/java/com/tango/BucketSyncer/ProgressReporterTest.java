@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ProgressReporterTest {
+
+    private static MirrorContext newContext(long keysQueued, long bytesQueued, long keysCompared, long bytesCompared) {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final MirrorStats stats = context.getStats();
+        stats.keysQueued.add(keysQueued);
+        stats.bytesQueued.add(bytesQueued);
+        stats.keysCompared.add(keysCompared);
+        stats.bytesCompared.add(bytesCompared);
+        return context;
+    }
+
+    @Test
+    public void testEta() {
+        assertEquals(0, ProgressReporter.getEta(0, 0));
+        assertEquals(-1, ProgressReporter.getEta(10, 0));
+        assertEquals(5, ProgressReporter.getEta(10, 2));
+        assertEquals(4, ProgressReporter.getEta(10, 3));
+        assertEquals("unknown", ProgressReporter.formatEta(-1));
+        assertEquals("1:01:05", ProgressReporter.formatEta(3665));
+    }
+
+    @Test
+    public void testRemaining() {
+        // listing not done and nothing expected: only the keys listed so far remain
+        MirrorContext context = newContext(100, 1000, 40, 400);
+        ObjectNode progress = new ProgressReporter(context, null, 0, 0).getProgress();
+        assertEquals(ProgressReporter.BASIS_LISTED_SO_FAR, progress.get("remainingBasis").asText());
+        assertEquals(60, progress.get("keysRemaining").asLong());
+        assertEquals(600, progress.get("bytesRemaining").asLong());
+        // no rate sampled yet
+        assertEquals(-1, progress.get("etaSeconds").asLong());
+
+        // the expected counts are used until the listing is done
+        progress = new ProgressReporter(context, null, 1000, 10000).getProgress();
+        assertEquals(ProgressReporter.BASIS_EXPECTED, progress.get("remainingBasis").asText());
+        assertEquals(960, progress.get("keysRemaining").asLong());
+        assertEquals(9600, progress.get("bytesRemaining").asLong());
+        context.getStats().setListingDone(true);
+        progress = new ProgressReporter(context, null, 1000, 10000).getProgress();
+        assertEquals(ProgressReporter.BASIS_LISTED, progress.get("remainingBasis").asText());
+        assertEquals(60, progress.get("keysRemaining").asLong());
+        assertTrue(ProgressReporter.format(progress).startsWith("progress: 40 of 100 keys compared"));
+
+        // all compared
+        context = newContext(100, 1000, 100, 1000);
+        context.getStats().setListingDone(true);
+        progress = new ProgressReporter(context, null, 0, 0).getProgress();
+        assertEquals(0, progress.get("keysRemaining").asLong());
+        assertEquals(0, progress.get("etaSeconds").asLong());
+    }
+
+    @Test
+    public void testEtaFromRates() {
+        final MirrorContext context = newContext(1000, 10000, 0, 0);
+        context.getStats().setListingDone(true);
+        context.getStats().sampleRates();
+        context.getStats().keysCompared.add(100);
+        context.getStats().bytesCompared.add(1000);
+        try {
+            Thread.sleep(1100);
+        } catch (InterruptedException e) {
+            fail();
+        }
+        context.getStats().sampleRates();
+        final ObjectNode progress = new ProgressReporter(context, null, 0, 0).getProgress();
+        // about 100 keys per second for 900 keys
+        final long eta = progress.get("etaSeconds").asLong();
+        assertTrue("eta " + eta, eta >= 7 && eta <= 10);
+        assertTrue(progress.get("eta").asLong() > progress.get("time").asLong());
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        final File file = File.createTempFile("progress", ".json");
+        try {
+            final MirrorContext context = newContext(100, 1000, 40, 400);
+            final ProgressReporter reporter = new ProgressReporter(context, file, 0, 0);
+            reporter.report();
+            context.getStats().keysCompared.add(10);
+            reporter.report();
+            final JsonNode progress = new ObjectMapper().readTree(file);
+            assertEquals(50, progress.get("keysCompared").asLong());
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
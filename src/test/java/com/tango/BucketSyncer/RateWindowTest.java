@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateWindowTest {
+
+    @Test
+    public void testRate() {
+        final RateWindow rate = new RateWindow(301);
+        assertEquals(0, rate.getRate(10000), 0);
+        // 10 per second for a minute, then 100 per second for 10 seconds
+        long value = 0;
+        for (int second = 0; second <= 60; second++) {
+            rate.sample(second * 1000L, value);
+            value += 10;
+        }
+        value -= 10;
+        for (int second = 61; second <= 70; second++) {
+            value += 100;
+            rate.sample(second * 1000L, value);
+        }
+        assertEquals(100, rate.getRate(10000), 0.001);
+        assertEquals((50 * 10 + 10 * 100) / 60.0, rate.getRate(60000), 0.001);
+        // only 70 seconds of samples to cover 5 minutes
+        assertEquals((60 * 10 + 10 * 100) / 70.0, rate.getRate(300000), 0.001);
+    }
+
+    @Test
+    public void testOldSamplesOverwritten() {
+        final RateWindow rate = new RateWindow(11);
+        for (int second = 0; second <= 100; second++) {
+            rate.sample(second * 1000L, second < 50 ? 0 : (second - 50) * 5);
+        }
+        assertEquals(5, rate.getRate(300000), 0.001);
+    }
+
+    @Test
+    public void testStripedCounter() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                    counter.add(5);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8 * 10005, counter.get());
+        assertEquals("80040", counter.toString());
+        assertEquals(1, StripedCounter.stripes(0));
+        assertEquals(16, StripedCounter.stripes(6));
+        assertEquals(64, StripedCounter.stripes(96));
+    }
+
+}
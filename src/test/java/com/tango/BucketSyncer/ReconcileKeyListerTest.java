@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.tango.BucketSyncer.KeyListers.KeyLister;
+import com.tango.BucketSyncer.KeyListers.ReconcileKeyLister;
+import com.tango.BucketSyncer.ObjectSummaries.ObjectSummary;
+import com.tango.BucketSyncer.ObjectSummaries.S3_ObjectSummary;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReconcileKeyListerTest {
+
+    private static ObjectSummary summary(String key, String etag) {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setETag(etag);
+        summary.setSize(10);
+        return new S3_ObjectSummary(summary);
+    }
+
+    // hands out one summary per batch, so the merge has to wait on both listings
+    private static KeyLister lister(MirrorContext context, final ObjectSummary... summaries) {
+        return new KeyLister("bucket", "", context, 100) {
+            private final List<ObjectSummary> remaining = new ArrayList<ObjectSummary>(Arrays.asList(summaries));
+
+            @Override
+            public void run() {
+                done.set(remaining.isEmpty());
+            }
+
+            @Override
+            public synchronized List<ObjectSummary> getNextBatch() {
+                final List<ObjectSummary> batch = new ArrayList<ObjectSummary>();
+                if (!remaining.isEmpty()) {
+                    batch.add(remaining.remove(0));
+                }
+                done.set(remaining.isEmpty());
+                return batch;
+            }
+        };
+    }
+
+    @Test
+    public void testFindsMissingAndChangedKeys() throws Exception {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final KeyLister source = lister(context,
+                summary("a", "1"), summary("b", "2"), summary("c", "3"), summary("e", "5"), summary("\uFF5E", "6"), summary("\uD83D\uDE00", "7"));
+        final KeyLister dest = lister(context,
+                summary("a", "1"), summary("b", "changed"), summary("d", "4"), summary("e", "5"), summary("\uD83D\uDE00", "7"));
+
+        final ReconcileKeyLister reconciler = new ReconcileKeyLister(source, dest, context, 100);
+        final Thread thread = new Thread(reconciler);
+        thread.start();
+        thread.join(10000);
+
+        final List<String> keys = new ArrayList<String>();
+        for (ObjectSummary summary : reconciler.getNextBatch()) {
+            keys.add(summary.getKey());
+        }
+        // U+1F600 sorts after U+FF5E in UTF-8 byte order, but before it in UTF-16
+        assertEquals(Arrays.asList("b", "c", "\uFF5E"), keys);
+    }
+}
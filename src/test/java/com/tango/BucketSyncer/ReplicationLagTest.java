@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ReplicationLagTest {
+
+    @Test
+    public void testLag() {
+        final MirrorStats stats = new MirrorStats();
+        final long now = System.currentTimeMillis();
+        assertEquals(0, stats.getOldestUnmirroredAge());
+
+        stats.recordCopyStarted(now - 60000);
+        stats.recordCopyStarted(now - 10000);
+        stats.recordCopyStarted(now - 10000);
+        assertTrue(stats.getOldestUnmirroredAge() >= 60000);
+
+        // the oldest object is copied, the two others are still pending
+        stats.recordCopied("logs/", now - 60000);
+        final long age = stats.getOldestUnmirroredAge();
+        assertTrue(age >= 10000 && age < 60000);
+        stats.recordCopied("images/", now - 10000);
+        assertTrue(stats.getOldestUnmirroredAge() >= 10000);
+        stats.recordCopyNotNeeded(now - 10000);
+        assertEquals(0, stats.getOldestUnmirroredAge());
+
+        assertEquals(2, stats.getLag().getCount());
+        assertTrue(stats.getLag().getMax() >= 60000);
+        final Map<String, LatencyHistogram> byPrefix = stats.getLagByPrefix();
+        assertEquals(2, byPrefix.size());
+        assertEquals(1, byPrefix.get("logs/").getCount());
+        assertEquals(1, byPrefix.get("images/").getCount());
+
+        // only the copy of the object modified a minute ago took longer than 30 seconds
+        assertEquals(1, stats.getLag().getCountAbove(30000));
+        assertEquals(0, stats.getLag().getCountAbove(120000));
+    }
+
+    @Test
+    public void testTooManyPrefixes() {
+        final MirrorStats stats = new MirrorStats();
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < MirrorStats.MAX_PREFIXES + 10; i++) {
+            stats.recordCopied("prefix" + i + "/", now);
+        }
+        final Map<String, LatencyHistogram> byPrefix = stats.getLagByPrefix();
+        assertEquals(MirrorStats.MAX_PREFIXES + 1, byPrefix.size());
+        assertEquals(10, byPrefix.get(MirrorStats.OTHER_PREFIX).getCount());
+    }
+
+}
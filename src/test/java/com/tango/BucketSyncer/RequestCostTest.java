@@ -0,0 +1,108 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RequestCostTest {
+
+    @Test
+    public void testRequestClasses() {
+        assertEquals(MirrorStats.CLASS_A, MirrorStats.getRequestClass(MirrorStats.OP_LIST));
+        assertEquals(MirrorStats.CLASS_A, MirrorStats.getRequestClass(MirrorStats.OP_PUT));
+        assertEquals(MirrorStats.CLASS_A, MirrorStats.getRequestClass(MirrorStats.OP_COPY));
+        assertEquals(MirrorStats.CLASS_A, MirrorStats.getRequestClass(MirrorStats.OP_COPY_PART));
+        assertEquals(MirrorStats.CLASS_A, MirrorStats.getRequestClass(MirrorStats.OP_MULTIPART));
+        assertEquals(MirrorStats.CLASS_B, MirrorStats.getRequestClass(MirrorStats.OP_GET));
+        assertEquals(MirrorStats.CLASS_B, MirrorStats.getRequestClass(MirrorStats.OP_HEAD));
+        assertEquals(MirrorStats.CLASS_B, MirrorStats.getRequestClass(MirrorStats.OP_GET_ACL));
+        assertEquals(MirrorStats.CLASS_FREE, MirrorStats.getRequestClass(MirrorStats.OP_DELETE));
+        assertEquals(MirrorStats.CLASS_FREE, MirrorStats.getRequestClass(MirrorStats.OP_ABORT));
+    }
+
+    @Test
+    public void testRequestCounts() {
+        final MirrorStats stats = new MirrorStats();
+        final long start = System.nanoTime();
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_LIST, start);
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, start);
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, start, true);
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_GET_ACL, start);
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_COPY, start);
+        // a batch of 50 lookups, 5 of them retries, is one latency but 50 requests
+        stats.recordBatchLatency(MirrorConstants.GCS, MirrorStats.OP_HEAD, start, 50, 5);
+        stats.recordBatchLatency(MirrorConstants.GCS, MirrorStats.OP_DELETE, start, 10, 0);
+
+        assertEquals(1, stats.getLatency(MirrorConstants.GCS, MirrorStats.OP_HEAD).getCount());
+        assertEquals(50, stats.getRequests().get("GCS HEAD").longValue());
+        assertEquals(2, stats.getRequests().get("S3 HEAD").longValue());
+        assertEquals(1, stats.getRequests().get("S3 GET_ACL").longValue());
+        assertEquals(2, stats.getRequestCount(MirrorConstants.S3, MirrorStats.CLASS_A));
+        assertEquals(3, stats.getRequestCount(MirrorConstants.S3, MirrorStats.CLASS_B));
+        assertEquals(50, stats.getRequestCount(MirrorConstants.GCS, MirrorStats.CLASS_B));
+        assertEquals(10, stats.getRequestCount(MirrorConstants.GCS, MirrorStats.CLASS_FREE));
+        assertEquals(53, stats.getRequestCount(null, MirrorStats.CLASS_B));
+        assertEquals(65, stats.getTotalRequests());
+        assertEquals(1, stats.getRetries().get("S3 HEAD").longValue());
+        assertEquals(6, stats.getTotalRetries());
+
+        assertEquals(0, stats.getRequestsPerObjectCopied(), 0.0001);
+        stats.objectsCopied.add(5);
+        assertEquals(13, stats.getRequestsPerObjectCopied(), 0.0001);
+
+        stats.unchangedRequests.add(4);
+        assertEquals(10, stats.getWastedRequests());
+        assertTrue(stats.toString().contains("S3 requests: 2 class A, 3 class B, 0 free"));
+        assertTrue(stats.toString().contains("wasted requests: 10 (6 retries, 4 comparing unchanged keys)"));
+    }
+
+    @Test
+    public void testThreadRequests() throws Exception {
+        final MirrorStats stats = new MirrorStats();
+        final long before = MirrorStats.getThreadRequests();
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, System.nanoTime());
+        // a batch is counted by the callers waiting for their calls, not by the thread that sent it
+        stats.recordBatchLatency(MirrorConstants.GCS, MirrorStats.OP_HEAD, System.nanoTime(), 100, 0);
+        MirrorStats.countBatchedCall();
+        assertEquals(2, MirrorStats.getThreadRequests() - before);
+
+        final long[] other = new long[1];
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other[0] = MirrorStats.getThreadRequests();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(0, other[0]);
+    }
+
+    @Test
+    public void testMetrics() {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final MirrorStats stats = context.getStats();
+        final long start = System.nanoTime();
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_COPY, start);
+        stats.recordLatency(MirrorConstants.S3, MirrorStats.OP_COPY, start, true);
+        final String metrics = MetricsServer.format(context);
+        assertTrue(metrics.contains("bucketsyncer_requests_total{store=\"S3\",op=\"COPY\",class=\"class A\"} 2\n"));
+        assertTrue(metrics.contains("bucketsyncer_retried_requests_total{store=\"S3\",op=\"COPY\"} 1\n"));
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.KeyJobs.DeleteBatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RunJournalTest {
+
+    private static final String IDENTITY = "S3:source/ -> S3:dest/";
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = new File(System.getProperty("java.io.tmpdir"), "journal-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testResumeAfterKill() throws Exception {
+        RunJournal journal = new RunJournal(dir, IDENTITY, false);
+        for (String key : new String[]{"a", "b", "c", "d", "e"}) {
+            journal.started("copy", key);
+        }
+        // jobs finish out of listing order; "c" is still running when the run is killed
+        journal.finished("copy", "b");
+        journal.finished("copy", "a");
+        journal.finished("copy", "e");
+        journal.started("delete", "x");
+        journal.finished("delete", "x");
+        journal.close(false);
+
+        journal = new RunJournal(dir, IDENTITY, true);
+        assertTrue(journal.isResumed());
+        assertEquals("b", journal.getResumeMarker("copy"));
+        assertEquals("x", journal.getResumeMarker("delete"));
+        assertTrue(journal.skip("copy", "a"));
+        assertFalse(journal.skip("copy", "c"));
+        journal.started("copy", "c");
+        assertFalse(journal.skip("copy", "d"));
+        journal.started("copy", "d");
+        assertTrue(journal.skip("copy", "e"));
+        journal.finished("copy", "d");
+        journal.close(false);
+
+        // a later resume starts after what both runs finished
+        journal = new RunJournal(dir, IDENTITY, true);
+        assertEquals("b", journal.getResumeMarker("copy"));
+        assertFalse(journal.skip("copy", "c"));
+        journal.started("copy", "c");
+        assertTrue(journal.skip("copy", "d"));
+        assertTrue(journal.skip("copy", "e"));
+        journal.finished("copy", "c");
+        journal.close(false);
+        assertEquals("e", new RunJournal(dir, IDENTITY, true).getResumeMarker("copy"));
+    }
+
+    @Test
+    public void testBatchedDeleteIsJournaledWhenItsBatchCompletes() throws Exception {
+        final MirrorOptions options = new MirrorOptions();
+        options.setSource("source");
+        options.setDestination("dest");
+        options.setDeleteBatchSize(2);
+        options.setDeleteBatchLinger(60000);
+        options.initDerivedFields();
+        final List<String> deleted = new ArrayList<String>();
+        final DeleteBatcher batcher = new DeleteBatcher(new MirrorContext(options), 1000) {
+            @Override
+            protected Map<String, String> deleteBatch(List<String> keys) {
+                deleted.addAll(keys);
+                return Collections.emptyMap();
+            }
+        };
+
+        RunJournal journal = new RunJournal(dir, IDENTITY, false);
+        for (String key : new String[]{"w", "x", "y"}) {
+            journal.started("delete", key);
+            batcher.add(key, finisher(journal, "delete"));
+        }
+        // "y" is still waiting for its batch when the run is killed
+        journal.close(false);
+        assertEquals(Arrays.asList("w", "x"), deleted);
+
+        journal = new RunJournal(dir, IDENTITY, true);
+        assertEquals("x", journal.getResumeMarker("delete"));
+        assertFalse(journal.skip("delete", "y"));
+        journal.close(false);
+        batcher.close();
+    }
+
+    private static DeleteBatcher.Callback finisher(final RunJournal journal, final String shard) {
+        return new DeleteBatcher.Callback() {
+            @Override
+            public void batchCompleted(String key, boolean deleted) {
+                journal.finished(shard, key);
+            }
+        };
+    }
+
+    @Test
+    public void testCompletedRunIsNotResumed() throws Exception {
+        RunJournal journal = new RunJournal(dir, IDENTITY, false);
+        journal.started("copy", "a");
+        journal.finished("copy", "a");
+        journal.close(true);
+        assertFalse(new File(dir, RunJournal.JOURNAL_FILE).exists());
+
+        journal = new RunJournal(dir, IDENTITY, true);
+        assertFalse(journal.isResumed());
+        assertNull(journal.getResumeMarker("copy"));
+        journal.close(true);
+    }
+
+    @Test
+    public void testIgnoresTornRecordAndOtherMirror() throws Exception {
+        RunJournal journal = new RunJournal(dir, IDENTITY, false);
+        journal.started("copy", "a");
+        journal.finished("copy", "a");
+        journal.close(false);
+        FileOutputStream out = new FileOutputStream(new File(dir, RunJournal.JOURNAL_FILE), true);
+        out.write(new byte[]{'K', 0, 4, 'c', 'o'});
+        out.close();
+
+        assertEquals("a", new RunJournal(dir, IDENTITY, true).getResumeMarker("copy"));
+        assertFalse(new RunJournal(dir, "S3:other/ -> S3:dest/", true).isResumed());
+    }
+
+}
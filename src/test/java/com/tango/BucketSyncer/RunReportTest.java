@@ -0,0 +1,91 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RunReportTest {
+
+    @Test
+    public void testTopKeys() {
+        final TopKeys top = new TopKeys(3);
+        for (int i = 0; i < 100; i++) {
+            top.offer("key" + i, (i * 37) % 100);
+        }
+        final List<TopKeys.Entry> entries = top.getTop();
+        assertEquals(3, entries.size());
+        assertEquals(99, entries.get(0).getValue());
+        assertEquals(98, entries.get(1).getValue());
+        assertEquals(97, entries.get(2).getValue());
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        final MirrorContext context = new MirrorContext(new MirrorOptions());
+        final MirrorStats stats = context.getStats();
+        stats.setSource("source");
+        stats.setDestination("dest");
+        stats.objectsCopied.add(2);
+        stats.getLatency(MirrorConstants.S3, MirrorStats.OP_HEAD).record(2000);
+        stats.getPrefixCounts("logs/").keys.addAndGet(3);
+        stats.getPrefixCounts("logs/").errors.incrementAndGet();
+        stats.getLargestKeys().offer("logs/big", 1000);
+        stats.getSlowestKeys().offer("logs/slow", 3000000);
+        stats.sampleConcurrency(4, 8, 10);
+        stats.sampleConcurrency(2, 8, 0);
+        stats.recordError("logs/failed");
+
+        final File file = File.createTempFile("run-report", ".json");
+        try {
+            RunReport.write(context, true, file);
+            final JsonNode report = new ObjectMapper().readTree(file);
+            assertEquals("source", report.get("source").asText());
+            assertTrue(report.get("completed").asBoolean());
+            assertEquals(2, report.get("totals").get("keysCopied").asLong());
+            final JsonNode head = report.get("operations").get("S3 HEAD");
+            assertEquals(1, head.get("count").asLong());
+            assertEquals(0.002, head.get("max").asDouble(), 0.0001);
+            assertEquals(3, report.get("prefixes").get("logs/").get("keys").asLong());
+            assertEquals(1, report.get("prefixes").get("logs/").get("errors").asLong());
+            assertEquals("logs/big", report.get("largestKeys").get(0).get("key").asText());
+            assertEquals(3.0, report.get("slowestKeys").get(0).get("seconds").asDouble(), 0.0001);
+            assertEquals(1, report.get("concurrency").size());
+            assertEquals(3.0, report.get("concurrency").get(0).get("averageActive").asDouble(), 0.0001);
+            assertEquals(4, report.get("concurrency").get(0).get("maxActive").asInt());
+            assertEquals(0, report.get("throttled").get(MirrorConstants.S3).asLong());
+            // without an error journal the failed keys are listed
+            assertEquals("logs/failed", report.get("errors").get("firstKeys").get(0).asText());
+
+            stats.setErrorKeyFile("/tmp/errors.jsonl");
+            RunReport.write(context, false, file);
+            final JsonNode next = new ObjectMapper().readTree(file);
+            assertFalse(next.get("completed").asBoolean());
+            assertEquals("/tmp/errors.jsonl", next.get("errors").get("file").asText());
+            assertNull(next.get("errors").get("firstKeys"));
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -17,16 +17,22 @@ package com.tango.BucketSyncer;
 
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.*;
+import com.tango.BucketSyncer.KeyJobs.DeleteBatcher;
+import com.tango.BucketSyncer.KeyJobs.S32S3KeyDeleteJob;
+import com.tango.BucketSyncer.KeyJobs.S3DeleteBatcher;
+import com.tango.BucketSyncer.ObjectSummaries.S3_ObjectSummary;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.File;
 import java.util.*;
 
 import static com.tango.BucketSyncer.MirrorOptions.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 
@@ -169,6 +175,119 @@ public class S3_MockTest {
 
     }
 
+    @Test
+    public void testBatchDeleteMapsPerKeyErrors() throws Exception {
+        main = new MirrorMain(new String[]{OPT_DELETE_REMOVED, OPT_SOURCE_BUCKET, SOURCE, OPT_DESTINATION_BUCKET, DESTINATION});
+        main.parseArguments();
+        MirrorContext context = new MirrorContext(main.getOptions());
+
+        MultiObjectDeleteException.DeleteError error = new MultiObjectDeleteException.DeleteError();
+        error.setKey("locked_key");
+        error.setCode("AccessDenied");
+        MultiObjectDeleteException e = new MultiObjectDeleteException(
+                Collections.singletonList(error), Collections.<DeleteObjectsResult.DeletedObject>emptyList());
+        when(s3.deleteObjects(Mockito.any(DeleteObjectsRequest.class))).thenThrow(e);
+
+        final Map<String, Boolean> deleted = new HashMap<String, Boolean>();
+        DeleteBatcher.Callback callback = new DeleteBatcher.Callback() {
+            @Override
+            public void batchCompleted(String key, boolean keyDeleted) {
+                deleted.put(key, keyDeleted);
+            }
+        };
+        S3DeleteBatcher batcher = new S3DeleteBatcher(s3, context);
+        batcher.add("expired_key", callback);
+        batcher.add("locked_key", callback);
+        batcher.close();
+
+        // only the key that was deleted may be forgotten by the destination index
+        assertEquals(Boolean.TRUE, deleted.get("expired_key"));
+        assertEquals(Boolean.FALSE, deleted.get("locked_key"));
+
+        assertEquals(1, context.getStats().deleteCount.get());
+        assertEquals(1, context.getStats().objectsDeleted.get());
+        assertEquals(1, context.getStats().deleteErrors.get());
+        assertTrue(context.getStats().errorKeyList.contains("locked_key"));
+    }
+
+    @Test
+    public void testDeleteRecordsFailedSourceCheck() throws Exception {
+        main = new MirrorMain(new String[]{OPT_DELETE_REMOVED, OPT_MAX_RETRIES, "1", OPT_SOURCE_BUCKET, SOURCE, OPT_DESTINATION_BUCKET, DESTINATION});
+        main.parseArguments();
+        MirrorContext context = new MirrorContext(main.getOptions());
+
+        AmazonS3Exception e = new AmazonS3Exception("Service unavailable");
+        e.setStatusCode(503);
+        when(s3.getObjectMetadata(SOURCE, "removed_key")).thenThrow(e);
+
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey("removed_key");
+        S32S3KeyDeleteJob job = new S32S3KeyDeleteJob(s3, s3, context, new S3_ObjectSummary(summary), new Object());
+        job.run();
+
+        // not deleted, but recorded as failed so a snapshot keeps offering it for deletion
+        Mockito.verify(s3, Mockito.never()).deleteObject(Mockito.any(DeleteObjectRequest.class));
+        assertTrue(job.isFailed());
+        assertEquals(1, context.getStats().deleteErrors.get());
+        assertTrue(context.getStats().errorKeyList.contains("removed_key"));
+    }
+
+    @Test
+    public void testCopyRetriedAfterFailedDestinationCheck() throws Exception {
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "snapshot-mock-test-" + System.nanoTime());
+        final String[] args = {LONGOPT_SNAPSHOT, dir.getPath(), OPT_MAX_RETRIES, "1", OPT_SOURCE_BUCKET, SOURCE, OPT_DESTINATION_BUCKET, DESTINATION};
+        final String key = "flaky_key";
+
+        S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        summary.setETag("etag");
+        summary.setSize(10);
+        when(s3.listObjects(Mockito.any(ListObjectsRequest.class))).thenReturn(listing);
+        when(listing.getObjectSummaries()).thenReturn(Collections.singletonList(summary));
+
+        ObjectMetadata sourceMetadata = new ObjectMetadata();
+        sourceMetadata.setContentLength(10);
+        when(s3.getObjectMetadata(SOURCE, key)).thenReturn(sourceMetadata);
+        when(s3.getObjectAcl(SOURCE, key)).thenReturn(objectAcl);
+        when(s3.copyObject(Mockito.any(CopyObjectRequest.class))).thenReturn(copyObjectResult);
+
+        AmazonS3Exception serverError = new AmazonS3Exception("Internal error");
+        serverError.setStatusCode(500);
+        AmazonS3Exception notFound = new AmazonS3Exception("Key not found");
+        notFound.setStatusCode(404);
+        when(s3.getObjectMetadata(DESTINATION, key)).thenThrow(serverError).thenThrow(notFound);
+
+        try {
+            MirrorContext context = runMirror(args);
+            assertEquals(0, context.getStats().objectsCopied.get());
+            assertEquals(1, context.getStats().copyErrors.get());
+
+            // the key failed, so the snapshot did not take it as mirrored and the next run offers it again
+            context = runMirror(args);
+            assertEquals(1, context.getStats().objectsCopied.get());
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private MirrorContext runMirror(String[] args) throws Exception {
+        main = new MirrorMain(args);
+        main.parseArguments();
+        main.setSourceClient(s3);
+        main.setDestClient(s3);
+        MirrorContext context = new MirrorContext(main.getOptions());
+        main.setContext(context);
+        main.setMaster(new MirrorMaster(s3, s3, context));
+        main.init();
+        main.run();
+        return main.getContext();
+    }
 
     private void testSimpleCopyInternal(ArrayList<String> keys, String[] args, List<S3ObjectSummary> objectSummaries) throws Exception {
 
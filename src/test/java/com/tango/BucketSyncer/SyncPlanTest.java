@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import com.tango.BucketSyncer.ObjectSummaries.ErrorJournal_ObjectSummary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SyncPlanTest {
+
+    private static final String IDENTITY = "S3:source/ -> S3:dest/";
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(System.getProperty("java.io.tmpdir"), "plan-test-" + System.nanoTime() + ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".next").delete();
+    }
+
+    private static ErrorJournal_ObjectSummary summary(String key, long size, String etag) {
+        return new ErrorJournal_ObjectSummary(new ErrorJournal.Entry(ErrorJournal.OP_COPY, key, size, etag, 1000L, 0, null, 0));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        SyncPlan plan = new SyncPlan(file, IDENTITY);
+        plan.record(SyncPlan.COPY, summary("plain", 10, "etag-1"));
+        plan.record(SyncPlan.COPY, summary("with,comma \"and\" quotes\nand a line break", 20, null));
+        plan.record(SyncPlan.SKIP, summary("in-sync", 30, "etag-3"));
+        plan.record(SyncPlan.DELETE, summary("#gone", -1, null));
+        assertFalse(file.exists());
+        plan.commit();
+        assertEquals(2, plan.getCopies().get());
+        assertEquals(30, plan.getCopyBytes().get());
+        assertEquals(1, plan.getDeletes().get());
+        assertEquals(1, plan.getSkips().get());
+
+        SyncPlan.Reader reader = new SyncPlan.Reader(file, IDENTITY);
+        SyncPlan.Entry entry = reader.next();
+        assertEquals(SyncPlan.COPY, entry.getAction());
+        assertEquals("plain", entry.getKey());
+        assertEquals(10, entry.getSize());
+        assertEquals("etag-1", entry.getEtag());
+        assertEquals(1000L, entry.getLastModified());
+
+        entry = reader.next();
+        assertEquals("with,comma \"and\" quotes\nand a line break", entry.getKey());
+        assertNull(entry.getEtag());
+
+        entry = reader.next();
+        assertEquals(SyncPlan.DELETE, entry.getAction());
+        assertEquals("#gone", entry.getKey());
+
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testPlanOfOtherBucketsIsRejected() throws Exception {
+        SyncPlan plan = new SyncPlan(file, IDENTITY);
+        plan.commit();
+        try {
+            new SyncPlan.Reader(file, "S3:other/ -> S3:dest/");
+            fail("plan made for other buckets should not be read");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testAbandonedPlanKeepsPrevious() throws Exception {
+        SyncPlan plan = new SyncPlan(file, IDENTITY);
+        plan.record(SyncPlan.COPY, summary("a", 1, null));
+        plan.commit();
+
+        plan = new SyncPlan(file, IDENTITY);
+        plan.record(SyncPlan.COPY, summary("b", 1, null));
+        plan.abandon();
+
+        SyncPlan.Reader reader = new SyncPlan.Reader(file, IDENTITY);
+        assertEquals("a", reader.next().getKey());
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testShardsPartitionKeys() {
+        for (int i = 0; i < 1000; i++) {
+            int owners = 0;
+            for (int shard = 0; shard < 3; shard++) {
+                if (SyncPlan.isInShard("key-" + i, shard, 3)) {
+                    owners++;
+                }
+            }
+            assertEquals(1, owners);
+            assertTrue(SyncPlan.isInShard("key-" + i, 0, 1));
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceAnalyzerTest {
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(System.getProperty("java.io.tmpdir"), "trace-test-" + System.nanoTime() + ".jsonl");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final long start = System.nanoTime();
+        final KeyTrace trace = new KeyTrace("a/b", start);
+        trace.enqueued();
+        trace.dequeued();
+        KeyTrace.setCurrent(trace);
+        try {
+            new MirrorStats().recordLatency(MirrorConstants.S3, MirrorStats.OP_HEAD, System.nanoTime());
+        } finally {
+            KeyTrace.setCurrent(null);
+        }
+        trace.failed();
+        trace.done();
+
+        TraceLog traceLog = new TraceLog(file, 1);
+        traceLog.write(trace);
+        traceLog.close();
+        // appended to, not replaced
+        traceLog = new TraceLog(file, 1);
+        traceLog.write(new KeyTrace("c", start));
+        traceLog.close();
+
+        final List<KeyTrace> traces = TraceLog.read(file);
+        assertEquals(2, traces.size());
+        final KeyTrace read = traces.get(0);
+        assertEquals("a/b", read.getKey());
+        assertTrue(read.isFailed());
+        assertEquals(trace.getDone(), read.getDone());
+        assertEquals(1, read.getSpans().size());
+        assertEquals(MirrorStats.OP_HEAD, read.getSpans().get(0).getOp());
+        assertEquals(-1, traces.get(1).getDone());
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        final TraceLog traceLog = new TraceLog(file, 10);
+        int sampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (traceLog.isSampled("key-" + i)) {
+                sampled++;
+            }
+        }
+        traceLog.close();
+        assertTrue(sampled > 800 && sampled < 1200);
+        assertEquals(traceLog.isSampled("key-1"), traceLog.isSampled("key-1"));
+    }
+
+    private static KeyTrace parse(String json) throws Exception {
+        return KeyTrace.parse(json);
+    }
+
+    @Test
+    public void testAnalyze() throws Exception {
+        final List<KeyTrace> traces = Arrays.asList(
+                parse("{\"key\":\"a\",\"enqueued\":0,\"dequeued\":6000,\"done\":10000,\"spans\":[[\"S3\",\"HEAD\",6000,7000],[\"S3\",\"COPY\",7000,9000]]}"),
+                parse("{\"key\":\"b\",\"enqueued\":2000,\"dequeued\":2000,\"done\":10000,\"failed\":true,"
+                        + "\"spans\":[[\"S3\",\"HEAD\",2000,3000],[\"S3\",\"HEAD\",3000,4000],[\"S3\",\"COPY\",4000,10000]]}"),
+                parse("{\"key\":\"c\",\"enqueued\":0,\"dequeued\":-1,\"done\":-1,\"spans\":[]}"));
+        final String report = TraceAnalyzer.analyze(traces);
+        assertTrue(report, report.startsWith("2 traced keys completed (1 failed), 1 did not complete"));
+        // 6 of 20 ms waiting for a thread, 8 in copies, 3 in HEADs of which one is a retry
+        assertTrue(report, report.matches("(?s).*waiting for a thread +30\\.0%.*"));
+        assertTrue(report, report.matches("(?s).*S3 COPY +40\\.0%.*"));
+        assertTrue(report, report.matches("(?s).*S3 HEAD +15\\.0% +2 .* 1\\s.*"));
+        assertTrue(report, report.matches("(?s).*waiting for queue room +10\\.0%.*"));
+        assertTrue(report, report.matches("(?s).*rest of the job +5\\.0%.*"));
+    }
+
+}
@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2014 TangoMe Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.tango.BucketSyncer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class WatermarkTest {
+
+    private static final String IDENTITY = "S3:source/ -> S3:dest/";
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(System.getProperty("java.io.tmpdir"), "watermark-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testCommitNewestListed() throws Exception {
+        Watermark watermark = new Watermark(file, IDENTITY);
+        assertFalse(watermark.hasPrevious());
+        watermark.observe(1000);
+        watermark.observe(3000);
+        watermark.observe(2000);
+        watermark.finish();
+        watermark.commit(5000);
+
+        watermark = new Watermark(file, IDENTITY);
+        assertEquals(3000, watermark.getPrevious());
+
+        // not past the start of the run, nor back
+        watermark.observe(9000);
+        watermark.commit(4000);
+        assertEquals(4000, new Watermark(file, IDENTITY).getPrevious());
+        watermark = new Watermark(file, IDENTITY);
+        watermark.observe(1000);
+        watermark.commit(5000);
+        assertEquals(4000, new Watermark(file, IDENTITY).getPrevious());
+    }
+
+    @Test
+    public void testIgnoresOtherMirror() throws Exception {
+        Watermark watermark = new Watermark(file, IDENTITY);
+        watermark.observe(1000);
+        watermark.commit(5000);
+
+        assertFalse(new Watermark(file, "S3:other/ -> S3:dest/").hasPrevious());
+    }
+
+}